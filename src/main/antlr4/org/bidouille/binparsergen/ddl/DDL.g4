@@ -14,9 +14,10 @@ SEMICOLON : ';';
 
 definitions : struct*;
 struct : 'struct' NAME ('(' argList ')')? '{' item* '}';
-item : data | struct | conditional;
+item : data | struct | conditional | switchBlock | enumeration;
 
-data : offset? (type | arrayType) NAME? constraint* description? SEMICOLON;
+data : option* offset? (type | arrayType) NAME? constraint* description? SEMICOLON;
+option : '[' NAME ']';
 type : NAME ('(' argList ')')? ;
 arrayType : shortArrayForm | longArrayForm;
 shortArrayForm : type '[' arraySpec ']';
@@ -30,6 +31,13 @@ description : STRING_LITERAL;
 
 conditional : 'if' '(' expr ')' '{' item* '}';
 
+switchBlock : 'switch' '(' expr ')' '{' switchCase* '}';
+switchCase : ( 'case' caseLabel (COMMA caseLabel)* | 'default' ) COLON item*;
+caseLabel : '-'? INT_LITERAL;
+
+enumeration : 'enum' NAME COLON type '{' enumValue* '}';
+enumValue : NAME OP '-'? INT_LITERAL description? SEMICOLON;
+
 expr :
    NAME | value | '$'
    | expr ( OP | BIN_OP | '==' | '/' | '+' | '-' | '*' ) expr
@@ -1,19 +1,30 @@
 package org.bidouille.binparsergen;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CommonTokenStream;
@@ -23,30 +34,52 @@ import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.apache.commons.io.IOUtils;
+import org.bidouille.binparsergen.compile.ClassCache;
+import org.bidouille.binparsergen.compile.CompilationException;
 import org.bidouille.binparsergen.compile.MemoryCompiler;
 import org.bidouille.binparsergen.constraint.Constraint;
 import org.bidouille.binparsergen.constraint.StringEqualsConstraint;
+import org.bidouille.binparsergen.data.ColumnarArrayInfo;
 import org.bidouille.binparsergen.data.DataArrayInfo;
 import org.bidouille.binparsergen.data.DataBlock;
 import org.bidouille.binparsergen.data.DataDesc;
 import org.bidouille.binparsergen.data.DataInfo;
 import org.bidouille.binparsergen.data.IfBlock;
+import org.bidouille.binparsergen.data.ParallelArrayInfo;
+import org.bidouille.binparsergen.data.StreamArrayInfo;
+import org.bidouille.binparsergen.data.StreamBytesInfo;
 import org.bidouille.binparsergen.data.Struct;
+import org.bidouille.binparsergen.data.SwitchBlock;
 import org.bidouille.binparsergen.ddl.DDLBaseListener;
 import org.bidouille.binparsergen.ddl.DDLLexer;
 import org.bidouille.binparsergen.ddl.DDLParser;
 import org.bidouille.binparsergen.ddl.DDLParser.ArgListContext;
 import org.bidouille.binparsergen.ddl.DDLParser.ArrayTypeContext;
+import org.bidouille.binparsergen.ddl.DDLParser.CaseLabelContext;
 import org.bidouille.binparsergen.ddl.DDLParser.ConditionalContext;
 import org.bidouille.binparsergen.ddl.DDLParser.ConstraintContext;
 import org.bidouille.binparsergen.ddl.DDLParser.DataContext;
 import org.bidouille.binparsergen.ddl.DDLParser.DefinitionsContext;
+import org.bidouille.binparsergen.ddl.DDLParser.EnumValueContext;
+import org.bidouille.binparsergen.ddl.DDLParser.EnumerationContext;
 import org.bidouille.binparsergen.ddl.DDLParser.ExprContext;
 import org.bidouille.binparsergen.ddl.DDLParser.LongArrayFormContext;
 import org.bidouille.binparsergen.ddl.DDLParser.ShortArrayFormContext;
 import org.bidouille.binparsergen.ddl.DDLParser.StructContext;
+import org.bidouille.binparsergen.ddl.DDLParser.SwitchBlockContext;
+import org.bidouille.binparsergen.ddl.DDLParser.SwitchCaseContext;
 import org.bidouille.binparsergen.ddl.DDLParser.TypeContext;
+import org.bidouille.binparsergen.interpret.Decoder;
+import org.bidouille.binparsergen.interpret.Decoder.Kind;
+import org.bidouille.binparsergen.interpret.DecoderContext;
+import org.bidouille.binparsergen.interpret.Expression;
+import org.bidouille.binparsergen.interpret.Interpreter;
+import org.bidouille.binparsergen.map.DataMapping;
+import org.bidouille.binparsergen.map.EnumDataMapping;
 import org.bidouille.binparsergen.template.IndentPrintWriter;
+import org.bidouille.binparsergen.util.BinaryReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +96,20 @@ public class BinParserGen {
      * @throws IOException if there was an error writing the destination files
      */
     public static void generateParser( InputStream source, String packageName, File targetDirectory ) throws InvalidDefinitionException, IOException {
+        generateParser( source, packageName, targetDirectory, new GeneratorOptions() );
+    }
+
+    /**
+     * Generate parser source code for the specified data definition in the target folder and with the specified root package.
+     *
+     * @param source DDL source
+     * @param packageName root package of Java classes
+     * @param targetDirectory output directory. Will create a hierarchy corresponding to the package.
+     * @param options options of the generated code
+     * @throws InvalidDefinitionException if the data definition is invalid
+     * @throws IOException if there was an error writing the destination files
+     */
+    public static void generateParser( InputStream source, String packageName, File targetDirectory, GeneratorOptions options ) throws InvalidDefinitionException, IOException {
         VisitListener visitor = doParse( source );
 
         File packageDir = new File( targetDirectory, packageName.replace( '.', '/' ) );
@@ -70,7 +117,7 @@ public class BinParserGen {
         for( Struct struct : visitor.topLevelStructs ) {
             File sourceFile = new File( packageDir, struct.name + ".java" );
             IndentPrintWriter writer = new IndentPrintWriter( new FileOutputStream( sourceFile ) );
-            struct.write( writer, packageName );
+            struct.write( writer, packageName, options );
             writer.close();
         }
     }
@@ -84,22 +131,112 @@ public class BinParserGen {
      * @throws IOException
      */
     public static Map<String, Class<?>> generateClasses( InputStream source, String packageName ) throws InvalidDefinitionException, IOException {
-        VisitListener visitor = doParse( source );
+        return generateClasses( source, packageName, new GeneratorOptions() );
+    }
+
+    /**
+     * Generate and compile classes for all the top-level structs defined in the source definition.
+     * @param source DDL source
+     * @param packageName root package Java classes should be generated in
+     * @param options options of the generated code
+     * @return map of <Struct name, Class instance>
+     * @throws InvalidDefinitionException
+     * @throws IOException
+     */
+    public static Map<String, Class<?>> generateClasses( InputStream source, String packageName, GeneratorOptions options ) throws InvalidDefinitionException, IOException {
+        ClassCache.Entry compiled;
+        if( options.getCacheDirectory() == null ) {
+            compiled = compile( source, packageName, options );
+        } else {
+            byte[] definition = IOUtils.toByteArray( source );
+            ClassCache cache = new ClassCache( options.getCacheDirectory() );
+            String key = ClassCache.key( definition, packageName, generatorVersion(), System.getProperty( "java.specification.version" ),
+                    options.toString() );
+            compiled = cache.load( key );
+            if( compiled == null ) {
+                compiled = compile( new ByteArrayInputStream( definition ), packageName, options );
+                try {
+                    cache.store( key, compiled );
+                } catch( IOException e ) {
+                    log.warn( "Cannot store compiled classes in " + options.getCacheDirectory() + " : " + e );
+                }
+            } else {
+                log.debug( "Loaded compiled classes from cache entry " + key );
+            }
+        }
 
         Map<String, Class<?>> classes = new HashMap<>();
+        for( Class<?> clazz : MemoryCompiler.load( compiled.classFiles, compiled.classNames ).values() ) {
+            classes.put( clazz.getSimpleName(), clazz );
+        }
+        return classes;
+    }
+
+    /**
+     * Compile interpreters parsing data for all the top-level structs defined in the source definition, without generating code. Parsing
+     * is slower than with generated classes, but no compiler is needed and no class is loaded.
+     * @param source DDL source
+     * @return map of <Struct name, Interpreter>
+     * @throws InvalidDefinitionException if the data definition is invalid, or uses types it does not define
+     * @throws IOException
+     */
+    public static Map<String, Interpreter> interpret( InputStream source ) throws InvalidDefinitionException, IOException {
+        return Interpreter.compile( doParse( source ).topLevelStructs );
+    }
+
+    private static ClassCache.Entry compile( InputStream source, String packageName, GeneratorOptions options ) throws InvalidDefinitionException, IOException {
+        VisitListener visitor = doParse( source );
+
+        Map<String, String> sources = new LinkedHashMap<>();
         for( Struct struct : visitor.topLevelStructs ) {
             StringWriter out = new StringWriter();
             IndentPrintWriter writer = new IndentPrintWriter( new PrintWriter( out ) );
-            struct.write( writer, packageName );
+            struct.write( writer, packageName, options );
             writer.close();
-            String java = out.toString();
+            sources.put( packageName + "." + struct.name, out.toString() );
+        }
 
-            Class<?> clazz = MemoryCompiler.compile( packageName + "." + struct.name, java );
-            classes.put( struct.name, clazz );
+        try {
+            // All at once, as structs may use each other
+            return new ClassCache.Entry( new ArrayList<>( sources.keySet() ), MemoryCompiler.compileClassFiles( sources ) );
+        } catch( CompilationException e ) {
+            throw new InvalidDefinitionException( definitionErrors( e, sources ) );
         }
+    }
 
-        return classes;
+    // Version of the generator in cache keys. Also includes the time the generator was built, as snapshots keep the same version.
+    // The connection is not cached and its stream is closed, so that the jar file it opens is closed as well.
+    private static String generatorVersion() throws IOException {
+        URLConnection classFile = BinParserGen.class.getResource( "BinParserGen.class" ).openConnection();
+        classFile.setUseCaches( false );
+        try( InputStream in = classFile.getInputStream() ) {
+            return BinParserGen.class.getPackage().getImplementationVersion() + "/" + classFile.getLastModified();
+        }
+    }
 
+    // Reports compilation errors at the line of the definition the code comes from, told by the last line comment before the error
+    private static List<String> definitionErrors( CompilationException e, Map<String, String> sources ) {
+        Set<String> errors = new LinkedHashSet<>(); // The same expression is used by several methods
+        for( Diagnostic<? extends JavaFileObject> diagnostic : e.getDiagnostics() ) {
+            if( diagnostic.getKind() != Diagnostic.Kind.ERROR ) {
+                continue;
+            }
+            String source = sources.get( CompilationException.getClassName( diagnostic ) );
+            int line = source != null ? definitionLine( source, diagnostic.getLineNumber() ) : 0;
+            errors.add( (line > 0 ? "line " + line + " : " : "") + diagnostic.getMessage( null ) );
+        }
+        return new ArrayList<>( errors );
+    }
+
+    private static int definitionLine( String source, long javaLine ) {
+        String[] lines = source.split( "\\R" );
+        for( int i = (int) Math.min( javaLine, lines.length ) - 1; i >= 0; i-- ) {
+            String line = lines[i].trim();
+            if( line.startsWith( DataBlock.SOURCE_LINE ) ) {
+                return Integer.parseInt( line.substring( DataBlock.SOURCE_LINE.length() ) );
+            }
+        }
+        return 0;
     }
 
     private static VisitListener doParse( InputStream source ) throws InvalidDefinitionException, IOException {
@@ -111,6 +248,14 @@ public class BinParserGen {
         if( !visitor.errors.isEmpty() ) {
             throw new InvalidDefinitionException( visitor.errors );
         }
+        List<String> errors = new ArrayList<>();
+        for( Struct struct : visitor.topLevelStructs ) {
+            struct.computeLayout( visitor.topLevelStructs );
+            struct.validate( errors );
+        }
+        if( !errors.isEmpty() ) {
+            throw new InvalidDefinitionException( errors );
+        }
         return visitor;
     }
 
@@ -142,11 +287,18 @@ public class BinParserGen {
         return tree;
     }
 
+    private static final int INTERN_CACHE_SIZE = 1024; // Entries of the cache of each [intern] field
+    private static final List<String> ENUM_TYPES = Arrays.asList( "byte", "short", "int" ); // Java types of the values enums can be read from
+
     private static final class VisitListener extends DDLBaseListener {
+        private static final List<String> OPTIONS = Arrays.asList( "stream", "parallel", "columnar", "compact", "intern" );
+
         List<Struct> topLevelStructs = new ArrayList<>();
+        Map<EnumGen, TypeContext> enumTypes = new HashMap<>(); // Type of the value of each enum
         Struct currentStruct;
         DataBlock currentBlock;
         int anonymous;
+        int switches;
         private List<String> errors = new ArrayList<>();
 
         @Override
@@ -176,9 +328,20 @@ public class BinParserGen {
             }
         }
 
+        @Override
+        public void enterExpr( ExprContext ctx ) {
+            if( ctx.NAME() != null ) {
+                currentStruct.referencedNames.add( ctx.NAME().getText() );
+            }
+            if( ctx.getChildCount() == 3 && ".".equals( ctx.getChild( 1 ).getText() ) ) {
+                currentStruct.memberAccess = true;
+            }
+        }
+
         @Override
         public void enterConditional( ConditionalContext ctx ) {
             IfBlock ifBlock = new IfBlock( currentBlock, ctx.expr().getText() );
+            ifBlock.line = ctx.getStart().getLine();
             currentBlock.addBlock( ifBlock );
             currentBlock = ifBlock;
         }
@@ -188,17 +351,93 @@ public class BinParserGen {
             currentBlock = currentBlock.parent;
         }
 
+        @Override
+        public void enterSwitchBlock( SwitchBlockContext ctx ) {
+            SwitchBlock switchBlock = new SwitchBlock( currentBlock, ctx.expr().getText(), switches++ );
+            switchBlock.line = ctx.getStart().getLine();
+            currentBlock.addBlock( switchBlock );
+            currentBlock = switchBlock;
+        }
+
+        @Override
+        public void exitSwitchBlock( SwitchBlockContext ctx ) {
+            currentBlock = currentBlock.parent;
+        }
+
+        @Override
+        public void enterSwitchCase( SwitchCaseContext ctx ) {
+            List<Integer> labels = new ArrayList<>();
+            for( CaseLabelContext labelCtx : ctx.caseLabel() ) {
+                long label = parseLiteral( labelCtx.INT_LITERAL().getText() );
+                label = labelCtx.getChildCount() == 2 ? -label : label;
+                if( label != (int) label ) {
+                    errors.add( "Case label out of range : " + labelCtx.getText() );
+                }
+                labels.add( (int) label );
+            }
+            currentBlock = ((SwitchBlock) currentBlock).addCase( labels );
+        }
+
+        @Override
+        public void exitSwitchCase( SwitchCaseContext ctx ) {
+            currentBlock = currentBlock.parent;
+        }
+
+        @Override
+        public void enterEnumeration( EnumerationContext ctx ) {
+            String name = ctx.NAME().getText();
+            log.info( "[{}] enum {}", currentStruct, name );
+            if( currentStruct.enums.containsKey( name ) ) {
+                errors.add( "Duplicate enum " + name + " in " + currentStruct );
+                return;
+            }
+            DataDesc base = getTypeDesc( resolveName( ctx.type().NAME().getText() ), ctx.type().argList(), null );
+            StringWriter out = new StringWriter();
+            base.declaration( new PrintWriter( out ) );
+            if( !ENUM_TYPES.contains( out.toString() ) ) {
+                errors.add( "Enum values must be read from an integer type of up to 31 bits : " + ctx.type().getText() );
+                return;
+            }
+            EnumGen enumGen = new EnumGen( name );
+            for( EnumValueContext valueCtx : ctx.enumValue() ) {
+                if( !"=".equals( valueCtx.OP().getText() ) ) {
+                    errors.add( "Invalid enum value : " + valueCtx.getText() );
+                    continue;
+                }
+                long value = parseLiteral( valueCtx.INT_LITERAL().getText() );
+                value = valueCtx.getChild( 2 ).getText().equals( "-" ) ? -value : value;
+                if( value != (int) value ) {
+                    errors.add( "Enum value out of range : " + valueCtx.getText() );
+                    continue;
+                }
+                String description = valueCtx.description() != null ? valueCtx.description().getText() : null;
+                try {
+                    enumGen.value( (int) value, valueCtx.NAME().getText(), description != null ? description.substring( 1, description.length() - 1 ) : null );
+                } catch( IllegalArgumentException e ) {
+                    errors.add( e.getMessage() + " in enum " + name + " : " + valueCtx.getText() );
+                }
+            }
+            currentStruct.enums.put( name, enumGen );
+            enumTypes.put( enumGen, ctx.type() );
+        }
+
         @Override
         public void enterData( DataContext ctx ) {
             log.info( "[{}] data {}", currentStruct, ctx.getText() );
+            List<String> options = ctx.option().stream().map( option -> option.NAME().getText() ).collect( Collectors.toList() );
+            checkOptions( ctx, options );
             DataDesc desc;
             TypeContext typeCtx = ctx.type();
             DataInfo data;
             if( typeCtx != null ) { // Non-array type
                 String type = resolveName( typeCtx.NAME().getText() );
                 ArgListContext argList = typeCtx.argList();
-                desc = getTypeDesc( type, argList, ctx.constraint() );
-                data = new DataInfo( desc );
+                desc = intern( ctx, compact( ctx, getTypeDesc( type, argList, ctx.constraint() ), options ), options );
+                if( options.contains( "stream" ) && desc instanceof BYTES_DataDesc ) {
+                    data = new StreamBytesInfo( desc, argList.expr( 0 ).getText() );
+                } else {
+                    data = new DataInfo( desc );
+                }
             } else { // Array type
                 ArrayTypeContext arrayCtx = ctx.arrayType();
                 String cardinality;
@@ -218,8 +457,22 @@ public class BinParserGen {
                     argList = longForm.type().argList();
                     constraints = longForm.constraint();
                 }
-                desc = getTypeDesc( type, argList, constraints );
-                DataArrayInfo dataArray = new DataArrayInfo( desc, cardinality );
+                desc = intern( ctx, compact( ctx, getTypeDesc( type, argList, constraints ), options ), options );
+                DataArrayInfo dataArray;
+                if( options.contains( "stream" ) ) {
+                    dataArray = new StreamArrayInfo( desc, cardinality );
+                } else if( options.contains( "parallel" ) ) {
+                    dataArray = new ParallelArrayInfo( desc, cardinality );
+                } else if( options.contains( "columnar" ) ) {
+                    dataArray = new ColumnarArrayInfo( desc, cardinality );
+                } else {
+                    dataArray = new DataArrayInfo( desc, cardinality );
+                }
+                Long cardinalityValue = fold( shortForm != null ? shortForm.arraySpec().expr() : longForm.arraySpec().expr() );
+                if( cardinalityValue != null ) {
+                    dataArray.cardinalityValue = cardinalityValue;
+                    dataArray.cardinalityExpr = literal( cardinalityValue );
+                }
                 if( longForm != null && longForm.offset() != null ) {
                     dataArray.elementOffsetExpr = longForm.offset().expr().getText();
                 }
@@ -228,10 +481,90 @@ public class BinParserGen {
             data.anonymous = ctx.NAME() == null;
             data.name = ctx.NAME() != null ? ctx.NAME().getText() : "$anon_" + (anonymous++);
             data.comment = ctx.description() != null ? ctx.description().getText() : null;
+            data.line = ctx.getStart().getLine();
             data.offsetExpr = ctx.offset() != null ? ctx.offset().expr().getText() : null;
+            Long offsetValue = ctx.offset() != null ? fold( ctx.offset().expr() ) : null;
+            if( offsetValue != null ) {
+                data.offsetValue = offsetValue;
+                data.offsetExpr = literal( offsetValue );
+            }
+            for( DataBlock block = currentBlock; block != null; block = block.parent ) {
+                if( block instanceof SwitchBlock ) { // Only the nearest switch shares fields
+                    String error = ((SwitchBlock) block).share( data, currentBlock );
+                    if( error != null ) {
+                        errors.add( error );
+                    }
+                    break;
+                }
+            }
             currentBlock.add( data );
         }
 
+        private void checkOptions( DataContext ctx, List<String> options ) {
+            for( String option : options ) {
+                if( !OPTIONS.contains( option ) ) {
+                    errors.add( "Unknown option [" + option + "] : " + ctx.getText() );
+                }
+            }
+            if( options.contains( "parallel" ) ) {
+                if( ctx.arrayType() == null || ctx.NAME() == null ) {
+                    errors.add( "The [parallel] option only applies to named arrays : " + ctx.getText() );
+                } else if( options.contains( "stream" ) ) {
+                    errors.add( "The [parallel] and [stream] options cannot be combined : " + ctx.getText() );
+                } else if( ctx.arrayType().longArrayForm() != null && ctx.arrayType().longArrayForm().offset() != null ) {
+                    errors.add( "The [parallel] option does not apply to arrays with element offsets : " + ctx.getText() );
+                }
+            }
+            if( options.contains( "columnar" ) ) {
+                if( ctx.arrayType() == null || ctx.NAME() == null ) {
+                    errors.add( "The [columnar] option only applies to named arrays : " + ctx.getText() );
+                } else if( options.contains( "stream" ) || options.contains( "parallel" ) ) {
+                    errors.add( "The [columnar] option cannot be combined with [stream] or [parallel] : " + ctx.getText() );
+                }
+            }
+            if( options.contains( "stream" ) ) {
+                boolean bytes = ctx.type() != null && "bytes".equals( ctx.type().NAME().getText() ) && ctx.type().argList() != null;
+                if( ctx.arrayType() == null && !bytes || ctx.NAME() == null ) {
+                    errors.add( "The [stream] option only applies to named arrays and bytes : " + ctx.getText() );
+                } else if( currentStruct.parent != null || currentBlock != currentStruct.datas ) {
+                    errors.add( "The [stream] option is only allowed at the top level of a top-level struct : " + ctx.getText() );
+                }
+            }
+        }
+
+        // Replaces an unsigned type by its [compact] form, stored in the signed type of the same width
+        private DataDesc compact( DataContext ctx, DataDesc desc, List<String> options ) {
+            if( !options.contains( "compact" ) ) {
+                return desc;
+            }
+            DataDesc compact;
+            if( desc instanceof UINT8_DataDesc ) {
+                compact = new COMPACT_UINT8_DataDesc();
+            } else if( desc instanceof UINT16_DataDesc ) {
+                compact = new COMPACT_UINT16_DataDesc();
+            } else if( desc instanceof UINT32_DataDesc ) {
+                compact = new COMPACT_UINT32_DataDesc();
+            } else {
+                errors.add( "The [compact] option only applies to uint8, uint16 and uint32 : " + ctx.getText() );
+                return desc;
+            }
+            compact.constraints = desc.constraints;
+            return compact;
+        }
+
+        // Routes the decoding of a string through a cache shared by all instances of the parser, one per field
+        private DataDesc intern( DataContext ctx, DataDesc desc, List<String> options ) {
+            if( !options.contains( "intern" ) ) {
+                return desc;
+            }
+            if( !(desc instanceof STRING_DataDesc) || !((STRING_DataDesc) desc).canIntern() || ctx.NAME() == null ) {
+                errors.add( "The [intern] option only applies to named string(n) and zstring(n) data : " + ctx.getText() );
+                return desc;
+            }
+            ((STRING_DataDesc) desc).intern( "$intern_" + currentStruct.className().replace( '.', '_' ) + "_" + ctx.NAME().getText() );
+            return desc;
+        }
+
         private DataDesc getTypeDesc( String type, ArgListContext argList, List<ConstraintContext> constraintList ) {
             DataDesc desc;
             if( "int8".equals( type ) ) {
@@ -254,10 +587,30 @@ public class BinParserGen {
                 desc = new UINT32_DataDesc();
             } else if( "uint".equals( type ) ) {
                 int bits = getInt( argList, 0 );
+                if( bits < 1 || bits > 64 ) {
+                    errors.add( "Invalid number of bits for uint : " + bits );
+                }
                 desc = new BITS_DataDesc( bits );
             } else if( "string".equals( type ) ) {
-                int bytes = getInt( argList, 0 );
-                desc = new FIXED_STRING_DataDesc( bytes );
+                desc = new FIXED_STRING_DataDesc( getInt( argList, 0 ), getCharset( argList, 1 ) );
+            } else if( "zstring".equals( type ) ) {
+                desc = new ZERO_FILL_STRING_DataDesc( getInt( argList, 0 ), getCharset( argList, 1 ) );
+            } else if( "cstring".equals( type ) ) {
+                if( argList == null || argList.expr().isEmpty() ) {
+                    throw new SyntaxErrorException( "Not enough parameters" );
+                }
+                Long maxLength = fold( argList.expr( 0 ) );
+                desc = new CSTRING_DataDesc( maxLength != null ? literal( maxLength ) : argList.expr( 0 ).getText(), getCharset( argList, 1 ) );
+            } else if( "bytes".equals( type ) ) {
+                if( argList == null || argList.expr().isEmpty() ) {
+                    throw new SyntaxErrorException( "Not enough parameters" );
+                }
+                Long length = fold( argList.expr( 0 ) );
+                desc = new BYTES_DataDesc( length != null ? literal( length ) : argList.expr( 0 ).getText(), length != null ? length : DataDesc.UNKNOWN );
+            } else if( currentStruct.resolveEnum( type ) != null ) {
+                EnumGen enumGen = currentStruct.resolveEnum( type );
+                TypeContext base = enumTypes.get( enumGen );
+                desc = new ENUM_DataDesc( enumGen.getName(), getTypeDesc( resolveName( base.NAME().getText() ), base.argList(), null ) );
             } else {
                 // Assume user type here, don't check defined struct to allow for externaly provided types and other top-level structs
                 // throw new SyntaxErrorException( "Unknown type " + type );
@@ -272,7 +625,11 @@ public class BinParserGen {
                 for( ConstraintContext ctx : constraintList ) {
                     String op = ctx.OP().getText();
                     String value = ctx.value().getText();
-                    if( "string".equals( type ) ) {
+                    if( "bytes".equals( type ) ) {
+                        errors.add( "Invalid constraint on bytes : " + op + value );
+                    } else if( desc.isEnum() ) {
+                        errors.add( "Invalid constraint on enum " + type + " : " + op + value );
+                    } else if( desc instanceof STRING_DataDesc ) {
                         if( !"=".equals( op ) ) {
                             errors.add( "Invalid constraint on string : " + op + "value" );
                         } else {
@@ -302,33 +659,345 @@ public class BinParserGen {
             if( paramList == null || paramList.expr().size() < i + 1 ) {
                 throw new SyntaxErrorException( "Not enough parameters" );
             }
-            return Integer.parseInt( paramList.expr( i ).getText() );
+            Long value = fold( paramList.expr( i ) );
+            if( value == null ) {
+                throw new SyntaxErrorException( "Constant expected : " + paramList.expr( i ).getText() );
+            }
+            return value.intValue();
+        }
+
+        // Returns the canonical name of the charset given as a string literal parameter, ASCII by default
+        private String getCharset( ArgListContext paramList, int i ) {
+            if( paramList == null || paramList.expr().size() < i + 1 ) {
+                return StandardCharsets.US_ASCII.name();
+            }
+            ExprContext expr = paramList.expr( i );
+            if( expr.value() == null || expr.value().STRING_LITERAL() == null ) {
+                throw new SyntaxErrorException( "Charset name expected : " + expr.getText() );
+            }
+            String name = expr.getText().substring( 1, expr.getText().length() - 1 );
+            try {
+                return Charset.forName( name ).name();
+            } catch( IllegalArgumentException e ) {
+                errors.add( "Unsupported charset : " + name );
+                return StandardCharsets.US_ASCII.name();
+            }
+        }
+
+        // Evaluates arithmetic on literals, returns null if the expression depends on parsed data
+        private static Long fold( ExprContext ctx ) {
+            if( ctx.value() != null ) {
+                TerminalNode literal = ctx.value().INT_LITERAL();
+                return literal != null ? parseLiteral( literal.getText() ) : null;
+            }
+            List<ExprContext> operands = ctx.expr();
+            if( operands.size() == 1 ) {
+                Long value = fold( operands.get( 0 ) );
+                if( value == null || ctx.getChildCount() == 4 ) { // Array indexing
+                    return null;
+                }
+                String first = ctx.getChild( 0 ).getText();
+                return "-".equals( first ) ? -value : value; // Unary sign or parentheses
+            }
+            if( operands.size() != 2 ) {
+                return null;
+            }
+            Long left = fold( operands.get( 0 ) );
+            Long right = fold( operands.get( 1 ) );
+            if( left == null || right == null ) {
+                return null;
+            }
+            switch( ctx.getChild( 1 ).getText() ) {
+            case "+":
+                return left + right;
+            case "-":
+                return left - right;
+            case "*":
+                return left * right;
+            case "/":
+                return right != 0 ? left / right : null;
+            default:
+                return null;
+            }
+        }
+
+        private static long parseLiteral( String text ) {
+            text = text.replace( "_", "" );
+            if( text.startsWith( "0x" ) ) {
+                return Long.parseLong( text.substring( 2 ), 16 );
+            } else if( text.startsWith( "0b" ) ) {
+                return Long.parseLong( text.substring( 2 ), 2 );
+            }
+            return Long.parseLong( text );
+        }
+
+        private static String literal( long value ) {
+            return value == (int) value ? Long.toString( value ) : value + "L";
         }
     }
 
     //@formatter:off
-    private static class INT8_DataDesc  extends DataDesc { public INT8_DataDesc()  { super( "byte", "$eis.readByte()"   ); } }
-    private static class INT16_DataDesc extends DataDesc { public INT16_DataDesc() { super( "short", "$eis.readShort()" ); } }
-    private static class INT24_DataDesc extends DataDesc { public INT24_DataDesc() { super( "int", "$eis.readInt24()"   ); } }
-    private static class INT32_DataDesc extends DataDesc { public INT32_DataDesc() { super( "int", "$eis.readInt()"     ); } }
-    private static class INT64_DataDesc extends DataDesc { public INT64_DataDesc() { super( "long", "$eis.readLong()"   ); } }
-    private static class BITS_DataDesc  extends DataDesc { public BITS_DataDesc( int bits ) { super( "int", "$sis.readBits( " + bits + " )" ); } }
-    private static class UINT8_DataDesc  extends DataDesc { public UINT8_DataDesc()  { super( "int", "$eis.readUnsignedByte()"   ); } }
-    private static class UINT16_DataDesc  extends DataDesc { public UINT16_DataDesc()  { super( "int", "$eis.readUnsignedShort()"   ); } }
-    private static class UINT24_DataDesc  extends DataDesc { public UINT24_DataDesc()  { super( "int", "$eis.readUnsignedInt24()"   ); } }
-    private static class UINT32_DataDesc  extends DataDesc { public UINT32_DataDesc()  { super( "long", "$eis.readUnsignedInt()"   ); } }
+    private static class INT8_DataDesc  extends DataDesc { public INT8_DataDesc()  { super( "byte", "$in.readByte()"   ); bitSize = 8; bulkExtractor = "$in.readBytes"; viewExtractor = "$buffer.get( %s )"; decoder = Decoder.of( Kind.BYTE, BinaryReader::readByte ); } }
+    private static class INT16_DataDesc extends DataDesc { public INT16_DataDesc() { super( "short", "$in.readShort()" ); bitSize = 16; bulkExtractor = "$in.readShorts"; viewExtractor = "ViewDecoder.getShort( $buffer, %s )"; decoder = Decoder.of( Kind.SHORT, BinaryReader::readShort ); } }
+    private static class INT24_DataDesc extends DataDesc { public INT24_DataDesc() { super( "int", "$in.readInt24()"   ); bitSize = 24; viewExtractor = "ViewDecoder.getInt24( $buffer, %s )"; decoder = Decoder.of( Kind.INT, BinaryReader::readInt24 ); } }
+    private static class INT32_DataDesc extends DataDesc { public INT32_DataDesc() { super( "int", "$in.readInt()"     ); bitSize = 32; bulkExtractor = "$in.readInts"; viewExtractor = "ViewDecoder.getInt( $buffer, %s )"; decoder = Decoder.of( Kind.INT, BinaryReader::readInt ); } }
+    private static class INT64_DataDesc extends DataDesc { public INT64_DataDesc() { super( "long", "$in.readLong()"   ); bitSize = 64; bulkExtractor = "$in.readLongs"; viewExtractor = "ViewDecoder.getLong( $buffer, %s )"; decoder = Decoder.of( Kind.LONG, BinaryReader::readLong ); } }
+    private static class UINT8_DataDesc  extends DataDesc { public UINT8_DataDesc()  { super( "int", "$in.readUnsignedByte()"   ); bitSize = 8; bulkExtractor = "$in.readUnsignedBytes"; viewExtractor = "($buffer.get( %s ) & 0xff)"; decoder = Decoder.of( Kind.INT, BinaryReader::readUnsignedByte ); } }
+    private static class UINT16_DataDesc  extends DataDesc { public UINT16_DataDesc()  { super( "int", "$in.readUnsignedShort()"   ); bitSize = 16; viewExtractor = "(ViewDecoder.getShort( $buffer, %s ) & 0xffff)"; decoder = Decoder.of( Kind.INT, BinaryReader::readUnsignedShort ); } }
+    private static class UINT24_DataDesc  extends DataDesc { public UINT24_DataDesc()  { super( "int", "$in.readUnsignedInt24()"   ); bitSize = 24; viewExtractor = "(ViewDecoder.getInt24( $buffer, %s ) & 0xffffff)"; decoder = Decoder.of( Kind.INT, BinaryReader::readUnsignedInt24 ); } }
+    private static class UINT32_DataDesc  extends DataDesc { public UINT32_DataDesc()  { super( "long", "$in.readUnsignedInt()"   ); bitSize = 32; viewExtractor = "(ViewDecoder.getInt( $buffer, %s ) & 0xffffffffL)"; decoder = Decoder.of( Kind.LONG, BinaryReader::readUnsignedInt ); } }
+    private static class COMPACT_UINT8_DataDesc  extends INT8_DataDesc  { @Override public String unsigned( String value ) { return "Byte.toUnsignedInt(" + value + ")"; }    @Override public String unsignedDeclaration() { return "int"; } }
+    private static class COMPACT_UINT16_DataDesc extends INT16_DataDesc { @Override public String unsigned( String value ) { return "Short.toUnsignedInt(" + value + ")"; }   @Override public String unsignedDeclaration() { return "int"; } }
+    private static class COMPACT_UINT32_DataDesc extends INT32_DataDesc { @Override public String unsigned( String value ) { return "Integer.toUnsignedLong(" + value + ")"; } @Override public String unsignedDeclaration() { return "long"; } }
     //@formatter:on
 
-    private static class FIXED_STRING_DataDesc extends DataDesc {
-        public FIXED_STRING_DataDesc( int bytes ) {
-            super( "String", "$eis.readFixedString( " + bytes + ", \"ASCII\" )" );
+    // Fields of up to 31 bits fit in an int, larger ones are read as long
+    private static class BITS_DataDesc extends DataDesc {
+        public BITS_DataDesc( int bits ) {
+            super( bits < 32 ? "int" : "long", (bits < 32 ? "$in.readBits( " : "$in.readLongBits( ") + bits + " )" );
+            bitSize = bits;
+            decoder = bits < 32 ? Decoder.of( Kind.INT, in -> in.readBits( bits ) ) : Decoder.of( Kind.LONG, in -> in.readLongBits( bits ) );
+        }
+
+        @Override
+        public boolean hasViewExtraction() {
+            return true;
+        }
+
+        @Override
+        public void viewExtraction( PrintWriter writer, String index, String bitPosition ) {
+            writer.print( (bitSize < 32 ? "(int) " : "") + "ViewDecoder.getBits( $buffer, " + bitPosition + ", " + bitSize + " )" );
+        }
+    }
+
+    private static class STRING_DataDesc extends DataDesc {
+        private final String charset; // Canonical name
+        private String cache; // Constant holding the cache of [intern] strings
+
+        public STRING_DataDesc( String method, String length, String charset ) {
+            super( "String", "$in." + method + "( " + length + ", " + charsetConstant( charset ) + " )" );
+            this.charset = charset;
+        }
+
+        // Decodes through the cache held by the specified constant
+        public void intern( String cache ) {
+            this.cache = cache;
+            extractor = extractor.substring( 0, extractor.length() - 2 ) + ", " + cache + " )";
+        }
+
+        public boolean canIntern() {
+            return true;
+        }
+
+        @Override
+        public void collectConstants( Map<String, String> constants ) {
+            String name = charsetConstant( charset );
+            constants.put( name, "private static final Charset " + name + " = Charset.forName( \"" + charset + "\" );" );
+            if( cache != null ) {
+                constants.put( cache, "private static final StringCache " + cache + " = new StringCache( " + INTERN_CACHE_SIZE + " );" );
+            }
+        }
+
+        Charset charset() {
+            return Charset.forName( charset );
+        }
+
+        static String charsetConstant( String charset ) {
+            return "$charset_" + charset.replaceAll( "[^A-Za-z0-9]", "_" );
+        }
+    }
+
+    private static class FIXED_STRING_DataDesc extends STRING_DataDesc {
+        public FIXED_STRING_DataDesc( int bytes, String charset ) {
+            super( "readFixedString", Integer.toString( bytes ), charset );
+            bitSize = bytes * 8L;
+            viewExtractor = "ViewDecoder.getString( $buffer, %s, " + bytes + ", " + charsetConstant( charset ) + " )";
+            Charset resolved = charset();
+            decoder = Decoder.of( String.class, ( in, record ) -> in.readFixedString( bytes, resolved ) );
+        }
+    }
+
+    private static class ZERO_FILL_STRING_DataDesc extends STRING_DataDesc {
+        public ZERO_FILL_STRING_DataDesc( int bytes, String charset ) {
+            super( "readZeroFillString", Integer.toString( bytes ), charset );
+            bitSize = bytes * 8L;
+            viewExtractor = "ViewDecoder.getZeroFillString( $buffer, %s, " + bytes + ", " + charsetConstant( charset ) + " )";
+            Charset resolved = charset();
+            decoder = Decoder.of( String.class, ( in, record ) -> in.readZeroFillString( bytes, resolved ) );
+        }
+    }
+
+    // Only its maximum length is known before reading it, so it can neither be resumed nor viewed
+    private static class CSTRING_DataDesc extends STRING_DataDesc {
+        private final String maxLength;
+
+        public CSTRING_DataDesc( String maxLength, String charset ) {
+            super( "readCString", "(int)(" + maxLength + ")", charset );
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public Decoder decoder( DecoderContext context ) {
+            Expression max = context.expression( maxLength );
+            Charset resolved = charset();
+            return Decoder.of( String.class, ( in, record ) -> in.readCString( (int) max.evaluate( record ), resolved ) );
+        }
+
+        @Override
+        public boolean canResume() {
+            return false;
+        }
+
+        @Override
+        public boolean canIntern() {
+            return false;
+        }
+    }
+
+    private static class BYTES_DataDesc extends DataDesc {
+        private final String length;
+
+        public BYTES_DataDesc( String length, long value ) {
+            super( "ByteBuffer", "$in.readSlice( (int)(" + length + ") )" );
+            this.length = length;
+            bitSize = value != UNKNOWN ? value * 8 : UNKNOWN;
+        }
+
+        @Override
+        public String bitSizeExpression( Struct scope ) {
+            return bitSize != UNKNOWN ? Long.toString( bitSize ) : "(long)(" + length + ") * 8";
+        }
+
+        @Override
+        public Decoder decoder( DecoderContext context ) {
+            Expression expr = context.expression( length );
+            return Decoder.of( ByteBuffer.class, ( in, record ) -> in.readSlice( (int) expr.evaluate( record ) ) );
+        }
+
+        // Views need the size of each data to find the following one
+        @Override
+        public boolean hasViewExtraction() {
+            return bitSize != UNKNOWN;
+        }
+
+        @Override
+        public void viewExtraction( PrintWriter writer, String index, String bitPosition ) {
+            writer.print( "ViewDecoder.getSlice( $buffer, " + index + ", " + length + " )" );
+        }
+
+        @Override
+        public void repr( PrintWriter writer, String name ) {
+            writer.print( "$sb.append(" + name + " == null ? null : \"(\" + " + name + ".remaining() + \" bytes)\");" );
+        }
+    }
+
+    // Maps the value read by the base type through the fromInt() lookup of the enum, null for unknown values
+    private static class ENUM_DataDesc extends DataDesc {
+        private final DataDesc base;
+        private final DataMapping mapping;
+
+        public ENUM_DataDesc( String enumName, DataDesc base ) {
+            super( enumName, null );
+            this.base = base;
+            this.mapping = new EnumDataMapping( enumName );
+        }
+
+        @Override
+        public void extraction( PrintWriter writer ) {
+            mapping.extraction( writer, base );
+        }
+
+        @Override
+        public boolean hasViewExtraction() {
+            return base.hasViewExtraction();
+        }
+
+        @Override
+        public void viewExtraction( PrintWriter writer, String index, String bitPosition ) {
+            writer.print( declaration + ".fromInt( " );
+            base.viewExtraction( writer, index, bitPosition );
+            writer.print( " )" );
+        }
+
+        @Override
+        public boolean isEnum() {
+            return true;
+        }
+
+        @Override
+        public Decoder decoder( DecoderContext context ) {
+            return context.enumeration( declaration, base.decoder( context ) );
+        }
+
+        @Override
+        public long bitSize( Struct scope ) {
+            return base.bitSize( scope );
         }
     }
 
     private static class STRUCT_DataType extends DataDesc {
+        private final String structName;
+        private final String args;
+        private final List<String> params;
+
         public STRUCT_DataType( String structName, String... params ) {
             super( structName, null );
-            extractor = "new " + structName + "($sis, $eis " + Arrays.stream( params ).map( p -> ", " + p ).collect( Collectors.joining() ) + ")";
+            this.structName = structName;
+            this.params = Arrays.asList( params );
+            args = Arrays.stream( params ).map( p -> ", " + p ).collect( Collectors.joining() );
+            extractor = "new " + structName + "($in" + args + ")";
+        }
+
+        @Override
+        public boolean isStruct() {
+            return true;
+        }
+
+        @Override
+        public Struct struct( Struct scope ) {
+            return scope.resolve( structName );
+        }
+
+        @Override
+        public void visitExtraction( PrintWriter writer, Struct scope, String visitor ) {
+            writer.print( struct( scope ).className() + ".visit( $in, " + visitor + args + " )" );
+        }
+
+        @Override
+        public void reuseExtraction( PrintWriter writer, Struct scope, String previous ) {
+            Struct struct = struct( scope );
+            if( struct == null || struct.parent == null ) { // Only sub-structs can parse into an instance
+                extraction( writer );
+                return;
+            }
+            writer.print( "(" + previous + " != null ? " + previous + ".$read($in" + args + ") : " + extractor + ")" );
+        }
+
+        @Override
+        public List<String> arguments() {
+            return params;
+        }
+
+        @Override
+        public Decoder decoder( DecoderContext context ) {
+            return context.struct( structName, params );
+        }
+
+        @Override
+        public void creation( PrintWriter writer, Struct scope ) {
+            writer.print( "new " + struct( scope ).className() + "(" + args.replaceFirst( "^, ", " " ) + (args.isEmpty() ? ")" : " )") );
+        }
+
+        @Override
+        public long bitSize( Struct scope ) {
+            Struct struct = struct( scope );
+            return struct != null ? struct.bitSize() : UNKNOWN;
+        }
+
+        @Override
+        public boolean hasChecks( Struct scope ) {
+            Struct struct = struct( scope );
+            return struct == null || struct.hasChecks();
         }
 
         @Override
@@ -1,22 +1,38 @@
 package org.bidouille.binparsergen;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.bidouille.binparsergen.template.IndentPrintWriter;
 import org.bidouille.binparsergen.template.Template;
 
-class EnumGen extends Template {
+/**
+ * Enum declared in a struct, nested in the class of the struct. Its <code>fromInt()</code> lookup is an array index when the values form a
+ * compact range, and a switch otherwise : neither allocates, and unknown values return null.
+ */
+public class EnumGen extends Template {
+    private static final int MIN_DENSE_SIZE = 16; // Tables up to this size are always used, whatever the number of values
+
     private String className;
     private List<Value> values = new ArrayList<>();
 
-    EnumGen( String className ) {
+    public EnumGen( String className ) {
         this.className = className;
     }
 
+    public String getName() {
+        return className;
+    }
+
+    /**
+     * Returns the values of this enum, in declaration order.
+     */
+    public List<Value> getValues() {
+        return Collections.unmodifiableList( values );
+    }
+
     public void value( int i, String name, String description ) {
         if( name == null ) {
             throw new NullPointerException( "Name cannot be null" );
@@ -32,29 +48,56 @@ class EnumGen extends Template {
         values.add( new Value( i, name, description ) );
     }
 
-    public void write( File genDir, String genPackage ) throws IOException {
+    public void write( IndentPrintWriter writer ) throws IOException {
         setParam( "name", className );
-        setParam( "package", genPackage );
-
-        File parserSourceFile = new File( genDir, genPackage.replace( '.', '/' ) + "/" + className + ".java" );
-        try (IndentPrintWriter writer = new IndentPrintWriter( new FileOutputStream( parserSourceFile ) )) {
-            write( "/Enum.java.template", writer );
-        }
+        write( "/Enum.java.template", writer );
     }
 
-    protected void writeValues( IndentPrintWriter writer ) {
+    public void writeValues( IndentPrintWriter writer ) {
         for( Value value : values ) {
             writer.append( value.name ).append( "(" )
                     .append( value.i ).append( "," )
-                    .append( "\"" ).append( value.description ).append( "\"" )
+                    .append( value.description != null ? "\"" + value.description + "\"" : "null" )
                     .append( ")," ).println();
         }
     }
 
-    private class Value {
-        final int i;
-        final String name;
-        final String description;
+    // Indexes a table when at least half of it is used, switches otherwise. Switches on compact sets compile to a tableswitch anyway.
+    public void writeLookup( IndentPrintWriter writer ) {
+        long min = values.stream().mapToLong( value -> value.i ).min().orElse( 0 );
+        long max = values.stream().mapToLong( value -> value.i ).max().orElse( -1 );
+        long size = max - min + 1;
+        if( size > 0 && (size <= MIN_DENSE_SIZE || size <= 2L * values.size()) ) {
+            writer.println( "private static final int $MIN = " + min + ";" );
+            writer.println( "private static final int $MAX = " + max + ";" );
+            writer.println( "private static final " + className + "[] $BY_VALUE = new " + className + "[" + size + "];" );
+            writer.println( "static {" );
+            writer.println( "    for( " + className + " value : values() ) {" );
+            writer.println( "        $BY_VALUE[value.i - $MIN] = value;" );
+            writer.println( "    }" );
+            writer.println( "}" );
+            writer.println();
+            writer.println( "public static " + className + " fromInt( int i ) {" );
+            writer.println( "    return i < $MIN || i > $MAX ? null : $BY_VALUE[i - $MIN];" );
+            writer.println( "}" );
+        } else {
+            writer.println( "public static " + className + " fromInt( int i ) {" );
+            writer.println( "    switch( i ) {" );
+            for( Value value : values ) {
+                writer.println( "    case " + value.i + ":" );
+                writer.println( "        return " + value.name + ";" );
+            }
+            writer.println( "    default:" );
+            writer.println( "        return null;" );
+            writer.println( "    }" );
+            writer.println( "}" );
+        }
+    }
+
+    public static class Value {
+        public final int i;
+        public final String name;
+        public final String description; // null if the value has none
 
         public Value( int i, String name, String description ) {
             this.i = i;
@@ -0,0 +1,117 @@
+package org.bidouille.binparsergen;
+
+import java.nio.file.Path;
+
+/**
+ * Options of the generated code.
+ */
+public class GeneratorOptions {
+    /**
+     * Default bytecode budget of generated methods, leaving a margin under the 8000 bytes above which HotSpot does not JIT-compile a method
+     * (-XX:HugeMethodLimit), as the size of generated code is estimated.
+     */
+    public static final int DEFAULT_METHOD_BUDGET = 6000;
+
+    private static final int MAX_METHOD_BUDGET = 65535; // Size limit of a method in a class file
+
+    private int methodBudget = DEFAULT_METHOD_BUDGET;
+    private boolean elementAccessors;
+    private boolean visitors;
+    private boolean resumable;
+    private boolean views;
+    private Path cacheDirectory;
+
+    public int getMethodBudget() {
+        return methodBudget;
+    }
+
+    /**
+     * Sets the estimated bytecode size above which the parsing, visiting and toString methods of a struct are split into private methods,
+     * each reading consecutive data. The bodies of conditionals and switch cases are split the same way. The code reading one data is never
+     * split, so a single data with large code can still exceed the budget.
+     * @param bytes budget in bytes of bytecode
+     */
+    public GeneratorOptions setMethodBudget( int bytes ) {
+        if( bytes < 1 || bytes > MAX_METHOD_BUDGET ) {
+            throw new IllegalArgumentException( "Invalid method budget : " + bytes );
+        }
+        methodBudget = bytes;
+        return this;
+    }
+
+    public boolean hasElementAccessors() {
+        return elementAccessors;
+    }
+
+    /**
+     * Sets whether static <code>&lt;array&gt;At()</code> accessors are generated, decoding a single element of arrays of fixed-size structs
+     * from a buffer or a file. Off by default.
+     */
+    public GeneratorOptions setElementAccessors( boolean elementAccessors ) {
+        this.elementAccessors = elementAccessors;
+        return this;
+    }
+
+    public boolean hasVisitors() {
+        return visitors;
+    }
+
+    /**
+     * Sets whether a <code>&lt;Name&gt;Visitor</code> interface is generated for each struct, with static methods parsing data into
+     * callbacks instead of instances. Off by default.
+     */
+    public GeneratorOptions setVisitors( boolean visitors ) {
+        this.visitors = visitors;
+        return this;
+    }
+
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    /**
+     * Sets whether top-level structs get a <code>feed(ByteBuffer)</code> method, parsing data as it arrives in chunks and resuming where the
+     * previous chunk ended. Off by default.
+     */
+    public GeneratorOptions setResumable( boolean resumable ) {
+        this.resumable = resumable;
+        return this;
+    }
+
+    public boolean hasViews() {
+        return views;
+    }
+
+    /**
+     * Sets whether a <code>&lt;Name&gt;View</code> class is generated for each struct, decoding fields from a buffer only when they are
+     * accessed. Off by default.
+     */
+    public GeneratorOptions setViews( boolean views ) {
+        this.views = views;
+        return this;
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Sets the directory where {@link BinParserGen#generateClasses} keeps the classes it compiles, to load them again instead of parsing and
+     * compiling the same definition. Entries depend on the definition, the package, the options and the version of the generator. The
+     * directory can be shared by several processes.
+     * @param directory cache directory, created if needed, or null not to use a cache
+     */
+    public GeneratorOptions setCacheDirectory( Path directory ) {
+        cacheDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Describes the options the generated code depends on, the cache directory excluded.
+     */
+    @Override
+    public String toString() {
+        return "methodBudget=" + methodBudget + ", elementAccessors=" + elementAccessors + ", visitors=" + visitors + ", resumable=" + resumable + ", views=" + views;
+    }
+
+}
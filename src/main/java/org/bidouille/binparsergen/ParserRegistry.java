@@ -0,0 +1,145 @@
+package org.bidouille.binparsergen;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.io.IOUtils;
+import org.bidouille.binparsergen.compile.ClassCache;
+
+/**
+ * Keeps the classes generated for definitions, so that a definition is only compiled once however often it is requested. Definitions are
+ * identified by a hash of their content, and requests for a definition being compiled wait for that compilation instead of starting another.
+ * <p>
+ * The classes of each definition are loaded by a class loader of their own, so that once evicted, explicitly or because the registry holds
+ * too many definitions, they can be unloaded. This only happens once callers no longer reference the classes or their instances.
+ */
+public class ParserRegistry {
+    private final String packageName;
+    private final GeneratorOptions options;
+    private final int maxDefinitions;
+    private final Map<String, FutureTask<Map<String, Class<?>>>> definitions; // Least recently used first
+
+    /**
+     * Creates a registry holding any number of definitions.
+     * @param packageName package classes are generated in
+     */
+    public ParserRegistry( String packageName ) {
+        this( packageName, new GeneratorOptions(), Integer.MAX_VALUE );
+    }
+
+    /**
+     * @param packageName package classes are generated in
+     * @param options options of the generated code
+     * @param maxDefinitions number of definitions above which the least recently requested one is evicted
+     */
+    public ParserRegistry( String packageName, GeneratorOptions options, int maxDefinitions ) {
+        if( maxDefinitions < 1 ) {
+            throw new IllegalArgumentException( "Invalid maximum number of definitions : " + maxDefinitions );
+        }
+        this.packageName = packageName;
+        this.options = options;
+        this.maxDefinitions = maxDefinitions;
+        definitions = new LinkedHashMap<>( 16, 0.75f, true );
+    }
+
+    public Map<String, Class<?>> get( InputStream definition ) throws InvalidDefinitionException, IOException {
+        return get( IOUtils.toByteArray( definition ) );
+    }
+
+    /**
+     * Returns the classes generated for all the top-level structs of a definition, compiling it if it is not in the registry.
+     * @return map of <Struct name, Class instance>
+     * @throws InvalidDefinitionException if the definition is invalid, which is not kept in the registry
+     */
+    public Map<String, Class<?>> get( byte[] definition ) throws InvalidDefinitionException, IOException {
+        String key = ClassCache.key( definition );
+        FutureTask<Map<String, Class<?>>> task;
+        boolean compile = false;
+        synchronized( definitions ) {
+            task = definitions.get( key );
+            if( task == null ) {
+                task = new FutureTask<>( () -> Collections.unmodifiableMap( BinParserGen.generateClasses( new ByteArrayInputStream( definition ), packageName, options ) ) );
+                definitions.put( key, task );
+                compile = true;
+            }
+        }
+        if( compile ) {
+            task.run(); // Outside of the lock, so that other definitions can be requested meanwhile
+        }
+        try {
+            Map<String, Class<?>> classes = task.get();
+            if( compile ) {
+                evictEldest();
+            }
+            return classes;
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for the compilation of the definition" );
+        } catch( ExecutionException e ) {
+            synchronized( definitions ) {
+                definitions.remove( key, task );
+            }
+            Throwable cause = e.getCause();
+            if( cause instanceof InvalidDefinitionException ) {
+                throw (InvalidDefinitionException) cause;
+            } else if( cause instanceof IOException ) {
+                throw (IOException) cause;
+            } else if( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException( cause );
+        }
+    }
+
+    // Only done once a definition is compiled, so that invalid definitions do not evict valid ones. Definitions still being compiled are
+    // kept, so that requests for them keep waiting for that compilation instead of starting another.
+    private void evictEldest() {
+        synchronized( definitions ) {
+            Iterator<FutureTask<Map<String, Class<?>>>> tasks = definitions.values().iterator();
+            while( definitions.size() > maxDefinitions && tasks.hasNext() ) {
+                if( tasks.next().isDone() ) {
+                    tasks.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a definition from the registry. Requesting it again compiles it again.
+     * @return whether the definition was in the registry
+     */
+    public boolean evict( byte[] definition ) {
+        synchronized( definitions ) {
+            return definitions.remove( ClassCache.key( definition ) ) != null;
+        }
+    }
+
+    /**
+     * Removes all definitions from the registry.
+     */
+    public void clear() {
+        synchronized( definitions ) {
+            definitions.clear();
+        }
+    }
+
+    /**
+     * Returns the number of definitions in the registry, including those being compiled.
+     */
+    public int size() {
+        synchronized( definitions ) {
+            return definitions.size();
+        }
+    }
+
+}
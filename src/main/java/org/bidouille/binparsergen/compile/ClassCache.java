@@ -0,0 +1,154 @@
+package org.bidouille.binparsergen.compile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Directory of compiled classes, so that sources compiled once are loaded again without running the compiler, including by other processes.
+ * <p>
+ * Each entry is a single file named after its key. It is written to a temporary file, then moved into place atomically : processes
+ * compiling the same sources at the same time each write a complete entry, and readers never see a partial one. Entries that cannot be
+ * read, or whose checksum does not match, are ignored as if absent.
+ */
+public class ClassCache {
+    private static final int MAGIC = 0x42504743; // Start of entries, "BPGC"
+    private static final String EXTENSION = ".classes";
+
+    private final Path directory;
+
+    public ClassCache( Path directory ) {
+        this.directory = directory;
+    }
+
+    /**
+     * Computes the key of an entry, a SHA-256 hash of the source and of all the parts the compiled classes depend on.
+     */
+    public static String key( byte[] source, String... parts ) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance( "SHA-256" );
+        } catch( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e ); // All Java platforms support SHA-256
+        }
+        for( String part : parts ) {
+            byte[] bytes = part.getBytes( StandardCharsets.UTF_8 );
+            digest.update( new byte[] { (byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length } );
+            digest.update( bytes );
+        }
+        digest.update( source );
+        StringBuilder sb = new StringBuilder();
+        for( byte b : digest.digest() ) {
+            sb.append( String.format( "%02x", b ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the entry with the specified key.
+     * @return the entry, or null if there is none, or if it is corrupted
+     */
+    public Entry load( String key ) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes( directory.resolve( key + EXTENSION ) );
+        } catch( IOException e ) {
+            return null;
+        }
+        if( bytes.length < 8 ) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length - 8 );
+        if( ByteBuffer.wrap( bytes, bytes.length - 8, 8 ).getLong() != crc.getValue() ) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes, 0, bytes.length - 8 ) );
+        try {
+            if( in.readInt() != MAGIC ) {
+                return null;
+            }
+            List<String> classNames = new ArrayList<>();
+            for( int i = in.readInt(); i > 0; i-- ) {
+                classNames.add( in.readUTF() );
+            }
+            Map<String, byte[]> classFiles = new HashMap<>();
+            for( int i = in.readInt(); i > 0; i-- ) {
+                String className = in.readUTF();
+                byte[] classFile = new byte[in.readInt()];
+                in.readFully( classFile );
+                classFiles.put( className, classFile );
+            }
+            return new Entry( classNames, classFiles );
+        } catch( IOException | RuntimeException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores an entry, replacing any entry with the same key.
+     */
+    public void store( String key, Entry entry ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( MAGIC );
+        out.writeInt( entry.classNames.size() );
+        for( String className : entry.classNames ) {
+            out.writeUTF( className );
+        }
+        out.writeInt( entry.classFiles.size() );
+        for( Map.Entry<String, byte[]> classFile : entry.classFiles.entrySet() ) {
+            out.writeUTF( classFile.getKey() );
+            out.writeInt( classFile.getValue().length );
+            out.write( classFile.getValue() );
+        }
+        CRC32 crc = new CRC32();
+        crc.update( bytes.toByteArray() );
+        out.writeLong( crc.getValue() );
+        out.flush();
+
+        Files.createDirectories( directory );
+        Path temp = Files.createTempFile( directory, key, ".tmp" );
+        try {
+            Files.write( temp, bytes.toByteArray() );
+            Files.move( temp, directory.resolve( key + EXTENSION ), StandardCopyOption.ATOMIC_MOVE );
+        } finally {
+            Files.deleteIfExists( temp );
+        }
+    }
+
+    /**
+     * Classes compiled from sources.
+     */
+    public static final class Entry {
+        /**
+         * Names of the classes compiled from each source.
+         */
+        public final List<String> classNames;
+
+        /**
+         * Bytes of all class files, nested classes included, by class name.
+         */
+        public final Map<String, byte[]> classFiles;
+
+        public Entry( List<String> classNames, Map<String, byte[]> classFiles ) {
+            this.classNames = classNames;
+            this.classFiles = classFiles;
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.bidouille.binparsergen.compile;
+
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Signifies that sources compiled by the {@link MemoryCompiler} contain errors.
+ */
+public class CompilationException extends RuntimeException {
+    private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+    public CompilationException( List<Diagnostic<? extends JavaFileObject>> diagnostics ) {
+        super( message( diagnostics ) );
+        this.diagnostics = diagnostics;
+    }
+
+    public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Returns the name of the class whose source a diagnostic is about, or null if it is not about one of the compiled sources.
+     */
+    public static String getClassName( Diagnostic<? extends JavaFileObject> diagnostic ) {
+        return diagnostic.getSource() instanceof StringJavaFileObject ? ((StringJavaFileObject) diagnostic.getSource()).getClassName() : null;
+    }
+
+    private static String message( List<Diagnostic<? extends JavaFileObject>> diagnostics ) {
+        String message = "Compilation failure :";
+        for( Diagnostic<?> d : diagnostics ) {
+            String msg = d.toString();
+            message += "\n" + msg.substring( msg.indexOf( ' ' ) + 1 );
+        }
+        return message;
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.bidouille.binparsergen.compile;
+
+import java.util.Map;
+
+/**
+ * Loads classes from class files in memory, either just compiled or read from a {@link ClassCache}.
+ */
+class MemoryClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classFiles;
+
+    MemoryClassLoader( Map<String, byte[]> classFiles ) {
+        this.classFiles = classFiles;
+    }
+
+    @Override
+    public Class<?> findClass( String className ) throws ClassNotFoundException {
+        byte[] bytes = classFiles.get( className );
+        if( bytes == null ) {
+            throw new ClassNotFoundException( className );
+        }
+        return defineClass( className, bytes, 0, bytes.length );
+    }
+}
@@ -1,12 +1,15 @@
 package org.bidouille.binparsergen.compile;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
-import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
-import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 
 // http://blogs.helion-prime.com/2008/06/13/on-the-fly-compilation-in-java6.html
@@ -15,33 +18,71 @@ import javax.tools.ToolProvider;
 // http://fivedots.coe.psu.ac.th/~ad/jg/javaArt1/index.html
 // Include tools.jar in classpath.
 public class MemoryCompiler {
+    private static JavaCompiler compiler;
 
     public static Class<?> compile( String className, String sourceCode ) {
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        if( compiler == null ) {
-            throw new RuntimeException( "Java compiler not found. Make sure tools.jar is in the classpath." );
-        }
+        return compile( Collections.singletonMap( className, sourceCode ) ).get( className );
+    }
 
+    /**
+     * Compiles sources in a single compilation, so that they can refer to each other. The classes are loaded by a single class loader.
+     * @param sources source code by fully qualified class name
+     * @return classes by fully qualified class name, in the order of the sources
+     * @throws CompilationException if there were compilation errors
+     */
+    public static Map<String, Class<?>> compile( Map<String, String> sources ) {
+        return load( compileClassFiles( sources ), sources.keySet() );
+    }
+
+    /**
+     * Compiles sources in a single compilation, so that they can refer to each other.
+     * @param sources source code by fully qualified class name
+     * @return the bytes of all class files, nested classes included, by class name
+     * @throws CompilationException if there were compilation errors
+     */
+    public static Map<String, byte[]> compileClassFiles( Map<String, String> sources ) {
+        JavaCompiler compiler = getCompiler();
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
         MemoryFileManager fileMgr = new MemoryFileManager( compiler.getStandardFileManager( diagnostics, null, null ) );
 
-        JavaFileObject sourceFile = new StringJavaFileObject( className, sourceCode );
-        Boolean ok = compiler.getTask( null, fileMgr, diagnostics, null, null, Arrays.asList( sourceFile ) ).call();
+        List<JavaFileObject> sourceFiles = new ArrayList<>();
+        for( Map.Entry<String, String> source : sources.entrySet() ) {
+            sourceFiles.add( new StringJavaFileObject( source.getKey(), source.getValue() ) );
+        }
+        Boolean ok = compiler.getTask( null, fileMgr, diagnostics, null, null, sourceFiles ).call();
         if( !ok ) {
-            String message = "Compilation failure :";
-            for( Diagnostic<?> d : diagnostics.getDiagnostics() ) {
-                String msg = d.toString();
-                message += "\n" + msg.substring( msg.indexOf( ' ' ) + 1 );
+            throw new CompilationException( diagnostics.getDiagnostics() );
+        }
+        return fileMgr.getClassFiles();
+    }
+
+    /**
+     * Loads classes from class files, without compiling anything. All the classes are defined by a single class loader.
+     * @param classFiles the bytes of class files by class name, as returned by {@link #compileClassFiles}
+     * @param classNames names of the classes to load
+     * @return classes by fully qualified class name, in the order of the names
+     */
+    public static Map<String, Class<?>> load( Map<String, byte[]> classFiles, Collection<String> classNames ) {
+        ClassLoader classLoader = new MemoryClassLoader( classFiles );
+        Map<String, Class<?>> classes = new LinkedHashMap<>();
+        for( String className : classNames ) {
+            try {
+                classes.put( className, classLoader.loadClass( className ) );
+            } catch( ClassNotFoundException e ) {
+                throw new RuntimeException( "No class file for " + className, e );
             }
-            throw new RuntimeException( message );
         }
+        return classes;
+    }
 
-        ClassLoader classLoader = fileMgr.getClassLoader( StandardLocation.CLASS_OUTPUT );
-        try {
-            return classLoader.loadClass( className );
-        } catch( ClassNotFoundException e ) {
-            throw new RuntimeException( "Cannot load the class we just compiled!", e ); // Probably can't happen
+    private static synchronized JavaCompiler getCompiler() {
+        if( compiler == null ) {
+            compiler = ToolProvider.getSystemJavaCompiler();
+            if( compiler == null ) {
+                throw new RuntimeException( "Java compiler not found. Make sure tools.jar is in the classpath." );
+            }
         }
+        return compiler;
     }
 
 }
@@ -13,7 +13,7 @@ import javax.tools.JavaFileObject.Kind;
 
 class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
     private Map<String, ByteArrayJavaFileObject> classFiles = new HashMap<String, ByteArrayJavaFileObject>();
-    private ClassLoader memoryClassLoader = new MemoryClassLoader();
+    private ClassLoader memoryClassLoader;
 
     protected MemoryFileManager( StandardJavaFileManager fileManager ) {
         super( fileManager );
@@ -32,21 +32,22 @@ class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManage
     @Override
     public ClassLoader getClassLoader( Location location ) {
         if( location == StandardLocation.CLASS_OUTPUT ) {
+            if( memoryClassLoader == null ) {
+                memoryClassLoader = new MemoryClassLoader( getClassFiles() );
+            }
             return memoryClassLoader;
         }
         return super.getClassLoader( location );
     }
 
-    private class MemoryClassLoader extends ClassLoader {
-
-        @Override
-        public Class<?> findClass( String className ) throws ClassNotFoundException {
-            ByteArrayJavaFileObject classFile = classFiles.get( className );
-            if( classFile == null ) {
-                throw new ClassNotFoundException( className );
-            }
-            byte[] bytes = classFile.getBytes();
-            return defineClass( className, bytes, 0, bytes.length );
+    /**
+     * Returns the bytes of the compiled class files, by class name.
+     */
+    Map<String, byte[]> getClassFiles() {
+        Map<String, byte[]> bytes = new HashMap<>();
+        for( Map.Entry<String, ByteArrayJavaFileObject> classFile : classFiles.entrySet() ) {
+            bytes.put( classFile.getKey(), classFile.getValue().getBytes() );
         }
+        return bytes;
     }
 }
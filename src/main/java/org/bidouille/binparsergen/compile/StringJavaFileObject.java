@@ -5,13 +5,19 @@ import java.net.URI;
 import javax.tools.SimpleJavaFileObject;
 
 class StringJavaFileObject extends SimpleJavaFileObject {
+    private String className;
     private String contents;
 
     public StringJavaFileObject( String className, String contents ) {
         super( URI.create( "mem:///" + className.replace( '.', '/' ) + Kind.SOURCE.extension ), Kind.SOURCE );
+        this.className = className;
         this.contents = contents;
     }
 
+    public String getClassName() {
+        return className;
+    }
+
     @Override
     public CharSequence getCharContent( boolean ignoreEncodingErrors ) {
         return contents;
@@ -15,10 +15,19 @@ public class Constraint {
     }
 
     public void writeCheck( PrintWriter writer, String name ) {
+        writeCheck( writer, name, name );
+    }
+
+    /**
+     * Writes the check of the value of a data, when it is not held as is by the variable named after the data.
+     * @param name variable the data is stored in, for the message
+     * @param expr expression of the value to check
+     */
+    public void writeCheck( PrintWriter writer, String name, String expr ) {
         writer.print( "if(!(" );
-        writeTest( writer, name );
+        writeTest( writer, expr );
         writer.println( ")) {" );
-        writer.println( "    throw new " + ConstraintViolationException.class.getName() + "( \"" + name + op + escapeQuotes( value ) + "\", " + name + " );" );
+        writer.println( "    throw new " + ConstraintViolationException.class.getName() + "( \"" + name + op + escapeQuotes( value ) + "\", " + expr + " );" );
         writer.println( "}" );
     }
 
@@ -0,0 +1,175 @@
+package org.bidouille.binparsergen.data;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import org.bidouille.binparsergen.template.IndentPrintWriter;
+import org.bidouille.binparsergen.template.Template;
+
+/**
+ * Array declared with the <code>[columnar]</code> option. Its elements are structs of single primitive values, stored as one array per field
+ * in a <code>Columns</code> class generated in the element struct.
+ */
+public class ColumnarArrayInfo extends DataArrayInfo {
+    private Struct element; // Set by validate()
+
+    public ColumnarArrayInfo( DataDesc desc, String cardinalityExpr ) {
+        super( desc, cardinalityExpr );
+    }
+
+    @Override
+    public boolean isBulk() {
+        return false;
+    }
+
+    @Override
+    public boolean isReusable() {
+        return false; // Allocated again by each parse
+    }
+
+    /**
+     * Checks that elements only contain single primitive values, and marks the element struct as needing a <code>Columns</code> class.
+     * @return an error message, or null if the array is valid
+     */
+    public String validate( Struct scope ) {
+        Struct struct = desc.struct( scope );
+        List<DataInfo> fields = struct != null ? struct.datas.primitiveFields() : null;
+        if( struct == null || struct.parent == null || !struct.params.isEmpty() || fields == null ) {
+            return "The [columnar] option only applies to arrays of sub-structs without parameters, made of single primitive values at constant offsets : "
+                    + name;
+        }
+        element = struct;
+        element.columns = fields;
+        return null;
+    }
+
+    /**
+     * Returns the name of the class holding the columns.
+     */
+    public String columnsClass() {
+        return element.className() + ".Columns";
+    }
+
+    /**
+     * Returns the number of bits an element occupies.
+     */
+    public long elementBitSize() {
+        return element.bitSize();
+    }
+
+    @Override
+    protected void declaration( PrintWriter writer ) {
+        writer.print( columnsClass() );
+    }
+
+    @Override
+    protected void string( PrintWriter writer ) {
+        writer.print( "$sb.append(" + name + ");" );
+    }
+
+    public static class ReadHelperTemplate extends Template {
+
+        public ReadHelperTemplate( ColumnarArrayInfo arrayInfo ) {
+            setParam( "name", arrayInfo.name );
+            setParam( "type", arrayInfo.columnsClass() );
+            setParam( "skipTo", arrayInfo.elementOffsetExpr != null ? "$in.skipTo(" + arrayInfo.elementOffsetExpr + ");" : "" );
+            setParam( "cardinality", arrayInfo.cardinalityExpr );
+        }
+
+        public void write( IndentPrintWriter writer ) throws IOException {
+            write( "/readColumns.java.template", writer );
+        }
+    }
+
+    /**
+     * Writes the <code>Columns</code> class of an element struct.
+     */
+    public static class ColumnsTemplate extends Template {
+        private final List<DataInfo> fields;
+
+        public ColumnsTemplate( Struct element ) {
+            this.fields = element.columns;
+            setParam( "name", element.name );
+        }
+
+        public void write( IndentPrintWriter writer ) throws IOException {
+            write( "/columns.java.template", writer );
+        }
+
+        public void writeArrays( IndentPrintWriter writer ) {
+            for( DataInfo info : fields ) {
+                if( info.anonymous ) {
+                    continue;
+                }
+                if( info.comment != null ) {
+                    writer.println( "/**" );
+                    writer.println( " * " + info.comment );
+                    writer.println( " */" );
+                }
+                writer.print( "public final " );
+                info.declaration( writer );
+                writer.println( "[] " + info.name + ";" );
+            }
+        }
+
+        public void writeAllocations( IndentPrintWriter writer ) {
+            for( DataInfo info : fields ) {
+                if( !info.anonymous ) {
+                    writer.print( info.name + " = new " );
+                    info.declaration( writer );
+                    writer.println( "[$count];" );
+                }
+            }
+        }
+
+        public void writeReads( IndentPrintWriter writer ) {
+            for( DataInfo info : fields ) {
+                boolean checkConstraints = !info.desc.constraints.isEmpty();
+                if( info.offsetExpr != null ) {
+                    writer.println( "$in.skipTo( " + info.offsetExpr + " );" );
+                }
+                if( info.skip ) {
+                    writer.println( "$in.skipTo( " + (info.bitOffset + info.bitSize) / 8 + "L );" );
+                    continue;
+                }
+                String target = info.anonymous ? info.name : info.name + "[$]";
+                if( info.anonymous && checkConstraints ) {
+                    info.declaration( writer );
+                    writer.print( " " );
+                }
+                if( !info.anonymous || checkConstraints ) {
+                    writer.print( target + " = " );
+                }
+                info.extraction( writer );
+                writer.println( ";" );
+                if( checkConstraints ) {
+                    info.constraints( writer, target );
+                }
+            }
+        }
+
+        public void writeStrings( IndentPrintWriter writer ) {
+            for( DataInfo info : fields ) {
+                if( !info.anonymous ) {
+                    writer.println( "$sb.append( \" " + info.name + "=\" ).append( java.util.Arrays.toString( " + info.name + " ) );" );
+                }
+            }
+        }
+
+        public void writeGetters( IndentPrintWriter writer ) {
+            for( DataInfo info : fields ) {
+                if( info.anonymous ) {
+                    continue;
+                }
+                writer.print( "public " );
+                info.declaration( writer );
+                writer.println( " " + info.name + "() {" );
+                writer.println( "    return " + info.name + "[$];" );
+                writer.println( "}" );
+                writer.println();
+            }
+        }
+    }
+
+}
@@ -1,9 +1,11 @@
 package org.bidouille.binparsergen.data;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
 public class DataArrayInfo extends DataInfo {
     public String cardinalityExpr;
+    public long cardinalityValue = DataDesc.UNKNOWN; // Value of cardinalityExpr, if constant
     public String elementOffsetExpr;
 
     public DataArrayInfo( DataDesc desc, String cardinalityExpr ) {
@@ -11,23 +13,62 @@ public class DataArrayInfo extends DataInfo {
         this.cardinalityExpr = cardinalityExpr;
     }
 
+    @Override
+    protected long bitSize( Struct scope ) {
+        long elementSize = desc.bitSize( scope );
+        if( cardinalityValue == DataDesc.UNKNOWN || elementOffsetExpr != null || elementSize == DataDesc.UNKNOWN ) {
+            return DataDesc.UNKNOWN;
+        }
+        return cardinalityValue * elementSize;
+    }
+
     @Override
     protected void declaration( PrintWriter writer ) {
         super.declaration( writer );
         writer.print( "[]" );
     }
 
+    /**
+     * Arrays of primitives without per-element offset or constraints are read in one go by the reader, and need no readArray_* helper.
+     */
+    public boolean isBulk() {
+        return desc.hasBulkExtraction() && elementOffsetExpr == null && desc.constraints.isEmpty();
+    }
+
     @Override
     protected void extraction( PrintWriter writer ) {
+        if( isBulk() ) {
+            StringWriter out = new StringWriter();
+            desc.declaration( new PrintWriter( out ) );
+            desc.bulkExtraction( writer, allocation( out.toString(), "(int)(" + cardinalityExpr + ")" ) );
+            return;
+        }
         writer.print( "readArray_" );
         writer.print( name );
-        writer.print( "($sis, $eis)" );
+        writer.print( "($in)" );
+    }
+
+    @Override
+    public boolean isReusable() {
+        return !anonymous && !isStreamed();
+    }
+
+    /**
+     * Returns the expression of the array to read the elements into : the array of the previous parse if it has the same length, a new
+     * one otherwise.
+     */
+    String allocation( String type, String count ) {
+        if( anonymous ) {
+            return "new " + type + "[" + count + "]";
+        }
+        return name + " != null && " + name + ".length == " + count + " ? " + name + " : new " + type + "[" + count + "]";
     }
 
     @Override
     protected void string( PrintWriter writer ) {
         writer.print( "printArray_" );
         super.declaration( writer );
+        writer.print( desc.unsigned( name ) != null ? "_unsigned" : "" );
         writer.print( "($sb, $indent, " );
         writer.print( name );
         writer.print( ");" );
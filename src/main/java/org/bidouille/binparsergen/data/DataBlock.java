@@ -4,18 +4,28 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
 
 import org.bidouille.binparsergen.template.IndentPrintWriter;
 import org.bidouille.binparsergen.template.Template;
 
 public class DataBlock {
     public final DataBlock parent;
+    public int line; // Line of the block in the definition, or 0
     private List<Object> datas = new ArrayList<>(); // Contains a list of DataInfo and DataBlock
 
+    /**
+     * Start of the comments telling the line of the definition the following code comes from.
+     */
+    public static final String SOURCE_LINE = "// line ";
+
     public DataBlock( DataBlock parent ) {
         this.parent = parent;
     }
@@ -28,11 +38,127 @@ public class DataBlock {
         datas.add( block );
     }
 
+    /**
+     * Returns the data of this block in declaration order, as {@link DataInfo} and {@link DataBlock} instances.
+     */
+    public List<Object> getDatas() {
+        return Collections.unmodifiableList( datas );
+    }
+
+    /**
+     * Tells whether the data of this block may be absent, depending on previous data.
+     */
+    public boolean isConditional() {
+        return false;
+    }
+
+    /**
+     * Computes the bit offset and size of every data in this block, as far as they are constant.
+     * @param scope struct this block belongs to
+     * @param position bit offset this block starts at, or {@link DataDesc#UNKNOWN}
+     * @return the bit offset this block ends at, or {@link DataDesc#UNKNOWN}
+     */
+    public long layout( Struct scope, long position ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataInfo info = (DataInfo) data;
+                if( info.offsetValue != DataDesc.UNKNOWN ) {
+                    position = info.offsetValue * 8;
+                } else if( info.offsetExpr != null ) {
+                    position = DataDesc.UNKNOWN;
+                }
+                info.bitOffset = position;
+                info.bitSize = info.bitSize( scope );
+                if( position == DataDesc.UNKNOWN || info.bitSize == DataDesc.UNKNOWN ) {
+                    position = DataDesc.UNKNOWN;
+                } else {
+                    position += info.bitSize;
+                }
+                // Skipping to the end also discards bits of a partially read byte, so the end must fall on a byte boundary
+                info.skip = info.anonymous && position != DataDesc.UNKNOWN && position % 8 == 0 && !info.desc.hasChecks( scope );
+            } else {
+                position = ((DataBlock) data).layout( scope, position );
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Checks the options of the data in this block, once the layout is known.
+     */
+    public void validate( Struct scope, List<String> errors ) {
+        for( Object data : datas ) {
+            String error = null;
+            if( data instanceof ParallelArrayInfo ) {
+                error = ((ParallelArrayInfo) data).validate( scope );
+            } else if( data instanceof ColumnarArrayInfo ) {
+                error = ((ColumnarArrayInfo) data).validate( scope );
+            } else if( data instanceof DataInfo && ((DataInfo) data).desc.unsigned( "" ) != null && scope.referencedNames.contains( ((DataInfo) data).name ) ) {
+                error = "[compact] data cannot be used in expressions, as it is stored as signed : " + ((DataInfo) data).name;
+            } else if( data instanceof DataInfo && ((DataInfo) data).desc.isEnum() && scope.referencedNames.contains( ((DataInfo) data).name ) ) {
+                error = "Enum data cannot be used in expressions : " + ((DataInfo) data).name;
+            } else if( data instanceof DataBlock ) {
+                ((DataBlock) data).validate( scope, errors );
+            }
+            if( error != null ) {
+                errors.add( error );
+            }
+        }
+    }
+
+    // Returns the data of this block if it is only made of single primitive values at constant offsets, null otherwise
+    List<DataInfo> primitiveFields() {
+        List<DataInfo> fields = new ArrayList<>();
+        for( Object data : datas ) {
+            if( !(data instanceof DataInfo) || data instanceof DataArrayInfo ) {
+                return null;
+            }
+            DataInfo info = (DataInfo) data;
+            if( info.desc.isStruct() || info.offsetExpr != null && info.offsetValue == DataDesc.UNKNOWN ) {
+                return null;
+            }
+            fields.add( info );
+        }
+        return fields;
+    }
+
+    /**
+     * Tells whether reading this block checks any constraint.
+     */
+    public boolean hasChecks( Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ? ((DataInfo) data).desc.hasChecks( scope ) : ((DataBlock) data).hasChecks( scope ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void writeOffsets( IndentPrintWriter writer ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataInfo info = (DataInfo) data;
+                if( !info.anonymous && info.bitOffset != DataDesc.UNKNOWN && info.bitOffset % 8 == 0 ) {
+                    writer.println( constant( "OFFSET_" + info.name, info.bitOffset / 8 ) );
+                }
+            } else {
+                ((DataBlock) data).writeOffsets( writer );
+            }
+        }
+    }
+
+    static String constant( String name, long value ) {
+        if( value > Integer.MAX_VALUE ) {
+            return "public static final long " + name + " = " + value + "L;";
+        }
+        return "public static final int " + name + " = " + value + ";";
+    }
+
     public void writeFields( IndentPrintWriter writer ) {
         for( Object data : datas ) {
             if( data instanceof DataInfo ) {
                 DataInfo info = (DataInfo) data;
-                if( info.anonymous ) { // Anonymous data is not stored
+                if( info.anonymous || info.shared != null ) { // Anonymous data is not stored
                     continue;
                 }
                 if( info.comment != null ) {
@@ -50,60 +176,900 @@ public class DataBlock {
         }
     }
 
-    public void writeExtracts( IndentPrintWriter writer ) {
+    public void writeExtracts( IndentPrintWriter writer, Struct scope ) {
+        writeExtracts( writer, scope, 0 );
+    }
+
+    /**
+     * Writes extracts starting with the data at index start. Stops after streamed data, as the following data is parsed once the streamed
+     * array has been iterated over, or the streamed bytes have been read.
+     * @return the index of the data following the streamed data, or -1 if the end of the block was reached
+     */
+    public int writeExtracts( IndentPrintWriter writer, Struct scope, int start ) {
+        for( int i = start; i < datas.size(); i++ ) {
+            if( writeExtract( writer, scope, datas.get( i ) ) ) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the extract of one data of this block.
+     * @return whether the data is streamed
+     */
+    boolean writeExtract( IndentPrintWriter writer, Struct scope, Object data ) {
+        writeSourceLine( writer, data );
+        if( !(data instanceof DataInfo) ) {
+            ((DataBlock) data).writeExtracts( writer, scope );
+            return false;
+        }
+        DataInfo info = (DataInfo) data;
+        // For arrays constraints are checked when reading each element (see writeHelpers()).
+        boolean checkConstraints = !info.desc.constraints.isEmpty() && !(info instanceof DataArrayInfo);
+        if( info.offsetExpr != null ) {
+            writer.println( "$in.skipTo( " + info.offsetExpr + " );" );
+        }
+        if( info.skip ) {
+            writer.println( "$in.skipTo( " + (info.bitOffset + info.bitSize) / 8 + "L );" );
+            return false;
+        }
+        if( info.anonymous && checkConstraints ) {
+            info.declaration( writer );
+            writer.println( " " + info.name + ";" );
+        }
+        if( !info.anonymous || checkConstraints ) {
+            writer.print( info.name + " = " );
+        }
+        if( info.desc.isStruct() && !info.anonymous && !(info instanceof DataArrayInfo) ) {
+            info.desc.reuseExtraction( writer, scope, info.name );
+        } else {
+            info.extraction( writer );
+        }
+        writer.println( ";" );
+        if( checkConstraints ) {
+            info.constraints( writer, info.name );
+        }
+        return info.isStreamed();
+    }
+
+    /**
+     * Returns the number of data in this block, sub-blocks counting as one.
+     */
+    int size() {
+        return datas.size();
+    }
+
+    /**
+     * Writes each data of this block from index start to index end excluded on its own, with a method writing one data.
+     * @return the code written for each data
+     */
+    List<String> writeEach( int start, int end, BiConsumer<IndentPrintWriter, Object> writing ) {
+        List<String> codes = new ArrayList<>();
+        for( Object data : datas.subList( start, end ) ) {
+            codes.add( MethodSplitter.render( writer -> writing.accept( writer, data ) ) );
+        }
+        return codes;
+    }
+
+    // Writes a comment telling the line of the definition the code of a data comes from. Compilation errors are reported at the line of the
+    // last such comment before them.
+    private static void writeSourceLine( IndentPrintWriter writer, Object data ) {
+        int line = data instanceof DataInfo ? ((DataInfo) data).line : ((DataBlock) data).line;
+        if( line > 0 ) {
+            writer.println( SOURCE_LINE + line );
+        }
+    }
+
+    // Resets the data of this block to default values, so that an instance parsed again does not keep values from the previous parse.
+    // Sub-structs and arrays are kept, for the next parse in which the data is present to reuse them.
+    void writeDefaults( IndentPrintWriter writer ) {
         for( Object data : datas ) {
             if( data instanceof DataInfo ) {
                 DataInfo info = (DataInfo) data;
-                // For arrays constraints are checked when reading each element (see writeHelpers()).
-                boolean checkConstraints = !info.desc.constraints.isEmpty() && !(info instanceof DataArrayInfo);
-                if( info.offsetExpr != null ) {
-                    writer.println( "$sis.skipTo( " + info.offsetExpr + " );" );
+                if( !info.anonymous && !info.isReusable() ) {
+                    boolean primitive = !(info instanceof DataArrayInfo) && !info.desc.isStruct() && isPrimitive( info.desc );
+                    writer.println( info.name + " = " + (primitive ? "0" : "null") + ";" );
                 }
+            } else {
+                ((DataBlock) data).writeDefaults( writer );
+            }
+        }
+    }
+
+    /**
+     * Tells whether {@link #writeDefaults} writes anything for this block.
+     */
+    boolean hasDefaults() {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ? !((DataInfo) data).anonymous && !((DataInfo) data).isReusable() : ((DataBlock) data).hasDefaults() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the streamed data of this block, with the index of the data following each one.
+     */
+    public Map<DataInfo, Integer> getStreamedData() {
+        Map<DataInfo, Integer> streams = new LinkedHashMap<>();
+        for( int i = 0; i < datas.size(); i++ ) {
+            if( datas.get( i ) instanceof DataInfo && ((DataInfo) datas.get( i )).isStreamed() ) {
+                streams.put( (DataInfo) datas.get( i ), i + 1 );
+            }
+        }
+        return streams;
+    }
+
+    // Collects the static constants the data types of this block refer to
+    void collectConstants( Map<String, String> constants ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                ((DataInfo) data).desc.collectConstants( constants );
+            } else {
+                ((DataBlock) data).collectConstants( constants );
+            }
+        }
+    }
+
+    public void writeStrings( IndentPrintWriter writer, Struct scope ) {
+        for( Object data : datas ) {
+            writeString( writer, scope, data );
+        }
+    }
+
+    void writeString( IndentPrintWriter writer, Struct scope, Object data ) {
+        writeSourceLine( writer, data );
+        if( data instanceof DataInfo ) {
+            DataInfo info = (DataInfo) data;
+            if( !info.anonymous ) {
+                String desc = (info.comment != null ? escapeQuotes( info.comment ) : info.name);
+                writer.println( "$desc = \"" + desc + " : \";" );
+                writer.print( "$sb.append($indent); $sb.append($desc);" );
+                info.string( writer );
+                writer.print( "$sb.append(\"\\n\");" );
+                writer.println();
+            }
+        } else {
+            ((DataBlock) data).writeStrings( writer, scope );
+        }
+    }
+
+    /**
+     * Tells whether all user types in this block are structs that can be visited.
+     */
+    public boolean canVisit( Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataDesc desc = ((DataInfo) data).desc;
+                if( desc.isStruct() && (desc.struct( scope ) == null || !desc.struct( scope ).canVisit()) ) {
+                    return false;
+                }
+            } else if( !((DataBlock) data).canVisit( scope ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Creates the callbacks of the visitor interface : on* for values, enter* and exit* for structs
+    public void writeVisitorCallbacks( IndentPrintWriter writer, Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataInfo info = (DataInfo) data;
+                if( info.anonymous || info.shared != null ) {
+                    continue;
+                }
+                if( info.comment != null ) {
+                    writer.println( "/**" );
+                    writer.println( " * " + info.comment );
+                    writer.println( " */" );
+                }
+                String suffix = info.name.substring( 0, 1 ).toUpperCase() + info.name.substring( 1 );
+                boolean array = info instanceof DataArrayInfo;
+                if( info.desc.isStruct() ) {
+                    String visitor = info.desc.struct( scope ).visitorName();
+                    String index = array ? "( int index )" : "()";
+                    writer.println( "default " + visitor + " enter" + suffix + index + " { return " + visitor + ".NONE; }" );
+                    writer.println( "default void exit" + suffix + index + " {}" );
+                } else {
+                    writer.print( "default void on" + suffix + "( " + (array ? "int index, " : "") );
+                    info.desc.declaration( writer );
+                    writer.println( " value ) {}" );
+                }
+                writer.println();
+            } else {
+                ((DataBlock) data).writeVisitorCallbacks( writer, scope );
+            }
+        }
+    }
+
+    // Declares locals holding values, as they may be used in expressions. Arrays are only stored if used.
+    public void writeVisitorLocals( IndentPrintWriter writer, Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataInfo info = (DataInfo) data;
+                if( info.anonymous || info.desc.isStruct() || info.shared != null ) {
+                    continue;
+                }
+                if( info instanceof DataArrayInfo ) {
+                    if( scope.referencedNames.contains( info.name ) ) {
+                        info.desc.declaration( writer );
+                        writer.println( "[] " + info.name + " = null;" );
+                    }
+                } else {
+                    info.desc.declaration( writer );
+                    writer.println( " " + info.name + " = " + (isPrimitive( info.desc ) ? "0" : "null") + ";" );
+                }
+            } else {
+                ((DataBlock) data).writeVisitorLocals( writer, scope );
+            }
+        }
+    }
+
+    private static boolean isPrimitive( DataDesc desc ) {
+        return Character.isLowerCase( desc.declaration.charAt( 0 ) );
+    }
+
+    public void writeVisits( IndentPrintWriter writer, Struct scope ) {
+        for( Object data : datas ) {
+            writeVisit( writer, scope, data );
+        }
+    }
+
+    void writeVisit( IndentPrintWriter writer, Struct scope, Object data ) {
+        writeSourceLine( writer, data );
+        if( data instanceof DataInfo ) {
+            DataInfo info = (DataInfo) data;
+            if( info.offsetExpr != null ) {
+                writer.println( "$in.skipTo( " + info.offsetExpr + " );" );
+            }
+            if( info.skip ) {
+                writer.println( "$in.skipTo( " + (info.bitOffset + info.bitSize) / 8 + "L );" );
+                return;
+            }
+            String suffix = info.name.substring( 0, 1 ).toUpperCase() + info.name.substring( 1 );
+            if( info instanceof DataArrayInfo ) {
+                writeArrayVisit( writer, scope, (DataArrayInfo) info, suffix );
+            } else if( info.desc.isStruct() ) {
+                info.desc.visitExtraction( writer, scope, info.anonymous ? info.desc.struct( scope ).visitorName() + ".NONE" : "$visitor.enter" + suffix + "()" );
+                writer.println( ";" );
+                if( !info.anonymous ) {
+                    writer.println( "$visitor.exit" + suffix + "();" );
+                }
+            } else {
+                boolean checkConstraints = !info.desc.constraints.isEmpty();
                 if( info.anonymous && checkConstraints ) {
-                    info.declaration( writer );
-                    writer.println( " " + info.name + ";" );
+                    info.desc.declaration( writer );
+                    writer.print( " " );
                 }
                 if( !info.anonymous || checkConstraints ) {
                     writer.print( info.name + " = " );
                 }
-                info.extraction( writer );
+                info.desc.extraction( writer );
                 writer.println( ";" );
                 if( checkConstraints ) {
                     info.constraints( writer, info.name );
                 }
+                if( !info.anonymous ) {
+                    writer.println( "$visitor.on" + suffix + "( " + info.name + " );" );
+                }
+            }
+        } else {
+            ((DataBlock) data).writeVisits( writer, scope );
+        }
+    }
+
+    private void writeArrayVisit( IndentPrintWriter writer, Struct scope, DataArrayInfo info, String suffix ) {
+        String count = "$n_" + info.name;
+        boolean stored = !info.anonymous && !info.desc.isStruct() && scope.referencedNames.contains( info.name );
+        writer.println( "int " + count + " = (int)(" + info.cardinalityExpr + ");" );
+        if( stored ) {
+            writer.print( info.name + " = new " );
+            info.desc.declaration( writer );
+            writer.println( "[" + count + "];" );
+        }
+        writer.println( "for( int $ = 0; $ < " + count + "; $++ ) {" );
+        writer.pushIndent( "    " );
+        if( info.elementOffsetExpr != null ) {
+            writer.println( "$in.skipTo( " + info.elementOffsetExpr + " );" );
+        }
+        if( info.desc.isStruct() ) {
+            info.desc.visitExtraction( writer, scope, info.anonymous ? info.desc.struct( scope ).visitorName() + ".NONE" : "$visitor.enter" + suffix + "( $ )" );
+            writer.println( ";" );
+            if( !info.anonymous ) {
+                writer.println( "$visitor.exit" + suffix + "( $ );" );
+            }
+        } else {
+            info.desc.declaration( writer );
+            writer.print( " $element = " );
+            info.desc.extraction( writer );
+            writer.println( ";" );
+            info.constraints( writer, "$element" );
+            if( stored ) {
+                writer.println( info.name + "[$] = $element;" );
+            }
+            if( !info.anonymous ) {
+                writer.println( "$visitor.on" + suffix + "( $, $element );" );
+            }
+        }
+        writer.popIndent();
+        writer.println( "}" );
+    }
+
+    /**
+     * Tells whether this block can be parsed by a resumable parser : streamed data and data whose size is only known once read are not
+     * supported, and all user types must be structs that can be resumed.
+     */
+    public boolean canResume( Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataDesc desc = ((DataInfo) data).desc;
+                if( ((DataInfo) data).isStreamed() || !desc.canResume() || desc.isStruct() && (desc.struct( scope ) == null || !desc.struct( scope ).canResume()) ) {
+                    return false;
+                }
+            } else if( !((DataBlock) data).canResume( scope ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of states of the resumable parser for this block : one per data, two per array.
+     */
+    public int resumeStates() {
+        int states = 0;
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                states += data instanceof DataArrayInfo ? 2 : 1;
             } else {
-                ((DataBlock) data).writeExtracts( writer );
+                states += ((DataBlock) data).resumeStates();
             }
         }
+        return states;
     }
 
-    public void writeStrings( IndentPrintWriter writer ) {
+    // Declares the fields keeping the progress of arrays and sub-structs between calls to $resume
+    public void writeResumeFields( IndentPrintWriter writer ) {
         for( Object data : datas ) {
             if( data instanceof DataInfo ) {
                 DataInfo info = (DataInfo) data;
-                if( !info.anonymous ) {
-                    String desc = (info.comment != null ? escapeQuotes( info.comment ) : info.name);
-                    writer.println( "$desc = \"" + desc + " : \";" );
-                    writer.print( "$sb.append($indent); $sb.append($desc);" );
-                    info.string( writer );
-                    writer.print( "$sb.append(\"\\n\");" );
-                    writer.println();
+                if( info instanceof DataArrayInfo ) {
+                    writer.println( "private int $i_" + info.name + ", $n_" + info.name + ";" );
+                    if( info.desc.isStruct() && !(info instanceof ColumnarArrayInfo) ) {
+                        writer.print( "private " );
+                        info.desc.declaration( writer );
+                        writer.println( " $e_" + info.name + ";" );
+                    }
+                } else if( info.desc.isStruct() && info.anonymous ) {
+                    writer.print( "private " );
+                    info.desc.declaration( writer );
+                    writer.println( " " + info.name + ";" );
+                }
+            } else {
+                ((DataBlock) data).writeResumeFields( writer );
+            }
+        }
+    }
+
+    /**
+     * Writes the cases of the $resume state machine for this block. Each case returns false when more data is needed, and falls through to the
+     * next one once its data is parsed.
+     * @param state number of the first case
+     * @return the number of the case following this block
+     */
+    public int writeResumeStates( IndentPrintWriter writer, Struct scope, int state ) {
+        for( Object data : datas ) {
+            state = writeResumeState( writer, scope, data, state );
+        }
+        return state;
+    }
+
+    /**
+     * Writes the cases of the $resume state machine for one data of this block.
+     * @return the number of the case following the data
+     */
+    int writeResumeState( IndentPrintWriter writer, Struct scope, Object data, int state ) {
+        writeSourceLine( writer, data );
+        if( !(data instanceof DataInfo) ) {
+            return ((DataBlock) data).writeResumeStates( writer, scope, state );
+        }
+        DataInfo info = (DataInfo) data;
+        writer.println( "case " + state + ":" );
+        writer.pushIndent( "    " );
+        if( info.skip ) { // The skip makes progress, so the offset is not skipped to again : it is constant and so before the end
+            writer.println( "if( !$in.trySkipTo( " + (info.bitOffset + info.bitSize) / 8 + "L ) ) return false;" );
+        } else if( info instanceof DataArrayInfo ) {
+            writeArrayResume( writer, scope, (DataArrayInfo) info, ++state );
+        } else if( info.desc.isStruct() ) {
+            writer.println( "if( " + info.name + " == null ) {" );
+            writer.pushIndent( "    " );
+            writeResumeSkip( writer, info.offsetExpr );
+            writer.print( info.name + " = " );
+            info.desc.creation( writer, scope );
+            writer.println( ";" );
+            writer.popIndent();
+            writer.println( "}" );
+            writer.println( "if( !" + info.name + ".$resume( $in ) ) return false;" );
+        } else {
+            boolean checkConstraints = !info.desc.constraints.isEmpty();
+            writeResumeSkip( writer, info.offsetExpr );
+            writer.println( "if( !$in.has( " + info.desc.bitSizeExpression( scope ) + " ) ) return false;" );
+            if( info.anonymous && checkConstraints ) {
+                info.declaration( writer );
+                writer.print( " " );
+            }
+            if( !info.anonymous || checkConstraints ) {
+                writer.print( info.name + " = " );
+            }
+            info.extraction( writer );
+            writer.println( ";" );
+            if( checkConstraints ) {
+                info.constraints( writer, info.name );
+            }
+        }
+        writer.println( "$state = " + ++state + ";" );
+        writer.popIndent();
+        return state;
+    }
+
+    // Writes the two states of an array : initialization, then a loop over the elements
+    private void writeArrayResume( IndentPrintWriter writer, Struct scope, DataArrayInfo info, int loopState ) {
+        String index = "$i_" + info.name;
+        String count = "$n_" + info.name;
+        writeResumeSkip( writer, info.offsetExpr );
+        writer.println( count + " = (int)(" + info.cardinalityExpr + ");" );
+        if( info instanceof ColumnarArrayInfo ) {
+            writer.println( info.name + " = new " + ((ColumnarArrayInfo) info).columnsClass() + "( " + count + " );" );
+        } else if( !info.anonymous ) {
+            writer.print( info.name + " = new " );
+            info.desc.declaration( writer );
+            writer.println( "[" + count + "];" );
+        }
+        writer.println( index + " = 0;" );
+        writer.println( "$state = " + loopState + ";" );
+        writer.popIndent();
+        writer.println( "case " + loopState + ":" );
+        writer.pushIndent( "    " );
+        writer.println( "while( " + index + " < " + count + " ) {" );
+        writer.pushIndent( "    " );
+        writer.println( "int $ = " + index + ";" );
+        if( info instanceof ColumnarArrayInfo ) { // Elements have a constant size
+            writeResumeSkip( writer, info.elementOffsetExpr );
+            writer.println( "if( !$in.has( " + ((ColumnarArrayInfo) info).elementBitSize() + " ) ) return false;" );
+            writer.println( info.name + ".read( $in, $ );" );
+        } else if( info.desc.isStruct() ) {
+            String element = "$e_" + info.name;
+            writer.println( "if( " + element + " == null ) {" );
+            writer.pushIndent( "    " );
+            writeResumeSkip( writer, info.elementOffsetExpr );
+            writer.print( element + " = " );
+            info.desc.creation( writer, scope );
+            writer.println( ";" );
+            writer.popIndent();
+            writer.println( "}" );
+            writer.println( "if( !" + element + ".$resume( $in ) ) return false;" );
+            if( !info.anonymous ) {
+                writer.println( info.name + "[$] = " + element + ";" );
+            }
+            writer.println( element + " = null;" );
+        } else {
+            writeResumeSkip( writer, info.elementOffsetExpr );
+            writer.println( "if( !$in.has( " + info.desc.bitSizeExpression( scope ) + " ) ) return false;" );
+            info.desc.declaration( writer );
+            writer.print( " $element = " );
+            info.desc.extraction( writer );
+            writer.println( ";" );
+            info.constraints( writer, "$element" );
+            if( !info.anonymous ) {
+                writer.println( info.name + "[$] = $element;" );
+            }
+        }
+        writer.println( index + "++;" );
+        writer.popIndent();
+        writer.println( "}" );
+    }
+
+    // Skipping again to an offset already reached does nothing, so the skip can be retried when resuming
+    private static void writeResumeSkip( IndentPrintWriter writer, String offsetExpr ) {
+        if( offsetExpr != null ) {
+            writer.println( "if( !$in.trySkipTo( " + offsetExpr + " ) ) return false;" );
+        }
+    }
+
+    /**
+     * Tells whether views can be generated for this block : all data types must be decodable at any index of a buffer, and user types must
+     * be structs that have views.
+     */
+    public boolean canView( Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataDesc desc = ((DataInfo) data).desc;
+                if( desc.isStruct() ? desc.struct( scope ) == null || !desc.struct( scope ).canView() : !desc.hasViewExtraction() ) {
+                    return false;
+                }
+            } else if( !((DataBlock) data).canView( scope ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Collects the names of values that can be used in expressions, telling whether each one is an array
+    void collectViewNames( Map<String, Boolean> names ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                DataInfo info = (DataInfo) data;
+                if( !info.anonymous && !info.desc.isStruct() ) {
+                    names.put( info.name, info instanceof DataArrayInfo );
                 }
             } else {
-                ((DataBlock) data).writeStrings( writer );
+                ((DataBlock) data).collectViewNames( names );
             }
         }
     }
 
+    // The position of data whose offset is not constant, or that may be absent, is computed by $layout()
+    private static boolean isViewMemoized( DataInfo info, boolean conditional ) {
+        return conditional || info.bitOffset == DataDesc.UNKNOWN;
+    }
+
+    // Returns the expression of the bit position of the data, relative to the view's base
+    private static String viewPosition( DataInfo info, boolean conditional ) {
+        return isViewMemoized( info, conditional ) ? "$pos_" + info.name : info.bitOffset + "L";
+    }
+
+    private static String viewCount( DataArrayInfo info ) {
+        return info.cardinalityValue != DataDesc.UNKNOWN ? Long.toString( info.cardinalityValue ) : "$n_" + info.name;
+    }
+
+    // Elements of struct arrays are found by walking the previous ones when they have no constant size nor explicit offset
+    private static boolean isViewWalked( DataArrayInfo info, Struct scope ) {
+        return info.desc.isStruct() && info.elementOffsetExpr == null && info.desc.bitSize( scope ) == DataDesc.UNKNOWN;
+    }
+
+    // Declares the fields of the view memoizing positions and counts, and the views of sub-structs
+    public void writeViewFields( IndentPrintWriter writer, Struct scope, boolean conditional ) {
+        for( Object data : datas ) {
+            if( !(data instanceof DataInfo) ) {
+                ((DataBlock) data).writeViewFields( writer, scope, conditional || ((DataBlock) data).isConditional() );
+                continue;
+            }
+            DataInfo info = (DataInfo) data;
+            if( info.shared != null ) {
+                continue;
+            }
+            if( isViewMemoized( info, conditional ) ) {
+                writer.println( "private long $pos_" + info.name + ";" );
+            }
+            if( info instanceof DataArrayInfo && ((DataArrayInfo) info).cardinalityValue == DataDesc.UNKNOWN ) {
+                writer.println( "private int $n_" + info.name + ";" );
+            }
+            if( info.desc.isStruct() ) {
+                writer.println( "private " + info.desc.struct( scope ).viewName() + " $view_" + info.name + ";" );
+                if( info instanceof DataArrayInfo && isViewWalked( (DataArrayInfo) info, scope ) ) {
+                    writer.println( "private int $last_" + info.name + ";" );
+                    writer.println( "private long $lastPos_" + info.name + ";" );
+                }
+            }
+        }
+    }
+
+    public void writeViewResets( IndentPrintWriter writer, Struct scope ) {
+        for( Object data : datas ) {
+            if( data instanceof DataArrayInfo && isViewWalked( (DataArrayInfo) data, scope ) ) {
+                writer.println( "$last_" + ((DataInfo) data).name + " = -1;" );
+            } else if( data instanceof DataBlock ) {
+                ((DataBlock) data).writeViewResets( writer, scope );
+            }
+        }
+    }
+
+    /**
+     * Writes the body of the $layout() method of the view, advancing $p over each data and memoizing the positions and counts that are not
+     * constant. Expressions only refer to previous data, whose position is already known.
+     */
+    public void writeViewLayout( IndentPrintWriter writer, Struct scope, boolean conditional ) {
+        for( Object data : datas ) {
+            writeSourceLine( writer, data );
+            if( !(data instanceof DataInfo) ) {
+                ((DataBlock) data).writeViewLayout( writer, scope, conditional || ((DataBlock) data).isConditional() );
+                continue;
+            }
+            DataInfo info = (DataInfo) data;
+            if( info.offsetExpr != null ) {
+                writer.println( "$p = (long)(" + scope.viewExpression( info.offsetExpr ) + ") * 8;" );
+            }
+            if( isViewMemoized( info, conditional ) ) {
+                writer.println( "$pos_" + info.name + " = $p;" );
+            }
+            long bits = info.desc.bitSize( scope );
+            if( !(info instanceof DataArrayInfo) ) {
+                writer.println( bits != DataDesc.UNKNOWN ? "$p += " + bits + ";" : "$p += $element_" + info.name + "( $p ).byteSize() * 8L;" );
+                continue;
+            }
+            DataArrayInfo arrayInfo = (DataArrayInfo) info;
+            String count = viewCount( arrayInfo );
+            if( arrayInfo.cardinalityValue == DataDesc.UNKNOWN ) {
+                writer.println( count + " = (int)(" + scope.viewExpression( arrayInfo.cardinalityExpr ) + ");" );
+            }
+            if( bits == DataDesc.UNKNOWN ) {
+                writer.println( "for( int $ = 0; $ < " + count + "; $++ ) {" );
+                if( arrayInfo.elementOffsetExpr != null ) {
+                    writer.println( "    $p = (long)(" + scope.viewExpression( arrayInfo.elementOffsetExpr ) + ") * 8;" );
+                }
+                writer.println( "    $p += $element_" + info.name + "( $, $p ).byteSize() * 8L;" );
+                writer.println( "}" );
+            } else if( arrayInfo.elementOffsetExpr != null ) { // Ends after the last element
+                writer.println( "if( " + count + " > 0 ) {" );
+                writer.println( "    int $ = " + count + " - 1;" );
+                writer.println( "    $p = (long)(" + scope.viewExpression( arrayInfo.elementOffsetExpr ) + ") * 8 + " + bits + ";" );
+                writer.println( "}" );
+            } else {
+                writer.println( "$p += (long) " + count + " * " + bits + ";" );
+            }
+        }
+    }
+
+    // Marks the data of this block as absent, before its condition is evaluated
+    void writeViewAbsent( IndentPrintWriter writer ) {
+        for( Object data : datas ) {
+            if( data instanceof DataInfo ) {
+                writer.println( "$pos_" + ((DataInfo) data).name + " = -1;" );
+            } else {
+                ((DataBlock) data).writeViewAbsent( writer );
+            }
+        }
+    }
+
+    // Creates the accessors of the view, decoding values from the buffer, and the helpers re-pointing the views of sub-structs
+    public void writeViewAccessors( IndentPrintWriter writer, Struct scope, boolean conditional ) {
+        for( Object data : datas ) {
+            if( !(data instanceof DataInfo) ) {
+                ((DataBlock) data).writeViewAccessors( writer, scope, conditional || ((DataBlock) data).isConditional() );
+                continue;
+            }
+            DataInfo info = (DataInfo) data;
+            if( info.shared != null ) {
+                continue;
+            }
+            boolean memoized = isViewMemoized( info, conditional );
+            if( info.desc.isStruct() ) {
+                writeViewElement( writer, scope, info );
+            }
+            if( info instanceof DataArrayInfo ) {
+                writeViewArrayAccessors( writer, scope, (DataArrayInfo) info, conditional );
+                continue;
+            }
+            if( info.anonymous ) {
+                continue;
+            }
+            writeViewComment( writer, info, null );
+            writer.print( "public " );
+            if( info.desc.isStruct() ) {
+                writer.print( info.desc.struct( scope ).viewName() );
+            } else {
+                info.desc.declaration( writer );
+            }
+            writer.println( " " + info.name + "() {" );
+            writer.pushIndent( "    " );
+            if( memoized ) {
+                writer.println( "if( !$laidOut ) {" );
+                writer.println( "    $layout();" );
+                writer.println( "}" );
+            }
+            if( conditional ) {
+                writer.println( "if( $pos_" + info.name + " < 0 ) {" );
+                writer.println( "    return " + (info.desc.isStruct() || !isPrimitive( info.desc ) ? "null" : "0") + ";" );
+                writer.println( "}" );
+            }
+            writer.print( "return " );
+            writeViewValue( writer, scope, info, viewPosition( info, conditional ) );
+            writer.println( ";" );
+            writer.popIndent();
+            writer.println( "}" );
+            writer.println();
+        }
+    }
+
+    private void writeViewArrayAccessors( IndentPrintWriter writer, Struct scope, DataArrayInfo info, boolean conditional ) {
+        boolean walked = isViewWalked( info, scope );
+        String position = viewPosition( info, conditional );
+        if( walked ) { // Sequential accesses continue from the last element found
+            writer.println( "private long $seek_" + info.name + "( int $index ) {" );
+            writer.println( "    if( $last_" + info.name + " < 0 || $index < $last_" + info.name + " ) {" );
+            writer.println( "        $last_" + info.name + " = 0;" );
+            writer.println( "        $lastPos_" + info.name + " = " + position + ";" );
+            writer.println( "    }" );
+            writer.println( "    while( $last_" + info.name + " < $index ) {" );
+            writer.println( "        $lastPos_" + info.name + " += $element_" + info.name + "( $last_" + info.name + ", $lastPos_" + info.name + " ).byteSize() * 8L;" );
+            writer.println( "        $last_" + info.name + "++;" );
+            writer.println( "    }" );
+            writer.println( "    return $lastPos_" + info.name + ";" );
+            writer.println( "}" );
+            writer.println();
+        }
+        if( info.anonymous ) {
+            return;
+        }
+        String layout = isViewMemoized( info, conditional ) || info.cardinalityValue == DataDesc.UNKNOWN ? "$layout();" : null;
+        String count = viewCount( info );
+        writeViewComment( writer, info, "Returns the number of elements of " );
+        writer.println( "public int " + info.name + "Count() {" );
+        writer.pushIndent( "    " );
+        if( layout != null ) {
+            writer.println( "if( !$laidOut ) {" );
+            writer.println( "    " + layout );
+            writer.println( "}" );
+        }
+        if( conditional ) {
+            writer.println( "if( $pos_" + info.name + " < 0 ) {" );
+            writer.println( "    return 0;" );
+            writer.println( "}" );
+        }
+        writer.println( "return " + count + ";" );
+        writer.popIndent();
+        writer.println( "}" );
+        writer.println();
+
+        writeViewComment( writer, info, null );
+        writer.print( "public " );
+        if( info.desc.isStruct() ) {
+            writer.print( info.desc.struct( scope ).viewName() );
+        } else {
+            info.desc.declaration( writer );
+        }
+        writer.println( " " + info.name + "( int $ ) {" );
+        writer.pushIndent( "    " );
+        writer.println( "if( $ < 0 || $ >= " + info.name + "Count() ) {" );
+        writer.println( "    throw new IndexOutOfBoundsException( \"Index \" + $ + \" out of bounds for length \" + " + info.name + "Count() );" );
+        writer.println( "}" );
+        String element;
+        if( info.elementOffsetExpr != null ) {
+            element = "(long)(" + scope.viewExpression( info.elementOffsetExpr ) + ") * 8";
+        } else if( walked ) {
+            element = "$seek_" + info.name + "( $ )";
+        } else {
+            element = position + " + (long) $ * " + info.desc.bitSize( scope );
+        }
+        writer.print( "return " );
+        writeViewValue( writer, scope, info, element );
+        writer.println( ";" );
+        writer.popIndent();
+        writer.println( "}" );
+        writer.println();
+    }
+
+    // Writes the decoding of the value at the specified position, or the re-pointing of the view of a sub-struct
+    private static void writeViewValue( IndentPrintWriter writer, Struct scope, DataInfo info, String position ) {
+        if( info.desc.isStruct() ) {
+            writer.print( "$element_" + info.name + "( " + (info instanceof DataArrayInfo ? "$, " : "") + position + " )" );
+        } else {
+            String index = position.endsWith( "L" ) ? "$base + " + Long.parseLong( position.substring( 0, position.length() - 1 ) ) / 8
+                    : "$base + (int) ((" + position + ") >>> 3)";
+            info.desc.viewExtraction( writer, index, "$base * 8L + " + position );
+        }
+    }
+
+    // Creates the helper pointing the view of a sub-struct at a bit position, which is always on a byte boundary
+    private static void writeViewElement( IndentPrintWriter writer, Struct scope, DataInfo info ) {
+        String view = info.desc.struct( scope ).viewName();
+        String field = "$view_" + info.name;
+        writer.println( "private " + view + " $element_" + info.name + "( " + (info instanceof DataArrayInfo ? "int $, " : "") + "long $p ) {" );
+        writer.println( "    if( " + field + " == null ) {" );
+        writer.println( "        " + field + " = new " + view + "();" );
+        writer.println( "    }" );
+        StringBuilder args = new StringBuilder();
+        for( String arg : info.desc.arguments() ) {
+            args.append( ", " ).append( scope.viewExpression( arg ) );
+        }
+        writer.println( "    return " + field + ".wrap( $buffer, $base + (int) ($p >>> 3)" + args + " );" );
+        writer.println( "}" );
+        writer.println();
+    }
+
+    private static void writeViewComment( IndentPrintWriter writer, DataInfo info, String prefix ) {
+        if( info.comment != null || prefix != null ) {
+            writer.println( "/**" );
+            writer.println( " * " + (prefix != null ? prefix + (info.comment != null ? info.comment : info.name) : info.comment) );
+            writer.println( " */" );
+        }
+    }
+
+    // Creates get* accessors returning the unsigned values of [compact] data
+    public void writeUnsignedAccessors( IndentPrintWriter writer ) {
+        for( Object data : datas ) {
+            if( !(data instanceof DataInfo) ) {
+                ((DataBlock) data).writeUnsignedAccessors( writer );
+                continue;
+            }
+            DataInfo info = (DataInfo) data;
+            boolean array = info instanceof DataArrayInfo;
+            String value = info.desc.unsigned( info.name + (array ? "[index]" : "") );
+            if( value == null || info.anonymous || info.shared != null || info instanceof StreamArrayInfo ) {
+                continue;
+            }
+            String suffix = info.name.substring( 0, 1 ).toUpperCase() + info.name.substring( 1 );
+            writer.println( "/**" );
+            writer.println( " * Returns the unsigned value of " + (info.comment != null ? info.comment : info.name) + (array ? " at the specified index." : ".") );
+            writer.println( " */" );
+            writer.println( "public " + info.desc.unsignedDeclaration() + " get" + suffix + "(" + (array ? " int index " : "") + ") {" );
+            writer.println( "    return " + value + ";" );
+            writer.println( "}" );
+            writer.println();
+        }
+    }
+
+    // Creates static *At accessors for arrays of fixed-size structs at a constant offset. Only arrays outside of blocks are present whatever
+    // the data, and only those whose size is constant or a single value at a constant offset can check the index.
+    public void writeAccessors( IndentPrintWriter writer, Struct scope ) throws IOException {
+        for( int i = 0; i < datas.size(); i++ ) {
+            if( !(datas.get( i ) instanceof DataArrayInfo) || datas.get( i ) instanceof StreamArrayInfo ) {
+                continue;
+            }
+            DataArrayInfo arrayInfo = (DataArrayInfo) datas.get( i );
+            Struct element = arrayInfo.desc.struct( scope );
+            if( arrayInfo.anonymous || arrayInfo.bitOffset == DataDesc.UNKNOWN || arrayInfo.bitOffset % 8 != 0 || arrayInfo.elementOffsetExpr != null
+                    || element == null || element.parent != scope || !element.params.isEmpty() || !element.hasSize() ) {
+                continue;
+            }
+            DataInfo count = arrayInfo.cardinalityValue != DataDesc.UNKNOWN ? null : countData( arrayInfo.cardinalityExpr.trim(), i );
+            if( arrayInfo.cardinalityValue == DataDesc.UNKNOWN && count == null ) {
+                continue;
+            }
+            ElementAtTemplate template = new ElementAtTemplate( arrayInfo.cardinalityValue, count );
+            template.setParam( "name", arrayInfo.name );
+            template.setParam( "type", element.name );
+            template.write( "/elementAt.java.template", writer );
+        }
+    }
+
+    // Returns the data before index end named as the size of an array, if it is a whole number of bytes at a constant offset
+    private DataInfo countData( String name, int end ) {
+        for( Object data : datas.subList( 0, end ) ) {
+            if( !(data instanceof DataInfo) || data instanceof DataArrayInfo ) {
+                continue;
+            }
+            DataInfo info = (DataInfo) data;
+            if( !info.anonymous && info.name.equals( name ) ) {
+                StringWriter out = new StringWriter();
+                info.declaration( new PrintWriter( out ) );
+                boolean integer = Arrays.asList( "byte", "short", "int", "long" ).contains( out.toString() );
+                boolean bytes = info.bitOffset != DataDesc.UNKNOWN && info.bitOffset % 8 == 0 && info.bitSize != DataDesc.UNKNOWN && info.bitSize % 8 == 0;
+                return integer && bytes && info.offsetExpr == null ? info : null;
+            }
+        }
+        return null;
+    }
+
     // Creates readArray_* and printArray_* helper functions for all arrays
-    public void writeReadHelpers( IndentPrintWriter writer ) throws IOException {
+    public void writeReadHelpers( IndentPrintWriter writer, Struct scope ) throws IOException {
         for( Object data : datas ) {
-            if( data instanceof DataArrayInfo ) {
+            if( data instanceof StreamBytesInfo ) {
+                new StreamBytesInfo.StreamTemplate( (StreamBytesInfo) data ).write( writer );
+            } else if( data instanceof DataArrayInfo ) {
                 DataArrayInfo arrayInfo = (DataArrayInfo) data;
-                ReadHelperTemplate readHelper = new ReadHelperTemplate( arrayInfo );
+                if( arrayInfo instanceof StreamArrayInfo ) {
+                    new StreamArrayInfo.IteratorTemplate( (StreamArrayInfo) arrayInfo ).write( writer );
+                    continue;
+                }
+                if( arrayInfo instanceof ParallelArrayInfo ) {
+                    new ParallelArrayInfo.ReadHelperTemplate( (ParallelArrayInfo) arrayInfo, scope ).write( writer );
+                    continue;
+                }
+                if( arrayInfo instanceof ColumnarArrayInfo ) {
+                    new ColumnarArrayInfo.ReadHelperTemplate( (ColumnarArrayInfo) arrayInfo ).write( writer );
+                    continue;
+                }
+                if( arrayInfo.isBulk() ) {
+                    continue;
+                }
+                ReadHelperTemplate readHelper = new ReadHelperTemplate( arrayInfo, scope );
                 readHelper.write( writer );
             } else if( data instanceof DataBlock ) {
-                ((DataBlock) data).writeReadHelpers( writer );
+                ((DataBlock) data).writeReadHelpers( writer, scope );
             }
         }
     }
@@ -113,8 +1079,11 @@ public class DataBlock {
         getUniqueTypes( uniqueTypes );
         for( Entry<String, DataDesc> entry : uniqueTypes.entrySet() ) {
             Template template = new Template();
-            template.setParam( "type", entry.getKey() );
             StringWriter out = new StringWriter();
+            entry.getValue().declaration( new PrintWriter( out ) );
+            template.setParam( "type", out.toString() );
+            template.setParam( "suffix", entry.getKey() );
+            out = new StringWriter();
             entry.getValue().repr( new PrintWriter( out ), "$array[$]" );
             template.setParam( "printer", out.toString() );
             template.write( "/printArray.java.template", writer );
@@ -123,34 +1092,82 @@ public class DataBlock {
 
     private void getUniqueTypes(Map<String, DataDesc> uniqueTypes) {
         for( Object data : datas ) {
+            if( data instanceof ColumnarArrayInfo ) {
+                continue; // Printed by the Columns class
+            }
             if( data instanceof DataArrayInfo ) {
                 DataArrayInfo arrayInfo = (DataArrayInfo) data;
-                ReadHelperTemplate readHelper = new ReadHelperTemplate( arrayInfo );
-                uniqueTypes.put( readHelper.declaration, arrayInfo.desc );
+                ReadHelperTemplate readHelper = new ReadHelperTemplate( arrayInfo, null );
+                uniqueTypes.put( readHelper.declaration + (arrayInfo.desc.unsigned( "" ) != null ? "_unsigned" : ""), arrayInfo.desc );
             } else if( data instanceof DataBlock ) {
                 ((DataBlock) data).getUniqueTypes( uniqueTypes );
             }
         }
     }
 
+    /**
+     * Writes the *At accessors of an array, checking the index against the size of the array : a constant, or a value read at its offset.
+     */
+    public static class ElementAtTemplate extends Template {
+        private final long cardinality;
+        private final DataInfo count; // null if the size is constant
+
+        public ElementAtTemplate( long cardinality, DataInfo count ) {
+            this.cardinality = cardinality;
+            this.count = count;
+        }
+
+        protected void writeBufferCount( IndentPrintWriter writer ) {
+            if( count != null ) {
+                writer.println( "$in.skipTo( OFFSET_" + count.name + " );" );
+            }
+            writeCount( writer );
+        }
+
+        protected void writeChannelCount( IndentPrintWriter writer ) {
+            if( count != null ) {
+                writer.println( "BinaryReader $in = ByteBufferBinaryReader.read( $channel, OFFSET_" + count.name + ", " + count.bitSize / 8 + " );" );
+            }
+            writeCount( writer );
+        }
+
+        private void writeCount( IndentPrintWriter writer ) {
+            writer.print( "long $count = " );
+            if( count != null ) {
+                count.extraction( writer );
+            } else {
+                writer.print( cardinality + "L" );
+            }
+            writer.println( ";" );
+        }
+    }
+
     public static class ReadHelperTemplate extends Template {
         private DataArrayInfo arrayInfo;
         private String declaration;
 
-        public ReadHelperTemplate( DataArrayInfo arrayInfo ) {
+        /**
+         * @param scope struct the array is declared in, null if the helper is not written
+         */
+        public ReadHelperTemplate( DataArrayInfo arrayInfo, Struct scope ) {
             this.arrayInfo = arrayInfo;
             StringWriter out = new StringWriter();
             arrayInfo.desc.declaration( new PrintWriter( out ) );
             declaration = out.toString();
             out = new StringWriter();
-            arrayInfo.desc.extraction( new PrintWriter( out ) );
+            if( arrayInfo.desc.isStruct() && !arrayInfo.anonymous && scope != null ) { // Elements of a reused array are parsed into
+                arrayInfo.desc.reuseExtraction( new PrintWriter( out ), scope, "$array[$]" );
+            } else {
+                arrayInfo.desc.extraction( new PrintWriter( out ) );
+            }
             String extraction = out.toString();
 
             setParam( "name", arrayInfo.name );
             setParam( "type", declaration );
-            setParam( "skipTo", arrayInfo.elementOffsetExpr != null ? "$sis.skipTo(" + arrayInfo.elementOffsetExpr + ");" : "" );
+            setParam( "skipTo", arrayInfo.elementOffsetExpr != null ? "$in.skipTo(" + arrayInfo.elementOffsetExpr + ");" : "" );
             setParam( "extractor", extraction );
             setParam( "cardinality", arrayInfo.cardinalityExpr );
+            setParam( "allocation", arrayInfo.allocation( declaration, "$n_" + arrayInfo.name ) );
         }
 
         public void write( IndentPrintWriter writer ) throws IOException {
@@ -2,13 +2,26 @@ package org.bidouille.binparsergen.data;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.bidouille.binparsergen.constraint.Constraint;
+import org.bidouille.binparsergen.interpret.Decoder;
+import org.bidouille.binparsergen.interpret.DecoderContext;
 
 public class DataDesc {
+    /**
+     * Size or offset that is not known until the data is parsed.
+     */
+    public static final long UNKNOWN = -1;
+
     protected String declaration;
     protected String extractor;
+    protected String bulkExtractor; // Reader method filling a whole array, if any
+    protected String viewExtractor; // Decoding from the $buffer of a view, the byte index being the format argument, if supported
+    protected long bitSize = UNKNOWN;
+    protected Decoder decoder; // Reading in interpreter mode, for types that need no context
     public List<Constraint> constraints = new ArrayList<>();
 
     public DataDesc( String declaration, String extraction ) {
@@ -24,7 +37,140 @@ public class DataDesc {
         writer.print( extractor );
     }
 
+    /**
+     * Writes the extraction of this data type into the instance held by the specified variable, if any. Only structs from the definitions
+     * can be parsed into an existing instance, other types are always extracted anew.
+     */
+    public void reuseExtraction( PrintWriter writer, Struct scope, String previous ) {
+        extraction( writer );
+    }
+
+    /**
+     * Returns the decoder reading this data type in interpreter mode.
+     * @param context resolves the expressions and the types of the definitions this data type depends on
+     */
+    public Decoder decoder( DecoderContext context ) {
+        return decoder;
+    }
+
+    public boolean hasBulkExtraction() {
+        return bulkExtractor != null;
+    }
+
+    public void bulkExtraction( PrintWriter writer, String array ) {
+        writer.print( bulkExtractor + "( " + array + " )" );
+    }
+
+    /**
+     * Returns the expression of the unsigned value held by the specified expression, for unsigned types stored in the signed type of the same
+     * width, null for other types.
+     */
+    public String unsigned( String value ) {
+        return null;
+    }
+
+    /**
+     * Returns the type of the value returned by {@link #unsigned(String)}.
+     */
+    public String unsignedDeclaration() {
+        return null;
+    }
+
+    /**
+     * Adds the static constants this data type refers to, such as resolved charsets, keyed by name. They are declared once in the top-level
+     * class, so that they can be used from all its nested classes.
+     * @param constants declarations of the constants, keyed by name
+     */
+    public void collectConstants( Map<String, String> constants ) {
+    }
+
+    /**
+     * Tells whether the size of this data type is known before reading it, as required by resumable parsers. Structs are checked separately.
+     */
+    public boolean canResume() {
+        return true;
+    }
+
+    public boolean hasViewExtraction() {
+        return viewExtractor != null;
+    }
+
+    /**
+     * Writes the decoding of this data type from the buffer of a view.
+     * @param index expression of the index of the first byte of the data in the buffer
+     * @param bitPosition expression of the position of the first bit of the data in the buffer, as a long
+     */
+    public void viewExtraction( PrintWriter writer, String index, String bitPosition ) {
+        writer.print( String.format( viewExtractor, index ) );
+    }
+
+    /**
+     * Returns the expressions of the arguments passed to this struct type.
+     */
+    public List<String> arguments() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Tells whether this is a user type, that is a struct, whether it is from the definitions or not.
+     */
+    public boolean isStruct() {
+        return false;
+    }
+
+    /**
+     * Tells whether the value read is mapped to a constant of an enum from the definitions.
+     */
+    public boolean isEnum() {
+        return false;
+    }
+
+    /**
+     * Writes the extraction of this data type for a visitor parse. Structs are not instantiated but visited with the specified visitor.
+     */
+    public void visitExtraction( PrintWriter writer, Struct scope, String visitor ) {
+        extraction( writer );
+    }
+
+    /**
+     * Writes the creation of an instance of this struct type, to be filled by the resumable parser of the struct.
+     */
+    public void creation( PrintWriter writer, Struct scope ) {
+        throw new UnsupportedOperationException( declaration + " is not a struct" );
+    }
+
+    /**
+     * Returns the struct this data type refers to, or null if it is not a struct from the definitions.
+     * @param scope struct the data is declared in
+     */
+    public Struct struct( Struct scope ) {
+        return null;
+    }
+
+    /**
+     * Returns the number of bits this data type always occupies, or {@link #UNKNOWN}.
+     * @param scope struct the data is declared in, to resolve user types
+     */
+    public long bitSize( Struct scope ) {
+        return bitSize;
+    }
+
+    /**
+     * Returns the expression of the number of bits this data type occupies, evaluated just before reading it. Only differs from
+     * {@link #bitSize(Struct)} for types whose size depends on parsed data.
+     */
+    public String bitSizeExpression( Struct scope ) {
+        return Long.toString( bitSize( scope ) );
+    }
+
+    /**
+     * Tells whether reading this data type checks constraints, and so cannot be skipped even when its value is not stored.
+     */
+    public boolean hasChecks( Struct scope ) {
+        return !constraints.isEmpty();
+    }
+
     public void repr( PrintWriter writer, String name ) {
-        writer.print( "$sb.append(" + name + ");" );
+        writer.print( "$sb.append(" + (unsigned( name ) != null ? unsigned( name ) : name) + ");" );
     }
 }
\ No newline at end of file
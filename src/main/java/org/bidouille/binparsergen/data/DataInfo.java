@@ -11,12 +11,22 @@ public class DataInfo {
     public String name;
     public String comment;
     public String offsetExpr;
+    public long offsetValue = DataDesc.UNKNOWN; // Value of offsetExpr, if constant
+    public long bitOffset = DataDesc.UNKNOWN; // Set by the layout pass
+    public long bitSize = DataDesc.UNKNOWN; // Set by the layout pass
+    public boolean skip; // Set by the layout pass, for anonymous data that can be skipped over instead of read
+    public DataInfo shared; // Data of a previous case of the same switch whose field this data uses, if any
+    public int line; // Line of the declaration in the definition, or 0
     private DataMapping mapping = DataMapping.IDENTITY;
 
     public DataInfo( DataDesc desc ) {
         this.desc = desc;
     }
 
+    protected long bitSize( Struct scope ) {
+        return desc.bitSize( scope );
+    }
+
     protected void declaration( PrintWriter writer ) {
         mapping.declaration( writer, desc );
     }
@@ -29,9 +39,32 @@ public class DataInfo {
         desc.repr( writer, name );
     }
 
+    /**
+     * Tells whether this data is read by the caller once parsing has returned, the data following it being parsed afterwards.
+     */
+    public boolean isStreamed() {
+        return false;
+    }
+
+    /**
+     * Tells whether parsing again into an instance reuses the object held by the field of this data, so that the field keeps it when the
+     * data is absent.
+     */
+    public boolean isReusable() {
+        return !anonymous && desc.isStruct();
+    }
+
+    /**
+     * Name of the method parsing the data following streamed data.
+     */
+    public String continuation() {
+        return "parse_after_" + name;
+    }
+
     protected void constraints( PrintWriter writer, String name ) {
+        String unsigned = desc.unsigned( name );
         for( Constraint constraint : desc.constraints ) {
-            constraint.writeCheck( writer, name );
+            constraint.writeCheck( writer, name, unsigned != null ? unsigned : name );
         }
     }
 
@@ -10,24 +10,86 @@ public class IfBlock extends DataBlock {
         this.condition = condition;
     }
 
+    public String getCondition() {
+        return condition;
+    }
+
+    @Override
+    public boolean isConditional() {
+        return true;
+    }
+
+    @Override
+    public long layout( Struct scope, long position ) {
+        long end = super.layout( scope, position );
+        return end == position ? position : DataDesc.UNKNOWN; // Only known if the content is empty
+    }
+
+    @Override
+    public void writeExtracts( IndentPrintWriter writer, Struct scope ) {
+        writer.print( "if(" );
+        writer.print( condition );
+        writer.println( ") {" );
+        writer.pushIndent( "    " );
+        scope.writeBlockExtracts( writer, this );
+        writer.popIndent();
+        if( hasDefaults() ) {
+            writer.println( "} else {" );
+            writer.pushIndent( "    " );
+            writeDefaults( writer );
+            writer.popIndent();
+        }
+        writer.println( "}" );
+    }
+
     @Override
-    public void writeExtracts( IndentPrintWriter writer ) {
+    public void writeVisits( IndentPrintWriter writer, Struct scope ) {
         writer.print( "if(" );
         writer.print( condition );
         writer.println( ") {" );
         writer.pushIndent( "    " );
-        super.writeExtracts( writer );
+        writer.println( "$visitor.enterIf( \"" + escapeQuotes( condition ) + "\" );" );
+        super.writeVisits( writer, scope );
+        writer.println( "$visitor.exitIf( \"" + escapeQuotes( condition ) + "\" );" );
+        writer.popIndent();
+        writer.println( "}" );
+    }
+
+    @Override
+    public int resumeStates() {
+        return 1 + super.resumeStates();
+    }
+
+    @Override
+    public int writeResumeStates( IndentPrintWriter writer, Struct scope, int state ) {
+        writer.println( "case " + state + ":" );
+        writer.pushIndent( "    " );
+        writer.println( "if( !(" + condition + ") ) {" );
+        writer.println( "    $state = " + (state + resumeStates()) + ";" );
+        writer.println( "    continue;" );
+        writer.println( "}" );
+        writer.println( "$state = " + (state + 1) + ";" );
+        writer.popIndent();
+        return super.writeResumeStates( writer, scope, state + 1 );
+    }
+
+    @Override
+    public void writeViewLayout( IndentPrintWriter writer, Struct scope, boolean conditional ) {
+        writeViewAbsent( writer );
+        writer.println( "if(" + scope.viewExpression( condition ) + ") {" );
+        writer.pushIndent( "    " );
+        super.writeViewLayout( writer, scope, true );
         writer.popIndent();
         writer.println( "}" );
     }
 
     @Override
-    public void writeStrings( IndentPrintWriter writer ) {
+    public void writeStrings( IndentPrintWriter writer, Struct scope ) {
         writer.print( "if(" );
         writer.print( condition );
         writer.println( ") {" );
         writer.pushIndent( "    " );
-        super.writeStrings( writer );
+        scope.writeBlockStrings( writer, this );
         writer.popIndent();
         writer.println( "}" );
     }
@@ -0,0 +1,162 @@
+package org.bidouille.binparsergen.data;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.bidouille.binparsergen.template.IndentPrintWriter;
+
+/**
+ * Groups the code generated for consecutive data into methods whose estimated bytecode size stays within a budget. The code of one data is
+ * never split, so that the locals it declares, such as anonymous values whose constraints are checked, stay in the same method. Blocks
+ * are split separately, their bodies being grouped into methods of their own.
+ */
+final class MethodSplitter {
+    // Tokens of generated code : string and char literals, numbers, names, and operators, longest first
+    private static final Pattern TOKEN = Pattern.compile(
+            "\"(?:[^\"\\\\]|\\\\.)*\"|'(?:[^'\\\\]|\\\\.)*'|[0-9][0-9a-fA-FxXlL_]*|[\\p{L}_$][\\p{L}\\p{N}_$]*|>>>=?|<<=?|>>=?|[=!<>+\\-*/&|^%]=|&&|\\|\\||\\+\\+|--|\\S" );
+
+    // Keywords and types that compile to no instruction of their own
+    private static final Set<String> SILENT = new HashSet<>( Arrays.asList( "byte", "short", "int", "long", "boolean", "char", "float", "double",
+            "void", "final", "else", "default", "true", "false", "null", "this", "try", "finally" ) );
+
+    // Keywords compiling to a branch
+    private static final Set<String> BRANCHES = new HashSet<>( Arrays.asList( "if", "break", "continue", "for", "while", "do" ) );
+
+    private static final Set<String> COMPARISONS = new HashSet<>( Arrays.asList( "==", "!=", "<", "<=", ">", ">=", "&&", "||", "!" ) );
+
+    private MethodSplitter() {
+    }
+
+    /**
+     * Estimates the bytecode size of generated code.
+     */
+    static int estimate( List<String> codes ) {
+        long size = 0;
+        for( String code : codes ) {
+            size += estimate( code );
+        }
+        return (int) Math.min( Integer.MAX_VALUE, size );
+    }
+
+    // Sums the usual size of the instructions each token compiles to : loads of names and constants, invocations, operators, branches and
+    // case entries.
+    private static int estimate( String code ) {
+        int size = 0;
+        for( String line : code.split( "\\R" ) ) {
+            if( line.trim().startsWith( DataBlock.SOURCE_LINE ) ) {
+                continue;
+            }
+            Matcher token = TOKEN.matcher( line );
+            while( token.find() ) {
+                size += cost( token.group() );
+            }
+        }
+        return size;
+    }
+
+    private static int cost( String token ) {
+        char c = token.charAt( 0 );
+        if( c == '"' || Character.isDigit( c ) ) {
+            return 3; // ldc_w, sipush or ldc2_w
+        }
+        if( c == '\'' ) {
+            return 2; // bipush
+        }
+        if( Character.isLetter( c ) || c == '_' || c == '$' ) {
+            if( SILENT.contains( token ) ) {
+                return 0;
+            }
+            if( BRANCHES.contains( token ) ) {
+                return 3; // Conditional or unconditional jump
+            }
+            switch( token ) {
+                case "case":
+                    return 8; // Entry of a lookupswitch
+                case "switch":
+                    return 16; // Opcode, padding and header of the table
+                case "new":
+                    return 4; // new and dup, the constructor being counted as a call
+                case "return":
+                case "throw":
+                    return 1;
+                default:
+                    return 2; // Locals load in 1 byte, fields in 4, and a receiver and its method share a 3-byte invocation
+            }
+        }
+        switch( token ) {
+            case "(":
+            case ")":
+            case "{":
+            case "}":
+            case ";":
+            case ",":
+            case ".":
+            case "]":
+                return 0;
+            case "?":
+            case ":":
+                return 3; // Branches of a conditional expression
+            default:
+                return COMPARISONS.contains( token ) ? 3 : 1; // Comparisons compile to branches, other operators to one instruction
+        }
+    }
+
+    /**
+     * Splits the code of consecutive data into groups whose estimated size is within the budget. Code larger than the budget on its own
+     * makes a group of its own.
+     */
+    static List<List<String>> split( List<String> codes, int budget ) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        int size = 0;
+        for( String code : codes ) {
+            int codeSize = estimate( code );
+            if( !group.isEmpty() && size + codeSize > budget ) {
+                groups.add( group );
+                group = new ArrayList<>();
+                size = 0;
+            }
+            group.add( code );
+            size += codeSize;
+        }
+        if( !group.isEmpty() ) {
+            groups.add( group );
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the code written by a writing method, without indentation.
+     */
+    static String render( Consumer<IndentPrintWriter> writing ) {
+        StringWriter out = new StringWriter();
+        IndentPrintWriter writer = new IndentPrintWriter( out );
+        writing.accept( writer );
+        writer.flush();
+        return out.toString();
+    }
+
+    /**
+     * Writes rendered code at the current indentation of the writer.
+     */
+    static void print( IndentPrintWriter writer, String code ) {
+        if( code.isEmpty() ) {
+            return;
+        }
+        for( String line : code.split( "\\R" ) ) {
+            if( line.isEmpty() ) {
+                writer.println();
+            } else {
+                writer.println( line );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.bidouille.binparsergen.data;
+
+import java.io.IOException;
+
+import org.bidouille.binparsergen.template.IndentPrintWriter;
+import org.bidouille.binparsergen.template.Template;
+
+/**
+ * Array declared with the <code>[parallel]</code> option. Its elements are fixed-size structs, decoded in parallel from a slice of the data.
+ */
+public class ParallelArrayInfo extends DataArrayInfo {
+
+    public ParallelArrayInfo( DataDesc desc, String cardinalityExpr ) {
+        super( desc, cardinalityExpr );
+    }
+
+    @Override
+    public boolean isBulk() {
+        return false;
+    }
+
+    @Override
+    public boolean isReusable() {
+        return false; // Allocated again by each parse
+    }
+
+    /**
+     * Checks that elements can be decoded independently of each other.
+     * @return an error message, or null if the array is valid
+     */
+    public String validate( Struct scope ) {
+        Struct element = desc.struct( scope );
+        if( element == null || !element.hasSize() || !element.params.isEmpty() ) {
+            return "The [parallel] option only applies to arrays of fixed-size structs without parameters : " + name;
+        }
+        return null;
+    }
+
+    public static class ReadHelperTemplate extends Template {
+
+        public ReadHelperTemplate( ParallelArrayInfo arrayInfo, Struct scope ) {
+            setParam( "name", arrayInfo.name );
+            setParam( "type", arrayInfo.desc.struct( scope ).className() );
+            setParam( "cardinality", arrayInfo.cardinalityExpr );
+        }
+
+        public void write( IndentPrintWriter writer ) throws IOException {
+            write( "/parallelArray.java.template", writer );
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.bidouille.binparsergen.data;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.bidouille.binparsergen.template.IndentPrintWriter;
+import org.bidouille.binparsergen.template.Template;
+
+/**
+ * Array declared with the <code>[stream]</code> option. Its elements are decoded by an iterator as they are requested, and the data following
+ * it is parsed once the last element has been read. Only allowed at the top level of a top-level struct.
+ */
+public class StreamArrayInfo extends DataArrayInfo {
+
+    public StreamArrayInfo( DataDesc desc, String cardinalityExpr ) {
+        super( desc, cardinalityExpr );
+    }
+
+    @Override
+    public boolean isBulk() {
+        return false;
+    }
+
+    @Override
+    protected void declaration( PrintWriter writer ) {
+        writer.print( "ElementIterator<" + boxedType() + ">" );
+    }
+
+    @Override
+    protected void extraction( PrintWriter writer ) {
+        writer.print( "new Stream_" + name + "( $in, (long)(" + cardinalityExpr + ") )" );
+    }
+
+    @Override
+    protected void string( PrintWriter writer ) {
+        writer.print( "$sb.append(\"(\").append(" + name + ".size()).append(\") [streamed]\");" );
+    }
+
+    @Override
+    public boolean isStreamed() {
+        return true;
+    }
+
+    private String boxedType() {
+        StringWriter out = new StringWriter();
+        desc.declaration( new PrintWriter( out ) );
+        switch( out.toString() ) {
+        case "byte":
+            return "Byte";
+        case "short":
+            return "Short";
+        case "int":
+            return "Integer";
+        case "long":
+            return "Long";
+        default:
+            return out.toString();
+        }
+    }
+
+    public static class IteratorTemplate extends Template {
+        private StreamArrayInfo arrayInfo;
+
+        public IteratorTemplate( StreamArrayInfo arrayInfo ) {
+            this.arrayInfo = arrayInfo;
+            StringWriter out = new StringWriter();
+            arrayInfo.desc.declaration( new PrintWriter( out ) );
+            setParam( "type", out.toString() );
+            out = new StringWriter();
+            arrayInfo.desc.extraction( new PrintWriter( out ) );
+            setParam( "extractor", out.toString() );
+            setParam( "name", arrayInfo.name );
+            setParam( "boxed", arrayInfo.boxedType() );
+            setParam( "skipTo", arrayInfo.elementOffsetExpr != null ? "$in.skipTo(" + arrayInfo.elementOffsetExpr + ");" : "" );
+            setParam( "continuation", arrayInfo.continuation() );
+        }
+
+        public void write( IndentPrintWriter writer ) throws IOException {
+            write( "/streamArray.java.template", writer );
+        }
+
+        public void writeConstraints( IndentPrintWriter writer ) {
+            arrayInfo.constraints( writer, "$element" );
+        }
+    }
+
+}
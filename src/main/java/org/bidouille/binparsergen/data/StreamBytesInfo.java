@@ -0,0 +1,53 @@
+package org.bidouille.binparsergen.data;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.bidouille.binparsergen.template.IndentPrintWriter;
+import org.bidouille.binparsergen.template.Template;
+
+/**
+ * <code>bytes(n)</code> data declared with the <code>[stream]</code> option. Its bytes are read by the caller through a bounded input stream,
+ * and the data following it is parsed once the stream has been drained or closed. Only allowed at the top level of a top-level struct.
+ */
+public class StreamBytesInfo extends DataInfo {
+    private final String lengthExpr;
+
+    public StreamBytesInfo( DataDesc desc, String lengthExpr ) {
+        super( desc );
+        this.lengthExpr = lengthExpr;
+    }
+
+    @Override
+    public boolean isStreamed() {
+        return true;
+    }
+
+    @Override
+    protected void declaration( PrintWriter writer ) {
+        writer.print( "BoundedInputStream" );
+    }
+
+    @Override
+    protected void extraction( PrintWriter writer ) {
+        writer.print( "new Stream_" + name + "( $in, (long)(" + lengthExpr + ") )" );
+    }
+
+    @Override
+    protected void string( PrintWriter writer ) {
+        writer.print( "$sb.append(\"(\").append(" + name + ".length()).append(\" bytes) [streamed]\");" );
+    }
+
+    public static class StreamTemplate extends Template {
+
+        public StreamTemplate( StreamBytesInfo info ) {
+            setParam( "name", info.name );
+            setParam( "continuation", info.continuation() );
+        }
+
+        public void write( IndentPrintWriter writer ) throws IOException {
+            write( "/streamBytes.java.template", writer );
+        }
+    }
+
+}
@@ -2,19 +2,39 @@ package org.bidouille.binparsergen.data;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import org.bidouille.binparsergen.ConstraintViolationException;
+import org.bidouille.binparsergen.EnumGen;
+import org.bidouille.binparsergen.GeneratorOptions;
 import org.bidouille.binparsergen.template.IndentPrintWriter;
 import org.bidouille.binparsergen.template.Template;
-import org.bidouille.binparsergen.util.EndianDataInputStream;
-import org.bidouille.binparsergen.util.SkipInputStream;
+import org.bidouille.binparsergen.util.BinaryReader;
+import org.bidouille.binparsergen.util.BoundedInputStream;
+import org.bidouille.binparsergen.util.ByteBufferBinaryReader;
+import org.bidouille.binparsergen.util.ChunkedBinaryReader;
+import org.bidouille.binparsergen.util.ElementIterator;
+import org.bidouille.binparsergen.util.ParallelDecoder;
+import org.bidouille.binparsergen.util.ParseStatus;
+import org.bidouille.binparsergen.util.RecordSpliterator;
+import org.bidouille.binparsergen.util.StreamBinaryReader;
+import org.bidouille.binparsergen.util.StringCache;
+import org.bidouille.binparsergen.util.ViewDecoder;
 
 public class Struct extends Template {
     public Struct parent;
@@ -22,7 +42,22 @@ public class Struct extends Template {
     public final DataBlock datas;
     public ArrayDeque<Struct> structs = new ArrayDeque<>();
     public Map<String, String> aliases = new HashMap<>();
+    public Map<String, EnumGen> enums = new LinkedHashMap<>();
     public List<String> params = new ArrayList<>();
+    public Set<String> referencedNames = new HashSet<>(); // Names used in expressions
+    public boolean memberAccess; // Whether expressions access members of sub-structs
+    public List<DataInfo> columns; // Fields of the Columns class, if used by a [columnar] array
+    private Boolean visitable;
+    private Boolean resumable;
+    private Boolean viewable;
+    private Map<String, Boolean> viewNames; // Names usable in expressions, telling whether each one is an array
+    private List<Struct> definitions; // Top-level structs, to resolve user types
+    private long bitSize = DataDesc.UNKNOWN;
+    private boolean checks;
+    private int layoutState; // 0 : not computed, 1 : in progress, 2 : done
+    private GeneratorOptions options = new GeneratorOptions();
+    private List<String> chunks = new ArrayList<>(); // Methods holding the parts of split methods, written by writeChunks
+    private List<List<String>> visitChunks; // Code of the $visit_* methods, if the visitor is split
 
     public Struct( Struct parent, String name ) {
         this.parent = parent;
@@ -30,13 +65,206 @@ public class Struct extends Template {
         datas = new DataBlock( null );
     }
 
+    /**
+     * Computes the layout of this struct and all its sub-structs.
+     * @param definitions all top-level structs, that may be used as data types
+     */
+    public void computeLayout( List<Struct> definitions ) {
+        this.definitions = definitions;
+        for( Struct subStruct : structs ) {
+            subStruct.computeLayout( definitions );
+        }
+        layout();
+    }
+
+    /**
+     * Checks the options of the data in this struct and all its sub-structs, once the layout is computed.
+     */
+    public void validate( List<String> errors ) {
+        for( Struct subStruct : structs ) {
+            subStruct.validate( errors );
+        }
+        datas.validate( this, errors );
+    }
+
+    private void layout() {
+        if( layoutState != 0 ) {
+            return; // A struct containing itself has no fixed size
+        }
+        layoutState = 1;
+        bitSize = datas.layout( this, 0 );
+        checks = datas.hasChecks( this );
+        layoutState = 2;
+    }
+
+    /**
+     * Returns the number of bits this struct always occupies, or {@link DataDesc#UNKNOWN}.
+     */
+    public long bitSize() {
+        layout();
+        return bitSize;
+    }
+
+    /**
+     * Tells whether this struct has a SIZE constant, that is a fixed size in bytes.
+     */
+    public boolean hasSize() {
+        long bits = bitSize();
+        return bits != DataDesc.UNKNOWN && bits % 8 == 0;
+    }
+
+    /**
+     * Tells whether parsing this struct checks any constraint.
+     */
+    public boolean hasChecks() {
+        layout();
+        return checks;
+    }
+
+    /**
+     * Finds the struct a data type name refers to, as seen from this struct.
+     * @return the struct, or null for types defined outside of the definitions
+     */
+    public Struct resolve( String typeName ) {
+        for( Struct scope = this; scope != null; scope = scope.parent ) {
+            for( Struct subStruct : scope.structs ) {
+                if( subStruct.name.equals( typeName ) ) {
+                    return subStruct;
+                }
+            }
+            if( scope.parent == null && scope.definitions != null ) {
+                for( Struct struct : scope.definitions ) {
+                    if( struct.name.equals( typeName ) ) {
+                        return struct;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the enum a data type name refers to, declared in this struct or an enclosing one.
+     * @return the enum, or null if there is none with this name
+     */
+    public EnumGen resolveEnum( String typeName ) {
+        for( Struct scope = this; scope != null; scope = scope.parent ) {
+            EnumGen enumGen = scope.enums.get( typeName );
+            if( enumGen != null ) {
+                return enumGen;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the generated class, qualified by the names of enclosing classes.
+     */
+    public String className() {
+        return parent == null ? name : parent.className() + "." + name;
+    }
+
+    public String visitorName() {
+        return className() + "." + name + "Visitor";
+    }
+
+    /**
+     * Tells whether a visitor can be generated for this struct. Sub-structs are not instantiated when visiting, so expressions cannot
+     * access their members.
+     */
+    public boolean canVisit() {
+        if( visitable == null ) {
+            visitable = true; // For recursive definitions
+            visitable = !memberAccess && datas.canVisit( this );
+        }
+        return visitable;
+    }
+
+    /**
+     * Tells whether a resumable parser can be generated for this struct. Streamed arrays read from the reader when iterated over, after
+     * parsing returned, so they are not supported.
+     */
+    public boolean canResume() {
+        if( resumable == null ) {
+            resumable = true; // For recursive definitions
+            resumable = datas.canResume( this );
+        }
+        return resumable;
+    }
+
+    public String viewName() {
+        return className() + "." + name + "View";
+    }
+
+    /**
+     * Tells whether a view can be generated for this struct. Sub-structs are not decoded by views, so expressions cannot access their
+     * members.
+     */
+    public boolean canView() {
+        if( viewable == null ) {
+            viewable = true; // For recursive definitions
+            viewable = !memberAccess && datas.canView( this );
+        }
+        return viewable;
+    }
+
+    /**
+     * Rewrites an expression to be evaluated in the view of this struct : values are read with their accessors, and array elements with
+     * the indexed accessors.
+     */
+    public String viewExpression( String expr ) {
+        if( viewNames == null ) {
+            viewNames = new HashMap<>();
+            datas.collectViewNames( viewNames );
+        }
+        StringBuilder sb = new StringBuilder();
+        ArrayDeque<Boolean> brackets = new ArrayDeque<>(); // Whether each open bracket became a parenthesis
+        int i = 0;
+        while( i < expr.length() ) {
+            char c = expr.charAt( i );
+            if( c == '"' ) { // Copy string literals as is
+                int end = expr.indexOf( '"', i + 1 ) + 1;
+                end = end == 0 ? expr.length() : end;
+                sb.append( expr, i, end );
+                i = end;
+            } else if( Character.isLetterOrDigit( c ) || c == '_' ) {
+                int start = i;
+                while( i < expr.length() && (Character.isLetterOrDigit( expr.charAt( i ) ) || expr.charAt( i ) == '_') ) {
+                    i++;
+                }
+                String token = expr.substring( start, i );
+                Boolean array = Character.isDigit( c ) || start > 0 && expr.charAt( start - 1 ) == '.' ? null : viewNames.get( token );
+                sb.append( token );
+                if( array == null ) {
+                    continue;
+                }
+                if( array && i < expr.length() && expr.charAt( i ) == '[' ) {
+                    sb.append( '(' );
+                    brackets.push( true );
+                    i++;
+                } else {
+                    sb.append( "()" );
+                }
+            } else {
+                if( c == '[' ) {
+                    brackets.push( false );
+                } else if( c == ']' && !brackets.isEmpty() && brackets.pop() ) {
+                    c = ')';
+                }
+                sb.append( c );
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
     @Override
     public String toString() {
         return name;
     }
 
     public void writeImports( IndentPrintWriter writer ) {
-        for( Class<?> clazz : Arrays.asList( EndianDataInputStream.class, SkipInputStream.class, InputStream.class, IOException.class, ConstraintViolationException.class, StringBuilder.class ) ) {
+        for( Class<?> clazz : Arrays.asList( BinaryReader.class, StreamBinaryReader.class, ByteBufferBinaryReader.class, InputStream.class, ByteBuffer.class, Charset.class, FileChannel.class, Path.class, IOException.class, ConstraintViolationException.class, ElementIterator.class, BoundedInputStream.class, ChunkedBinaryReader.class, ParseStatus.class, ParallelDecoder.class, RecordSpliterator.class, StringCache.class, Spliterator.class, ViewDecoder.class, StringBuilder.class ) ) {
             writer.println( "import " + clazz.getCanonicalName() + ";" );
         }
         for( Struct subStruct : structs ) {
@@ -44,6 +272,246 @@ public class Struct extends Template {
         }
     }
 
+    public void writeLayout( IndentPrintWriter writer ) {
+        if( hasSize() ) {
+            writer.println( DataBlock.constant( "SIZE", bitSize / 8 ) );
+        }
+        datas.writeOffsets( writer );
+    }
+
+    // Declares the constants the data types of this struct and all its sub-structs refer to, once in the top-level class
+    public void writeConstants( IndentPrintWriter writer ) {
+        Map<String, String> constants = new TreeMap<>();
+        collectConstants( constants );
+        for( String constant : constants.values() ) {
+            writer.println( constant );
+        }
+    }
+
+    private void collectConstants( Map<String, String> constants ) {
+        datas.collectConstants( constants );
+        for( Struct subStruct : structs ) {
+            subStruct.collectConstants( constants );
+        }
+    }
+
+    public void writeAccessors( IndentPrintWriter writer ) throws IOException {
+        if( options.hasElementAccessors() ) {
+            datas.writeAccessors( writer, this );
+        }
+    }
+
+    public void writeUnsignedAccessors( IndentPrintWriter writer ) {
+        datas.writeUnsignedAccessors( writer );
+    }
+
+    public void writeVisitor( IndentPrintWriter writer ) throws IOException {
+        if( !options.hasVisitors() || !canVisit() ) {
+            return;
+        }
+        List<String> codes = datas.writeEach( 0, datas.size(), ( w, data ) -> datas.writeVisit( w, this, data ) );
+        visitChunks = MethodSplitter.estimate( codes ) > options.getMethodBudget() ? MethodSplitter.split( codes, options.getMethodBudget() ) : null;
+        super.write( "/Visitor.java.template", writer );
+        if( visitChunks != null ) {
+            writeVisitChunks( writer );
+        }
+        if( parent == null ) {
+            writer.println();
+            writer.println( "public static void parse( InputStream $is, " + name + "Visitor $visitor ) throws IOException {" );
+            writer.println( "    visit( new StreamBinaryReader( $is ), $visitor );" );
+            writer.println( "}" );
+        }
+    }
+
+    public void writeVisitorCallbacks( IndentPrintWriter writer ) {
+        datas.writeVisitorCallbacks( writer, this );
+    }
+
+    public void writeVisitorLocals( IndentPrintWriter writer ) {
+        if( visitChunks == null ) {
+            datas.writeVisitorLocals( writer, this );
+        }
+    }
+
+    public void writeVisits( IndentPrintWriter writer ) {
+        if( visitChunks == null ) {
+            datas.writeVisits( writer, this );
+            return;
+        }
+        writer.println( "$Visit $v = new $Visit( $visitor" + params.stream().map( p -> ", " + p ).collect( Collectors.joining() ) + " );" );
+        for( int i = 0; i < visitChunks.size(); i++ ) {
+            writer.println( "$v.$visit_" + i + "( $in );" );
+        }
+    }
+
+    // Creates the $Visit class of a split visitor. The values used in expressions are its fields, so that all its $visit_* methods see
+    // them, and it is only allocated by visitors too large to be JIT-compiled otherwise.
+    private void writeVisitChunks( IndentPrintWriter writer ) {
+        writer.println();
+        writer.println( "private static final class $Visit {" );
+        writer.pushIndent( "    " );
+        writer.println( "private final " + name + "Visitor $visitor;" );
+        for( String param : params ) {
+            writer.println( "private final int " + param + ";" );
+        }
+        datas.writeVisitorLocals( writer, this );
+        writer.println();
+        writer.println( "private $Visit( " + name + "Visitor $visitor" + params.stream().map( p -> ", int " + p ).collect( Collectors.joining() ) + " ) {" );
+        writer.println( "    this.$visitor = $visitor;" );
+        for( String param : params ) {
+            writer.println( "    this." + param + " = " + param + ";" );
+        }
+        writer.println( "}" );
+        for( int i = 0; i < visitChunks.size(); i++ ) {
+            writer.println();
+            writer.println( "private void $visit_" + i + "( BinaryReader $in ) throws IOException {" );
+            writer.pushIndent( "    " );
+            for( String code : visitChunks.get( i ) ) {
+                MethodSplitter.print( writer, code );
+            }
+            writer.popIndent();
+            writer.println( "}" );
+        }
+        writer.popIndent();
+        writer.println( "}" );
+    }
+
+    // Creates the $resume state machine, with feed() for top-level structs and a constructor saving parameters for sub-structs
+    public void writeResume( IndentPrintWriter writer ) throws IOException {
+        if( !options.isResumable() || !canResume() ) {
+            return;
+        }
+        writer.println( "private int $state;" );
+        datas.writeResumeFields( writer );
+        writer.println();
+        if( parent == null ) {
+            super.write( "/feed.java.template", writer );
+        } else {
+            writer.println( "private " + name + "(" + params.stream().map( p -> " int " + p ).collect( Collectors.joining( "," ) ) + (params.isEmpty() ? ") {" : " ) {") );
+            writer.pushIndent( "    " );
+            writeSaveParams( writer );
+            writer.popIndent();
+            writer.println( "}" );
+        }
+        writer.println();
+        List<Integer> starts = new ArrayList<>();
+        int[] state = { 1 };
+        List<String> codes = datas.writeEach( 0, datas.size(), ( w, data ) -> {
+            starts.add( state[0] );
+            state[0] = datas.writeResumeState( w, this, data, state[0] );
+        } );
+        if( MethodSplitter.estimate( codes ) > options.getMethodBudget() ) {
+            writeSplitResume( writer, codes, starts, state[0] );
+            return;
+        }
+        writer.println( resumeModifier() + "boolean $resume( ChunkedBinaryReader $in ) throws IOException {" );
+        writer.println( "    for( ;; ) {" );
+        writer.println( "        switch( $state ) {" );
+        writer.pushIndent( "        " );
+        writer.println( "case 0:" );
+        writer.println( "    $in.pushOffset();" );
+        writer.println( "    $state = 1;" );
+        codes.forEach( code -> MethodSplitter.print( writer, code ) );
+        writer.println( "case " + state[0] + ":" );
+        writer.println( "    $in.popOffset();" );
+        writer.println( "    $state = -1;" );
+        writer.println( "    return true;" );
+        writer.println( "default:" );
+        writer.println( "    throw new IllegalStateException( \"Parsing already complete\" );" );
+        writer.popIndent();
+        writer.println( "        }" );
+        writer.println( "    }" );
+        writer.println( "}" );
+    }
+
+    // Top-level structs can be used by other structs of the definition, in other classes
+    private String resumeModifier() {
+        return parent == null ? "" : "private ";
+    }
+
+    // States only move forward, so $resume calls the $resume_* method running each group of states in turn until its states are done
+    private void writeSplitResume( IndentPrintWriter writer, List<String> codes, List<Integer> starts, int end ) {
+        List<List<String>> groups = MethodSplitter.split( codes, options.getMethodBudget() );
+        writer.println( resumeModifier() + "boolean $resume( ChunkedBinaryReader $in ) throws IOException {" );
+        writer.println( "    if( $state == -1 ) {" );
+        writer.println( "        throw new IllegalStateException( \"Parsing already complete\" );" );
+        writer.println( "    }" );
+        writer.println( "    if( $state == 0 ) {" );
+        writer.println( "        $in.pushOffset();" );
+        writer.println( "        $state = 1;" );
+        writer.println( "    }" );
+        int first = 0;
+        for( int i = 0; i < groups.size(); i++ ) {
+            first += groups.get( i ).size();
+            int next = first < starts.size() ? starts.get( first ) : end;
+            writer.println( "    if( $state < " + next + " && !$resume_" + i + "( $in ) ) return false;" );
+        }
+        writer.println( "    $in.popOffset();" );
+        writer.println( "    $state = -1;" );
+        writer.println( "    return true;" );
+        writer.println( "}" );
+        for( int i = 0; i < groups.size(); i++ ) {
+            writer.println();
+            writer.println( "private boolean $resume_" + i + "( ChunkedBinaryReader $in ) throws IOException {" );
+            writer.println( "    for( ;; ) {" );
+            writer.println( "        switch( $state ) {" );
+            writer.pushIndent( "        " );
+            groups.get( i ).forEach( code -> MethodSplitter.print( writer, code ) );
+            writer.println( "default:" );
+            writer.println( "    return true;" );
+            writer.popIndent();
+            writer.println( "        }" );
+            writer.println( "    }" );
+            writer.println( "}" );
+        }
+    }
+
+    public void writeView( IndentPrintWriter writer ) throws IOException {
+        if( options.hasViews() && canView() ) {
+            writer.println();
+            super.write( "/View.java.template", writer );
+        }
+    }
+
+    public void writeViewParamFields( IndentPrintWriter writer ) {
+        for( String name : params ) {
+            writer.println( "private int " + name + ";" );
+        }
+    }
+
+    public void writeViewFields( IndentPrintWriter writer ) {
+        datas.writeViewFields( writer, this, false );
+    }
+
+    public void writeViewResets( IndentPrintWriter writer ) {
+        datas.writeViewResets( writer, this );
+    }
+
+    public void writeViewSize( IndentPrintWriter writer ) {
+        if( hasSize() ) {
+            writer.println( "return SIZE;" );
+            return;
+        }
+        writer.println( "if( !$laidOut ) {" );
+        writer.println( "    $layout();" );
+        writer.println( "}" );
+        writer.println( "return (int) (($end + 7) >>> 3);" );
+    }
+
+    public void writeViewLayout( IndentPrintWriter writer ) {
+        datas.writeViewLayout( writer, this, false );
+    }
+
+    public void writeViewAccessors( IndentPrintWriter writer ) {
+        datas.writeViewAccessors( writer, this, false );
+    }
+
+    public void writeColumns( IndentPrintWriter writer ) throws IOException {
+        if( columns != null ) {
+            new ColumnarArrayInfo.ColumnsTemplate( this ).write( writer );
+        }
+    }
+
     public void writeParamFields( IndentPrintWriter writer ) {
         for( String name : params ) {
             writer.println( "int " + name + ";" );
@@ -61,16 +529,92 @@ public class Struct extends Template {
     }
 
     public void writeExtracts( IndentPrintWriter writer ) {
-        datas.writeExtracts( writer );
+        writeExtracts( writer, 0 );
+    }
+
+    // Writes the extracts of the data from index start, up to the first streamed data
+    private void writeExtracts( IndentPrintWriter writer, int start ) {
+        int end = datas.getStreamedData().values().stream().filter( next -> next > start ).min( Integer::compare ).orElse( -1 );
+        List<String> codes = datas.writeEach( start, end == -1 ? datas.size() : end, ( w, data ) -> datas.writeExtract( w, this, data ) );
+        writeSplit( writer, codes, "$parse", "BinaryReader $in", "$in", " throws IOException", null );
+        if( end == -1 ) {
+            writer.println( "$in.popOffset();" );
+        }
+    }
+
+    /**
+     * Writes the code of consecutive data, or if it exceeds the method budget, calls to private methods each holding a group of it. These
+     * methods are written by writeChunks.
+     * @param prefix prefix of the names of the methods
+     * @param params declaration of the parameters of the methods, the locals the code uses
+     * @param args arguments of the calls
+     * @param suffix end of the declaration of the methods
+     * @param locals declaration of locals the code assigns without declaring them, or null
+     */
+    private void writeSplit( IndentPrintWriter writer, List<String> codes, String prefix, String params, String args, String suffix, String locals ) {
+        if( MethodSplitter.estimate( codes ) <= options.getMethodBudget() ) {
+            codes.forEach( code -> MethodSplitter.print( writer, code ) );
+            return;
+        }
+        for( List<String> group : MethodSplitter.split( codes, options.getMethodBudget() ) ) {
+            String method = prefix + "_" + chunks.size();
+            writer.println( method + "( " + args + " );" );
+            chunks.add( MethodSplitter.render( w -> {
+                w.println( "private void " + method + "( " + params + " )" + suffix + " {" );
+                w.pushIndent( "    " );
+                if( locals != null ) {
+                    w.println( locals );
+                }
+                group.forEach( code -> MethodSplitter.print( w, code ) );
+                w.popIndent();
+                w.println( "}" );
+            } ) );
+        }
+    }
+
+    public void writeChunks( IndentPrintWriter writer ) {
+        for( String chunk : chunks ) {
+            writer.println();
+            MethodSplitter.print( writer, chunk );
+        }
+    }
+
+    // Creates parse_after_* methods, parsing the data following each streamed array or bytes
+    public void writeContinuations( IndentPrintWriter writer ) {
+        for( Map.Entry<DataInfo, Integer> entry : datas.getStreamedData().entrySet() ) {
+            writer.println( "private void " + entry.getKey().continuation() + "( BinaryReader $in ) throws IOException {" );
+            writer.pushIndent( "    " );
+            writeExtracts( writer, entry.getValue() );
+            writer.popIndent();
+            writer.println( "}" );
+            writer.println();
+        }
     }
 
     public void writeStrings( IndentPrintWriter writer ) {
-        datas.writeStrings( writer );
+        writeBlockStrings( writer, datas );
+    }
+
+    /**
+     * Writes the extracts of the data of a block, split into methods of their own if they exceed the method budget, so that large bodies of
+     * conditionals and switch cases are split as well.
+     */
+    void writeBlockExtracts( IndentPrintWriter writer, DataBlock block ) {
+        List<String> codes = block.writeEach( 0, block.size(), ( w, data ) -> block.writeExtract( w, this, data ) );
+        writeSplit( writer, codes, "$parse", "BinaryReader $in", "$in", " throws IOException", null );
+    }
+
+    /**
+     * Writes the appending of the data of a block to the string of an instance, split as {@link #writeBlockExtracts}.
+     */
+    void writeBlockStrings( IndentPrintWriter writer, DataBlock block ) {
+        List<String> codes = block.writeEach( 0, block.size(), ( w, data ) -> block.writeString( w, this, data ) );
+        writeSplit( writer, codes, "$string", "StringBuilder $sb, String $indent", "$sb, $indent", "", "String $desc;" );
     }
 
     // Creates readArray_* helper functions for all arrays
     public void writeReadHelpers( IndentPrintWriter writer ) throws IOException {
-        datas.writeReadHelpers( writer );
+        datas.writeReadHelpers( writer, this );
     }
 
     // Creates printArray_* helper functions for all data types
@@ -80,20 +624,27 @@ public class Struct extends Template {
 
     public void writeStructs( IndentPrintWriter writer ) throws IOException {
         for( Struct struct : structs ) {
-            struct.write( writer, null );
+            struct.write( writer, null, options );
         }
     }
 
     public void writeEnums( IndentPrintWriter writer ) throws IOException {
-        // for( Entry<String, EnumGen> entry : enums.entrySet() ) {
-        // entry.getValue().setParam( "name", entry.getKey() );
-        // entry.getValue().write( "/Enum.java.template", writer );
-        // }
+        for( EnumGen enumGen : enums.values() ) {
+            enumGen.write( writer );
+            writer.println();
+        }
     }
 
     public void write( IndentPrintWriter writer, String packageName ) throws IOException {
+        write( writer, packageName, new GeneratorOptions() );
+    }
+
+    public void write( IndentPrintWriter writer, String packageName, GeneratorOptions options ) throws IOException {
+        this.options = options;
+        chunks = new ArrayList<>();
         setParam( "name", name );
         setParam( "args", params.stream().map( p -> ", int " + p ).collect( Collectors.joining() ) );
+        setParam( "argNames", params.stream().map( p -> ", " + p ).collect( Collectors.joining() ) );
         setParam( "package", packageName );
         super.write( parent == null ? "/Parser.java.template" : "/Struct.java.template", writer );
     }
@@ -0,0 +1,294 @@
+package org.bidouille.binparsergen.data;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.bidouille.binparsergen.template.IndentPrintWriter;
+
+/**
+ * Block reading the data of the case matching the value of an integer selector, generated as a Java <code>switch</code>. Its sub-blocks
+ * are the cases, the default case having no labels.
+ * <p>
+ * Named data of different cases can share a field, so that alternatives declaring the same values do not add fields to every instance.
+ */
+public class SwitchBlock extends DataBlock {
+    private final String selector;
+    private final String id; // Suffix of the members generated for this switch, unique in the struct
+    private final List<DataBlock> cases = new ArrayList<>();
+    private final List<List<Integer>> labels = new ArrayList<>(); // Empty for the default case
+    private final Map<String, DataInfo> names = new HashMap<>(); // Named data of all cases, first declaration of each name
+    private final Map<String, DataBlock> nameCases = new HashMap<>(); // Case declaring each name first
+
+    public SwitchBlock( DataBlock parent, String selector, int id ) {
+        super( parent );
+        this.selector = selector;
+        this.id = Integer.toString( id );
+    }
+
+    /**
+     * Adds a case, to which data is then added.
+     * @param caseLabels values selecting the case, empty for the default case
+     */
+    public DataBlock addCase( List<Integer> caseLabels ) {
+        DataBlock block = new DataBlock( this );
+        cases.add( block );
+        labels.add( caseLabels );
+        addBlock( block );
+        return block;
+    }
+
+    public String getSelector() {
+        return selector;
+    }
+
+    /**
+     * Returns the blocks of the cases, in declaration order.
+     */
+    public List<DataBlock> getCases() {
+        return Collections.unmodifiableList( cases );
+    }
+
+    /**
+     * Returns the labels of each case, empty for the default case.
+     */
+    public List<List<Integer>> getLabels() {
+        return Collections.unmodifiableList( labels );
+    }
+
+    /**
+     * Lets data added to a block of a case use the field of the data of a previous case with the same name. Both must be single values read
+     * the same way.
+     * @return an error message, or null
+     */
+    public String share( DataInfo info, DataBlock block ) {
+        if( info.anonymous ) {
+            return null;
+        }
+        DataBlock caseBlock = block;
+        while( caseBlock.parent != this ) {
+            caseBlock = caseBlock.parent;
+        }
+        DataInfo previous = names.get( info.name );
+        if( previous == null ) {
+            names.put( info.name, info );
+            nameCases.put( info.name, caseBlock );
+            return null;
+        }
+        if( nameCases.get( info.name ) == caseBlock ) {
+            return null; // Reported by the compiler, as in other blocks
+        }
+        if( info instanceof DataArrayInfo || previous instanceof DataArrayInfo || !extraction( info ).equals( extraction( previous ) ) ) {
+            return "Data of different cases with the same name must be single values of the same type : " + info.name;
+        }
+        info.shared = previous;
+        return null;
+    }
+
+    private static String extraction( DataInfo info ) {
+        StringWriter out = new StringWriter();
+        info.extraction( new PrintWriter( out ) );
+        return out.toString();
+    }
+
+    @Override
+    public void validate( Struct scope, List<String> errors ) {
+        Set<Integer> used = new HashSet<>();
+        int defaults = 0;
+        for( List<Integer> caseLabels : labels ) {
+            defaults += caseLabels.isEmpty() ? 1 : 0;
+            for( Integer label : caseLabels ) {
+                if( !used.add( label ) ) {
+                    errors.add( "Duplicate case " + label + " in switch(" + selector + ")" );
+                }
+            }
+        }
+        if( defaults > 1 ) {
+            errors.add( "Duplicate default case in switch(" + selector + ")" );
+        }
+        super.validate( scope, errors );
+    }
+
+    @Override
+    public boolean isConditional() {
+        return true;
+    }
+
+    // The end is only known if all cases, including the implicit empty default, end at the same position
+    @Override
+    public long layout( Struct scope, long position ) {
+        boolean first = hasDefault();
+        long end = position;
+        for( DataBlock block : cases ) {
+            long caseEnd = block.layout( scope, position );
+            if( first ) {
+                end = caseEnd;
+                first = false;
+            } else if( caseEnd != end ) {
+                end = DataDesc.UNKNOWN;
+            }
+        }
+        return end;
+    }
+
+    private boolean hasDefault() {
+        return labels.stream().anyMatch( List::isEmpty );
+    }
+
+    // Offsets of the data of a case only apply to that case, and shared names may have several
+    @Override
+    public void writeOffsets( IndentPrintWriter writer ) {
+    }
+
+    // Remembers the case parsed last, whose data is reset when another case is parsed into the same instance
+    @Override
+    public void writeFields( IndentPrintWriter writer ) {
+        super.writeFields( writer );
+        writer.println( "private int $case_" + id + " = -1;" );
+        writer.println();
+    }
+
+    @Override
+    public void writeExtracts( IndentPrintWriter writer, Struct scope ) {
+        writeSwitch( writer, selector, block -> {
+            writer.println( "$clear_" + id + "( " + cases.indexOf( block ) + " );" );
+            scope.writeBlockExtracts( writer, block );
+        }, "$clear_" + id + "( -1 );" );
+    }
+
+    @Override
+    boolean hasDefaults() {
+        return true;
+    }
+
+    @Override
+    void writeDefaults( IndentPrintWriter writer ) {
+        super.writeDefaults( writer );
+        writer.println( "$case_" + id + " = -1;" );
+    }
+
+    // Creates the $clear_* helper, resetting the data of the case parsed last when another one is selected. Only the data of that case is
+    // reset, and its arrays and sub-structs are kept, so that instances parsed with the same case again keep reusing them.
+    @Override
+    public void writeReadHelpers( IndentPrintWriter writer, Struct scope ) throws IOException {
+        super.writeReadHelpers( writer, scope );
+        writer.println( "private void $clear_" + id + "( int $case ) {" );
+        writer.println( "    if( $case_" + id + " != $case ) {" );
+        writer.println( "        switch( $case_" + id + " ) {" );
+        writer.pushIndent( "        " );
+        for( int i = 0; i < cases.size(); i++ ) {
+            writer.println( "case " + i + ":" );
+            writer.pushIndent( "    " );
+            cases.get( i ).writeDefaults( writer );
+            writer.println( "break;" );
+            writer.popIndent();
+        }
+        writer.popIndent();
+        writer.println( "        }" );
+        writer.println( "        $case_" + id + " = $case;" );
+        writer.println( "    }" );
+        writer.println( "}" );
+        writer.println();
+    }
+
+    @Override
+    public void writeVisits( IndentPrintWriter writer, Struct scope ) {
+        String value = "(int)(" + selector + ")";
+        writeSwitch( writer, selector, block -> {
+            writer.println( "$visitor.enterCase( \"" + escapeQuotes( selector ) + "\", " + value + " );" );
+            block.writeVisits( writer, scope );
+            writer.println( "$visitor.exitCase( \"" + escapeQuotes( selector ) + "\", " + value + " );" );
+        }, null );
+    }
+
+    // One state dispatching to the first state of the case, then the states of each case followed by one jumping past the others
+    @Override
+    public int resumeStates() {
+        int states = 1;
+        for( DataBlock block : cases ) {
+            states += block.resumeStates() + 1;
+        }
+        return states;
+    }
+
+    @Override
+    public int writeResumeStates( IndentPrintWriter writer, Struct scope, int state ) {
+        int end = state + resumeStates();
+        writer.println( "case " + state + ":" );
+        writer.pushIndent( "    " );
+        writer.println( "switch( (int)(" + selector + ") ) {" );
+        int start = state + 1;
+        for( int i = 0; i < cases.size(); i++ ) {
+            writeLabels( writer, labels.get( i ), "" );
+            writer.println( "    $case_" + id + " = " + i + ";" );
+            writer.println( "    $state = " + start + ";" );
+            writer.println( "    continue;" );
+            start += cases.get( i ).resumeStates() + 1;
+        }
+        if( !hasDefault() ) {
+            writer.println( "default:" );
+            writer.println( "    $state = " + end + ";" );
+            writer.println( "    continue;" );
+        }
+        writer.println( "}" );
+        writer.popIndent();
+        state++;
+        for( DataBlock block : cases ) {
+            state = block.writeResumeStates( writer, scope, state );
+            writer.println( "case " + state + ":" );
+            writer.println( "    $state = " + end + ";" );
+            writer.println( "    continue;" );
+            state++;
+        }
+        return end;
+    }
+
+    @Override
+    public void writeViewLayout( IndentPrintWriter writer, Struct scope, boolean conditional ) {
+        writeViewAbsent( writer );
+        writeSwitch( writer, scope.viewExpression( selector ), block -> block.writeViewLayout( writer, scope, true ), null );
+    }
+
+    @Override
+    public void writeStrings( IndentPrintWriter writer, Struct scope ) {
+        writeSwitch( writer, selector, block -> scope.writeBlockStrings( writer, block ), null );
+    }
+
+    // Writes a switch on the selector, each case being a block so that locals do not clash. The noMatch statement, if any, is executed when
+    // no case matches.
+    private void writeSwitch( IndentPrintWriter writer, String selectorExpr, Consumer<DataBlock> body, String noMatch ) {
+        writer.println( "switch( (int)(" + selectorExpr + ") ) {" );
+        for( int i = 0; i < cases.size(); i++ ) {
+            writeLabels( writer, labels.get( i ), " {" );
+            writer.pushIndent( "    " );
+            body.accept( cases.get( i ) );
+            writer.println( "break;" );
+            writer.popIndent();
+            writer.println( "}" );
+        }
+        if( noMatch != null && !hasDefault() ) {
+            writer.println( "default:" );
+            writer.println( "    " + noMatch );
+        }
+        writer.println( "}" );
+    }
+
+    // Writes the labels of a case, the last one followed by the specified suffix
+    private static void writeLabels( IndentPrintWriter writer, List<Integer> caseLabels, String suffix ) {
+        if( caseLabels.isEmpty() ) {
+            writer.println( "default:" + suffix );
+        }
+        for( int i = 0; i < caseLabels.size(); i++ ) {
+            writer.println( "case " + caseLabels.get( i ) + ":" + (i == caseLabels.size() - 1 ? suffix : "") );
+        }
+    }
+
+}
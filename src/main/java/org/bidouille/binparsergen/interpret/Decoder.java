@@ -0,0 +1,63 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.IOException;
+
+import org.bidouille.binparsergen.util.BinaryReader;
+
+/**
+ * Reads one value of a data type in interpreter mode. Integer values are returned as long, sign-extended from the Java type the generated
+ * code would store them in, so that records need no boxing. Other values are objects. Each kind of value has its own subclass,
+ * {@link PrimitiveDecoder} or {@link ObjectDecoder}.
+ */
+public abstract class Decoder {
+    /**
+     * Java type a value is stored in.
+     */
+    public enum Kind {
+        BYTE, SHORT, INT, LONG, OBJECT
+    }
+
+    @FunctionalInterface
+    public interface PrimitiveReader {
+        long read( BinaryReader in ) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ObjectReader {
+        /**
+         * @param record record being parsed, in which expressions such as lengths are evaluated
+         */
+        Object read( BinaryReader in, Record record ) throws IOException;
+    }
+
+    final Kind kind;
+
+    Decoder( Kind kind ) {
+        this.kind = kind;
+    }
+
+    /**
+     * Returns a decoder of integer values of the specified kind.
+     */
+    public static PrimitiveDecoder of( Kind kind, PrimitiveReader reader ) {
+        return new PrimitiveDecoder( kind ) {
+            @Override
+            long read( BinaryReader in, Record record ) throws IOException {
+                return reader.read( in );
+            }
+        };
+    }
+
+    /**
+     * Returns a decoder of objects of the specified class.
+     */
+    public static ObjectDecoder of( Class<?> type, ObjectReader reader ) {
+        return new ObjectDecoder( type ) {
+            @Override
+            Object read( BinaryReader in, Record record ) throws IOException {
+                return reader.read( in, record );
+            }
+        };
+    }
+
+}
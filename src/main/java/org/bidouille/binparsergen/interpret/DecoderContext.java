@@ -0,0 +1,28 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.util.List;
+
+/**
+ * Resolves what the decoder of a data type depends on, as seen from the struct the data is declared in. Errors are reported once the whole
+ * definition is compiled, so the methods always return a usable result.
+ */
+public interface DecoderContext {
+
+    /**
+     * Compiles an integer expression, such as the length of a string, evaluated in the record being parsed.
+     */
+    Expression expression( String expr );
+
+    /**
+     * Returns the decoder of a struct of the definitions.
+     * @param args expressions of the arguments passed to the struct
+     */
+    ObjectDecoder struct( String typeName, List<String> args );
+
+    /**
+     * Returns the decoder mapping the values read by a base decoder to the constants of an enum of the definitions. Bases that do not
+     * read integers are reported as errors.
+     */
+    ObjectDecoder enumeration( String enumName, Decoder base );
+
+}
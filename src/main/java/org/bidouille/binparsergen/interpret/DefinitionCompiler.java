@@ -0,0 +1,337 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.bidouille.binparsergen.EnumGen;
+import org.bidouille.binparsergen.InvalidDefinitionException;
+import org.bidouille.binparsergen.constraint.Constraint;
+import org.bidouille.binparsergen.constraint.StringEqualsConstraint;
+import org.bidouille.binparsergen.data.DataArrayInfo;
+import org.bidouille.binparsergen.data.DataBlock;
+import org.bidouille.binparsergen.data.DataDesc;
+import org.bidouille.binparsergen.data.DataInfo;
+import org.bidouille.binparsergen.data.IfBlock;
+import org.bidouille.binparsergen.data.StreamArrayInfo;
+import org.bidouille.binparsergen.data.Struct;
+import org.bidouille.binparsergen.data.SwitchBlock;
+import org.bidouille.binparsergen.interpret.Decoder.Kind;
+
+/**
+ * Compiles the structs of a definition into plans. Structs are compiled in two passes : record types first, as structs may use each other
+ * or themselves, then steps. Errors are collected and reported together.
+ */
+final class DefinitionCompiler {
+    private static final ObjectDecoder INVALID = Decoder.of( Record.class, ( in, record ) -> null ); // Placeholder after an error
+
+    private final List<String> errors = new ArrayList<>();
+    private final Map<Struct, StructPlan> plans = new IdentityHashMap<>();
+    private final ArrayDeque<Struct> pending = new ArrayDeque<>(); // Structs whose steps are not compiled yet
+    private final Map<EnumGen, EnumTable> enums = new IdentityHashMap<>();
+
+    // Sorted ids of the values of an enum, and the value of each id
+    private static final class EnumTable {
+        final int[] ids;
+        final EnumValue[] values;
+
+        EnumTable( EnumGen enumGen ) {
+            TreeMap<Integer, EnumValue> sorted = new TreeMap<>();
+            for( EnumGen.Value value : enumGen.getValues() ) {
+                sorted.put( value.i, new EnumValue( value.i, value.name, value.description ) );
+            }
+            ids = sorted.keySet().stream().mapToInt( Integer::intValue ).toArray();
+            values = sorted.values().toArray( new EnumValue[0] );
+        }
+
+        EnumValue fromInt( int i ) {
+            int index = Arrays.binarySearch( ids, i );
+            return index >= 0 ? values[index] : null;
+        }
+    }
+
+    Map<String, Interpreter> compile( List<Struct> definitions ) throws InvalidDefinitionException {
+        Map<String, Interpreter> interpreters = new LinkedHashMap<>();
+        for( Struct struct : definitions ) {
+            interpreters.put( struct.name, new Interpreter( plan( struct ) ) );
+        }
+        while( !pending.isEmpty() ) {
+            Struct struct = pending.poll();
+            StructPlan plan = plans.get( struct );
+            plan.steps = steps( struct, plan.type, struct.datas );
+        }
+        if( !errors.isEmpty() ) {
+            throw new InvalidDefinitionException( errors );
+        }
+        return interpreters;
+    }
+
+    // Returns the plan of a struct, creating its record type if needed. Its steps are compiled later.
+    private StructPlan plan( Struct struct ) {
+        StructPlan plan = plans.get( struct );
+        if( plan != null ) {
+            return plan;
+        }
+        RecordType type = new RecordType( struct.className() );
+        int[] paramSlots = new int[struct.params.size()];
+        for( int i = 0; i < paramSlots.length; i++ ) {
+            paramSlots[i] = type.addParam( struct.params.get( i ) ).slot;
+        }
+        plan = new StructPlan( type, paramSlots );
+        plans.put( struct, plan );
+        pending.add( struct );
+        fields( struct, type, struct.datas );
+        return plan;
+    }
+
+    private void fields( Struct scope, RecordType type, DataBlock block ) {
+        for( Object data : block.getDatas() ) {
+            if( data instanceof DataBlock ) {
+                fields( scope, type, (DataBlock) data );
+                continue;
+            }
+            DataInfo info = (DataInfo) data;
+            if( info.anonymous || info.shared != null ) {
+                continue;
+            }
+            Struct struct = info.desc.struct( scope );
+            RecordType recordType = struct != null ? plan( struct ).type : null;
+            Kind kind = kind( info.desc );
+            boolean array = info instanceof DataArrayInfo;
+            if( type.addField( info.name, array ? Kind.OBJECT : kind, array ? kind : null, recordType ) == null ) {
+                errors.add( "Duplicate name " + info.name + " in " + scope.className() );
+            }
+        }
+    }
+
+    private static Kind kind( DataDesc desc ) {
+        StringWriter out = new StringWriter();
+        desc.declaration( new PrintWriter( out ) );
+        switch( out.toString() ) {
+            case "byte":
+                return Kind.BYTE;
+            case "short":
+                return Kind.SHORT;
+            case "int":
+                return Kind.INT;
+            case "long":
+                return Kind.LONG;
+            default:
+                return Kind.OBJECT;
+        }
+    }
+
+    private Step[] steps( Struct scope, RecordType type, DataBlock block ) {
+        List<Step> steps = new ArrayList<>();
+        for( Object data : block.getDatas() ) {
+            if( data instanceof IfBlock ) {
+                IfBlock ifBlock = (IfBlock) data;
+                Expression condition = expression( ifBlock.getCondition(), scope, type, false );
+                if( condition.type != Expression.Type.BOOLEAN ) {
+                    error( scope, ifBlock.getCondition(), "Expected boolean condition" );
+                }
+                steps.add( new Step.If( condition, steps( scope, type, ifBlock ) ) );
+            } else if( data instanceof SwitchBlock ) {
+                steps.add( switchStep( scope, type, (SwitchBlock) data ) );
+            } else if( data instanceof DataBlock ) {
+                for( Step step : steps( scope, type, (DataBlock) data ) ) {
+                    steps.add( step );
+                }
+            } else {
+                dataSteps( scope, type, (DataInfo) data, steps );
+            }
+        }
+        return steps.toArray( new Step[0] );
+    }
+
+    private Step switchStep( Struct scope, RecordType type, SwitchBlock switchBlock ) {
+        Expression selector = number( switchBlock.getSelector(), scope, type, false );
+        TreeMap<Integer, Step[]> cases = new TreeMap<>();
+        Step[] defaultCase = null;
+        for( int i = 0; i < switchBlock.getCases().size(); i++ ) {
+            Step[] steps = steps( scope, type, switchBlock.getCases().get( i ) );
+            List<Integer> labels = switchBlock.getLabels().get( i );
+            if( labels.isEmpty() ) {
+                defaultCase = steps;
+            }
+            for( Integer label : labels ) {
+                cases.put( label, steps );
+            }
+        }
+        int[] labels = cases.keySet().stream().mapToInt( Integer::intValue ).toArray();
+        return new Step.Switch( selector, labels, cases.values().toArray( new Step[0][] ), defaultCase );
+    }
+
+    // Adds the steps reading a data : skipping to its offset, then reading it, or skipping over it if it is anonymous and unchecked
+    private void dataSteps( Struct scope, RecordType type, DataInfo info, List<Step> steps ) {
+        if( info.offsetValue != DataDesc.UNKNOWN ) {
+            steps.add( new Step.SkipTo( Expression.constant( info.offsetValue ) ) );
+        } else if( info.offsetExpr != null ) {
+            steps.add( new Step.SkipTo( number( info.offsetExpr, scope, type, false ) ) );
+        }
+        if( info.skip ) {
+            steps.add( new Step.SkipTo( Expression.constant( (info.bitOffset + info.bitSize) / 8 ) ) );
+            return;
+        }
+        boolean array = info instanceof DataArrayInfo;
+        Decoder decoder = info.desc.decoder( new Context( scope, type, array ) );
+        if( decoder == null ) {
+            errors.add( "Data " + info.name + " of " + scope.className() + " cannot be interpreted" );
+            return;
+        }
+        int slot = info.anonymous ? -1 : type.field( info.shared != null ? info.shared.name : info.name ).slot;
+        String checkName = info instanceof StreamArrayInfo ? "$element" : array ? "$array[$]" : info.name;
+        Step.Check[] checks = checks( scope, info, checkName, decoder );
+        long mask = mask( info.desc );
+        if( !array ) {
+            steps.add( decoder instanceof ObjectDecoder ? new Step.ReadObject( (ObjectDecoder) decoder, slot, checks )
+                    : new Step.Read( (PrimitiveDecoder) decoder, slot, checks, mask ) );
+            return;
+        }
+        DataArrayInfo arrayInfo = (DataArrayInfo) info;
+        Expression cardinality = arrayInfo.cardinalityValue != DataDesc.UNKNOWN ? Expression.constant( arrayInfo.cardinalityValue )
+                : number( arrayInfo.cardinalityExpr, scope, type, false );
+        Expression elementOffset = arrayInfo.elementOffsetExpr != null ? number( arrayInfo.elementOffsetExpr, scope, type, true ) : null;
+        steps.add( decoder instanceof ObjectDecoder ? new Step.ReadObjectArray( cardinality, elementOffset, (ObjectDecoder) decoder, slot, checks )
+                : new Step.ReadArray( cardinality, elementOffset, (PrimitiveDecoder) decoder, slot, checks, mask ) );
+    }
+
+    // Mask giving the unsigned value of [compact] data, whose constraints apply to the unsigned value
+    private static long mask( DataDesc desc ) {
+        if( desc.unsigned( "" ) == null ) {
+            return -1;
+        }
+        switch( kind( desc ) ) {
+            case BYTE:
+                return 0xffL;
+            case SHORT:
+                return 0xffffL;
+            default:
+                return 0xffffffffL;
+        }
+    }
+
+    private Step.Check[] checks( Struct scope, DataInfo info, String name, Decoder decoder ) {
+        List<Step.Check> checks = new ArrayList<>();
+        for( Constraint constraint : info.desc.constraints ) {
+            String message = name + constraint.op + constraint.value;
+            if( constraint instanceof StringEqualsConstraint ) {
+                String literal = StringEscapeUtils.unescapeJava( constraint.value.substring( 1, constraint.value.length() - 1 ) );
+                checks.add( new Step.Check( Step.Check.EQ, 0, literal, message ) ); // Never equal to integers, as with equals()
+            } else if( decoder instanceof ObjectDecoder ) {
+                errors.add( "Invalid constraint on " + info.name + " of " + scope.className() + " : " + constraint.op + constraint.value );
+            } else {
+                try {
+                    long value = Expression.literal( constraint.value ).evaluate( null );
+                    checks.add( new Step.Check( operator( constraint.op ), value, null, message ) );
+                } catch( IllegalArgumentException e ) {
+                    errors.add( "Invalid constraint on " + info.name + " of " + scope.className() + " : " + e.getMessage() );
+                }
+            }
+        }
+        return checks.toArray( new Step.Check[0] );
+    }
+
+    private static int operator( String op ) {
+        switch( op ) {
+            case "=":
+                return Step.Check.EQ;
+            case "!=":
+                return Step.Check.NE;
+            case "<":
+                return Step.Check.LT;
+            case ">":
+                return Step.Check.GT;
+            case "<=":
+                return Step.Check.LE;
+            default:
+                return Step.Check.GE;
+        }
+    }
+
+    private Expression expression( String text, Struct scope, RecordType type, boolean index ) {
+        try {
+            return Expression.compile( text, type, index );
+        } catch( IllegalArgumentException e ) {
+            error( scope, text, e.getMessage() );
+            return Expression.constant( 0 );
+        }
+    }
+
+    private Expression number( String text, Struct scope, RecordType type, boolean index ) {
+        Expression expr = expression( text, scope, type, index );
+        if( !expr.isNumeric() ) {
+            error( scope, text, "Expected number" );
+        }
+        return expr;
+    }
+
+    private void error( Struct scope, String expr, String message ) {
+        errors.add( "Invalid expression " + expr + " in " + scope.className() + " : " + message );
+    }
+
+    // Resolves what decoders need for a data of a struct
+    private final class Context implements DecoderContext {
+        private final Struct scope;
+        private final RecordType type;
+        private final boolean index;
+
+        Context( Struct scope, RecordType type, boolean index ) {
+            this.scope = scope;
+            this.type = type;
+            this.index = index;
+        }
+
+        @Override
+        public Expression expression( String expr ) {
+            return number( expr, scope, type, index );
+        }
+
+        @Override
+        public ObjectDecoder struct( String typeName, List<String> args ) {
+            Struct struct = scope.resolve( typeName );
+            if( struct == null ) {
+                errors.add( "Type " + typeName + " is not defined, it cannot be interpreted" );
+                return INVALID;
+            }
+            if( args.size() != struct.params.size() ) {
+                errors.add( "Type " + typeName + " takes " + struct.params.size() + " arguments, " + args.size() + " given in " + scope.className() );
+                return INVALID;
+            }
+            StructPlan plan = plan( struct );
+            Expression[] arguments = new Expression[args.size()];
+            for( int i = 0; i < arguments.length; i++ ) {
+                arguments[i] = DefinitionCompiler.this.expression( args.get( i ), scope, type, index );
+                if( arguments[i].type != Expression.Type.INT ) {
+                    error( scope, args.get( i ), "Expected int argument" );
+                }
+            }
+            return Decoder.of( Record.class, ( in, record ) -> plan.parse( in, record, arguments ) );
+        }
+
+        @Override
+        public ObjectDecoder enumeration( String enumName, Decoder base ) {
+            EnumGen enumGen = scope.resolveEnum( enumName );
+            if( enumGen == null ) {
+                errors.add( "Enum " + enumName + " is not defined in " + scope.className() );
+                return INVALID;
+            }
+            if( !(base instanceof PrimitiveDecoder) ) {
+                errors.add( "Enum " + enumName + " in " + scope.className() + " is not read from an integer type" );
+                return INVALID;
+            }
+            PrimitiveDecoder values = (PrimitiveDecoder) base;
+            EnumTable table = enums.computeIfAbsent( enumGen, EnumTable::new );
+            return Decoder.of( EnumValue.class, ( in, record ) -> table.fromInt( (int) values.read( in, record ) ) );
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.bidouille.binparsergen.interpret;
+
+/**
+ * Constant of an enum of the definitions, as read by the interpreter. There is one instance per constant, so they can be compared by
+ * identity like the constants of a generated enum.
+ */
+public final class EnumValue {
+    public final int i;
+    public final String name;
+    public final String description;
+
+    EnumValue( int i, String name, String description ) {
+        this.i = i;
+        this.name = name;
+        this.description = description;
+    }
+
+    @Override
+    public String toString() {
+        return i + "|" + name + "|" + description;
+    }
+
+}
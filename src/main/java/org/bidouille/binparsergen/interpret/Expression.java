@@ -0,0 +1,630 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bidouille.binparsergen.interpret.Decoder.Kind;
+import org.bidouille.binparsergen.interpret.RecordType.Field;
+
+/**
+ * Expression of a definition, compiled once into a tree of nodes evaluated in the record of the struct it appears in. The semantics are
+ * those of the Java code generated for it : operators have Java precedence, int arithmetic wraps around, int operands are promoted to long
+ * when mixed with long ones, and conditions are booleans.
+ */
+public abstract class Expression {
+    enum Type {
+        INT, LONG, BOOLEAN, RECORD, ARRAY
+    }
+
+    final Type type;
+    final RecordType recordType; // Of records, and of the elements of arrays of records
+    final Kind elementKind; // Of arrays
+
+    Expression( Type type ) {
+        this( type, null, null );
+    }
+
+    Expression( Type type, RecordType recordType, Kind elementKind ) {
+        this.type = type;
+        this.recordType = recordType;
+        this.elementKind = elementKind;
+    }
+
+    /**
+     * Evaluates an integer or boolean expression, booleans being 1 for true and 0 for false.
+     * @param record record of the struct being parsed
+     */
+    public abstract long evaluate( Record record );
+
+    // Evaluates a record or array expression
+    Object evaluateObject( Record record ) {
+        throw new UnsupportedOperationException( type + " expression" );
+    }
+
+    boolean isNumeric() {
+        return type == Type.INT || type == Type.LONG;
+    }
+
+    /**
+     * Returns a constant, int if the value fits in an int.
+     */
+    static Expression constant( long value ) {
+        return new Constant( value == (int) value ? Type.INT : Type.LONG, value );
+    }
+
+    /**
+     * Compiles an expression of the definitions.
+     * @param scope type of the records the expression is evaluated in
+     * @param index whether <code>$</code> is defined, that is whether the expression is evaluated for each element of an array
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    static Expression compile( String text, RecordType scope, boolean index ) {
+        Parser parser = new Parser( text, scope, index );
+        Expression expr = parser.conditional();
+        if( parser.pos < parser.tokens.size() ) {
+            throw new IllegalArgumentException( "Unexpected '" + parser.tokens.get( parser.pos ) + "'" );
+        }
+        return expr;
+    }
+
+    /**
+     * Compiles an integer literal, typed as in Java : int unless suffixed with L, hexadecimal and binary literals of up to 32 bits being
+     * the int of the same bits.
+     * @throws IllegalArgumentException if the literal is invalid
+     */
+    static Expression literal( String text ) {
+        String digits = text.replace( "_", "" );
+        boolean isLong = digits.endsWith( "L" ) || digits.endsWith( "l" );
+        digits = isLong ? digits.substring( 0, digits.length() - 1 ) : digits;
+        int radix = 10;
+        if( digits.startsWith( "0x" ) || digits.startsWith( "0X" ) ) {
+            radix = 16;
+            digits = digits.substring( 2 );
+        } else if( digits.startsWith( "0b" ) || digits.startsWith( "0B" ) ) {
+            radix = 2;
+            digits = digits.substring( 2 );
+        } else if( digits.length() > 1 && digits.startsWith( "0" ) ) { // Octal, as javac reads it
+            radix = 8;
+            digits = digits.substring( 1 );
+        }
+        long value;
+        try {
+            value = Long.parseUnsignedLong( digits, radix );
+        } catch( NumberFormatException e ) {
+            throw new IllegalArgumentException( "Invalid number : " + text );
+        }
+        if( isLong ) {
+            return new Constant( Type.LONG, value );
+        }
+        if( radix != 10 && (value & 0xffffffff00000000L) == 0 ) {
+            return new Constant( Type.INT, (int) value );
+        }
+        return constant( value );
+    }
+
+    // Checks the type of an operand, for error messages
+    private static Expression require( Expression expr, boolean valid, String what ) {
+        if( !valid ) {
+            throw new IllegalArgumentException( "Expected " + what + " but got " + expr.type.name().toLowerCase() );
+        }
+        return expr;
+    }
+
+    private static final class Parser {
+        final List<String> tokens = new ArrayList<>();
+        final RecordType scope;
+        final boolean index;
+        int pos;
+
+        Parser( String text, RecordType scope, boolean index ) {
+            this.scope = scope;
+            this.index = index;
+            int i = 0;
+            while( i < text.length() ) {
+                char c = text.charAt( i );
+                int end = i + 1;
+                if( Character.isWhitespace( c ) ) {
+                    i++;
+                    continue;
+                } else if( Character.isLetterOrDigit( c ) || c == '_' ) {
+                    while( end < text.length() && (Character.isLetterOrDigit( text.charAt( end ) ) || text.charAt( end ) == '_') ) {
+                        end++;
+                    }
+                } else if( c == '"' ) {
+                    throw new IllegalArgumentException( "String literals are not supported in expressions" );
+                } else if( end < text.length() && isOperator( text.substring( i, end + 1 ) ) ) {
+                    end++;
+                }
+                tokens.add( text.substring( i, end ) );
+                i = end;
+            }
+        }
+
+        private static boolean isOperator( String token ) {
+            switch( token ) {
+                case "&&":
+                case "||":
+                case "==":
+                case "!=":
+                case "<=":
+                case ">=":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private String peek() {
+            return pos < tokens.size() ? tokens.get( pos ) : "";
+        }
+
+        private boolean accept( String token ) {
+            if( peek().equals( token ) ) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect( String token ) {
+            if( !accept( token ) ) {
+                throw new IllegalArgumentException( "Expected '" + token + "'" + (pos < tokens.size() ? " before '" + peek() + "'" : " at the end") );
+            }
+        }
+
+        Expression conditional() {
+            Expression condition = or();
+            if( !accept( "?" ) ) {
+                if( peek().equals( "=" ) ) {
+                    throw new IllegalArgumentException( "Assignments are not supported in expressions, use == to compare" );
+                }
+                return condition;
+            }
+            require( condition, condition.type == Type.BOOLEAN, "boolean" );
+            Expression yes = conditional();
+            expect( ":" );
+            Expression no = conditional();
+            Type type;
+            if( yes.type == Type.BOOLEAN && no.type == Type.BOOLEAN ) {
+                type = Type.BOOLEAN;
+            } else {
+                require( yes, yes.isNumeric(), "number" );
+                require( no, no.isNumeric(), "number" );
+                type = yes.type == Type.LONG || no.type == Type.LONG ? Type.LONG : Type.INT;
+            }
+            return new Conditional( type, condition, yes, no );
+        }
+
+        private Expression or() {
+            Expression left = and();
+            while( accept( "||" ) ) {
+                left = new Or( require( left, left.type == Type.BOOLEAN, "boolean" ), bool( and() ) );
+            }
+            return left;
+        }
+
+        private Expression and() {
+            Expression left = equality();
+            while( accept( "&&" ) ) {
+                left = new And( require( left, left.type == Type.BOOLEAN, "boolean" ), bool( equality() ) );
+            }
+            return left;
+        }
+
+        private Expression equality() {
+            Expression left = relational();
+            while( peek().equals( "==" ) || peek().equals( "!=" ) ) {
+                boolean equal = tokens.get( pos++ ).equals( "==" );
+                Expression right = relational();
+                if( left.type != Type.BOOLEAN || right.type != Type.BOOLEAN ) {
+                    number( left );
+                    number( right );
+                }
+                left = new Comparison( equal ? Comparison.EQ : Comparison.NE, left, right );
+            }
+            return left;
+        }
+
+        private Expression relational() {
+            Expression left = additive();
+            while( true ) {
+                int op;
+                switch( peek() ) {
+                    case "<":
+                        op = Comparison.LT;
+                        break;
+                    case ">":
+                        op = Comparison.GT;
+                        break;
+                    case "<=":
+                        op = Comparison.LE;
+                        break;
+                    case ">=":
+                        op = Comparison.GE;
+                        break;
+                    default:
+                        return left;
+                }
+                pos++;
+                left = new Comparison( op, number( left ), number( additive() ) );
+            }
+        }
+
+        private Expression additive() {
+            Expression left = multiplicative();
+            while( peek().equals( "+" ) || peek().equals( "-" ) ) {
+                char op = tokens.get( pos++ ).charAt( 0 );
+                left = Arithmetic.of( op, number( left ), number( multiplicative() ) );
+            }
+            return left;
+        }
+
+        private Expression multiplicative() {
+            Expression left = unary();
+            while( peek().equals( "*" ) || peek().equals( "/" ) ) {
+                char op = tokens.get( pos++ ).charAt( 0 );
+                left = Arithmetic.of( op, number( left ), number( unary() ) );
+            }
+            return left;
+        }
+
+        private Expression unary() {
+            if( accept( "-" ) ) {
+                return new Negate( number( unary() ) );
+            } else if( accept( "+" ) ) {
+                return number( unary() );
+            }
+            return postfix();
+        }
+
+        private Expression postfix() {
+            Expression expr = primary();
+            while( true ) {
+                if( accept( "." ) ) {
+                    String name = name();
+                    if( expr.type == Type.ARRAY && name.equals( "length" ) ) {
+                        expr = new Length( expr );
+                    } else if( expr.type == Type.RECORD ) {
+                        Field field = expr.recordType.field( name );
+                        if( field == null ) {
+                            throw new IllegalArgumentException( "Unknown name " + name + " in " + expr.recordType );
+                        }
+                        expr = Member.of( expr, field );
+                    } else {
+                        throw new IllegalArgumentException( "No member " + name + " in " + expr.type.name().toLowerCase() + " expression" );
+                    }
+                } else if( accept( "[" ) ) {
+                    require( expr, expr.type == Type.ARRAY, "array" );
+                    Expression index = conditional();
+                    require( index, index.type == Type.INT, "int index" );
+                    expect( "]" );
+                    expr = Element.of( expr, index );
+                } else {
+                    return expr;
+                }
+            }
+        }
+
+        private Expression primary() {
+            String token = peek();
+            if( accept( "(" ) ) {
+                Expression expr = conditional();
+                expect( ")" );
+                return expr;
+            } else if( accept( "$" ) ) {
+                if( !index ) {
+                    throw new IllegalArgumentException( "$ is only defined for array elements" );
+                }
+                return new Index();
+            } else if( !token.isEmpty() && Character.isDigit( token.charAt( 0 ) ) ) {
+                pos++;
+                return literal( token );
+            }
+            String name = name();
+            if( name.equals( "true" ) || name.equals( "false" ) ) {
+                return new Constant( Type.BOOLEAN, name.equals( "true" ) ? 1 : 0 );
+            }
+            Field field = scope.field( name );
+            if( field == null ) {
+                throw new IllegalArgumentException( "Unknown name " + name );
+            }
+            return Member.of( null, field );
+        }
+
+        private String name() {
+            String token = peek();
+            if( token.isEmpty() || !(Character.isLetter( token.charAt( 0 ) ) || token.charAt( 0 ) == '_') ) {
+                throw new IllegalArgumentException( token.isEmpty() ? "Unexpected end of expression" : "Unexpected '" + token + "'" );
+            }
+            pos++;
+            return token;
+        }
+
+        private static Expression number( Expression expr ) {
+            return require( expr, expr.isNumeric(), "number" );
+        }
+
+        private static Expression bool( Expression expr ) {
+            return require( expr, expr.type == Type.BOOLEAN, "boolean" );
+        }
+    }
+
+    private static final class Constant extends Expression {
+        private final long value;
+
+        Constant( Type type, long value ) {
+            super( type );
+            this.value = value;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return value;
+        }
+    }
+
+    private static final class Index extends Expression {
+        Index() {
+            super( Type.INT );
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return record.index;
+        }
+    }
+
+    // Field of the record being parsed when target is null, of the record the target evaluates to otherwise
+    private static final class Member extends Expression {
+        private final Expression target;
+        private final int slot;
+
+        private Member( Type type, RecordType recordType, Kind elementKind, Expression target, int slot ) {
+            super( type, recordType, elementKind );
+            this.target = target;
+            this.slot = slot;
+        }
+
+        static Member of( Expression target, Field field ) {
+            Type type;
+            if( field.array ) {
+                type = Type.ARRAY;
+            } else if( field.kind == Kind.OBJECT ) {
+                if( field.recordType == null ) {
+                    throw new IllegalArgumentException( "Data " + field.name + " cannot be used in expressions" );
+                }
+                type = Type.RECORD;
+            } else {
+                type = field.kind == Kind.LONG ? Type.LONG : Type.INT;
+            }
+            return new Member( type, field.recordType, field.elementKind, target, field.slot );
+        }
+
+        private Record record( Record record ) {
+            return target == null ? record : (Record) target.evaluateObject( record );
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return record( record ).values[slot];
+        }
+
+        @Override
+        Object evaluateObject( Record record ) {
+            return record( record ).objects[slot];
+        }
+    }
+
+    private static final class Element extends Expression {
+        private final Expression array;
+        private final Expression index;
+
+        private Element( Type type, RecordType recordType, Expression array, Expression index ) {
+            super( type, recordType, null );
+            this.array = array;
+            this.index = index;
+        }
+
+        static Element of( Expression array, Expression index ) {
+            Type type;
+            switch( array.elementKind ) {
+                case LONG:
+                    type = Type.LONG;
+                    break;
+                case OBJECT:
+                    if( array.recordType == null ) {
+                        throw new IllegalArgumentException( "Elements of this array cannot be used in expressions" );
+                    }
+                    type = Type.RECORD;
+                    break;
+                default:
+                    type = Type.INT;
+            }
+            return new Element( type, array.recordType, array, index );
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            Object values = array.evaluateObject( record );
+            int i = (int) index.evaluate( record );
+            switch( array.elementKind ) {
+                case BYTE:
+                    return ((byte[]) values)[i];
+                case SHORT:
+                    return ((short[]) values)[i];
+                case INT:
+                    return ((int[]) values)[i];
+                default:
+                    return ((long[]) values)[i];
+            }
+        }
+
+        @Override
+        Object evaluateObject( Record record ) {
+            return ((Object[]) array.evaluateObject( record ))[(int) index.evaluate( record )];
+        }
+    }
+
+    private static final class Length extends Expression {
+        private final Expression array;
+
+        Length( Expression array ) {
+            super( Type.INT );
+            this.array = array;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return Array.getLength( array.evaluateObject( record ) );
+        }
+    }
+
+    private static final class Negate extends Expression {
+        private final Expression operand;
+
+        Negate( Expression operand ) {
+            super( operand.type );
+            this.operand = operand;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            long value = -operand.evaluate( record );
+            return type == Type.INT ? (int) value : value;
+        }
+    }
+
+    // Operations on ints are computed exactly on longs, then truncated to the int Java would compute
+    private static final class Arithmetic extends Expression {
+        private final char op;
+        private final Expression left;
+        private final Expression right;
+
+        private Arithmetic( Type type, char op, Expression left, Expression right ) {
+            super( type );
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        static Arithmetic of( char op, Expression left, Expression right ) {
+            Type type = left.type == Type.LONG || right.type == Type.LONG ? Type.LONG : Type.INT;
+            return new Arithmetic( type, op, left, right );
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            long a = left.evaluate( record );
+            long b = right.evaluate( record );
+            long value;
+            switch( op ) {
+                case '+':
+                    value = a + b;
+                    break;
+                case '-':
+                    value = a - b;
+                    break;
+                case '*':
+                    value = a * b;
+                    break;
+                default:
+                    value = a / b;
+            }
+            return type == Type.INT ? (int) value : value;
+        }
+    }
+
+    private static final class Comparison extends Expression {
+        static final int EQ = 0, NE = 1, LT = 2, GT = 3, LE = 4, GE = 5;
+
+        private final int op;
+        private final Expression left;
+        private final Expression right;
+
+        Comparison( int op, Expression left, Expression right ) {
+            super( Type.BOOLEAN );
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            long a = left.evaluate( record );
+            long b = right.evaluate( record );
+            boolean result;
+            switch( op ) {
+                case EQ:
+                    result = a == b;
+                    break;
+                case NE:
+                    result = a != b;
+                    break;
+                case LT:
+                    result = a < b;
+                    break;
+                case GT:
+                    result = a > b;
+                    break;
+                case LE:
+                    result = a <= b;
+                    break;
+                default:
+                    result = a >= b;
+            }
+            return result ? 1 : 0;
+        }
+    }
+
+    private static final class And extends Expression {
+        private final Expression left;
+        private final Expression right;
+
+        And( Expression left, Expression right ) {
+            super( Type.BOOLEAN );
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return left.evaluate( record ) != 0 ? right.evaluate( record ) : 0;
+        }
+    }
+
+    private static final class Or extends Expression {
+        private final Expression left;
+        private final Expression right;
+
+        Or( Expression left, Expression right ) {
+            super( Type.BOOLEAN );
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return left.evaluate( record ) != 0 ? 1 : right.evaluate( record );
+        }
+    }
+
+    private static final class Conditional extends Expression {
+        private final Expression condition;
+        private final Expression yes;
+        private final Expression no;
+
+        Conditional( Type type, Expression condition, Expression yes, Expression no ) {
+            super( type );
+            this.condition = condition;
+            this.yes = yes;
+            this.no = no;
+        }
+
+        @Override
+        public long evaluate( Record record ) {
+            return condition.evaluate( record ) != 0 ? yes.evaluate( record ) : no.evaluate( record );
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.bidouille.binparsergen.InvalidDefinitionException;
+import org.bidouille.binparsergen.data.Struct;
+import org.bidouille.binparsergen.util.BinaryReader;
+import org.bidouille.binparsergen.util.ByteBufferBinaryReader;
+import org.bidouille.binparsergen.util.StreamBinaryReader;
+
+/**
+ * Parses data of a top-level struct directly from the definition model, without generating code. The definition is compiled once into
+ * steps and expression trees, then each parse walks them into a {@link Record}, with the same semantics as the generated parser.
+ * <p>
+ * Streamed arrays and bytes are read eagerly, as arrays and byte buffers. [parallel] arrays are read sequentially, and [columnar] arrays
+ * as arrays of records.
+ * <p>
+ * Interpreters are immutable and can be used from several threads at once.
+ */
+public class Interpreter {
+    private static final Expression[] NO_ARGS = new Expression[0];
+
+    private final StructPlan plan;
+
+    Interpreter( StructPlan plan ) {
+        this.plan = plan;
+    }
+
+    /**
+     * Compiles interpreters for top-level structs of a definition.
+     * @param definitions all top-level structs of the definition, with their layout computed
+     * @return map of <Struct name, Interpreter>
+     * @throws InvalidDefinitionException if the definition uses types it does not define, or expressions the generated code would not
+     *         compile
+     */
+    public static Map<String, Interpreter> compile( List<Struct> definitions ) throws InvalidDefinitionException {
+        return new DefinitionCompiler().compile( definitions );
+    }
+
+    /**
+     * Returns the type of the records returned by this interpreter.
+     */
+    public RecordType getType() {
+        return plan.type;
+    }
+
+    public Record parse( InputStream is ) throws IOException {
+        return parse( new StreamBinaryReader( is ) );
+    }
+
+    /**
+     * Parses data from the buffer's position, and advances the position past the data read.
+     */
+    public Record parse( ByteBuffer buffer ) throws IOException {
+        ByteBufferBinaryReader in = new ByteBufferBinaryReader( buffer );
+        Record record = parse( in );
+        ((Buffer) buffer).position( buffer.position() + (int) in.getOffset() );
+        return record;
+    }
+
+    /**
+     * Parses data from a file, mapped in memory.
+     */
+    public Record parse( Path path ) throws IOException {
+        return parse( ByteBufferBinaryReader.map( path ) );
+    }
+
+    public Record parse( BinaryReader in ) throws IOException {
+        return plan.parse( in, null, NO_ARGS );
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.IOException;
+
+import org.bidouille.binparsergen.util.BinaryReader;
+
+/**
+ * Reads values stored as objects, such as strings, enum constants and records of structs.
+ */
+public abstract class ObjectDecoder extends Decoder {
+    final Class<?> type; // Class of the values, used to allocate arrays
+
+    ObjectDecoder( Class<?> type ) {
+        super( Kind.OBJECT );
+        this.type = type;
+    }
+
+    /**
+     * @param record record being parsed, in which expressions such as lengths are evaluated
+     */
+    abstract Object read( BinaryReader in, Record record ) throws IOException;
+
+}
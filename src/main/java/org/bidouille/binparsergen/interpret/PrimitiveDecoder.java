@@ -0,0 +1,21 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.IOException;
+
+import org.bidouille.binparsergen.util.BinaryReader;
+
+/**
+ * Reads integer values, returned as long sign-extended from the Java type of their {@link Decoder.Kind kind}.
+ */
+public abstract class PrimitiveDecoder extends Decoder {
+
+    PrimitiveDecoder( Kind kind ) {
+        super( kind );
+        if( kind == Kind.OBJECT ) {
+            throw new IllegalArgumentException( "Not a primitive kind : " + kind );
+        }
+    }
+
+    abstract long read( BinaryReader in, Record record ) throws IOException;
+
+}
@@ -0,0 +1,95 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+import org.bidouille.binparsergen.interpret.Decoder.Kind;
+import org.bidouille.binparsergen.interpret.RecordType.Field;
+
+/**
+ * Data of a struct parsed by the interpreter. Integer values are held unboxed in a long array, and boxed to the type of the field of the
+ * generated class only when read with {@link #get(String)}. Other values are sub-records, arrays, strings, byte buffers and enum values.
+ */
+public final class Record {
+    final RecordType type;
+    final long[] values;
+    final Object[] objects;
+    int index; // Index of the array element being read, the value of $ in expressions
+
+    Record( RecordType type ) {
+        this.type = type;
+        values = new long[type.values];
+        objects = new Object[type.objects];
+    }
+
+    public RecordType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the value of a field, as the generated class would hold it : integers are boxed to their Java type, arrays of integers are
+     * primitive arrays, structs are records and arrays of structs are record arrays.
+     * @throws IllegalArgumentException if the struct has no such field
+     */
+    public Object get( String name ) {
+        Field field = type.data( name );
+        switch( field.kind ) {
+            case BYTE:
+                return (byte) values[field.slot];
+            case SHORT:
+                return (short) values[field.slot];
+            case INT:
+                return (int) values[field.slot];
+            case LONG:
+                return values[field.slot];
+            default:
+                return objects[field.slot];
+        }
+    }
+
+    /**
+     * Returns the value of an integer field without boxing.
+     * @throws IllegalArgumentException if the struct has no such field, or if it is not an integer
+     */
+    public long getLong( String name ) {
+        Field field = type.data( name );
+        if( field.kind == Kind.OBJECT ) {
+            throw new IllegalArgumentException( "Not an integer field : " + name );
+        }
+        return values[field.slot];
+    }
+
+    @Override
+    public String toString() {
+        return toString( "" );
+    }
+
+    private String toString( String indent ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( type.getName() ).append( " {\n" );
+        for( String name : type.getFieldNames() ) {
+            sb.append( indent ).append( "  " ).append( name ).append( " = " );
+            append( sb, get( name ), indent );
+            sb.append( '\n' );
+        }
+        return sb.append( indent ).append( '}' ).toString();
+    }
+
+    private static void append( StringBuilder sb, Object value, String indent ) {
+        if( value instanceof Record ) {
+            sb.append( ((Record) value).toString( indent + "|  " ) );
+        } else if( value instanceof ByteBuffer ) {
+            sb.append( '(' ).append( ((ByteBuffer) value).remaining() ).append( " bytes)" );
+        } else if( value != null && value.getClass().isArray() ) {
+            sb.append( '[' );
+            for( int i = 0; i < Array.getLength( value ); i++ ) {
+                sb.append( i == 0 ? "" : ", " );
+                append( sb, Array.get( value, i ), indent );
+            }
+            sb.append( ']' );
+        } else {
+            sb.append( value );
+        }
+    }
+
+}
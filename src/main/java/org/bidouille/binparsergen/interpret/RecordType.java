@@ -0,0 +1,109 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bidouille.binparsergen.interpret.Decoder.Kind;
+
+/**
+ * Layout of the records of a struct : each named data has a slot, in the array of integer values or in the array of objects of the record.
+ * Parameters of the struct have slots too, but are not fields.
+ */
+public final class RecordType {
+    private final String name;
+    private final Map<String, Field> fields = new LinkedHashMap<>(); // Data and parameters, by name
+    private final List<String> fieldNames = new ArrayList<>(); // Data only, in declaration order
+    int values; // Number of integer slots
+    int objects; // Number of object slots
+
+    static final class Field {
+        final String name;
+        final Kind kind; // OBJECT for arrays
+        final int slot; // Index in the values or objects of the record
+        final boolean array;
+        final Kind elementKind; // For arrays
+        final RecordType recordType; // Type of the records of structs and arrays of structs, null otherwise
+        final boolean param;
+
+        Field( String name, Kind kind, int slot, boolean array, Kind elementKind, RecordType recordType, boolean param ) {
+            this.name = name;
+            this.kind = kind;
+            this.slot = slot;
+            this.array = array;
+            this.elementKind = elementKind;
+            this.recordType = recordType;
+            this.param = param;
+        }
+    }
+
+    RecordType( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the qualified name of the struct, as the name of its generated class.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the names of the named data of the struct, in declaration order. Data of a switch sharing a name appears once.
+     */
+    public List<String> getFieldNames() {
+        return Collections.unmodifiableList( fieldNames );
+    }
+
+    /**
+     * Adds a parameter of the struct.
+     */
+    Field addParam( String param ) {
+        Field field = new Field( param, Kind.INT, values++, false, null, null, true );
+        fields.put( param, field );
+        return field;
+    }
+
+    /**
+     * Adds a field, unless a data or parameter already has the name.
+     * @param elementKind kind of the elements of arrays, null for single values
+     * @return the field, or null if the name is taken
+     */
+    Field addField( String fieldName, Kind kind, Kind elementKind, RecordType recordType ) {
+        if( fields.containsKey( fieldName ) ) {
+            return null;
+        }
+        boolean array = elementKind != null;
+        Field field = new Field( fieldName, kind, kind == Kind.OBJECT ? objects++ : values++, array, elementKind, recordType, false );
+        fields.put( fieldName, field );
+        fieldNames.add( fieldName );
+        return field;
+    }
+
+    /**
+     * Returns the data or parameter with the specified name, or null.
+     */
+    Field field( String fieldName ) {
+        return fields.get( fieldName );
+    }
+
+    /**
+     * Returns the named data with the specified name.
+     * @throws IllegalArgumentException if the struct has no such data
+     */
+    Field data( String fieldName ) {
+        Field field = fields.get( fieldName );
+        if( field == null || field.param ) {
+            throw new IllegalArgumentException( "No field " + fieldName + " in " + name );
+        }
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
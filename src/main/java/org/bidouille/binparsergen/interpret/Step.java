@@ -0,0 +1,296 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import org.bidouille.binparsergen.ConstraintViolationException;
+import org.bidouille.binparsergen.util.BinaryReader;
+
+/**
+ * Part of the parse of a struct in interpreter mode, compiled from the data and blocks of the struct.
+ */
+abstract class Step {
+
+    abstract void run( BinaryReader in, Record record ) throws IOException;
+
+    static void runAll( Step[] steps, BinaryReader in, Record record ) throws IOException {
+        for( Step step : steps ) {
+            step.run( in, record );
+        }
+    }
+
+    /**
+     * Constraint on the value of a data, checked as the generated code does. Integer values are checked as signed longs, or unsigned for
+     * [compact] data, and other values compared with equals().
+     */
+    static final class Check {
+        static final int EQ = 0, NE = 1, LT = 2, GT = 3, LE = 4, GE = 5;
+
+        private final int op;
+        private final long value;
+        private final Object object; // For checks of objects, null otherwise
+        private final String constraint; // Name, operator and value, as in the messages of the generated code
+
+        Check( int op, long value, Object object, String constraint ) {
+            this.op = op;
+            this.value = value;
+            this.object = object;
+            this.constraint = constraint;
+        }
+
+        void check( long actual ) throws ConstraintViolationException {
+            boolean valid;
+            switch( op ) {
+                case EQ:
+                    valid = object == null && actual == value;
+                    break;
+                case NE:
+                    valid = actual != value;
+                    break;
+                case LT:
+                    valid = actual < value;
+                    break;
+                case GT:
+                    valid = actual > value;
+                    break;
+                case LE:
+                    valid = actual <= value;
+                    break;
+                default:
+                    valid = actual >= value;
+            }
+            if( !valid ) {
+                throw new ConstraintViolationException( constraint, actual );
+            }
+        }
+
+        void check( Object actual ) throws ConstraintViolationException {
+            if( !object.equals( actual ) ) {
+                throw new ConstraintViolationException( constraint, actual );
+            }
+        }
+    }
+
+    static final class SkipTo extends Step {
+        private final Expression offset;
+
+        SkipTo( Expression offset ) {
+            this.offset = offset;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            in.skipTo( offset.evaluate( record ) );
+        }
+    }
+
+    /**
+     * Reads a single integer value, checks it and stores it in its slot if it is named.
+     */
+    static final class Read extends Step {
+        private final PrimitiveDecoder decoder;
+        private final int slot; // -1 for anonymous data
+        private final Check[] checks;
+        private final long mask; // Of the unsigned value of [compact] data, -1 otherwise
+
+        Read( PrimitiveDecoder decoder, int slot, Check[] checks, long mask ) {
+            this.decoder = decoder;
+            this.slot = slot;
+            this.checks = checks;
+            this.mask = mask;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            long value = decoder.read( in, record );
+            for( Check check : checks ) {
+                check.check( value & mask );
+            }
+            if( slot >= 0 ) {
+                record.values[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Reads a single object, checks it and stores it in its slot if it is named.
+     */
+    static final class ReadObject extends Step {
+        private final ObjectDecoder decoder;
+        private final int slot; // -1 for anonymous data
+        private final Check[] checks;
+
+        ReadObject( ObjectDecoder decoder, int slot, Check[] checks ) {
+            this.decoder = decoder;
+            this.slot = slot;
+            this.checks = checks;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            Object value = decoder.read( in, record );
+            for( Check check : checks ) {
+                check.check( value );
+            }
+            if( slot >= 0 ) {
+                record.objects[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Reads the elements of an integer array one by one, skipping to the offset of each element first if it has one, and checks each
+     * element.
+     */
+    static final class ReadArray extends Step {
+        private final Expression cardinality;
+        private final Expression elementOffset; // null if elements follow each other
+        private final PrimitiveDecoder decoder;
+        private final int slot; // -1 for anonymous data
+        private final Check[] checks;
+        private final long mask;
+
+        ReadArray( Expression cardinality, Expression elementOffset, PrimitiveDecoder decoder, int slot, Check[] checks, long mask ) {
+            this.cardinality = cardinality;
+            this.elementOffset = elementOffset;
+            this.decoder = decoder;
+            this.slot = slot;
+            this.checks = checks;
+            this.mask = mask;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            int n = (int) cardinality.evaluate( record );
+            Object array;
+            switch( decoder.kind ) {
+                case BYTE:
+                    byte[] bytes = new byte[n];
+                    for( int i = 0; i < n; i++ ) {
+                        bytes[i] = (byte) element( in, record, i );
+                    }
+                    array = bytes;
+                    break;
+                case SHORT:
+                    short[] shorts = new short[n];
+                    for( int i = 0; i < n; i++ ) {
+                        shorts[i] = (short) element( in, record, i );
+                    }
+                    array = shorts;
+                    break;
+                case INT:
+                    int[] ints = new int[n];
+                    for( int i = 0; i < n; i++ ) {
+                        ints[i] = (int) element( in, record, i );
+                    }
+                    array = ints;
+                    break;
+                default:
+                    long[] longs = new long[n];
+                    for( int i = 0; i < n; i++ ) {
+                        longs[i] = element( in, record, i );
+                    }
+                    array = longs;
+            }
+            if( slot >= 0 ) {
+                record.objects[slot] = array;
+            }
+        }
+
+        private long element( BinaryReader in, Record record, int i ) throws IOException {
+            record.index = i;
+            if( elementOffset != null ) {
+                in.skipTo( elementOffset.evaluate( record ) );
+            }
+            long value = decoder.read( in, record );
+            for( Check check : checks ) {
+                check.check( value & mask );
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Reads the elements of an object array one by one, skipping to the offset of each element first if it has one, and checks each
+     * element.
+     */
+    static final class ReadObjectArray extends Step {
+        private final Expression cardinality;
+        private final Expression elementOffset; // null if elements follow each other
+        private final ObjectDecoder decoder;
+        private final int slot; // -1 for anonymous data
+        private final Check[] checks;
+
+        ReadObjectArray( Expression cardinality, Expression elementOffset, ObjectDecoder decoder, int slot, Check[] checks ) {
+            this.cardinality = cardinality;
+            this.elementOffset = elementOffset;
+            this.decoder = decoder;
+            this.slot = slot;
+            this.checks = checks;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            int n = (int) cardinality.evaluate( record );
+            Object[] array = (Object[]) Array.newInstance( decoder.type, n );
+            for( int i = 0; i < n; i++ ) {
+                record.index = i;
+                if( elementOffset != null ) {
+                    in.skipTo( elementOffset.evaluate( record ) );
+                }
+                array[i] = decoder.read( in, record );
+                for( Check check : checks ) {
+                    check.check( array[i] );
+                }
+            }
+            if( slot >= 0 ) {
+                record.objects[slot] = array;
+            }
+        }
+    }
+
+    static final class If extends Step {
+        private final Expression condition;
+        private final Step[] steps;
+
+        If( Expression condition, Step[] steps ) {
+            this.condition = condition;
+            this.steps = steps;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            if( condition.evaluate( record ) != 0 ) {
+                runAll( steps, in, record );
+            }
+        }
+    }
+
+    /**
+     * Runs the steps of the case whose labels contain the value of the selector, or of the default case if there is one.
+     */
+    static final class Switch extends Step {
+        private final Expression selector;
+        private final int[] labels; // Sorted
+        private final Step[][] cases; // Steps of the case of each label
+        private final Step[] defaultCase; // null without default case
+
+        Switch( Expression selector, int[] labels, Step[][] cases, Step[] defaultCase ) {
+            this.selector = selector;
+            this.labels = labels;
+            this.cases = cases;
+            this.defaultCase = defaultCase;
+        }
+
+        @Override
+        void run( BinaryReader in, Record record ) throws IOException {
+            int i = Arrays.binarySearch( labels, (int) selector.evaluate( record ) );
+            Step[] steps = i >= 0 ? cases[i] : defaultCase;
+            if( steps != null ) {
+                runAll( steps, in, record );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.bidouille.binparsergen.interpret;
+
+import java.io.IOException;
+
+import org.bidouille.binparsergen.util.BinaryReader;
+
+/**
+ * Compiled parse of a struct : the steps reading its data into a record of its type.
+ */
+final class StructPlan {
+    final RecordType type;
+    final int[] paramSlots;
+    Step[] steps; // Set once the struct is compiled, which may be after structs using it were
+
+    StructPlan( RecordType type, int[] paramSlots ) {
+        this.type = type;
+        this.paramSlots = paramSlots;
+    }
+
+    /**
+     * Parses a record, offsets of the data being relative to the current position as for generated classes.
+     * @param caller record the arguments are evaluated in
+     * @param args expressions of the values of the parameters
+     */
+    Record parse( BinaryReader in, Record caller, Expression[] args ) throws IOException {
+        Record record = new Record( type );
+        for( int i = 0; i < args.length; i++ ) {
+            record.values[paramSlots[i]] = args[i].evaluate( caller );
+        }
+        in.pushOffset();
+        Step.runAll( steps, in, record );
+        in.popOffset();
+        return record;
+    }
+
+}
@@ -4,15 +4,44 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.lang.reflect.InvocationTargetException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Writes a template resource, replacing <code>#param#</code> with the values of parameters, and lines of the form
+ * <code>&lt;indent&gt;##block#</code> with the output of the <code>writeBlock( IndentPrintWriter )</code> method of the subclass, indented.
+ * <p>
+ * Templates are parsed once into lines of literal text, parameters and blocks, and block methods are looked up once per class, as the
+ * generator writes the same templates for every struct and array.
+ */
 public class Template {
+    private static final Pattern BLOCK = Pattern.compile( "(.*)##([^#]+)#" );
+    private static final Pattern PARAM = Pattern.compile( "(^|[^#])#([^# ]+)#" );
+
+    // Parsed templates, by class as resources are loaded with the class of the template
+    private static final ClassValue<Map<String, List<Line>>> TEMPLATES = new ClassValue<Map<String, List<Line>>>() {
+        @Override
+        protected Map<String, List<Line>> computeValue( Class<?> type ) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final ClassValue<Map<String, MethodHandle>> BLOCKS = new ClassValue<Map<String, MethodHandle>>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue( Class<?> type ) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     private Map<String, String> params = new HashMap<>();
 
     public void setParam( String name, String value ) {
@@ -20,49 +49,104 @@ public class Template {
     }
 
     public void write( String template, IndentPrintWriter writer ) throws IOException {
+        List<Line> lines;
+        try {
+            lines = TEMPLATES.get( getClass() ).computeIfAbsent( template, this::parse );
+        } catch( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        for( Line line : lines ) {
+            if( line.block != null ) {
+                writer.pushIndent( line.indent );
+                writeBlock( line.block, writer );
+                writer.popIndent();
+            } else {
+                writeLine( writer, line );
+            }
+        }
+    }
+
+    private List<Line> parse( String template ) {
         InputStream is = getClass().getResourceAsStream( template );
+        if( is == null ) {
+            throw new UncheckedIOException( new IOException( "Template not found : " + template ) );
+        }
+        List<Line> lines = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader( new InputStreamReader( is, "UTF-8" ) )) {
-            Pattern indentPat = Pattern.compile( "(.*)##([^#]+)#" );
             String line;
             while( (line = reader.readLine()) != null ) {
-                Matcher matcher = indentPat.matcher( line );
-                if( matcher.matches() ) {
-                    writer.pushIndent( matcher.group( 1 ) );
-                    writeBlock( matcher.group( 2 ), writer );
-                    writer.popIndent();
-                } else {
-                    writeLine( writer, line );
-                }
+                lines.add( Line.parse( line ) );
             }
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        return lines;
+    }
+
+    private void writeBlock( String name, IndentPrintWriter writer ) {
+        MethodHandle method = BLOCKS.get( getClass() ).computeIfAbsent( name, this::findBlock );
+        try {
+            method.invoke( this, writer );
+        } catch( Error e ) {
+            throw e;
+        } catch( Throwable e ) {
+            throw new RuntimeException( "Exception while writing " + name, e );
         }
     }
 
-    private void writeBlock( String name, PrintWriter writer ) {
+    private MethodHandle findBlock( String name ) {
         String methodName = "write" + name.substring( 0, 1 ).toUpperCase() + name.substring( 1 );
         try {
             Method method = getClass().getDeclaredMethod( methodName, IndentPrintWriter.class );
-            method.invoke( this, writer );
+            method.setAccessible( true );
+            return MethodHandles.lookup().unreflect( method );
         } catch( NoSuchMethodException | SecurityException | IllegalAccessException e ) {
             throw new RuntimeException( "No " + methodName + " method found.", e );
-        } catch( InvocationTargetException e ) {
-            throw new RuntimeException( "Exception while writing " + name, e );
         }
     }
 
-    private void writeLine( IndentPrintWriter writer, String line ) {
-        Pattern pat = Pattern.compile( "(^|[^#])#([^# ]+)#" );
-        Matcher matcher = pat.matcher( line );
-        StringBuffer sb = new StringBuffer();
-        while( matcher.find() ) {
-            String paramName = matcher.group( 2 );
-            if( !params.containsKey( paramName ) ) {
-                throw new RuntimeException( "Missing parameter '" + paramName + "'" );
+    private void writeLine( IndentPrintWriter writer, Line line ) {
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < line.params.length; i++ ) {
+            String value = params.get( line.params[i] );
+            if( value == null && !params.containsKey( line.params[i] ) ) {
+                throw new RuntimeException( "Missing parameter '" + line.params[i] + "'" );
             }
-            String replacement = matcher.group( 1 ) + params.get( paramName );
-            matcher.appendReplacement( sb, replacement.replaceAll( "\\$", "\\\\\\$" ) ); // avoid interpreting $x as backreferences
+            sb.append( line.texts[i] ).append( value );
         }
-        matcher.appendTail( sb );
+        sb.append( line.texts[line.params.length] );
         writer.println( sb.toString() );
     }
 
+    // Line of a template : either a block, or literal texts separated by parameters
+    private static final class Line {
+        String indent;
+        String block;
+        String[] texts; // One more than parameters
+        String[] params;
+
+        static Line parse( String text ) {
+            Line line = new Line();
+            Matcher block = BLOCK.matcher( text );
+            if( block.matches() ) {
+                line.indent = block.group( 1 );
+                line.block = block.group( 2 );
+                return line;
+            }
+            List<String> texts = new ArrayList<>();
+            List<String> params = new ArrayList<>();
+            Matcher param = PARAM.matcher( text );
+            int start = 0;
+            while( param.find() ) {
+                texts.add( text.substring( start, param.start() ) + param.group( 1 ) );
+                params.add( param.group( 2 ) );
+                start = param.end();
+            }
+            texts.add( text.substring( start ) );
+            line.texts = texts.toArray( new String[0] );
+            line.params = params.toArray( new String[0] );
+            return line;
+        }
+    }
+
 }
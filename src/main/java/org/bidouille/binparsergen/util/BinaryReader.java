@@ -0,0 +1,426 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reader used by generated parsers. Combines the functions of {@link EndianDataInputStream} and {@link SkipInputStream} : implementations decode
+ * primitives straight from their underlying storage, while this class handles offset tracking and bit fields.
+ *
+ * @see StreamBinaryReader
+ * @see ByteBufferBinaryReader
+ */
+public abstract class BinaryReader {
+    private long bitBuf; // Bits loaded ahead for bit fields, left-aligned
+    private int bitCount; // Number of valid bits in bitBuf
+    private long base; // Position corresponding to offset zero
+    private long[] offsets = new long[8];
+    private int depth;
+
+    public abstract byte readByte() throws IOException;
+
+    public abstract int readUnsignedByte() throws IOException;
+
+    public abstract short readShort() throws IOException;
+
+    public abstract int readUnsignedShort() throws IOException;
+
+    public abstract int readInt24() throws IOException;
+
+    public abstract int readUnsignedInt24() throws IOException;
+
+    public abstract int readInt() throws IOException;
+
+    public abstract long readUnsignedInt() throws IOException;
+
+    public abstract long readLong() throws IOException;
+
+    public abstract short readShortLE() throws IOException;
+
+    public abstract int readUnsignedShortLE() throws IOException;
+
+    public abstract int readIntLE() throws IOException;
+
+    public abstract long readUnsignedIntLE() throws IOException;
+
+    public abstract long readLongLE() throws IOException;
+
+    /**
+     * Reads exactly len bytes into the specified array.
+     * @throws EOFException if the end of data is reached before len bytes could be read.
+     */
+    public abstract void readFully( byte[] b, int off, int len ) throws IOException;
+
+    /**
+     * Fills the array with unsigned bytes.
+     * @return the array
+     * @throws EOFException if the end of data is reached before the array is filled.
+     */
+    public abstract int[] readUnsignedBytes( int[] array ) throws IOException;
+
+    /**
+     * Fills the array with big-endian shorts.
+     * @return the array
+     * @throws EOFException if the end of data is reached before the array is filled.
+     */
+    public abstract short[] readShorts( short[] array ) throws IOException;
+
+    /**
+     * Fills the array with big-endian ints.
+     * @return the array
+     * @throws EOFException if the end of data is reached before the array is filled.
+     */
+    public abstract int[] readInts( int[] array ) throws IOException;
+
+    /**
+     * Fills the array with big-endian longs.
+     * @return the array
+     * @throws EOFException if the end of data is reached before the array is filled.
+     */
+    public abstract long[] readLongs( long[] array ) throws IOException;
+
+    /**
+     * Reads a fixed length string of length bytes long, with the specified charset.
+     * @throws EOFException if there are less than length byte available.
+     * @throws UnsupportedEncodingException if the charset is not supported.
+     */
+    public String readFixedString( int length, String charset ) throws IOException {
+        return readFixedString( length, charset( charset ) );
+    }
+
+    /**
+     * Reads a fixed length string of length bytes long, with the specified charset.
+     * @throws EOFException if there are less than length byte available.
+     */
+    public String readFixedString( int length, Charset charset ) throws IOException {
+        return readFixedString( length, charset, null );
+    }
+
+    /**
+     * Reads a fixed length string of length bytes long, with the specified charset, deduplicated through the specified cache.
+     * @param cache cache of the strings already read, or null
+     * @throws EOFException if there are less than length byte available.
+     */
+    public String readFixedString( int length, Charset charset, StringCache cache ) throws IOException {
+        return decode( readBytes( length ), 0, length, charset, cache );
+    }
+
+    /**
+     * Returns the absolute position of the next byte to be read.
+     */
+    protected abstract long position();
+
+    /**
+     * Moves forward to the specified absolute position.
+     * @throws EOFException if the position could not be reached
+     */
+    protected abstract void seek( long position ) throws IOException;
+
+    /**
+     * Makes up to n bytes available for {@link #take(int)}, n being at most 8.
+     * @return the number of bytes available, less than n only at the end of data
+     */
+    protected abstract int prefetch( int n ) throws IOException;
+
+    /**
+     * Consumes n bytes made available by {@link #prefetch(int)}, and returns them as a big-endian value. Must not check for a byte boundary.
+     */
+    protected abstract long take( int n );
+
+    /**
+     * Moves back n bytes, n being at most 8. Only used to give back bytes loaded ahead by {@link #take(int)}.
+     */
+    protected abstract void untake( int n );
+
+    public void readFully( byte[] b ) throws IOException {
+        readFully( b, 0, b.length );
+    }
+
+    public byte[] readBytes( int length ) throws IOException {
+        byte[] bytes = new byte[length];
+        readFully( bytes );
+        return bytes;
+    }
+
+    /**
+     * Fills the array with bytes.
+     * @return the array
+     * @throws EOFException if the end of data is reached before the array is filled.
+     */
+    public byte[] readBytes( byte[] array ) throws IOException {
+        readFully( array );
+        return array;
+    }
+
+    /**
+     * Reads the next length bytes as a buffer. Readers over a {@link ByteBuffer} return a read-only view of their buffer, without copying, others
+     * a copy.
+     * @throws EOFException if there are less than length byte available.
+     */
+    public ByteBuffer readSlice( int length ) throws IOException {
+        return ByteBuffer.wrap( readBytes( length ) );
+    }
+
+    /**
+     * Reads a null-terminated string up to maxLength byte long, with the specified charset.
+     * @throws EOFException if the end of data is reached before finding a zero byte.
+     * @throws UnsupportedEncodingException if the charset is not supported.
+     */
+    public String readCString( int maxLength, String charset ) throws IOException {
+        return readCString( maxLength, charset( charset ) );
+    }
+
+    /**
+     * Reads a null-terminated string up to maxLength byte long, with the specified charset.
+     * @throws EOFException if the end of data is reached before finding a zero byte.
+     */
+    public String readCString( int maxLength, Charset charset ) throws IOException {
+        byte[] bytes = new byte[Math.min( maxLength, 64 )];
+        int i;
+        for( i = 0; i < maxLength; i++ ) {
+            if( i == bytes.length ) {
+                bytes = Arrays.copyOf( bytes, (int) Math.min( maxLength, bytes.length * 2L ) );
+            }
+            bytes[i] = readByte();
+            if( bytes[i] == 0 ) {
+                break;
+            }
+        }
+        return decode( bytes, 0, i, charset );
+    }
+
+    /**
+     * Reads a null-terminated string up to length bytes long, with the specified charset. Discards any bytes between the end of the string and length
+     * @throws EOFException if there are less than length byte available.
+     * @throws UnsupportedEncodingException if the charset is not supported.
+     */
+    public String readZeroFillString( int length, String charset ) throws IOException {
+        return readZeroFillString( length, charset( charset ) );
+    }
+
+    /**
+     * Reads a null-terminated string up to length bytes long, with the specified charset. Discards any bytes between the end of the string and length
+     * @throws EOFException if there are less than length byte available.
+     */
+    public String readZeroFillString( int length, Charset charset ) throws IOException {
+        return readZeroFillString( length, charset, null );
+    }
+
+    /**
+     * Reads a null-terminated string up to length bytes long, with the specified charset, deduplicated through the specified cache. Discards
+     * any bytes between the end of the string and length
+     * @param cache cache of the strings already read, or null
+     * @throws EOFException if there are less than length byte available.
+     */
+    public String readZeroFillString( int length, Charset charset, StringCache cache ) throws IOException {
+        byte[] bytes = readBytes( length );
+        int i = 0;
+        while( i < length && bytes[i] != 0 ) {
+            i++;
+        }
+        return decode( bytes, 0, i, charset, cache );
+    }
+
+    static String decode( byte[] bytes, int offset, int length, Charset charset, StringCache cache ) {
+        return cache != null ? cache.get( bytes, offset, length, charset ) : decode( bytes, offset, length, charset );
+    }
+
+    /**
+     * Decodes bytes with the specified charset. ASCII and ISO-8859-1 strings are decoded by widening each byte, without going through a
+     * charset decoder.
+     */
+    @SuppressWarnings( "deprecation" )
+    static String decode( byte[] bytes, int offset, int length, Charset charset ) {
+        if( charset.equals( StandardCharsets.ISO_8859_1 ) || charset.equals( StandardCharsets.US_ASCII ) && isAscii( bytes, offset, length ) ) {
+            return new String( bytes, 0, offset, length );
+        }
+        return new String( bytes, offset, length, charset );
+    }
+
+    private static boolean isAscii( byte[] bytes, int offset, int length ) {
+        for( int i = offset; i < offset + length; i++ ) {
+            if( bytes[i] < 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset charset( String name ) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName( name );
+        } catch( IllegalArgumentException e ) {
+            throw new UnsupportedEncodingException( name );
+        }
+    }
+
+    /**
+     * Read bit fields. Must read a multiple of 8 bits before resuming byte read operations.
+     * @param n number of bits to read, between 0 and 31
+     * @return the bits as a integer value
+     * @throws EOFException if the requested amount of bits can not be read
+     */
+    public int readBits( int n ) throws IOException {
+        return (int) readLongBits( n );
+    }
+
+    /**
+     * Read bit fields of up to 64 bits. Must read a multiple of 8 bits before resuming byte read operations.
+     * <p>
+     * Bits are loaded ahead, a word at a time, in an accumulator each field is then extracted from with a single shift.
+     * @param n number of bits to read, between 0 and 64
+     * @return the bits as a long value, negative if 64 bits are read and the first one is set
+     * @throws EOFException if the requested amount of bits can not be read
+     */
+    public long readLongBits( int n ) throws IOException {
+        if( n > bitCount ) {
+            refillBits();
+            if( n > bitCount ) {
+                return readStraddlingBits( n );
+            }
+        } else if( n == 0 ) {
+            return 0;
+        }
+        return extractBits( n );
+    }
+
+    // Slow path for fields that do not fit in the accumulator after a refill : either at end of data, or when more than 57 bits are requested
+    // while not on a byte boundary.
+    private long readStraddlingBits( int n ) throws IOException {
+        if( bitCount == 0 ) {
+            throw new EOFException( "EOF reached while reading bits" );
+        }
+        int low = n - bitCount;
+        long high = extractBits( bitCount );
+        refillBits();
+        if( low > bitCount ) {
+            throw new EOFException( "EOF reached while reading bits" );
+        }
+        return (high << low) | extractBits( low );
+    }
+
+    private long extractBits( int n ) {
+        long val = bitBuf >>> (64 - n);
+        bitBuf = (bitBuf << (n - 1)) << 1; // Shifting by 64 would be a no-op
+        bitCount -= n;
+        return val;
+    }
+
+    // Loads as many whole bytes as fit in the accumulator
+    private void refillBits() throws IOException {
+        int n = prefetch( (64 - bitCount) >> 3 );
+        if( n != 0 ) {
+            bitBuf |= take( n ) << (64 - bitCount - n * 8);
+            bitCount += n * 8;
+        }
+    }
+
+    /**
+     * Moves forward to the byte offset specified. Discards current bit position if any.
+     * @param offset byte offset to skip to
+     * @throws EOFException if the required offset could not be reached
+     * @throws IOException if the offset is before the current position
+     */
+    public void skipTo( long offset ) throws IOException {
+        if( (bitCount & 7) != 0 ) {
+            extractBits( bitCount & 7 ); // Drops the rest of the current byte, so that no stale bits remain in bitBuf
+        }
+        checkByteBoundary();
+        long current = position();
+        if( base + offset < current ) {
+            throw new IOException( "Cannot skip backwards to offset " + offset + ", current offset : " + (current - base) );
+        }
+        if( base + offset != current ) {
+            seek( base + offset );
+        }
+    }
+
+    /**
+     * Returns the current byte offset, relative to the last offset pushed by {@link #pushOffset()}.
+     */
+    public long getOffset() {
+        return position() - base - ((bitCount + 7) >> 3);
+    }
+
+    /**
+     * Returns the current bit offset within the current byte.
+     */
+    public long getBitOffset() {
+        return -bitCount & 7;
+    }
+
+    /**
+     * Pushes the current offset in a stack and behaves as if the current offset is now zero.
+     * @throws IOException if attempting to push an offset while not on a byte boundary.
+     */
+    public void pushOffset() throws IOException {
+        checkByteBoundary();
+        if( depth == offsets.length ) {
+            offsets = Arrays.copyOf( offsets, depth * 2 );
+        }
+        offsets[depth++] = base;
+        base = position();
+    }
+
+    /**
+     * Pops an offset previously pushed using {@link #pushOffset()}. The offset will be restored, and incremented to reflect the amount the reader
+     * advanced since the last {@link #pushOffset()}.
+     * @throws IOException if attempting to pop while not on a byte boundary. Will also be thrown when attempting to pop whithout a previous push.
+     */
+    public void popOffset() throws IOException {
+        checkByteBoundary();
+        if( depth == 0 ) {
+            throw new IOException( "Stack underflow" );
+        }
+        base = offsets[--depth];
+    }
+
+    /**
+     * Forgets the bits loaded ahead and the offsets pushed, for a reader rebound to new data.
+     */
+    protected final void resetState() {
+        bitBuf = 0;
+        bitCount = 0;
+        base = 0;
+        depth = 0;
+    }
+
+    /**
+     * Returns the number of bits loaded ahead for bit fields, and not read yet.
+     */
+    protected final int pendingBits() {
+        return bitCount;
+    }
+
+    /**
+     * Converts an absolute position to an offset relative to the last offset pushed.
+     */
+    protected final long toOffset( long position ) {
+        return position - base;
+    }
+
+    /**
+     * Must be called before any byte read operation. Gives back any whole bytes loaded ahead for bit fields.
+     * @throws IOException if not on a byte boundary
+     */
+    protected final void checkByteBoundary() throws IOException {
+        if( bitCount != 0 ) {
+            releaseBits();
+        }
+    }
+
+    private void releaseBits() throws IOException {
+        if( (bitCount & 7) != 0 ) {
+            throw new IOException( "Not on a byte boundary (" + getBitOffset() + ")" );
+        }
+        untake( bitCount >> 3 );
+        bitBuf = 0;
+        bitCount = 0;
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream over the bytes of a streamed <code>bytes(n)</code> field, used by generated parsers. Bytes are read from the parser's reader as they
+ * are requested, so they are never held in memory. Once all bytes have been read or skipped, or the stream is closed, parsing resumes with
+ * the data following the field.
+ */
+public abstract class BoundedInputStream extends InputStream {
+    private final BinaryReader in;
+    private final long length;
+    private long remaining;
+    private boolean ended;
+
+    protected BoundedInputStream( BinaryReader in, long length ) {
+        this.in = in;
+        this.length = length;
+        this.remaining = length;
+    }
+
+    /**
+     * Parses the data following the field.
+     */
+    protected abstract void end() throws IOException;
+
+    /**
+     * Returns the number of bytes of the field.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes not read yet.
+     */
+    public long remaining() {
+        return remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if( remaining == 0 ) {
+            checkEnd();
+            return -1;
+        }
+        int b = in.readUnsignedByte();
+        remaining--;
+        checkEnd();
+        return b;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if( len == 0 ) {
+            return 0;
+        }
+        if( remaining == 0 ) {
+            checkEnd();
+            return -1;
+        }
+        int n = (int) Math.min( len, remaining );
+        in.readFully( b, off, n );
+        remaining -= n;
+        checkEnd();
+        return n;
+    }
+
+    @Override
+    public long skip( long n ) throws IOException {
+        long skipped = Math.max( 0, Math.min( n, remaining ) );
+        if( skipped > 0 ) {
+            in.skipTo( in.getOffset() + skipped );
+            remaining -= skipped;
+            checkEnd();
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return 0;
+    }
+
+    /**
+     * Skips the bytes not read yet, and parses the data following the field.
+     */
+    @Override
+    public void close() throws IOException {
+        skip( remaining );
+        checkEnd();
+    }
+
+    private void checkEnd() throws IOException {
+        if( remaining == 0 && !ended ) {
+            ended = true;
+            end();
+        }
+    }
+
+}
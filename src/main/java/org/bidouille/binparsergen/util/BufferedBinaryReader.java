@@ -0,0 +1,310 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Base of readers decoding primitives straight from an internal byte array, that subclasses fill from their source.
+ */
+public abstract class BufferedBinaryReader extends BinaryReader {
+    protected byte[] buf;
+    protected int pos;
+    protected int limit;
+    protected long bufStart; // Absolute position of buf[0]
+
+    protected BufferedBinaryReader( int bufferSize ) {
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Makes at least n bytes available in the buffer starting at pos, unless the end of data is reached. The last 8 bytes before pos must be
+     * kept in the buffer so that {@link #untake(int)} can always move back.
+     * @return the number of bytes available
+     */
+    protected abstract int fill( int n ) throws IOException;
+
+    @Override
+    public byte readByte() throws IOException {
+        require( 1 );
+        return buf[pos++];
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        require( 1 );
+        return buf[pos++] & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require( 2 );
+        short v = (short) ((buf[pos] << 8) | (buf[pos + 1] & 0xff));
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        require( 2 );
+        int v = ((buf[pos] & 0xff) << 8) | (buf[pos + 1] & 0xff);
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readInt24() throws IOException {
+        require( 3 );
+        int v = (buf[pos] << 16) | ((buf[pos + 1] & 0xff) << 8) | (buf[pos + 2] & 0xff);
+        pos += 3;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedInt24() throws IOException {
+        require( 3 );
+        int v = ((buf[pos] & 0xff) << 16) | ((buf[pos + 1] & 0xff) << 8) | (buf[pos + 2] & 0xff);
+        pos += 3;
+        return v;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require( 4 );
+        int v = getInt( pos );
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readUnsignedInt() throws IOException {
+        require( 4 );
+        long v = getInt( pos ) & 0xffffffffL;
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require( 8 );
+        long v = ((long) getInt( pos ) << 32) | (getInt( pos + 4 ) & 0xffffffffL);
+        pos += 8;
+        return v;
+    }
+
+    @Override
+    public short readShortLE() throws IOException {
+        require( 2 );
+        short v = (short) ((buf[pos + 1] << 8) | (buf[pos] & 0xff));
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedShortLE() throws IOException {
+        require( 2 );
+        int v = ((buf[pos + 1] & 0xff) << 8) | (buf[pos] & 0xff);
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readIntLE() throws IOException {
+        require( 4 );
+        int v = getIntLE( pos );
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readUnsignedIntLE() throws IOException {
+        require( 4 );
+        long v = getIntLE( pos ) & 0xffffffffL;
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readLongLE() throws IOException {
+        require( 8 );
+        long v = ((long) getIntLE( pos + 4 ) << 32) | (getIntLE( pos ) & 0xffffffffL);
+        pos += 8;
+        return v;
+    }
+
+    private int getInt( int i ) {
+        return (buf[i] << 24) | ((buf[i + 1] & 0xff) << 16) | ((buf[i + 2] & 0xff) << 8) | (buf[i + 3] & 0xff);
+    }
+
+    private int getIntLE( int i ) {
+        return (buf[i + 3] << 24) | ((buf[i + 2] & 0xff) << 16) | ((buf[i + 1] & 0xff) << 8) | (buf[i] & 0xff);
+    }
+
+    @Override
+    public void readFully( byte[] b, int off, int len ) throws IOException {
+        checkByteBoundary();
+        while( true ) {
+            int available = Math.min( limit - pos, len );
+            System.arraycopy( buf, pos, b, off, available );
+            pos += available;
+            off += available;
+            len -= available;
+            if( len == 0 ) {
+                return;
+            }
+            if( fill( Math.min( len, buf.length - 8 ) ) == 0 ) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    @Override
+    public int[] readUnsignedBytes( int[] array ) throws IOException {
+        int i = 0;
+        while( i < array.length ) {
+            require( 1 );
+            int end = i + Math.min( array.length - i, limit - pos );
+            while( i < end ) {
+                array[i++] = buf[pos++] & 0xff;
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public short[] readShorts( short[] array ) throws IOException {
+        int i = 0;
+        while( i < array.length ) {
+            require( 2 );
+            int end = i + Math.min( array.length - i, (limit - pos) >> 1 );
+            while( i < end ) {
+                array[i++] = (short) ((buf[pos] << 8) | (buf[pos + 1] & 0xff));
+                pos += 2;
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public int[] readInts( int[] array ) throws IOException {
+        int i = 0;
+        while( i < array.length ) {
+            require( 4 );
+            int end = i + Math.min( array.length - i, (limit - pos) >> 2 );
+            while( i < end ) {
+                array[i++] = getInt( pos );
+                pos += 4;
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public long[] readLongs( long[] array ) throws IOException {
+        int i = 0;
+        while( i < array.length ) {
+            require( 8 );
+            int end = i + Math.min( array.length - i, (limit - pos) >> 3 );
+            while( i < end ) {
+                array[i++] = ((long) getInt( pos ) << 32) | (getInt( pos + 4 ) & 0xffffffffL);
+                pos += 8;
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public String readFixedString( int length, Charset charset, StringCache cache ) throws IOException {
+        if( length > buf.length - 8 ) {
+            return super.readFixedString( length, charset, cache );
+        }
+        require( length );
+        String s = decode( buf, pos, length, charset, cache );
+        pos += length;
+        return s;
+    }
+
+    @Override
+    public String readZeroFillString( int length, Charset charset, StringCache cache ) throws IOException {
+        if( length > buf.length - 8 ) {
+            return super.readZeroFillString( length, charset, cache );
+        }
+        require( length );
+        String s = decode( buf, pos, terminator( pos, pos + length ) - pos, charset, cache );
+        pos += length;
+        return s;
+    }
+
+    // Scans the buffer for the terminator, refilling it as needed, and decodes the string in place
+    @Override
+    public String readCString( int maxLength, Charset charset ) throws IOException {
+        checkByteBoundary();
+        int scanned = 0;
+        while( true ) {
+            int end = pos + Math.min( maxLength, limit - pos );
+            int zero = terminator( pos + scanned, end );
+            if( zero < end || end - pos == maxLength ) {
+                String s = decode( buf, pos, zero - pos, charset );
+                pos = zero < end ? zero + 1 : end;
+                return s;
+            }
+            scanned = end - pos;
+            if( scanned >= buf.length - 8 ) { // Longer than the buffer
+                return super.readCString( maxLength, charset );
+            }
+            if( fill( scanned + 1 ) <= scanned ) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    // Returns the index of the first zero byte of the buffer between from and to, or to if there is none
+    private int terminator( int from, int to ) {
+        while( from < to && buf[from] != 0 ) {
+            from++;
+        }
+        return from;
+    }
+
+    @Override
+    protected long position() {
+        return bufStart + pos;
+    }
+
+    @Override
+    protected int prefetch( int n ) throws IOException {
+        if( limit - pos < n ) {
+            return Math.min( n, fill( n ) );
+        }
+        return n;
+    }
+
+    @Override
+    protected long take( int n ) {
+        long v;
+        if( n == 8 ) {
+            v = ((long) getInt( pos ) << 32) | (getInt( pos + 4 ) & 0xffffffffL);
+        } else {
+            v = 0;
+            for( int i = 0; i < n; i++ ) {
+                v = (v << 8) | (buf[pos + i] & 0xff);
+            }
+        }
+        pos += n;
+        return v;
+    }
+
+    @Override
+    protected void untake( int n ) {
+        pos -= n;
+    }
+
+    // Makes sure n bytes are available in the buffer, starting at pos
+    protected void require( int n ) throws IOException {
+        checkByteBoundary();
+        if( limit - pos < n && fill( n ) < n ) {
+            throw new EOFException();
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link BinaryReader} over a {@link ByteBuffer}, typically a heap buffer or a file mapped in memory. All reads use absolute indexes into the
+ * buffer, skipping is a simple position change. The buffer's own position and limit are left untouched.
+ */
+public class ByteBufferBinaryReader extends BinaryReader {
+    private ByteBuffer source; // Buffer passed by the caller
+    private ByteBuffer buf;
+    private int start;
+    private int limit;
+    private int pos;
+    private ByteBuffer view; // For bulk reads, created on first use
+
+    /**
+     * Creates a reader for the data between the buffer's position and limit.
+     */
+    public ByteBufferBinaryReader( ByteBuffer buffer ) {
+        reset( buffer );
+    }
+
+    /**
+     * Rebinds this reader to the data between the buffer's position and limit. Nothing is allocated when the buffer is the same as for the
+     * previous call, so that a single reader can parse consecutive messages from a buffer.
+     */
+    public void reset( ByteBuffer buffer ) {
+        if( buffer != source ) {
+            source = buffer;
+            buf = buffer.duplicate().order( ByteOrder.BIG_ENDIAN );
+            view = null;
+        } else {
+            ((Buffer) buf).limit( buffer.limit() );
+        }
+        start = buffer.position();
+        limit = buffer.limit();
+        pos = start;
+        resetState();
+    }
+
+    /**
+     * Maps the whole content of a file in memory and creates a reader for it.
+     * @throws IOException if the file cannot be mapped, in particular if it is larger than 2GB.
+     */
+    public static ByteBufferBinaryReader map( Path path ) throws IOException {
+        try (FileChannel channel = FileChannel.open( path, StandardOpenOption.READ )) {
+            long size = channel.size();
+            if( size > Integer.MAX_VALUE ) {
+                throw new IOException( "File too large to be mapped (" + size + " bytes) : " + path );
+            }
+            return new ByteBufferBinaryReader( channel.map( MapMode.READ_ONLY, 0, size ) );
+        }
+    }
+
+    /**
+     * Reads length bytes of a file at the specified position, and creates a reader for them. The channel's position is left untouched.
+     * @throws EOFException if the end of file is reached before length bytes could be read.
+     */
+    public static ByteBufferBinaryReader read( FileChannel channel, long position, int length ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( length );
+        while( buffer.hasRemaining() ) {
+            int read = channel.read( buffer, position + buffer.position() );
+            if( read == -1 ) {
+                throw new EOFException( "End of file reached when trying to read " + length + " bytes at position " + position );
+            }
+        }
+        ((Buffer) buffer).flip();
+        return new ByteBufferBinaryReader( buffer );
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require( 1 );
+        return buf.get( pos++ );
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        require( 1 );
+        return buf.get( pos++ ) & 0xff;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require( 2 );
+        short v = buf.getShort( pos );
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        require( 2 );
+        int v = buf.getShort( pos ) & 0xffff;
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readInt24() throws IOException {
+        require( 3 );
+        int v = (buf.get( pos ) << 16) | (buf.getShort( pos + 1 ) & 0xffff);
+        pos += 3;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedInt24() throws IOException {
+        require( 3 );
+        int v = ((buf.get( pos ) & 0xff) << 16) | (buf.getShort( pos + 1 ) & 0xffff);
+        pos += 3;
+        return v;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require( 4 );
+        int v = buf.getInt( pos );
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readUnsignedInt() throws IOException {
+        require( 4 );
+        long v = buf.getInt( pos ) & 0xffffffffL;
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require( 8 );
+        long v = buf.getLong( pos );
+        pos += 8;
+        return v;
+    }
+
+    @Override
+    public short readShortLE() throws IOException {
+        return Short.reverseBytes( readShort() );
+    }
+
+    @Override
+    public int readUnsignedShortLE() throws IOException {
+        return Short.reverseBytes( readShort() ) & 0xffff;
+    }
+
+    @Override
+    public int readIntLE() throws IOException {
+        return Integer.reverseBytes( readInt() );
+    }
+
+    @Override
+    public long readUnsignedIntLE() throws IOException {
+        return Integer.reverseBytes( readInt() ) & 0xffffffffL;
+    }
+
+    @Override
+    public long readLongLE() throws IOException {
+        return Long.reverseBytes( readLong() );
+    }
+
+    @Override
+    public void readFully( byte[] b, int off, int len ) throws IOException {
+        require( len );
+        view( len ).get( b, off, len );
+    }
+
+    @Override
+    public ByteBuffer readSlice( int length ) throws IOException {
+        require( length );
+        ByteBuffer slice = buf.asReadOnlyBuffer();
+        ((Buffer) slice).limit( pos + length ).position( pos );
+        pos += length;
+        return slice.slice();
+    }
+
+    @Override
+    public int[] readUnsignedBytes( int[] array ) throws IOException {
+        require( array.length );
+        for( int i = 0; i < array.length; i++ ) {
+            array[i] = buf.get( pos++ ) & 0xff;
+        }
+        return array;
+    }
+
+    @Override
+    public short[] readShorts( short[] array ) throws IOException {
+        require( array.length * 2L );
+        view( array.length * 2 ).asShortBuffer().get( array );
+        return array;
+    }
+
+    @Override
+    public int[] readInts( int[] array ) throws IOException {
+        require( array.length * 4L );
+        view( array.length * 4 ).asIntBuffer().get( array );
+        return array;
+    }
+
+    @Override
+    public long[] readLongs( long[] array ) throws IOException {
+        require( array.length * 8L );
+        view( array.length * 8 ).asLongBuffer().get( array );
+        return array;
+    }
+
+    // Returns a view of the next n bytes for bulk reads, and advances past them
+    private ByteBuffer view( int n ) {
+        if( view == null ) {
+            view = buf.duplicate().order( ByteOrder.BIG_ENDIAN );
+        }
+        ((Buffer) view).limit( pos + n ).position( pos ); // Buffer methods only, to run on Java 8
+        pos += n;
+        return view;
+    }
+
+    @Override
+    public String readFixedString( int length, Charset charset, StringCache cache ) throws IOException {
+        require( length );
+        String s = decodeAt( pos, length, charset, cache );
+        pos += length;
+        return s;
+    }
+
+    @Override
+    public String readZeroFillString( int length, Charset charset, StringCache cache ) throws IOException {
+        require( length );
+        String s = decodeAt( pos, terminator( pos, pos + length ) - pos, charset, cache );
+        pos += length;
+        return s;
+    }
+
+    @Override
+    public String readCString( int maxLength, Charset charset ) throws IOException {
+        checkByteBoundary();
+        int end = pos + Math.min( maxLength, limit - pos );
+        int zero = terminator( pos, end );
+        if( zero == end && zero - pos < maxLength ) {
+            throw new EOFException();
+        }
+        String s = decodeAt( pos, zero - pos, charset, null );
+        pos = zero < end ? zero + 1 : end;
+        return s;
+    }
+
+    // Returns the index of the first zero byte between from and to, or to if there is none
+    private int terminator( int from, int to ) {
+        while( from < to && buf.get( from ) != 0 ) {
+            from++;
+        }
+        return from;
+    }
+
+    // Decodes length bytes at the specified index, straight from the array of heap buffers
+    private String decodeAt( int index, int length, Charset charset, StringCache cache ) {
+        if( cache != null ) {
+            return cache.get( buf, index, length, charset );
+        }
+        if( buf.hasArray() ) {
+            return decode( buf.array(), buf.arrayOffset() + index, length, charset );
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = buf.duplicate();
+        ((Buffer) slice).position( index );
+        slice.get( bytes );
+        return decode( bytes, 0, length, charset );
+    }
+
+    @Override
+    protected long position() {
+        return pos - start;
+    }
+
+    @Override
+    protected void seek( long position ) throws IOException {
+        if( position > limit - start ) {
+            throw new EOFException( "End of buffer reached when trying to skip to position " + position + ", end position : " + (limit - start) );
+        }
+        pos = start + (int) position;
+    }
+
+    @Override
+    protected int prefetch( int n ) {
+        return Math.min( n, limit - pos );
+    }
+
+    @Override
+    protected long take( int n ) {
+        long v;
+        if( n == 8 ) {
+            v = buf.getLong( pos );
+        } else {
+            v = 0;
+            for( int i = 0; i < n; i++ ) {
+                v = (v << 8) | (buf.get( pos + i ) & 0xff);
+            }
+        }
+        pos += n;
+        return v;
+    }
+
+    @Override
+    protected void untake( int n ) {
+        pos -= n;
+    }
+
+    private void require( long n ) throws IOException {
+        checkByteBoundary();
+        if( limit - pos < n ) {
+            throw new EOFException();
+        }
+    }
+
+}
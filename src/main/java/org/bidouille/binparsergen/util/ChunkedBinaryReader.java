@@ -0,0 +1,86 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link BinaryReader} fed with chunks of data as they arrive, for parsers that suspend when data is missing instead of blocking. Bytes are
+ * copied to an internal buffer, that only keeps data not consumed yet. Reads past the end of the data fed so far throw {@link EOFException} :
+ * use {@link #has(long)} and {@link #trySkipTo(long)} to check first.
+ */
+public class ChunkedBinaryReader extends BufferedBinaryReader {
+    private int lastChunk; // Number of bytes of the last chunk fed
+
+    public ChunkedBinaryReader() {
+        super( 256 );
+    }
+
+    /**
+     * Appends the remaining bytes of the chunk to the data to read. The chunk's position is advanced to its limit.
+     */
+    public void feed( ByteBuffer chunk ) {
+        int length = chunk.remaining();
+        int keep = Math.min( pos, 8 );
+        int from = pos - keep;
+        if( from > 0 ) {
+            System.arraycopy( buf, from, buf, 0, limit - from );
+            bufStart += from;
+            pos -= from;
+            limit -= from;
+        }
+        if( limit + length > buf.length ) {
+            buf = Arrays.copyOf( buf, Math.max( buf.length * 2, limit + length ) );
+        }
+        chunk.get( buf, limit, length );
+        limit += length;
+        lastChunk = length;
+    }
+
+    /**
+     * Gives back to the last chunk fed the bytes that were not consumed, by moving its position back. Used once parsing is complete, for
+     * the rest of the chunk to be handled by the caller.
+     * @throws IOException if not on a byte boundary
+     */
+    public void giveBack( ByteBuffer chunk ) throws IOException {
+        checkByteBoundary();
+        int unconsumed = Math.min( limit - pos, lastChunk );
+        ((Buffer) chunk).position( chunk.position() - unconsumed );
+        limit -= unconsumed;
+        lastChunk = 0;
+    }
+
+    /**
+     * Tells whether the next n bits, or n/8 bytes, can be read from the data fed so far.
+     */
+    public boolean has( long n ) {
+        return n <= pendingBits() + 8L * (limit - pos);
+    }
+
+    /**
+     * Moves forward to the byte offset specified, as far as the data fed so far allows.
+     * @return true if the offset was reached, false if more data is needed to reach it. Calling again once fed resumes skipping.
+     * @throws IOException if the offset is before the current position
+     */
+    public boolean trySkipTo( long offset ) throws IOException {
+        long end = toOffset( bufStart + limit );
+        skipTo( Math.min( offset, end ) );
+        return offset <= end;
+    }
+
+    @Override
+    protected void seek( long position ) throws IOException {
+        if( position > bufStart + limit ) {
+            throw new EOFException( "End of data reached when trying to skip to position " + position + ", end position : " + (bufStart + limit) );
+        }
+        pos = (int) (position - bufStart);
+    }
+
+    @Override
+    protected int fill( int n ) {
+        return limit - pos; // Nothing more until the next chunk
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over the elements of a streamed array, used by generated parsers. Elements are decoded one at a time as they are requested, so
+ * memory use does not depend on the number of elements. Once the last element has been read, parsing resumes with the data following the
+ * array.
+ * <p>
+ * Read errors are thrown as {@link UncheckedIOException}.
+ */
+public abstract class ElementIterator<T> implements Iterator<T> {
+    private final long count;
+    private long index;
+    private boolean ended;
+
+    protected ElementIterator( long count ) {
+        this.count = count;
+    }
+
+    /**
+     * Decodes the element at the specified index.
+     */
+    protected abstract T read( long index ) throws IOException;
+
+    /**
+     * Parses the data following the array.
+     */
+    protected abstract void end() throws IOException;
+
+    /**
+     * Returns the number of elements in the array.
+     */
+    public long size() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if( index < count ) {
+            return true;
+        }
+        end( false );
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if( index >= count ) {
+            end( false );
+            throw new NoSuchElementException();
+        }
+        try {
+            T element = read( index++ );
+            end( index < count );
+            return element;
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Returns a sequential stream over the remaining elements.
+     */
+    public Stream<T> stream() {
+        // Not sized, so that terminal operations such as count() do read the elements
+        return StreamSupport.stream( Spliterators.spliteratorUnknownSize( this, Spliterator.ORDERED | Spliterator.NONNULL ), false );
+    }
+
+    private void end( boolean more ) {
+        if( more || ended ) {
+            return;
+        }
+        ended = true;
+        try {
+            end();
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decodes arrays of fixed-size records on the common {@link ForkJoinPool}, used by generated parsers for arrays declared with the
+ * <code>[parallel]</code> option. The index range is split in chunks of a few times fewer records than there are threads, each chunk being
+ * decoded straight into the result array.
+ */
+public final class ParallelDecoder {
+    private static final int MIN_CHUNK = 64;
+
+    private ParallelDecoder() {
+    }
+
+    /**
+     * Fills the array with records decoded from the buffer, starting at its position. The buffer's position is left untouched.
+     * @return the array
+     * @throws IOException if the buffer is too short for the array, or a record is invalid
+     */
+    public static <T> T[] decode( ByteBuffer buffer, int size, T[] array, RecordSpliterator.Decoder<T> decoder ) throws IOException {
+        RecordSpliterator<T> records = new RecordSpliterator<>( buffer, size, array.length, decoder );
+        int chunk = Math.max( MIN_CHUNK, array.length / (ForkJoinPool.getCommonPoolParallelism() * 4) );
+        try {
+            if( array.length <= chunk ) {
+                records.decodeInto( array );
+            } else {
+                ForkJoinPool.commonPool().invoke( new DecodeTask<>( records, array, chunk ) );
+            }
+        } catch( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        return array;
+    }
+
+    private static class DecodeTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RecordSpliterator<T> records;
+        private final T[] array;
+        private final int chunk;
+
+        DecodeTask( RecordSpliterator<T> records, T[] array, int chunk ) {
+            this.records = records;
+            this.array = array;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if( records.estimateSize() > chunk ) {
+                RecordSpliterator<T> prefix = records.trySplit();
+                invokeAll( new DecodeTask<>( prefix, array, chunk ), new DecodeTask<>( records, array, chunk ) );
+                return;
+            }
+            records.decodeInto( array );
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.bidouille.binparsergen.util;
+
+/**
+ * Result of feeding a chunk of data to a generated parser.
+ */
+public enum ParseStatus {
+    /**
+     * All the data fed so far has been parsed, and more is needed to complete the parse.
+     */
+    NEED_MORE,
+    /**
+     * The parse is complete. Bytes of the last chunk following the parsed data are left in the chunk.
+     */
+    COMPLETE
+}
@@ -0,0 +1,106 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator decoding consecutive records of a fixed size from a buffer, used by generated parsers for arrays declared with the
+ * <code>[parallel]</code> option. Records are decoded as they are requested, and splitting only divides the index range, so parallel streams
+ * decode each record on the thread that consumes it.
+ * <p>
+ * Read errors are thrown as {@link UncheckedIOException}.
+ */
+public class RecordSpliterator<T> implements Spliterator<T> {
+    private final ByteBuffer data;
+    private final int size;
+    private final Decoder<T> decoder;
+    private int index;
+    private final int end;
+    private BinaryReader in; // Created on first read
+
+    /**
+     * Decodes a record from a reader positioned at its start.
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode( BinaryReader in ) throws IOException;
+    }
+
+    /**
+     * Creates a spliterator over count records starting at the buffer's position. The buffer's position is left untouched.
+     */
+    public RecordSpliterator( ByteBuffer buffer, int size, int count, Decoder<T> decoder ) {
+        this( buffer.slice(), size, 0, count, decoder );
+    }
+
+    private RecordSpliterator( ByteBuffer data, int size, int index, int end, Decoder<T> decoder ) {
+        this.data = data;
+        this.size = size;
+        this.index = index;
+        this.end = end;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public boolean tryAdvance( Consumer<? super T> action ) {
+        if( index >= end ) {
+            return false;
+        }
+        action.accept( read( index++ ) );
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining( Consumer<? super T> action ) {
+        while( index < end ) {
+            action.accept( read( index++ ) );
+        }
+    }
+
+    /**
+     * Decodes the remaining records into the array, at their index.
+     */
+    void decodeInto( T[] array ) {
+        while( index < end ) {
+            array[index] = read( index );
+            index++;
+        }
+    }
+
+    @Override
+    public RecordSpliterator<T> trySplit() {
+        int mid = (index + end) >>> 1;
+        if( mid <= index ) {
+            return null;
+        }
+        RecordSpliterator<T> prefix = new RecordSpliterator<>( data, size, index, mid, decoder );
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private T read( int i ) {
+        try {
+            if( in == null ) {
+                in = new ByteBufferBinaryReader( data );
+            }
+            in.skipTo( (long) i * size );
+            return decoder.decode( in );
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+}
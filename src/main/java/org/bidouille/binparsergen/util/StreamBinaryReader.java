@@ -0,0 +1,124 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link BinaryReader} over an {@link InputStream}. Primitives are decoded straight from an internal buffer that is refilled from the stream in
+ * large chunks, instead of going through a chain of filter streams one byte at a time.
+ * <p>
+ * As the underlying stream is read ahead, it will usually be positioned past the end of the parsed data once parsing is done. Share a single
+ * reader to parse consecutive items from the same stream.
+ */
+public class StreamBinaryReader extends BufferedBinaryReader {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private InputStream in;
+
+    public StreamBinaryReader( InputStream in ) {
+        this( in, DEFAULT_BUFFER_SIZE );
+    }
+
+    public StreamBinaryReader( InputStream in, int bufferSize ) {
+        super( checkSize( bufferSize ) );
+        this.in = in;
+    }
+
+    /**
+     * Rebinds this reader to another stream, keeping its buffer. Data read ahead from the previous stream is discarded.
+     */
+    public void reset( InputStream in ) {
+        this.in = in;
+        bufStart = 0;
+        pos = limit = 0;
+        resetState();
+    }
+
+    private static int checkSize( int bufferSize ) {
+        if( bufferSize < 16 ) {
+            throw new IllegalArgumentException( "Buffer size must be at least 16 bytes" );
+        }
+        return bufferSize;
+    }
+
+    @Override
+    public void readFully( byte[] b, int off, int len ) throws IOException {
+        checkByteBoundary();
+        int available = Math.min( limit - pos, len );
+        System.arraycopy( buf, pos, b, off, available );
+        pos += available;
+        off += available;
+        len -= available;
+        if( len == 0 ) {
+            return;
+        }
+        // Large reads bypass the buffer
+        bufStart += limit;
+        pos = limit = 0;
+        while( len > 0 ) {
+            int read = in.read( b, off, len );
+            if( read == -1 ) {
+                throw new EOFException();
+            }
+            bufStart += read;
+            off += read;
+            len -= read;
+        }
+    }
+
+    @Override
+    protected void seek( long position ) throws IOException {
+        if( position <= bufStart + limit ) {
+            pos = (int) (position - bufStart);
+            return;
+        }
+
+        // Discard the buffer and skip in the underlying stream
+        bufStart += limit;
+        pos = limit = 0;
+        boolean zeroBytesSkipped = false;
+        while( bufStart != position ) {
+            long skipped = in.skip( position - bufStart );
+            if( skipped <= 0 ) {
+                if( zeroBytesSkipped ) {
+                    break;
+                }
+                zeroBytesSkipped = true;
+                continue;
+            }
+            zeroBytesSkipped = false;
+            bufStart += skipped;
+        }
+        // Zero bytes were skipped twice in a row, try to advance by reading from the stream instead.
+        while( bufStart != position ) {
+            int read = in.read( buf, 0, (int) Math.min( buf.length, position - bufStart ) );
+            if( read == -1 ) {
+                throw new EOFException( "EOF reached when trying to skip to position " + position + ", end position : " + bufStart );
+            }
+            bufStart += read;
+        }
+    }
+
+    // Compacts the buffer and reads from the stream until at least n bytes are available
+    @Override
+    protected int fill( int n ) throws IOException {
+        int keep = Math.min( pos, 8 );
+        if( pos + n > buf.length ) {
+            int from = pos - keep;
+            System.arraycopy( buf, from, buf, 0, limit - from );
+            bufStart += from;
+            pos -= from;
+            limit -= from;
+        }
+        while( limit - pos < n ) {
+            int read = in.read( buf, limit, buf.length - limit );
+            if( read == -1 ) {
+                break;
+            }
+            limit += read;
+        }
+        return limit - pos;
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.bidouille.binparsergen.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Bounded cache deduplicating strings decoded from bytes, used by generated parsers for <code>[intern]</code> strings. Lookups hash and compare
+ * the bytes where they lie, so that a hit allocates nothing. The cache is direct-mapped : a miss replaces the entry in its slot, which keeps
+ * the cache bounded whatever the number of distinct values.
+ * <p>
+ * Entries are immutable, so the cache can be shared between threads without locking : concurrent misses on the same slot only cost a
+ * decoding.
+ */
+public final class StringCache {
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param size number of entries, rounded up to a power of two
+     */
+    public StringCache( int size ) {
+        if( size < 1 || size > 1 << 30 ) {
+            throw new IllegalArgumentException( "Invalid cache size : " + size );
+        }
+        int capacity = 1;
+        while( capacity < size ) {
+            capacity <<= 1;
+        }
+        entries = new Entry[capacity];
+        mask = entries.length - 1;
+    }
+
+    /**
+     * Returns the string decoded from length bytes of the array, from the cache if possible.
+     */
+    public String get( byte[] bytes, int offset, int length, Charset charset ) {
+        int hash = 1;
+        for( int i = offset; i < offset + length; i++ ) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = entries[slot];
+        if( entry != null && entry.hash == hash && entry.charset.equals( charset ) && entry.matches( bytes, offset, length ) ) {
+            return entry.value;
+        }
+        String value = BinaryReader.decode( bytes, offset, length, charset );
+        entries[slot] = new Entry( hash, Arrays.copyOfRange( bytes, offset, offset + length ), charset, value );
+        return value;
+    }
+
+    /**
+     * Returns the string decoded from length bytes of the buffer at the specified index, from the cache if possible. The buffer's position is
+     * left untouched.
+     */
+    public String get( ByteBuffer buffer, int index, int length, Charset charset ) {
+        if( buffer.hasArray() ) {
+            return get( buffer.array(), buffer.arrayOffset() + index, length, charset );
+        }
+        int hash = 1;
+        for( int i = index; i < index + length; i++ ) {
+            hash = 31 * hash + buffer.get( i );
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = entries[slot];
+        if( entry != null && entry.hash == hash && entry.charset.equals( charset ) && entry.matches( buffer, index, length ) ) {
+            return entry.value;
+        }
+        byte[] bytes = new byte[length];
+        for( int i = 0; i < length; i++ ) {
+            bytes[i] = buffer.get( index + i );
+        }
+        String value = BinaryReader.decode( bytes, 0, length, charset );
+        entries[slot] = new Entry( hash, bytes, charset, value );
+        return value;
+    }
+
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final Charset charset;
+        final String value;
+
+        Entry( int hash, byte[] bytes, Charset charset, String value ) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.charset = charset;
+            this.value = value;
+        }
+
+        boolean matches( byte[] other, int offset, int length ) {
+            if( bytes.length != length ) {
+                return false;
+            }
+            for( int i = 0; i < length; i++ ) {
+                if( bytes[i] != other[offset + i] ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean matches( ByteBuffer other, int index, int length ) {
+            if( bytes.length != length ) {
+                return false;
+            }
+            for( int i = 0; i < length; i++ ) {
+                if( bytes[i] != other.get( index + i ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.bidouille.binparsergen.util;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes big-endian values at absolute indexes of a buffer, whatever its byte order, for the view classes of generated parsers. The buffer's
+ * position, limit and order are left untouched.
+ */
+public final class ViewDecoder {
+
+    private ViewDecoder() {
+    }
+
+    public static short getShort( ByteBuffer buffer, int index ) {
+        short v = buffer.getShort( index );
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? v : Short.reverseBytes( v );
+    }
+
+    public static int getInt24( ByteBuffer buffer, int index ) {
+        return (buffer.get( index ) << 16) | ((buffer.get( index + 1 ) & 0xff) << 8) | (buffer.get( index + 2 ) & 0xff);
+    }
+
+    public static int getInt( ByteBuffer buffer, int index ) {
+        int v = buffer.getInt( index );
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? v : Integer.reverseBytes( v );
+    }
+
+    public static long getLong( ByteBuffer buffer, int index ) {
+        long v = buffer.getLong( index );
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? v : Long.reverseBytes( v );
+    }
+
+    /**
+     * Decodes n bits starting at the specified bit position of the buffer, bits being numbered from the most significant one of each byte.
+     * @param n number of bits, between 1 and 64
+     */
+    public static long getBits( ByteBuffer buffer, long bitPosition, int n ) {
+        int index = (int) (bitPosition >>> 3);
+        int total = (int) (bitPosition & 7) + n;
+        int bytes = (total + 7) >>> 3;
+        long v = 0;
+        for( int i = 0; i < Math.min( bytes, 8 ); i++ ) {
+            v = (v << 8) | (buffer.get( index + i ) & 0xff);
+        }
+        if( bytes <= 8 ) {
+            v >>>= bytes * 8 - total;
+            return n == 64 ? v : v & ((1L << n) - 1);
+        }
+        // 9 bytes : the first 8 are in v, the last one only holds the lowest bits
+        int low = buffer.get( index + 8 ) & 0xff;
+        return ((v << (total - n)) >>> (64 - n)) | (low >>> (72 - total));
+    }
+
+    /**
+     * Returns a read-only view of length bytes of the buffer, without copying them.
+     */
+    public static ByteBuffer getSlice( ByteBuffer buffer, int index, int length ) {
+        ByteBuffer slice = buffer.asReadOnlyBuffer();
+        ((Buffer) slice).limit( index + length ).position( index ); // Buffer methods only, to run on Java 8
+        return slice.slice();
+    }
+
+    /**
+     * Decodes a fixed length string of length bytes, with the specified charset.
+     */
+    public static String getString( ByteBuffer buffer, int index, int length, Charset charset ) {
+        return decode( buffer, index, length, charset );
+    }
+
+    /**
+     * Decodes a null-terminated string up to length bytes long, with the specified charset.
+     */
+    public static String getZeroFillString( ByteBuffer buffer, int index, int length, Charset charset ) {
+        int end = index;
+        while( end < index + length && buffer.get( end ) != 0 ) {
+            end++;
+        }
+        return decode( buffer, index, end - index, charset );
+    }
+
+    private static String decode( ByteBuffer buffer, int index, int length, Charset charset ) {
+        if( buffer.hasArray() ) {
+            return BinaryReader.decode( buffer.array(), buffer.arrayOffset() + index, length, charset );
+        }
+        byte[] bytes = new byte[length];
+        for( int i = 0; i < length; i++ ) {
+            bytes[i] = buffer.get( index + i );
+        }
+        return BinaryReader.decode( bytes, 0, length, charset );
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.bidouille.binparsergen.compile;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassCacheTest {
+    private static final byte[] SOURCE = "struct Test { int8 a; }".getBytes();
+
+    private Path dir;
+    private ClassCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory( "binparsergen" );
+        cache = new ClassCache( dir.resolve( "cache" ) );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk( dir )) {
+            files.sorted( ( a, b ) -> b.compareTo( a ) ).forEach( file -> file.toFile().delete() );
+        }
+    }
+
+    @Test
+    public void test_store_load() throws Exception {
+        Map<String, byte[]> classFiles = MemoryCompiler.compileClassFiles( Collections.singletonMap( "test.TestClass", "package test; public class TestClass { class Inner {} }" ) );
+        String key = ClassCache.key( SOURCE, "test" );
+        assertNull( cache.load( key ) );
+        cache.store( key, new ClassCache.Entry( Arrays.asList( "test.TestClass" ), classFiles ) );
+
+        ClassCache.Entry entry = cache.load( key );
+        assertEquals( Arrays.asList( "test.TestClass" ), entry.classNames );
+        assertEquals( classFiles.keySet(), entry.classFiles.keySet() );
+        assertArrayEquals( classFiles.get( "test.TestClass$Inner" ), entry.classFiles.get( "test.TestClass$Inner" ) );
+        Class<?> clazz = MemoryCompiler.load( entry.classFiles, entry.classNames ).get( "test.TestClass" );
+        assertEquals( "test.TestClass", clazz.getName() );
+        try (Stream<Path> files = Files.list( dir.resolve( "cache" ) )) {
+            assertEquals( 1, files.count() ); // No temporary file left
+        }
+    }
+
+    @Test
+    public void test_corrupted_entry() throws Exception {
+        String key = ClassCache.key( SOURCE, "test" );
+        cache.store( key, new ClassCache.Entry( Arrays.asList( "A" ), Collections.singletonMap( "A", new byte[] { 1, 2, 3 } ) ) );
+        Path file;
+        try (Stream<Path> files = Files.list( dir.resolve( "cache" ) )) {
+            file = files.findFirst().get();
+        }
+        byte[] bytes = Files.readAllBytes( file );
+        bytes[bytes.length / 2] ^= 1;
+        Files.write( file, bytes );
+        assertNull( cache.load( key ) );
+
+        Files.write( file, Arrays.copyOf( bytes, 5 ) );
+        assertNull( cache.load( key ) );
+    }
+
+    @Test
+    public void test_key() {
+        String key = ClassCache.key( SOURCE, "test", "1" );
+        assertEquals( 64, key.length() );
+        assertEquals( key, ClassCache.key( SOURCE, "test", "1" ) );
+        assertNotEquals( key, ClassCache.key( SOURCE, "test", "2" ) );
+        assertNotEquals( key, ClassCache.key( SOURCE, "test1", "" ) );
+        assertNotEquals( key, ClassCache.key( "struct Test { int8 b; }".getBytes(), "test", "1" ) );
+    }
+
+}
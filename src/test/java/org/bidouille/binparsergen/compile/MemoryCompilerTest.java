@@ -3,6 +3,8 @@ package org.bidouille.binparsergen.compile;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.bidouille.binparsergen.compile.MemoryCompiler;
 import org.junit.Test;
@@ -39,4 +41,28 @@ public class MemoryCompilerTest {
         Method method = clazz.getMethod( "testMethod" );
         Object result = method.invoke( instance );
     }
+
+    @Test
+    public void test_compile_batch() throws Exception {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put( "test.A", "package test; public class A { public String testMethod() { return new B().name(); } }" );
+        sources.put( "test.B", "package test; public class B { String name() { return \"B\"; } A a; }" );
+        Map<String, Class<?>> classes = MemoryCompiler.compile( sources );
+        assertEquals( 2, classes.size() );
+        assertSame( classes.get( "test.A" ).getClassLoader(), classes.get( "test.B" ).getClassLoader() );
+        Object instance = classes.get( "test.A" ).newInstance();
+        assertEquals( "B", classes.get( "test.A" ).getMethod( "testMethod" ).invoke( instance ) );
+    }
+
+    @Test
+    public void test_compile_error() throws Exception {
+        try {
+            MemoryCompiler.compile( "test.TestClass", "package test;\npublic class TestClass {\n  int i = \"\";\n}" );
+            fail();
+        } catch( CompilationException e ) {
+            assertEquals( 1, e.getDiagnostics().size() );
+            assertEquals( 3, e.getDiagnostics().get( 0 ).getLineNumber() );
+            assertEquals( "test.TestClass", CompilationException.getClassName( e.getDiagnostics().get( 0 ) ) );
+        }
+    }
 }
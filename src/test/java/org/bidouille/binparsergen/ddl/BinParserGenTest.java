@@ -2,17 +2,49 @@ package org.bidouille.binparsergen.ddl;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.bidouille.binparsergen.BinParserGen;
 import org.bidouille.binparsergen.ConstraintViolationException;
+import org.bidouille.binparsergen.GeneratorOptions;
+import org.bidouille.binparsergen.InvalidDefinitionException;
+import org.bidouille.binparsergen.ParserRegistry;
+import org.bidouille.binparsergen.interpret.Interpreter;
+import org.bidouille.binparsergen.interpret.Record;
+import org.bidouille.binparsergen.util.BinaryReader;
+import org.bidouille.binparsergen.util.ByteBufferBinaryReader;
+import org.bidouille.binparsergen.util.ElementIterator;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -184,6 +216,21 @@ public class BinParserGenTest {
         assertThat( instance, hasField( "bits_5", 0b11010 ) );
     }
 
+    @Test
+    public void test_uint_n_long() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint(4)  bits_4;\n"
+                + "   uint(24) bits_24;\n"
+                + "   uint(36) bits_36;\n"
+                + "}",
+                BYTES );
+
+        assertThat( instance, hasField( "bits_4", 0x1 ) );
+        assertThat( instance, hasField( "bits_24", 0x234567 ) );
+        assertThat( instance, hasField( "bits_36", 0x89abcdef0L ) );
+    }
+
     @Test
     public void test_string() throws Throwable {
         Object instance = matchAgainst( ""
@@ -195,6 +242,93 @@ public class BinParserGenTest {
         assertThat( instance, hasField( "name", "ABC" ) );
     }
 
+    @Test
+    public void test_string_charset() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   string(3, \"UTF-8\") name;\n"
+                + "   string(1, \"ISO-8859-1\") latin;\n"
+                + "}",
+                new byte[] { 65, (byte) 0xc3, (byte) 0xa9, (byte) 0xe9 } );
+
+        assertThat( instance, hasField( "name", "A\u00e9" ) );
+        assertThat( instance, hasField( "latin", "\u00e9" ) );
+    }
+
+    @Test
+    public void test_string_charset_constant() throws Throwable {
+        String java = generateSource( ""
+                + "struct Test {\n"
+                + "   struct Sub {\n"
+                + "      string(2, \"utf8\") name;\n"
+                + "   }\n"
+                + "   string(2, \"UTF-8\") name;\n"
+                + "   Sub sub;\n"
+                + "}" );
+
+        assertThat( java.split( "Charset.forName", -1 ).length, is( 2 ) );
+        assertThat( java.contains( "readFixedString( 2, $charset_UTF_8 )" ), is( true ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_string_unknown_charset() throws Throwable {
+        generate( "struct Test { string(2, \"NO-SUCH-CHARSET\") name; }" );
+    }
+
+    @Test
+    public void test_zstring() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   zstring(4) name =\"AB\";\n"
+                + "   zstring(2, \"UTF-8\") full;\n"
+                + "}",
+                new byte[] { 65, 66, 0, 67, (byte) 0xc3, (byte) 0xa9 } );
+
+        assertThat( instance, hasField( "name", "AB" ) );
+        assertThat( instance, hasField( "full", "\u00e9" ) );
+    }
+
+    @Test
+    public void test_cstring() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint8 max;\n"
+                + "   cstring(max) name;\n"
+                + "   cstring(10, \"UTF-8\") other;\n"
+                + "   int8 after;\n"
+                + "}",
+                new byte[] { 2, 65, 66, (byte) 0xc3, (byte) 0xa9, 0, 0x12 } );
+
+        assertThat( instance, hasField( "name", "AB" ) );
+        assertThat( instance, hasField( "other", "\u00e9" ) );
+        assertThat( instance, hasField( "after", (byte) 0x12 ) );
+    }
+
+    @Test
+    public void test_intern() throws Throwable {
+        String source = ""
+                + "struct Test {\n"
+                + "   struct Record {\n"
+                + "      [intern] string(2) tag;\n"
+                + "      [intern] zstring(3, \"UTF-8\") unit;\n"
+                + "   }\n"
+                + "   Record[2] records;\n"
+                + "}";
+        byte[] bytes = new byte[] { 'A', 'B', 'm', 0, 0, 'A', 'B', 'm', 0, 'x' };
+        Object instance = matchAgainst( source, bytes );
+
+        Object[] records = (Object[]) getField( instance, "records" );
+        assertThat( getField( records[0], "tag" ), is( (Object) "AB" ) );
+        assertThat( getField( records[1], "unit" ), is( (Object) "m" ) );
+        assertSame( getField( records[0], "tag" ), getField( records[1], "tag" ) );
+        assertSame( getField( records[0], "unit" ), getField( records[1], "unit" ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_intern_not_string() throws Throwable {
+        generate( "struct Test { [intern] int8 value; }" );
+    }
+
     @Test
     public void test_autoadvance() throws Throwable {
         Object instance = matchAgainst( ""
@@ -219,6 +353,21 @@ public class BinParserGenTest {
         assertThat( instance, hasField( "v1", (short) 0x789a ) );
     }
 
+    @Test
+    public void test_offset_after_bits() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint(4)  a;\n"
+                + "   uint(58) b;\n"
+                + "   @8 uint(8) c;\n"
+                + "}",
+                new byte[] { -1, -1, -1, -1, -1, -1, -1, -1, 0 } );
+
+        assertThat( instance, hasField( "a", 0xf ) );
+        assertThat( instance, hasField( "b", 0x3ffffffffffffffL ) );
+        assertThat( instance, hasField( "c", 0 ) );
+    }
+
     @Test
     public void test_struct() throws Throwable {
         Object instance = matchAgainst( ""
@@ -266,6 +415,25 @@ public class BinParserGenTest {
         assertThat( instance, hasField( "v2", (short) 0xdef0 ) );
     }
 
+    @Test
+    public void test_bulk_arrays() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint8    n;\n"
+                + "   uint8[2] v1;\n"
+                + "   int8     pad;\n"
+                + "   int32[n-0x11] v2;\n"
+                + "}",
+                BYTES );
+
+        assertArrayEquals( (int[]) getField( instance, "v1" ), new int[] { 0x34, 0x56 } );
+        assertArrayEquals( (int[]) getField( instance, "v2" ), new int[] { 0x9abcdef0 } );
+
+        instance = matchAgainst( "struct Test { int64[1] v; }", BYTES );
+
+        assertArrayEquals( (long[]) getField( instance, "v" ), new long[] { 0x123456789abcdef0L } );
+    }
+
     @Test
     public void test_short_form_array_parametrized_type() throws Throwable {
         Object instance = matchAgainst( ""
@@ -554,15 +722,1563 @@ public class BinParserGenTest {
                 BYTES );
     }
 
-    public static Object matchAgainst( String source, byte[] bytes ) throws Throwable {
-        Map<String, Class<?>> classes = BinParserGen.generateClasses( new ByteArrayInputStream( source.getBytes() ), BinParserGenTest.class.getPackage().getName() );
+    @Test
+    public void test_parse_bytebuffer() throws Throwable {
+        ByteBuffer buffer = ByteBuffer.allocateDirect( BYTES.length + 1 );
+        buffer.put( (byte) 0 ).put( BYTES ).flip();
+        buffer.position( 1 );
+        Object instance = parse( ""
+                + "struct Test {\n"
+                + "   int8     v1;\n"
+                + "   @3 int16 v2;\n"
+                + "}",
+                ByteBuffer.class, buffer );
+
+        assertThat( instance, hasField( "v1", (byte) 0x12 ) );
+        assertThat( instance, hasField( "v2", (short) 0x789a ) );
+        assertThat( buffer.position(), is( 6 ) );
+    }
+
+    // ByteBuffer.position(int) only exists since Java 9, code compiled against it fails to link on Java 8
+    @Test
+    public void test_parse_bytebuffer_java8() throws Throwable {
+        String java = generateSource( "struct Test { int8 v1; }" );
+        assertThat( java.contains( "((java.nio.Buffer) $buffer).position(" ), is( true ) );
+    }
+
+    @Test
+    public void test_parse_path() throws Throwable {
+        Path file = Files.createTempFile( "binparsergen", ".bin" );
+        try {
+            Files.write( file, BYTES );
+            Object instance = parse( ""
+                    + "struct Test {\n"
+                    + "   struct Sub {\n"
+                    + "      @1 int16 v1;\n"
+                    + "   }\n"
+                    + "   @4 Sub name;\n"
+                    + "}",
+                    Path.class, file );
+
+            assertThat( instance, hasField( "name.v1", (short) 0xbcde ) );
+        } finally {
+            Files.delete( file );
+        }
+    }
+
+    @Test
+    public void test_layout_constants() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   struct Sub {\n"
+                + "      int16 x;\n"
+                + "      int16 y;\n"
+                + "   }\n"
+                + "   int8     a;\n"
+                + "   uint(4)  b;\n"
+                + "   uint(4)  c;\n"
+                + "   int16    d;\n"
+                + "   @(4*2) int32[2] e;\n"
+                + "   Sub      s;\n"
+                + "}" );
+
+        assertThat( getConstant( clazz, "SIZE" ), is( 20 ) );
+        assertThat( getConstant( clazz, "OFFSET_a" ), is( 0 ) );
+        assertThat( getConstant( clazz, "OFFSET_b" ), is( 1 ) );
+        assertThat( getConstant( clazz, "OFFSET_d" ), is( 2 ) );
+        assertThat( getConstant( clazz, "OFFSET_e" ), is( 8 ) );
+        assertThat( getConstant( clazz, "OFFSET_s" ), is( 16 ) );
+        assertThat( hasConstant( clazz, "OFFSET_c" ), is( false ) ); // Not on a byte boundary
+
+        Class<?> sub = clazz.getDeclaredClasses()[0];
+        assertThat( getConstant( sub, "SIZE" ), is( 4 ) );
+        assertThat( getConstant( sub, "OFFSET_y" ), is( 2 ) );
+    }
+
+    @Test
+    public void test_layout_variable_size() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   uint8    n;\n"
+                + "   int8[n]  a;\n"
+                + "   int8     b;\n"
+                + "   @16 int8 c;\n"
+                + "   if( c == 1 ) {\n"
+                + "      int8 d;\n"
+                + "   }\n"
+                + "   int8     e;\n"
+                + "}" );
+
+        assertThat( getConstant( clazz, "OFFSET_a" ), is( 1 ) );
+        assertThat( getConstant( clazz, "OFFSET_c" ), is( 16 ) );
+        assertThat( getConstant( clazz, "OFFSET_d" ), is( 17 ) );
+        assertThat( hasConstant( clazz, "OFFSET_b" ), is( false ) );
+        assertThat( hasConstant( clazz, "OFFSET_e" ), is( false ) );
+        assertThat( hasConstant( clazz, "SIZE" ), is( false ) );
+    }
+
+    @Test
+    public void test_anonymous_fixed_size_skipped() throws Throwable {
+        String source = ""
+                + "struct Test {\n"
+                + "   struct Sub {\n"
+                + "      int16 x;\n"
+                + "   }\n"
+                + "   int8;\n"
+                + "   int16[1+0];\n"
+                + "   int8 v1;\n"
+                + "   Sub;\n"
+                + "   int8 v2;\n"
+                + "}";
+        Object instance = matchAgainst( source, BYTES );
+        assertThat( instance, hasField( "v1", (byte) 0x78 ) );
+        assertThat( instance, hasField( "v2", (byte) 0xde ) );
+
+        String java = generateSource( source );
+        assertThat( java.contains( "readArray_" ), is( false ) );
+        assertThat( java.contains( "new Sub(" ), is( false ) );
+        assertThat( java.contains( "$in.skipTo( 3L );" ), is( true ) );
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_anonymous_with_constraint_not_skipped() throws Throwable {
+        matchAgainst( ""
+                + "struct Test {\n"
+                + "   struct Sub {\n"
+                + "      int16 x = 0;\n"
+                + "   }\n"
+                + "   int8;\n"
+                + "   Sub;\n"
+                + "}",
+                BYTES );
+    }
+
+    private static final String RECORDS = ""
+            + "struct Test {\n"
+            + "   struct Record {\n"
+            + "      int8  id;\n"
+            + "      int16 value;\n"
+            + "   }\n"
+            + "   uint8 count;\n"
+            + "   Record[count] records;\n"
+            + "}";
+
+    @Test
+    public void test_element_at_buffer() throws Throwable {
+        Class<?> clazz = generate( RECORDS );
+        Method recordsAt = clazz.getMethod( "recordsAt", ByteBuffer.class, long.class );
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[] { 0, 2, 0x01, 0x11, 0x11, 0x02, 0x22, 0x22, 0x03, 0x33, 0x33 } );
+        buffer.position( 1 );
+
+        Object record = recordsAt.invoke( null, buffer, 1L );
+        assertThat( record, hasField( "id", (byte) 0x02 ) );
+        assertThat( record, hasField( "value", (short) 0x2222 ) );
+        assertThat( buffer.position(), is( 1 ) );
+
+        // The index is checked against count, even with bytes past the array
+        for( long index : new long[] { -1, 2 } ) {
+            try {
+                recordsAt.invoke( null, buffer, index );
+                fail( "Record " + index );
+            } catch( InvocationTargetException e ) {
+                assertThat( e.getCause() instanceof IndexOutOfBoundsException, is( true ) );
+            }
+        }
+    }
+
+    @Test
+    public void test_element_at_channel() throws Throwable {
+        Class<?> clazz = generate( RECORDS );
+        Method recordsAt = clazz.getMethod( "recordsAt", FileChannel.class, long.class );
+        Path file = Files.createTempFile( "binparsergen", ".bin" );
+        try {
+            Files.write( file, new byte[] { 2, 0x01, 0x11, 0x11, 0x02, 0x22, 0x22 } );
+            try (FileChannel channel = FileChannel.open( file )) {
+                Object record = recordsAt.invoke( null, channel, 0L );
+                assertThat( record, hasField( "id", (byte) 0x01 ) );
+                assertThat( record, hasField( "value", (short) 0x1111 ) );
+                try {
+                    recordsAt.invoke( null, channel, 2L );
+                    fail( "Record past count" );
+                } catch( InvocationTargetException e ) {
+                    assertThat( e.getCause() instanceof IndexOutOfBoundsException, is( true ) );
+                }
+            }
+        } finally {
+            Files.delete( file );
+        }
+    }
+
+    @Test
+    public void test_element_at_constant_size() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   struct Record {\n"
+                + "      int8  id;\n"
+                + "   }\n"
+                + "   Record[2] records;\n"
+                + "}" );
+        Method recordsAt = clazz.getMethod( "recordsAt", ByteBuffer.class, long.class );
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[] { 1, 2, 3 } );
+        assertThat( recordsAt.invoke( null, buffer, 1L ), hasField( "id", (byte) 2 ) );
+        try {
+            recordsAt.invoke( null, buffer, 2L );
+            fail( "Record past the size of the array" );
+        } catch( InvocationTargetException e ) {
+            assertThat( e.getCause() instanceof IndexOutOfBoundsException, is( true ) );
+        }
+    }
+
+    @Test
+    public void test_element_at_unchecked_size() throws Throwable {
+        // Neither an array that may be absent, nor one whose size cannot be read at a constant offset, gets accessors
+        for( String definition : new String[] {
+                "struct Test { struct Record { int8 id; } uint8 count; if( count > 1 ) { Record[count] records; } }",
+                "struct Test { struct Record { int8 id; } uint8 count; Record[count * 2] records; }" } ) {
+            for( Method method : generate( definition ).getMethods() ) {
+                assertThat( definition, method.getName().equals( "recordsAt" ), is( false ) );
+            }
+        }
+    }
+
+    @Test
+    public void test_element_at_not_requested() throws Throwable {
+        for( Method method : generate( RECORDS, new GeneratorOptions() ).getMethods() ) {
+            assertThat( method.getName().equals( "recordsAt" ), is( false ) );
+        }
+    }
+
+    @Test
+    public void test_element_at_variable_size() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   struct Record {\n"
+                + "      uint8     n;\n"
+                + "      int8[n]   values;\n"
+                + "   }\n"
+                + "   Record[2] records;\n"
+                + "}" );
+        for( Method method : clazz.getMethods() ) {
+            assertThat( method.getName().equals( "recordsAt" ), is( false ) );
+        }
+    }
+
+    @Test
+    public void test_stream_array() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint8    count;\n"
+                + "   [stream] int16[count] values;\n"
+                + "   int8     after;\n"
+                + "}",
+                new byte[] { 2, 0x12, 0x34, 0x56, 0x78, (byte) 0x9a } );
+
+        assertThat( instance, hasField( "after", (byte) 0 ) );
+        Iterator<?> values = (Iterator<?>) getField( instance, "values" );
+        assertThat( values.next(), is( (Object) (short) 0x1234 ) );
+        assertThat( instance, hasField( "after", (byte) 0 ) );
+        assertThat( values.next(), is( (Object) (short) 0x5678 ) );
+        assertThat( instance, hasField( "after", (byte) 0x9a ) );
+        assertThat( values.hasNext(), is( false ) );
+    }
+
+    @Test
+    public void test_stream_array_of_structs() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   struct Record {\n"
+                + "      int8  id;\n"
+                + "      @2 int8 value;\n"
+                + "   }\n"
+                + "   [stream] Record[3] records;\n"
+                + "   [stream] array(2) { @9+$ int8 = 0x12 } tail;\n"
+                + "}",
+                new byte[] { 1, 0, 10, 2, 0, 20, 3, 0, 0, 0x12, 0x12 } );
+
+        ElementIterator<?> records = (ElementIterator<?>) getField( instance, "records" );
+        assertThat( records.size(), is( 3L ) );
+        assertThat( records.stream().mapToInt( record -> {
+            try {
+                return (Byte) getField( record, "value" );
+            } catch( ReflectiveOperationException e ) {
+                throw new RuntimeException( e );
+            }
+        } ).sum(), is( 30 ) );
+        ElementIterator<?> tail = (ElementIterator<?>) getField( instance, "tail" );
+        assertThat( tail.stream().count(), is( 2L ) );
+    }
+
+    @Test
+    public void test_stream_array_large() throws Throwable {
+        int count = 1 << 24;
+        InputStream is = new InputStream() {
+            int position;
+
+            @Override
+            public int read() {
+                int b = position < 4 ? (count >>> (24 - position * 8)) & 0xff : position < count + 4 ? 0 : -1;
+                position++;
+                return b;
+            }
+        };
+        Object instance = parse( ""
+                + "struct Test {\n"
+                + "   uint32   count;\n"
+                + "   [stream] int8[count] values;\n"
+                + "}",
+                InputStream.class, is );
+
+        assertThat( ((ElementIterator<?>) getField( instance, "values" )).stream().count(), is( (long) count ) );
+    }
+
+    @Test( expected = UncheckedIOException.class )
+    public void test_stream_array_EOF() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   [stream] int32[3] values;\n"
+                + "}",
+                BYTES );
+
+        ((ElementIterator<?>) getField( instance, "values" )).stream().count();
+    }
+
+    @Test
+    public void test_bytes() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint8    length;\n"
+                + "   bytes(length) payload;\n"
+                + "   bytes(2) tail;\n"
+                + "   bytes(1);\n"
+                + "}",
+                new byte[] { 2, 0x12, 0x34, 0x56, 0x78, (byte) 0x9a } );
+
+        assertThat( instance, hasField( "payload", ByteBuffer.wrap( new byte[] { 0x12, 0x34 } ) ) );
+        assertThat( instance, hasField( "tail", ByteBuffer.wrap( new byte[] { 0x56, 0x78 } ) ) );
+        assertThat( instance.toString().contains( "(2 bytes)" ), is( true ) );
+    }
+
+    @Test
+    public void test_bytes_view() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   int8     v1;\n"
+                + "   bytes(3) payload;\n"
+                + "   int8     v2;\n"
+                + "}",
+                BYTES );
+
+        assertThat( findView( instance.getClass() ) != null, is( true ) );
+        assertThat( instance, hasField( "v2", (byte) 0x9a ) );
+    }
+
+    @Test
+    public void test_bytes_zero_copy() throws Throwable {
+        byte[] bytes = new byte[] { 3, 0x12, 0x34, 0x56 };
+        Object instance = parse( ""
+                + "struct Test {\n"
+                + "   uint8    length;\n"
+                + "   bytes(length) payload;\n"
+                + "}",
+                ByteBuffer.class, ByteBuffer.wrap( bytes ) );
+
+        ByteBuffer payload = (ByteBuffer) getField( instance, "payload" );
+        assertThat( payload.isReadOnly(), is( true ) );
+        assertThat( payload.remaining(), is( 3 ) );
+        bytes[2] = 0x00;
+        assertThat( payload.get( 1 ), is( (byte) 0x00 ) );
+    }
+
+    @Test
+    public void test_stream_bytes() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   uint8    length;\n"
+                + "   [stream] bytes(length) payload;\n"
+                + "   int8     after;\n"
+                + "}",
+                new byte[] { 3, 0x12, 0x34, 0x56, 0x78 } );
+
+        InputStream payload = (InputStream) getField( instance, "payload" );
+        assertThat( payload.read(), is( 0x12 ) );
+        assertThat( instance, hasField( "after", (byte) 0 ) );
+        byte[] rest = new byte[8];
+        assertThat( payload.read( rest ), is( 2 ) );
+        assertThat( rest[1], is( (byte) 0x56 ) );
+        assertThat( instance, hasField( "after", (byte) 0x78 ) );
+        assertThat( payload.read(), is( -1 ) );
+    }
+
+    @Test
+    public void test_stream_bytes_close_skips() throws Throwable {
+        Object instance = parse( ""
+                + "struct Test {\n"
+                + "   [stream] bytes(5) payload;\n"
+                + "   int16    after;\n"
+                + "}",
+                InputStream.class, new ByteArrayInputStream( BYTES ) );
+
+        InputStream payload = (InputStream) getField( instance, "payload" );
+        assertThat( payload.skip( 1 ), is( 1L ) );
+        payload.close();
+        assertThat( instance, hasField( "after", (short) 0xbcde ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_bytes_constraint() throws Throwable {
+        generate( "struct Test { bytes(2) value = 0; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_stream_not_array() throws Throwable {
+        generate( "struct Test { [stream] int8 value; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_stream_in_sub_struct() throws Throwable {
+        generate( "struct Test { struct Sub { [stream] int8[2] values; } Sub sub; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_unknown_option() throws Throwable {
+        generate( "struct Test { [foo] int8[2] values; }" );
+    }
+
+    private static final String PARALLEL_RECORDS = ""
+            + "struct Test {\n"
+            + "   struct Record {\n"
+            + "      uint16   id;\n"
+            + "      uint(4)  flags;\n"
+            + "      uint(12) value = 0x123;\n"
+            + "   }\n"
+            + "   uint16 count;\n"
+            + "   [parallel] Record[count] records;\n"
+            + "   int8   after;\n"
+            + "}";
+
+    private static byte[] parallelRecords( int count ) {
+        ByteBuffer buffer = ByteBuffer.allocate( 3 + count * 4 );
+        buffer.putShort( (short) count );
+        for( int i = 0; i < count; i++ ) {
+            buffer.putShort( (short) i ).putShort( (short) 0x5123 );
+        }
+        buffer.put( (byte) 0x42 );
+        return buffer.array();
+    }
+
+    @Test
+    public void test_parallel_array() throws Throwable {
+        byte[] bytes = parallelRecords( 20000 );
+        Object instance = parse( PARALLEL_RECORDS, ByteBuffer.class, ByteBuffer.wrap( bytes ) );
+        Object records = getField( instance, "records" );
+        assertThat( Array.getLength( records ), is( 20000 ) );
+        for( int i = 0; i < 20000; i++ ) {
+            assertThat( Array.get( records, i ), hasField( "id", i ) );
+        }
+        assertThat( Array.get( records, 19999 ), hasField( "flags", 5 ) );
+        assertThat( instance, hasField( "after", (byte) 0x42 ) );
+        assertThat( matchAgainst( PARALLEL_RECORDS, bytes ).toString(), is( instance.toString() ) );
+    }
+
+    @Test
+    public void test_parallel_array_small() throws Throwable {
+        Object instance = matchAgainst( PARALLEL_RECORDS, parallelRecords( 3 ) );
+        assertThat( Array.get( getField( instance, "records" ), 2 ), hasField( "id", 2 ) );
+        assertThat( instance, hasField( "after", (byte) 0x42 ) );
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_parallel_array_constraint() throws Throwable {
+        byte[] bytes = parallelRecords( 20000 );
+        bytes[2 + 4 * 12345 + 3] = 0;
+        parse( PARALLEL_RECORDS, ByteBuffer.class, ByteBuffer.wrap( bytes ) );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_parallel_array_EOF() throws Throwable {
+        matchAgainst( PARALLEL_RECORDS, Arrays.copyOf( parallelRecords( 100 ), 300 ) );
+    }
+
+    @Test
+    public void test_parallel_spliterator() throws Throwable {
+        Class<?> clazz = generate( PARALLEL_RECORDS );
+        ByteBuffer buffer = ByteBuffer.wrap( parallelRecords( 20000 ) );
+        buffer.position( 2 );
+        Spliterator<?> records = (Spliterator<?>) clazz.getMethod( "recordsSpliterator", ByteBuffer.class, int.class ).invoke( null, buffer, 20000 );
+        long sum = StreamSupport.stream( records, true ).mapToLong( record -> {
+            try {
+                return (Integer) getField( record, "id" );
+            } catch( ReflectiveOperationException e ) {
+                throw new RuntimeException( e );
+            }
+        } ).sum();
+        assertThat( sum, is( 19999L * 20000 / 2 ) );
+        assertThat( buffer.position(), is( 2 ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_parallel_variable_size() throws Throwable {
+        generate( "struct Test { struct Sub { uint8 n; int8[n] values; } [parallel] Sub[2] subs; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_parallel_primitives() throws Throwable {
+        generate( "struct Test { [parallel] int8[2] values; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_parallel_and_stream() throws Throwable {
+        generate( "struct Test { struct Sub { int8 x; } [parallel] [stream] Sub[2] subs; }" );
+    }
+
+    private static final String COLUMNAR_POINTS = ""
+            + "struct Test {\n"
+            + "   struct Point {\n"
+            + "      int16    x;\n"
+            + "      uint(4)  = 0xa;\n"
+            + "      uint(12) y;\n"
+            + "      @6 int8  z \"Height\";\n"
+            + "   }\n"
+            + "   uint8              n;\n"
+            + "   [columnar] Point[n] points;\n"
+            + "   int8               after;\n"
+            + "}";
+
+    @Test
+    public void test_columnar() throws Throwable {
+        Object instance = matchAgainst( COLUMNAR_POINTS, new byte[] {
+                2,
+                0x00, 0x01, (byte) 0xa0, 0x02, 0x00, 0x00, 0x03,
+                (byte) 0xff, (byte) 0xff, (byte) 0xaf, (byte) 0xff, 0x00, 0x00, 0x04,
+                0x42 } );
+        Object points = getField( instance, "points" );
+        assertArrayEquals( new short[] { 1, -1 }, (short[]) getField( points, "x" ) );
+        assertArrayEquals( new int[] { 2, 0xfff }, (int[]) getField( points, "y" ) );
+        assertArrayEquals( new byte[] { 3, 4 }, (byte[]) getField( points, "z" ) );
+        assertThat( instance, hasField( "after", (byte) 0x42 ) );
+
+        Object cursor = points.getClass().getMethod( "at", int.class ).invoke( points, 1 );
+        assertThat( cursor.getClass().getMethod( "y" ).invoke( cursor ), is( (Object) 0xfff ) );
+        cursor.getClass().getMethod( "at", int.class ).invoke( cursor, 0 );
+        assertThat( cursor.getClass().getMethod( "y" ).invoke( cursor ), is( (Object) 2 ) );
+        assertThat( points.getClass().getMethod( "size" ).invoke( points ), is( (Object) 2 ) );
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_columnar_constraint() throws Throwable {
+        matchAgainst( COLUMNAR_POINTS, new byte[] { 1, 0x00, 0x01, (byte) 0xb0, 0x02, 0x00, 0x00, 0x03, 0x42 } );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_columnar_array_field() throws Throwable {
+        generate( "struct Test { struct Sub { int8 n; int8[n] values; } [columnar] Sub[2] subs; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_columnar_not_array() throws Throwable {
+        generate( "struct Test { struct Sub { int8 x; } [columnar] Sub sub; }" );
+    }
+
+    private static final String COMPACT_IMAGE = ""
+            + "struct Test {\n"
+            + "   [compact] uint16                  width;\n"
+            + "   [compact] uint8[4]                pixels;\n"
+            + "   [compact] uint32[2]               sizes;\n"
+            + "   [compact] array(2) { uint8 >= 0x80 } flags;\n"
+            + "}";
+
+    @Test
+    public void test_compact() throws Throwable {
+        Object instance = matchAgainst( COMPACT_IMAGE, new byte[] {
+                (byte) 0xff, (byte) 0xfe,
+                0x01, (byte) 0x80, (byte) 0xff, 0x00,
+                (byte) 0x80, 0x00, 0x00, 0x00, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                (byte) 0x80, (byte) 0xff } );
+        assertThat( instance, hasField( "width", (short) 0xfffe ) );
+        assertArrayEquals( new byte[] { 1, (byte) 0x80, (byte) 0xff, 0 }, (byte[]) getField( instance, "pixels" ) );
+        assertArrayEquals( new int[] { 0x80000000, 0xffffffff }, (int[]) getField( instance, "sizes" ) );
+        assertThat( invoke( instance, "getWidth" ), is( (Object) 0xfffe ) );
+        assertThat( invoke( instance, "getPixels", 2 ), is( (Object) 0xff ) );
+        assertThat( invoke( instance, "getSizes", 1 ), is( (Object) 0xffffffffL ) );
+        assertThat( instance.toString(), is( "\nwidth : 65534\npixels : (4) [1,128,255,0]\nsizes : (2) [2147483648,4294967295]\nflags : (2) [128,255]\n" ) );
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_compact_constraint() throws Throwable {
+        matchAgainst( COMPACT_IMAGE, new byte[] { 0, 1, 1, 2, 3, 4, 0, 0, 0, 1, 0, 0, 0, 2, (byte) 0x80, 0x7f } );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_compact_signed() throws Throwable {
+        generate( "struct Test { [compact] int8[2] values; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_compact_in_expression() throws Throwable {
+        generate( "struct Test { [compact] uint8 n; int8[n] values; }" );
+    }
+
+    private static final String SWITCH = ""
+            + "struct Test {\n"
+            + "   struct Point {\n"
+            + "      int8 x;\n"
+            + "      int8 y;\n"
+            + "   }\n"
+            + "   uint8        type;\n"
+            + "   switch( type ) {\n"
+            + "   case 1:\n"
+            + "      int16    value;\n"
+            + "   case 2, 3:\n"
+            + "      uint8    n;\n"
+            + "      int8[n]  values;\n"
+            + "      int16    value;\n"
+            + "   case 255:\n"
+            + "      Point    point;\n"
+            + "   }\n"
+            + "   int8         last;\n"
+            + "}";
+
+    @Test
+    public void test_switch() throws Throwable {
+        Object instance = matchAgainst( SWITCH, new byte[] { 1, 0x12, 0x34, 0x7f } );
+        assertThat( instance, hasField( "value", (short) 0x1234 ) );
+        assertThat( getField( instance, "values" ), is( (Object) null ) );
+        assertThat( instance, hasField( "last", (byte) 0x7f ) );
+
+        instance = matchAgainst( SWITCH, new byte[] { 3, 2, 0x11, 0x22, 0x56, 0x78, 0x7f } );
+        assertArrayEquals( new byte[] { 0x11, 0x22 }, (byte[]) getField( instance, "values" ) );
+        assertThat( instance, hasField( "value", (short) 0x5678 ) );
+        assertThat( instance, hasField( "last", (byte) 0x7f ) );
+
+        instance = matchAgainst( SWITCH, new byte[] { 4, 0x7f } ); // No case for 4
+        assertThat( instance, hasField( "value", (short) 0 ) );
+        assertThat( getField( instance, "point" ), is( (Object) null ) );
+        assertThat( instance, hasField( "last", (byte) 0x7f ) );
+    }
+
+    @Test
+    public void test_switch_default() throws Throwable {
+        Object instance = matchAgainst( ""
+                + "struct Test {\n"
+                + "   int8       type;\n"
+                + "   switch( type ) {\n"
+                + "   case -1:\n"
+                + "      int8    a;\n"
+                + "   default:\n"
+                + "      int8    b;\n"
+                + "   }\n"
+                + "}",
+                new byte[] { (byte) 0xff, 0x11 } );
+        assertThat( instance, hasField( "a", (byte) 0x11 ) );
+        assertThat( instance, hasField( "b", (byte) 0 ) );
+
+        instance = matchAgainst( "struct Test { int8 type; switch( type ) { case 1: int8 a; default: int8 b; } }", new byte[] { 5, 0x22 } );
+        assertThat( instance, hasField( "b", (byte) 0x22 ) );
+        assertThat( hasConstant( instance.getClass(), "SIZE" ), is( true ) ); // All cases have the same size
+    }
+
+    @Test
+    public void test_switch_generates_switch() throws Throwable {
+        String source = generateSource( SWITCH );
+
+        assertThat( source.contains( "switch( (int)(type) ) {" ), is( true ) );
+        assertThat( source.contains( "if( type" ), is( false ) );
+    }
+
+    @Test
+    public void test_switch_parse_again() throws Throwable {
+        Class<?> clazz = generate( SWITCH );
+        Object instance = clazz.getConstructor().newInstance();
+        Method parse = clazz.getMethod( "parse", BinaryReader.class );
+        ByteBufferBinaryReader reader = new ByteBufferBinaryReader( ByteBuffer.wrap( new byte[] { 2, 2, 0x11, 0x22, 0x56, 0x78, 0x7f } ) );
+        parse.invoke( instance, reader );
+        Object values = getField( instance, "values" );
+
+        // The same case reuses its arrays
+        reader.reset( ByteBuffer.wrap( new byte[] { 3, 2, 0x33, 0x44, 0x56, 0x78, 0x7f } ) );
+        parse.invoke( instance, reader );
+        assertThat( getField( instance, "values" ) == values, is( true ) );
+        assertArrayEquals( new byte[] { 0x33, 0x44 }, (byte[]) values );
+
+        // Another case resets the data of the previous one, except its arrays and sub-structs, kept for the next parse of that case
+        reader.reset( ByteBuffer.wrap( new byte[] { (byte) 0xff, 0x01, 0x02, 0x7f } ) );
+        parse.invoke( instance, reader );
+        assertThat( getField( instance, "values" ) == values, is( true ) );
+        assertThat( instance, hasField( "n", 0 ) );
+        assertThat( instance, hasField( "value", (short) 0 ) );
+        assertThat( getField( instance, "point" ), hasField( "y", (byte) 0x02 ) );
+    }
+
+    @Test
+    public void test_switch_visitor() throws Throwable {
+        List<String> calls = visit( ""
+                + "struct Test {\n"
+                + "   uint8      type;\n"
+                + "   switch( type ) {\n"
+                + "   case 1:\n"
+                + "      int8    a;\n"
+                + "   case 2:\n"
+                + "      int8    b;\n"
+                + "   }\n"
+                + "}",
+                new byte[] { 2, 0x11 } );
+
+        assertThat( calls, is( Arrays.asList( "onType(2)", "enterCase(type,2)", "onB(17)", "exitCase(type,2)" ) ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_switch_shared_name_different_type() throws Throwable {
+        generate( "struct Test { uint8 type; switch( type ) { case 1: int8 a; case 2: int16 a; } }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_switch_duplicate_case() throws Throwable {
+        generate( "struct Test { uint8 type; switch( type ) { case 1: int8 a; case 2, 1: int8 b; } }" );
+    }
+
+    private static final String ENUMS = ""
+            + "struct Test {\n"
+            + "   enum Color : uint8 {\n"
+            + "      RED = 1 \"Red\";\n"
+            + "      GREEN = 2;\n"
+            + "      BLUE = 3;\n"
+            + "   }\n"
+            + "   enum Code : int16 {\n"
+            + "      LOW = -1000;\n"
+            + "      HIGH = 0x7fff;\n"
+            + "   }\n"
+            + "   struct Pixel {\n"
+            + "      Color color;\n"
+            + "   }\n"
+            + "   Color     first;\n"
+            + "   Code      code;\n"
+            + "   Color[2]  colors;\n"
+            + "   Pixel     pixel;\n"
+            + "   Color     unknown;\n"
+            + "}";
+
+    @Test
+    public void test_enum() throws Throwable {
+        Object instance = matchAgainst( ENUMS, new byte[] { 1, (byte) 0xfc, 0x18, 2, 3, 3, 9 } );
+
+        assertThat( getField( instance, "first" ).toString(), is( "1|RED|Red" ) );
+        assertThat( getField( instance, "code" ).toString(), is( "-1000|LOW|null" ) );
+        Object[] colors = (Object[]) getField( instance, "colors" );
+        assertThat( colors[0].toString(), is( "2|GREEN|null" ) );
+        assertThat( colors[1].toString(), is( "3|BLUE|null" ) );
+        assertThat( getField( getField( instance, "pixel" ), "color" ).toString(), is( "3|BLUE|null" ) );
+        assertThat( getField( instance, "unknown" ), is( (Object) null ) );
+    }
+
+    @Test
+    public void test_enum_lookup() throws Throwable {
+        String source = generateSource( ENUMS );
+
+        assertThat( source.contains( "$BY_VALUE[i - $MIN]" ), is( true ) ); // Dense Color
+        assertThat( source.contains( "case -1000:" ), is( true ) ); // Sparse Code
+    }
+
+    @Test
+    public void test_enum_visitor() throws Throwable {
+        List<String> calls = visit( ""
+                + "struct Test {\n"
+                + "   enum Color : uint(4) { RED = 1; GREEN = 2; }\n"
+                + "   Color c1;\n"
+                + "   Color c2;\n"
+                + "}",
+                new byte[] { 0x12 } );
+
+        assertThat( calls, is( Arrays.asList( "onC1(1|RED|null)", "onC2(2|GREEN|null)" ) ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_enum_duplicate_value() throws Throwable {
+        generate( "struct Test { enum Color : uint8 { RED = 1; GREEN = 1; } Color c; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_enum_wide_type() throws Throwable {
+        generate( "struct Test { enum Color : uint32 { RED = 1; } Color c; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_enum_constraint() throws Throwable {
+        generate( "struct Test { enum Color : uint8 { RED = 1; } Color c = 1; }" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_enum_in_expression() throws Throwable {
+        generate( "struct Test { enum Color : uint8 { RED = 1; } Color n; int8[n] values; }" );
+    }
+
+    private static final String VIEW_MESSAGES = ""
+            + "struct Test {\n"
+            + "   struct Item {\n"
+            + "      uint8     len;\n"
+            + "      int8[len] data;\n"
+            + "   }\n"
+            + "   uint8     n;\n"
+            + "   Item[n]   items;\n"
+            + "   if( n > 1 ) {\n"
+            + "      int16  extra;\n"
+            + "   }\n"
+            + "   int8      last;\n"
+            + "}";
+
+    @Test
+    public void test_view() throws Throwable {
+        byte[] bytes = { 2, 1, 0x11, 2, 0x21, 0x22, 0x01, 0x02, 0x7f, 1, 0, 0x55 }; // Two messages in a row
+        matchAgainst( VIEW_MESSAGES, bytes );
+        Class<?> viewClass = findView( generate( VIEW_MESSAGES ) );
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        Object view = viewClass.getConstructor().newInstance();
+        Method wrap = viewClass.getMethod( "wrap", ByteBuffer.class, int.class );
+
+        assertThat( wrap.invoke( view, buffer, 0 ), is( view ) );
+        assertThat( invoke( view, "byteSize" ), is( (Object) 9 ) );
+        assertThat( invoke( view, "itemsCount" ), is( (Object) 2 ) );
+        Object item = invoke( view, "items", 1 );
+        assertThat( invoke( item, "data", 1 ), is( (Object) (byte) 0x22 ) );
+        assertThat( invoke( view, "extra" ), is( (Object) (short) 0x0102 ) );
+        assertThat( invoke( view, "last" ), is( (Object) (byte) 0x7f ) );
+        // The view of the items is re-pointed, not created
+        assertThat( invoke( view, "items", 0 ) == item, is( true ) );
+        assertThat( invoke( item, "data", 0 ), is( (Object) (byte) 0x11 ) );
+
+        wrap.invoke( view, buffer, 9 );
+        assertThat( invoke( view, "byteSize" ), is( (Object) 3 ) );
+        assertThat( invoke( invoke( view, "items", 0 ), "dataCount" ), is( (Object) 0 ) );
+        assertThat( invoke( view, "extra" ), is( (Object) (short) 0 ) );
+        assertThat( invoke( view, "last" ), is( (Object) (byte) 0x55 ) );
+    }
+
+    @Test( expected = IndexOutOfBoundsException.class )
+    public void test_view_index_out_of_bounds() throws Throwable {
+        Object view = findView( generate( VIEW_MESSAGES ) ).getConstructor().newInstance();
+        view.getClass().getMethod( "wrap", ByteBuffer.class, int.class ).invoke( view, ByteBuffer.wrap( new byte[] { 1, 0, 0x55 } ), 0 );
+        invoke( view, "items", 1 );
+    }
+
+    @Test
+    public void test_no_view_by_default() throws Throwable {
+        assertThat( findView( generate( "struct Test { int8 a; }", new GeneratorOptions() ) ) == null, is( true ) );
+    }
+
+    @Test
+    public void test_no_view_with_member_access() throws Throwable {
+        assertThat( findView( generate( "struct Test { struct Header { uint8 n; } Header header; int8[header.n] values; }" ) ) == null, is( true ) );
+    }
+
+    @Test
+    public void test_parse_again_reuses_instances() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   struct Sub {\n"
+                + "      int8 x;\n"
+                + "   }\n"
+                + "   uint8     n;\n"
+                + "   int8[n]   values;\n"
+                + "   Sub       sub;\n"
+                + "   Sub[2]    subs;\n"
+                + "   if( n == 2 ) {\n"
+                + "      int16  opt;\n"
+                + "      Sub    optSub;\n"
+                + "   }\n"
+                + "}" );
+        Object instance = clazz.getConstructor().newInstance();
+        Method parse = clazz.getMethod( "parse", BinaryReader.class );
+        ByteBufferBinaryReader reader = new ByteBufferBinaryReader( ByteBuffer.wrap( new byte[] { 2, 1, 2, 3, 4, 5, 0x01, 0x02, 6 } ) );
+        parse.invoke( instance, reader );
+        Object values = getField( instance, "values" );
+        Object sub = getField( instance, "sub" );
+        Object subs = getField( instance, "subs" );
+        Object element = Array.get( subs, 1 );
+        Object optSub = getField( instance, "optSub" );
+
+        reader.reset( ByteBuffer.wrap( new byte[] { 2, 9, 8, 7, 6, 5, 0x03, 0x04, 4 } ) );
+        parse.invoke( instance, reader );
+        assertThat( getField( instance, "values" ) == values, is( true ) );
+        assertArrayEquals( new byte[] { 9, 8 }, (byte[]) values );
+        assertThat( getField( instance, "sub" ) == sub, is( true ) );
+        assertThat( sub, hasField( "x", (byte) 7 ) );
+        assertThat( getField( instance, "subs" ) == subs, is( true ) );
+        assertThat( Array.get( subs, 1 ) == element, is( true ) );
+        assertThat( element, hasField( "x", (byte) 5 ) );
+        assertThat( instance, hasField( "opt", (short) 0x0304 ) );
+
+        // Arrays are only reused with the same length, and conditional data is reset, except sub-structs kept for the next parse
+        reader.reset( ByteBuffer.wrap( new byte[] { 1, 9, 7, 6, 5 } ) );
+        parse.invoke( instance, reader );
+        assertArrayEquals( new byte[] { 9 }, (byte[]) getField( instance, "values" ) );
+        assertThat( getField( instance, "sub" ) == sub, is( true ) );
+        assertThat( instance, hasField( "opt", (short) 0 ) );
+        assertThat( getField( instance, "optSub" ) == optSub, is( true ) );
+
+        reader.reset( ByteBuffer.wrap( new byte[] { 2, 9, 8, 7, 6, 5, 0x03, 0x04, 3 } ) );
+        parse.invoke( instance, reader );
+        assertThat( getField( instance, "optSub" ) == optSub, is( true ) );
+        assertThat( optSub, hasField( "x", (byte) 3 ) );
+    }
+
+    @Test
+    public void test_visitor() throws Throwable {
+        List<String> calls = visit( ""
+                + "struct Test {\n"
+                + "   struct Sub {\n"
+                + "      int8 x;\n"
+                + "   }\n"
+                + "   uint8     n;\n"
+                + "   int8[n]   values;\n"
+                + "   if( n == 2 ) {\n"
+                + "      Sub    sub;\n"
+                + "   }\n"
+                + "   Sub[2]    subs;\n"
+                + "   int8      = 0x66;\n"
+                + "}",
+                new byte[] { 2, 0x11, 0x22, 0x33, 0x44, 0x55, 0x66 } );
+
+        assertThat( calls, is( Arrays.asList(
+                "onN(2)", "onValues(0,17)", "onValues(1,34)",
+                "enterIf(n==2)", "enterSub()", "  onX(51)", "exitSub()", "exitIf(n==2)",
+                "enterSubs(0)", "  onX(68)", "exitSubs(0)", "enterSubs(1)", "  onX(85)", "exitSubs(1)" ) ) );
+    }
+
+    @Test
+    public void test_visitor_array_in_expression() throws Throwable {
+        List<String> calls = visit( ""
+                + "struct Test {\n"
+                + "   struct Sub(size) {\n"
+                + "      int8[size] x;\n"
+                + "   }\n"
+                + "   uint8[2]  sizes;\n"
+                + "   array(2) { @2+$ Sub(sizes[$]) } subs;\n"
+                + "}",
+                new byte[] { 1, 2, 0x33, 0x44, 0x55 } );
+
+        assertThat( calls, is( Arrays.asList(
+                "onSizes(0,1)", "onSizes(1,2)",
+                "enterSubs(0)", "  onX(0,51)", "exitSubs(0)",
+                "enterSubs(1)", "  onX(0,68)", "  onX(1,85)", "exitSubs(1)" ) ) );
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_visitor_constraint() throws Throwable {
+        visit( "struct Test { int8 = 0x13; }", BYTES );
+    }
+
+    @Test
+    public void test_no_visitor_by_default() throws Throwable {
+        Class<?> clazz = generate( "struct Test { int8 a; }", new GeneratorOptions() );
+        List<String> classes = Arrays.stream( clazz.getDeclaredClasses() ).map( Class::getSimpleName ).collect( Collectors.toList() );
+        assertThat( classes.contains( "TestVisitor" ), is( false ) );
+    }
+
+    @Test
+    public void test_no_visitor_with_member_access() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   struct Header {\n"
+                + "      uint8 n;\n"
+                + "   }\n"
+                + "   Header         header;\n"
+                + "   int8[header.n] values;\n"
+                + "}" );
+
+        List<String> classes = Arrays.stream( clazz.getDeclaredClasses() ).map( Class::getSimpleName ).collect( Collectors.toList() );
+        assertThat( classes.contains( "TestVisitor" ), is( false ) );
+        assertThat( classes.contains( "Header" ), is( true ) );
+    }
+
+    @Test
+    public void test_feed_chunks() throws Throwable {
+        Class<?> clazz = generate( ""
+                + "struct Test {\n"
+                + "   struct Record(n) {\n"
+                + "      uint(4)  flags;\n"
+                + "      uint(12) value;\n"
+                + "      int16[n] data;\n"
+                + "   }\n"
+                + "   uint8     n;\n"
+                + "   @4 Record(n)[2] records;\n"
+                + "   if( n == 1 ) {\n"
+                + "      int32 extra;\n"
+                + "   }\n"
+                + "}" );
+        byte[] bytes = new byte[] { 1, 0, 0, 0, 0x12, 0x34, 0x00, 0x01, 0x56, 0x78, 0x00, 0x02, 0x11, 0x22, 0x33, 0x44 };
+        Object expected = clazz.getConstructor().newInstance();
+        clazz.getMethod( "parse", ByteBuffer.class ).invoke( expected, ByteBuffer.wrap( bytes ) );
+        for( int chunkSize = 1; chunkSize <= bytes.length; chunkSize++ ) {
+            assertThat( feed( clazz, bytes, chunkSize ).toString(), is( expected.toString() ) );
+        }
+        assertThat( getField( expected, "extra" ), is( (Object) 0x11223344 ) );
+    }
+
+    @Test
+    public void test_feed_leaves_following_data() throws Throwable {
+        Class<?> clazz = generate( RECORDS );
+        Object instance = clazz.getConstructor().newInstance();
+        Method feed = clazz.getMethod( "feed", ByteBuffer.class );
+        ByteBuffer chunk = ByteBuffer.wrap( new byte[] { 2, 0x01, 0x11 } );
+        assertThat( feed.invoke( instance, chunk ).toString(), is( "NEED_MORE" ) );
+        assertThat( chunk.hasRemaining(), is( false ) );
+
+        chunk = ByteBuffer.wrap( new byte[] { 0x11, 0x02, 0x22, 0x22, 0x77, 0x77 } );
+        assertThat( feed.invoke( instance, chunk ).toString(), is( "COMPLETE" ) );
+        assertThat( chunk.position(), is( 4 ) );
+        Object records = getField( instance, "records" );
+        assertThat( Array.get( records, 1 ), hasField( "value", (short) 0x2222 ) );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void test_feed_after_complete() throws Throwable {
+        Class<?> clazz = generate( "struct Test { int8 a; }" );
+        Object instance = feed( clazz, new byte[] { 1 }, 1 );
+        try {
+            clazz.getMethod( "feed", ByteBuffer.class ).invoke( instance, ByteBuffer.wrap( new byte[] { 2 } ) );
+        } catch( InvocationTargetException e ) {
+            throw e.getCause();
+        }
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_feed_constraint() throws Throwable {
+        feed( generate( "struct Test { int8 a; int8 = 0x13; }" ), BYTES, 1 );
+    }
+
+    @Test( expected = NoSuchMethodException.class )
+    public void test_no_feed_by_default() throws Throwable {
+        generate( "struct Test { int8 a; }", new GeneratorOptions() ).getMethod( "feed", ByteBuffer.class );
+    }
+
+    @Test( expected = NoSuchMethodException.class )
+    public void test_no_feed_with_stream() throws Throwable {
+        generate( "struct Test { uint8 n; [stream] int8[n] values; }" ).getMethod( "feed", ByteBuffer.class );
+    }
+
+    private static final String SPLIT = ""
+            + "struct Test {\n"
+            + "   struct Sub(n) {\n"
+            + "      uint8     a;\n"
+            + "      int8      = 0x13;\n"
+            + "      int8[n]   values;\n"
+            + "   }\n"
+            + "   uint8     n;\n"
+            + "   int8      = 0x13;\n"
+            + "   Sub(n)    sub;\n"
+            + "   if( n == 2 ) {\n"
+            + "      int16 extra;\n"
+            + "   }\n"
+            + "   switch( n ) {\n"
+            + "   case 2:\n"
+            + "      int8  b;\n"
+            + "   default:\n"
+            + "      int16 c;\n"
+            + "   }\n"
+            + "   int8[n]   tail;\n"
+            + "}";
+
+    private static final byte[] SPLIT_BYTES = new byte[] { 2, 0x13, 5, 0x13, 1, 2, 0x01, 0x02, 7, 8, 9 };
+
+    @Test
+    public void test_split_methods() throws Throwable {
+        String java = generateSource( SPLIT, options().setMethodBudget( 1 ) );
+        for( String method : Arrays.asList( "$parse_0(", "$string_", "$resume_0(", "$visit_0(" ) ) {
+            assertThat( method, java.contains( method ), is( true ) );
+        }
+        assertThat( generateSource( SPLIT ).contains( "$parse_0(" ), is( false ) );
+    }
+
+    @Test
+    public void test_split_parse() throws Throwable {
+        Class<?> clazz = generate( SPLIT );
+        Class<?> split = generate( SPLIT, options().setMethodBudget( 1 ) );
+        Object expected = clazz.getConstructor().newInstance();
+        clazz.getMethod( "parse", ByteBuffer.class ).invoke( expected, ByteBuffer.wrap( SPLIT_BYTES ) );
+        Object actual = split.getConstructor().newInstance();
+        split.getMethod( "parse", ByteBuffer.class ).invoke( actual, ByteBuffer.wrap( SPLIT_BYTES ) );
+
+        assertThat( actual.toString(), is( expected.toString() ) );
+        assertThat( actual, hasField( "extra", (short) 0x0102 ) );
+        assertThat( getField( actual, "sub" ), hasField( "a", 5 ) );
+        for( int chunkSize = 1; chunkSize <= SPLIT_BYTES.length; chunkSize++ ) {
+            assertThat( feed( split, SPLIT_BYTES, chunkSize ).toString(), is( expected.toString() ) );
+        }
+        assertThat( visit( split, SPLIT_BYTES ), is( visit( clazz, SPLIT_BYTES ) ) );
+    }
+
+    @Test
+    public void test_split_block_bodies() throws Throwable {
+        StringBuilder source = new StringBuilder( "struct Test {\n   uint8 n;\n   if( n == 2 ) {\n" );
+        for( int i = 0; i < 40; i++ ) {
+            source.append( "      int16 a" + i + ";\n" );
+        }
+        source.append( "   }\n   switch( n ) {\n   case 2:\n" );
+        for( int i = 0; i < 40; i++ ) {
+            source.append( "      int8 b" + i + ";\n" );
+        }
+        source.append( "   default:\n      int8 c;\n   }\n}" );
+        byte[] bytes = new byte[1 + 40 * 2 + 40];
+        bytes[0] = 2;
+        for( int i = 1; i < bytes.length; i++ ) {
+            bytes[i] = (byte) i;
+        }
+
+        // Each body alone exceeds the budget, and is split into methods of its own
+        GeneratorOptions options = options().setMethodBudget( 200 );
+        String java = generateSource( source.toString(), options );
+        assertThat( java.matches( "(?s).*if\\(\\s*n\\s*==\\s*2\\s*\\) \\{\\s*\\$parse_\\d+\\( \\$in \\);.*" ), is( true ) );
+        assertThat( java.matches( "(?s).*\\$clear_\\d+\\( 0 \\);\\s*\\$parse_\\d+\\( \\$in \\);.*" ), is( true ) );
+
+        Class<?> clazz = generate( source.toString() );
+        Class<?> split = generate( source.toString(), options );
+        Object expected = clazz.getConstructor().newInstance();
+        clazz.getMethod( "parse", ByteBuffer.class ).invoke( expected, ByteBuffer.wrap( bytes ) );
+        Object actual = split.getConstructor().newInstance();
+        split.getMethod( "parse", ByteBuffer.class ).invoke( actual, ByteBuffer.wrap( bytes ) );
+        assertThat( actual.toString(), is( expected.toString() ) );
+        assertThat( actual, hasField( "a39", (short) 0x4f50 ) );
+        assertThat( actual, hasField( "b39", (byte) 120 ) );
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void test_split_constraint() throws Throwable {
+        Class<?> clazz = generate( SPLIT, options().setMethodBudget( 1 ) );
+        try {
+            clazz.getMethod( "parse", ByteBuffer.class ).invoke( clazz.getConstructor().newInstance(), ByteBuffer.wrap( new byte[] { 2, 0x13, 5, 0x14, 1, 2, 0x01, 0x02, 7, 8, 9 } ) );
+        } catch( InvocationTargetException e ) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    public void test_top_level_struct_type() throws Throwable {
+        String source = ""
+                + "struct Point {\n"
+                + "   int8 x;\n"
+                + "}\n"
+                + "struct Test {\n"
+                + "   Point p;\n"
+                + "   Point q;\n"
+                + "}";
+        Map<String, Class<?>> classes = BinParserGen.generateClasses( new ByteArrayInputStream( source.getBytes() ), BinParserGenTest.class.getPackage().getName() );
+        Object item = classes.get( "Test" ).getConstructor().newInstance();
+        classes.get( "Test" ).getMethod( "parse", ByteBuffer.class ).invoke( item, ByteBuffer.wrap( BYTES ) );
+        assertThat( getField( item, "p" ), hasField( "x", (byte) 0x12 ) );
+        assertThat( getField( item, "q" ), hasField( "x", (byte) 0x34 ) );
+    }
+
+    @Test
+    public void test_class_cache() throws Throwable {
+        Path dir = Files.createTempDirectory( "binparsergen" );
+        try {
+            GeneratorOptions options = new GeneratorOptions().setCacheDirectory( dir );
+            Object first = parseCached( options );
+            assertThat( Files.list( dir ).count(), is( 1L ) );
+            Object second = parseCached( options );
+            assertThat( second.toString(), is( first.toString() ) );
+            assertThat( second.getClass() == first.getClass(), is( false ) );
+
+            Path entry = Files.list( dir ).findFirst().get();
+            Files.write( entry, new byte[] { 1, 2, 3 } ); // Corrupted entries are compiled again
+            assertThat( parseCached( options ).toString(), is( first.toString() ) );
+            assertThat( Files.size( entry ) > 3, is( true ) );
+
+            parseCached( new GeneratorOptions().setCacheDirectory( dir ).setMethodBudget( 1 ) );
+            assertThat( Files.list( dir ).count(), is( 2L ) );
+            parseCached( new GeneratorOptions().setCacheDirectory( dir ).setElementAccessors( true ) );
+            assertThat( Files.list( dir ).count(), is( 3L ) );
+        } finally {
+            for( Path file : Files.list( dir ).toArray( Path[]::new ) ) {
+                Files.delete( file );
+            }
+            Files.delete( dir );
+        }
+    }
+
+    private static Object parseCached( GeneratorOptions options ) throws Throwable {
+        Class<?> clazz = generate( SPLIT, options );
+        Object instance = clazz.getConstructor().newInstance();
+        clazz.getMethod( "parse", ByteBuffer.class ).invoke( instance, ByteBuffer.wrap( SPLIT_BYTES ) );
+        return instance;
+    }
+
+    @Test
+    public void test_compilation_error_line() throws Throwable {
+        try {
+            generate( ""
+                    + "struct Test {\n"
+                    + "   int8 a;\n"
+                    + "   if( a ) {\n"
+                    + "      int8 b;\n"
+                    + "   }\n"
+                    + "}" );
+            fail();
+        } catch( InvalidDefinitionException e ) {
+            assertThat( e.getMessage(), e.getMessage().startsWith( "line 3 : incompatible types" ), is( true ) );
+        }
+    }
+
+    @Test
+    public void test_registry() throws Throwable {
+        byte[] a = "struct A { int8 a; }".getBytes();
+        byte[] b = "struct B { int8 b; }".getBytes();
+        byte[] c = "struct C { int8 c; }".getBytes();
+        ParserRegistry registry = new ParserRegistry( BinParserGenTest.class.getPackage().getName(), new GeneratorOptions(), 2 );
+        Class<?> first = registry.get( a ).get( "A" );
+        assertSame( first, registry.get( new ByteArrayInputStream( a ) ).get( "A" ) );
+        Class<?> second = registry.get( b ).get( "B" );
+        registry.get( a );
+        registry.get( c ); // Evicts B, requested least recently
+        assertThat( registry.size(), is( 2 ) );
+        assertSame( first, registry.get( a ).get( "A" ) );
+        assertThat( registry.get( b ).get( "B" ) == second, is( false ) );
+
+        assertThat( registry.evict( a ), is( true ) );
+        assertThat( registry.evict( a ), is( false ) );
+        assertThat( registry.get( a ).get( "A" ) == first, is( false ) );
+
+        try {
+            registry.get( "struct D { int8 }".getBytes() );
+            fail();
+        } catch( InvalidDefinitionException e ) {
+            assertThat( registry.size(), is( 2 ) ); // Invalid definitions are not kept
+            assertThat( e.getMessage().startsWith( "Definition contains errors : Definition contains errors" ), is( false ) );
+        }
+    }
+
+    @Test
+    public void test_registry_concurrent() throws Throwable {
+        ParserRegistry registry = new ParserRegistry( BinParserGenTest.class.getPackage().getName() );
+        CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try {
+            List<Future<Class<?>>> results = new ArrayList<>();
+            for( int i = 0; i < 8; i++ ) {
+                results.add( executor.submit( () -> {
+                    start.await();
+                    return registry.get( SPLIT.getBytes() ).get( "Test" );
+                } ) );
+            }
+            start.countDown();
+            for( Future<Class<?>> result : results ) {
+                assertSame( results.get( 0 ).get(), result.get() );
+            }
+            assertThat( registry.size(), is( 1 ) );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_registry_unload() throws Throwable {
+        ParserRegistry registry = new ParserRegistry( BinParserGenTest.class.getPackage().getName() );
+        byte[] source = "struct Test { int8 a; }".getBytes();
+        WeakReference<ClassLoader> loader = new WeakReference<>( registry.get( source ).get( "Test" ).getClassLoader() );
+        registry.evict( source );
+        for( int i = 0; i < 20 && loader.get() != null; i++ ) {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertThat( loader.get() == null, is( true ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void test_invalid_method_budget() {
+        new GeneratorOptions().setMethodBudget( 0 );
+    }
+
+    private static final String INTERPRETED = ""
+            + "struct Test {\n"
+            + "   struct Item(size) {\n"
+            + "      uint8[size] values;\n"
+            + "   }\n"
+            + "   uint8          count;\n"
+            + "   int16          code;\n"
+            + "   Item(count)    item;\n"
+            + "   Item(count)[2] items;\n"
+            + "   if( item.values[0] == 1 ) {\n"
+            + "      uint32 extra;\n"
+            + "   }\n"
+            + "}";
+
+    @Test
+    public void test_interpret() throws Throwable {
+        byte[] bytes = new byte[] { 2, (byte) 0xff, (byte) 0xfe, 1, 2, 3, 4, 5, 6, 0, 0, 0, 7, 9 };
+        Interpreter interpreter = BinParserGen.interpret( new ByteArrayInputStream( INTERPRETED.getBytes() ) ).get( "Test" );
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        Record record = interpreter.parse( buffer );
+
+        assertThat( buffer.position(), is( 13 ) );
+        assertThat( record.getType().getFieldNames(), is( Arrays.asList( "count", "code", "item", "items", "extra" ) ) );
+        assertThat( record.get( "code" ), is( (Object) (short) -2 ) );
+        assertThat( record.get( "extra" ), is( (Object) 7L ) );
+        assertThat( record.getLong( "extra" ), is( 7L ) );
+        assertArrayEquals( new int[] { 5, 6 }, (int[]) ((Record[]) record.get( "items" ))[1].get( "values" ) );
+        matchAgainst( INTERPRETED, Arrays.copyOf( bytes, 13 ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void test_interpret_params_are_not_fields() throws Throwable {
+        Interpreter interpreter = BinParserGen.interpret( new ByteArrayInputStream( INTERPRETED.getBytes() ) ).get( "Test" );
+        Record record = interpreter.parse( new ByteArrayInputStream( new byte[] { 1, 0, 0, 5, 6, 7 } ) );
+        ((Record) record.get( "item" )).get( "size" );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_interpret_undefined_type() throws Throwable {
+        BinParserGen.interpret( new ByteArrayInputStream( "struct Test { Other other; }".getBytes() ) );
+    }
+
+    @Test( expected = InvalidDefinitionException.class )
+    public void test_interpret_integer_condition() throws Throwable {
+        BinParserGen.interpret( new ByteArrayInputStream( "struct Test { uint8 a; if( a ) { uint8 b; } }".getBytes() ) );
+    }
+
+    // Parses with a visitor recording callbacks, indented for sub-structs
+    private static List<String> visit( String source, byte[] bytes ) throws Throwable {
+        return visit( generate( source ), bytes );
+    }
+
+    private static List<String> visit( Class<?> clazz, byte[] bytes ) throws Throwable {
+        Class<?> visitorClass = Class.forName( clazz.getName() + "$TestVisitor", true, clazz.getClassLoader() );
+        List<String> calls = new ArrayList<>();
+        try {
+            clazz.getMethod( "parse", InputStream.class, visitorClass ).invoke( null, new ByteArrayInputStream( bytes ), recorder( visitorClass, calls, "" ) );
+        } catch( InvocationTargetException e ) {
+            throw e.getCause();
+        }
+        return calls;
+    }
+
+    private static Object recorder( Class<?> visitorClass, List<String> calls, String indent ) {
+        return Proxy.newProxyInstance( visitorClass.getClassLoader(), new Class<?>[] { visitorClass }, ( proxy, method, args ) -> {
+            String params = args == null ? "" : Arrays.stream( args ).map( String::valueOf ).collect( Collectors.joining( "," ) );
+            calls.add( indent + method.getName() + "(" + params + ")" );
+            return method.getReturnType().isInterface() ? recorder( method.getReturnType(), calls, indent + "  " ) : null;
+        } );
+    }
+
+    // Options generating all the optional code, so that tests cover it
+    private static GeneratorOptions options() {
+        return new GeneratorOptions().setElementAccessors( true ).setVisitors( true ).setResumable( true ).setViews( true );
+    }
+
+    private static Class<?> generate( String source ) throws Exception {
+        return generate( source, options() );
+    }
+
+    private static Class<?> generate( String source, GeneratorOptions options ) throws Exception {
+        Map<String, Class<?>> classes = BinParserGen.generateClasses( new ByteArrayInputStream( source.getBytes() ), BinParserGenTest.class.getPackage().getName(), options );
+        return classes.values().iterator().next();
+    }
+
+    private static String generateSource( String source ) throws Exception {
+        return generateSource( source, options() );
+    }
+
+    private static String generateSource( String source, GeneratorOptions options ) throws Exception {
+        Path dir = Files.createTempDirectory( "binparsergen" );
+        try {
+            BinParserGen.generateParser( new ByteArrayInputStream( source.getBytes() ), "test", dir.toFile(), options );
+            Path file = dir.resolve( "test/Test.java" );
+            String java = new String( Files.readAllBytes( file ), "UTF-8" );
+            Files.delete( file );
+            Files.delete( file.getParent() );
+            return java;
+        } finally {
+            Files.delete( dir );
+        }
+    }
+
+    private static boolean hasConstant( Class<?> clazz, String name ) {
+        try {
+            clazz.getField( name );
+            return true;
+        } catch( NoSuchFieldException e ) {
+            return false;
+        }
+    }
+
+    private static Object getConstant( Class<?> clazz, String name ) throws ReflectiveOperationException {
+        return clazz.getField( name ).get( null );
+    }
+
+    // Also checks that the view decodes the same values, that the resumable parser gives the same result, fed one byte at a time, and that the
+    // interpreter reads the same values or fails the same way
+    public static Object matchAgainst( String source, byte[] bytes ) throws Throwable {
+        Object instance;
+        try {
+            instance = parse( source, InputStream.class, new ByteArrayInputStream( bytes ) );
+        } catch( Throwable e ) {
+            try {
+                interpret( source, bytes );
+            } catch( Throwable interpreted ) {
+                assertThat( interpreted.toString(), interpreted.getClass(), is( (Object) e.getClass() ) );
+                throw e;
+            }
+            fail( "Interpreter did not throw " + e );
+            throw e;
+        }
+        if( !isStreamed( instance ) ) { // Streamed data is read lazily by the generated parser, eagerly by the interpreter
+            checkInterpreted( instance, interpret( source, bytes ) );
+        }
+        Class<?> viewClass = findView( instance.getClass() );
+        if( viewClass != null ) {
+            ByteBuffer buffer = ByteBuffer.allocate( bytes.length + 3 ); // Not at index 0, and little-endian, to check both are ignored
+            buffer.position( 3 );
+            buffer.put( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+            Object view = viewClass.getConstructor().newInstance();
+            checkView( instance, viewClass.getMethod( "wrap", ByteBuffer.class, int.class ).invoke( view, buffer, 3 ) );
+        }
+        try {
+            instance.getClass().getMethod( "feed", ByteBuffer.class );
+        } catch( NoSuchMethodException e ) {
+            return instance;
+        }
+        assertThat( feed( instance.getClass(), bytes, 1 ).toString(), is( instance.toString() ) );
+        return instance;
+    }
+
+    private static Class<?> findView( Class<?> clazz ) {
+        for( Class<?> nested : clazz.getDeclaredClasses() ) {
+            if( nested.getSimpleName().equals( clazz.getSimpleName() + "View" ) ) {
+                return nested;
+            }
+        }
+        return null;
+    }
+
+    // Compares the fields of a parsed instance with the values returned by the accessors of a view. Instances with streamed arrays or bytes are
+    // not compared, as the data following them is only parsed once they have been read.
+    private static void checkView( Object instance, Object view ) throws Throwable {
+        List<Field> fields = new ArrayList<>();
+        for( Field field : instance.getClass().getFields() ) {
+            if( !Modifier.isStatic( field.getModifiers() ) ) {
+                fields.add( field );
+            }
+            if( Iterator.class.isAssignableFrom( field.getType() ) || InputStream.class.isAssignableFrom( field.getType() ) ) {
+                return;
+            }
+        }
+        for( Field field : fields ) {
+            Object value = field.get( instance );
+            if( field.getType().isArray() ) {
+                int count = (Integer) invoke( view, field.getName() + "Count" );
+                assertThat( field.getName(), count, is( value == null ? 0 : Array.getLength( value ) ) );
+                for( int i = 0; i < count; i++ ) {
+                    checkViewValue( field.getName() + "[" + i + "]", Array.get( value, i ), invoke( view, field.getName(), i ) );
+                }
+            } else if( findView( field.getType() ) != null || field.getType().isPrimitive() || field.getType().isEnum() || field.getType() == String.class || field.getType() == ByteBuffer.class ) {
+                checkViewValue( field.getName(), value, invoke( view, field.getName() ) );
+            }
+        }
+    }
+
+    private static Record interpret( String source, byte[] bytes ) throws Throwable {
+        Map<String, Interpreter> interpreters = BinParserGen.interpret( new ByteArrayInputStream( source.getBytes() ) );
+        assertThat( interpreters.size(), is( 1 ) );
+        return interpreters.values().iterator().next().parse( new ByteArrayInputStream( bytes ) );
+    }
+
+    private static boolean isStreamed( Object instance ) {
+        for( Field field : instance.getClass().getFields() ) {
+            if( Iterator.class.isAssignableFrom( field.getType() ) || InputStream.class.isAssignableFrom( field.getType() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Compares the fields of a parsed instance with the values of the record read by the interpreter
+    private static void checkInterpreted( Object instance, Record record ) throws Throwable {
+        List<Field> fields = new ArrayList<>();
+        for( Field field : instance.getClass().getFields() ) {
+            if( !Modifier.isStatic( field.getModifiers() ) ) {
+                fields.add( field );
+            }
+        }
+        assertThat( record.getType().getFieldNames(), is( fields.stream().map( Field::getName ).collect( Collectors.toList() ) ) );
+        for( Field field : fields ) {
+            checkInterpretedValue( field.getName(), field.get( instance ), record.get( field.getName() ) );
+        }
+    }
+
+    private static void checkInterpretedValue( String name, Object expected, Object actual ) throws Throwable {
+        if( expected == null || actual == null ) {
+            assertSame( name, expected, actual );
+        } else if( expected.getClass().isEnum() ) {
+            assertThat( name, actual.toString(), is( expected.toString() ) );
+        } else if( actual instanceof Record ) {
+            checkInterpreted( expected, (Record) actual );
+        } else if( actual instanceof Record[] && !expected.getClass().isArray() ) { // Columns of a [columnar] array
+            Record[] records = (Record[]) actual;
+            for( Field column : expected.getClass().getDeclaredFields() ) {
+                if( !Modifier.isStatic( column.getModifiers() ) && column.getType().isArray() ) {
+                    column.setAccessible( true );
+                    Object values = column.get( expected );
+                    for( int i = 0; i < records.length; i++ ) {
+                        checkInterpretedValue( name + "." + column.getName() + "[" + i + "]", Array.get( values, i ), records[i].get( column.getName() ) );
+                    }
+                }
+            }
+        } else if( expected.getClass().isArray() && !expected.getClass().getComponentType().isPrimitive() ) {
+            assertThat( name, Array.getLength( actual ), is( Array.getLength( expected ) ) );
+            for( int i = 0; i < Array.getLength( expected ); i++ ) {
+                checkInterpretedValue( name + "[" + i + "]", Array.get( expected, i ), Array.get( actual, i ) );
+            }
+        } else {
+            assertThat( name, actual, is( expected ) );
+        }
+    }
+
+    private static void checkViewValue( String name, Object expected, Object actual ) throws Throwable {
+        if( expected != null && findView( expected.getClass() ) != null ) {
+            checkView( expected, actual );
+        } else {
+            assertThat( name, actual, is( expected ) );
+        }
+    }
+
+    private static Object invoke( Object target, String name, Object... args ) throws Throwable {
+        Class<?>[] types = new Class<?>[args.length];
+        Arrays.fill( types, int.class );
+        try {
+            return target.getClass().getMethod( name, types ).invoke( target, args );
+        } catch( InvocationTargetException e ) {
+            throw e.getCause();
+        }
+    }
+
+    // Feeds the bytes in chunks of the specified size until the parse is complete
+    private static Object feed( Class<?> clazz, byte[] bytes, int chunkSize ) throws Throwable {
+        Object instance = clazz.getConstructor().newInstance();
+        Method feed = clazz.getMethod( "feed", ByteBuffer.class );
+        for( int i = 0; i < bytes.length; i += chunkSize ) {
+            ByteBuffer chunk = ByteBuffer.wrap( bytes, i, Math.min( chunkSize, bytes.length - i ) );
+            try {
+                if( "COMPLETE".equals( feed.invoke( instance, chunk ).toString() ) ) {
+                    return instance;
+                }
+            } catch( InvocationTargetException e ) {
+                throw e.getCause();
+            }
+            assertThat( chunk.hasRemaining(), is( false ) );
+        }
+        if( bytes.length == 0 && "COMPLETE".equals( feed.invoke( instance, ByteBuffer.allocate( 0 ) ).toString() ) ) {
+            return instance;
+        }
+        throw new EOFException( "Parse not complete" );
+    }
+
+    private static Object parse( String source, Class<?> inputType, Object input ) throws Throwable {
+        Map<String, Class<?>> classes = BinParserGen.generateClasses( new ByteArrayInputStream( source.getBytes() ), BinParserGenTest.class.getPackage().getName(), options() );
         assertThat( classes.size(), is( 1 ) );
 
         Class<?> clazz = classes.values().iterator().next();
         Object instance = clazz.getConstructor().newInstance();
-        Method method = clazz.getMethod( "parse", InputStream.class );
+        Method method = clazz.getMethod( "parse", inputType );
         try {
-            method.invoke( instance, new ByteArrayInputStream( bytes ) );
+            method.invoke( instance, input );
         } catch( InvocationTargetException e ) {
             throw e.getCause();
         }
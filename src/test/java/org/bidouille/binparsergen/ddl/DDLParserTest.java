@@ -155,6 +155,43 @@ public class DDLParserTest {
                 + "}" );
     }
 
+    @Test
+    public void test_switch() {
+        assertNoParsingErrors( ""
+                + "struct Test {\n"
+                + "   switch( type ) {\n"
+                + "   case 1:\n"
+                + "      type name;\n"
+                + "   case 2, -0x10:\n"
+                + "   default:\n"
+                + "      type name2;\n"
+                + "      if( 5 != 6 ) {\n"
+                + "         type name3;\n"
+                + "      }\n"
+                + "   }\n"
+                + "}" );
+    }
+
+    @Test
+    public void test_enum() {
+        assertNoParsingErrors( ""
+                + "struct Test {\n"
+                + "   enum Kind : type {\n"
+                + "      FIRST = 1 \"First\";\n"
+                + "      LAST = -0x10;\n"
+                + "   }\n"
+                + "   Kind kind;\n"
+                + "}" );
+    }
+
+    @Test
+    public void test_option() {
+        assertNoParsingErrors( ""
+                + "struct Test {\n"
+                + "   [stream] @4 type[size] name;\n"
+                + "}" );
+    }
+
     @Test
     public void test_comment() {
         assertNoParsingErrors( ""
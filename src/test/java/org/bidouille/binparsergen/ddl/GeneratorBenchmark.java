@@ -0,0 +1,74 @@
+package org.bidouille.binparsergen.ddl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.bidouille.binparsergen.BinParserGen;
+import org.bidouille.binparsergen.InvalidDefinitionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the generation of the sources of a definition with many sub-structs, each with arrays using read and print helpers. Sources are
+ * written but not compiled, so that the time is spent in the generator and its templates.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class GeneratorBenchmark {
+    private static final int STRUCTS = 300;
+
+    private byte[] source;
+    private File dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder( "struct Schema {\n" );
+        for( int i = 0; i < STRUCTS; i++ ) {
+            sb.append( "   struct S" ).append( i ).append( " {\n" );
+            sb.append( "      uint8       n;\n" );
+            sb.append( "      int16       a;\n" );
+            sb.append( "      int32[n]    values;\n" );
+            sb.append( "      string(4)   name;\n" );
+            sb.append( "      if( n > 2 ) {\n" );
+            sb.append( "         int8[n] extra;\n" );
+            sb.append( "      }\n" );
+            sb.append( "   }\n" );
+        }
+        for( int i = 0; i < STRUCTS; i++ ) {
+            sb.append( "   S" ).append( i ).append( " s" ).append( i ).append( ";\n" );
+        }
+        sb.append( "}\n" );
+        source = sb.toString().getBytes( StandardCharsets.UTF_8 );
+        dir = Files.createTempDirectory( "binparsergen" ).toFile();
+        dir.deleteOnExit();
+    }
+
+    @Benchmark
+    public long generate() throws InvalidDefinitionException, IOException {
+        BinParserGen.generateParser( new ByteArrayInputStream( source ), "bench", dir );
+        return new File( dir, "bench/Schema.java" ).length();
+    }
+
+    public static void main( String[] args ) throws RunnerException {
+        new Runner( new OptionsBuilder().include( GeneratorBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
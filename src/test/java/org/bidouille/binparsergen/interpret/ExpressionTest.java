@@ -0,0 +1,85 @@
+package org.bidouille.binparsergen.interpret;
+
+import static org.junit.Assert.*;
+
+import org.bidouille.binparsergen.interpret.Decoder.Kind;
+import org.junit.Test;
+
+public class ExpressionTest {
+
+    private static final RecordType TYPE = new RecordType( "Test" );
+    static {
+        TYPE.addField( "a", Kind.INT, null, null );
+        TYPE.addField( "b", Kind.BYTE, null, null );
+        TYPE.addField( "l", Kind.LONG, null, null );
+        TYPE.addField( "values", Kind.OBJECT, Kind.SHORT, null );
+        TYPE.addField( "name", Kind.OBJECT, null, null );
+    }
+
+    private static long evaluate( String text, int a, long l ) {
+        Record record = new Record( TYPE );
+        record.values[TYPE.field( "a" ).slot] = a;
+        record.values[TYPE.field( "b" ).slot] = -2;
+        record.values[TYPE.field( "l" ).slot] = l;
+        record.objects[TYPE.field( "values" ).slot] = new short[] { 10, 20, 30 };
+        record.index = 2;
+        return Expression.compile( text, TYPE, true ).evaluate( record );
+    }
+
+    @Test
+    public void test_java_precedence() {
+        assertEquals( 7, evaluate( "1+2*3", 0, 0 ) );
+        assertEquals( 1, evaluate( "a+1==4&&l>2||a==0", 3, 5 ) );
+        assertEquals( 0, evaluate( "a-1-1", 2, 0 ) );
+        assertEquals( 3, evaluate( "a>1?a:-a", 3, 0 ) );
+        assertEquals( -3, evaluate( "-a*+1", 3, 0 ) );
+    }
+
+    @Test
+    public void test_int_arithmetic_wraps() {
+        assertEquals( Integer.MIN_VALUE, evaluate( "a+1", Integer.MAX_VALUE, 0 ) );
+        assertEquals( Integer.MAX_VALUE + 1L, evaluate( "l+a", Integer.MAX_VALUE, 1 ) );
+        assertEquals( Integer.MIN_VALUE, evaluate( "a/-1", Integer.MIN_VALUE, 0 ) );
+        assertEquals( -2, evaluate( "7/-3", 0, 0 ) );
+    }
+
+    @Test
+    public void test_literals() {
+        assertEquals( -1, evaluate( "0xffffffff", 0, 0 ) );
+        assertEquals( 0x1_0000_0000L, evaluate( "0x1_0000_0000", 0, 0 ) );
+        assertEquals( 5, evaluate( "0b101", 0, 0 ) );
+        assertEquals( 8, evaluate( "010", 0, 0 ) );
+        assertEquals( 1000, evaluate( "1_000", 0, 0 ) );
+    }
+
+    @Test
+    public void test_arrays_and_index() {
+        assertEquals( 30, evaluate( "values[$]", 0, 0 ) );
+        assertEquals( 3, evaluate( "values.length", 0, 0 ) );
+        assertEquals( 20, evaluate( "values[a-1]", 2, 0 ) );
+        assertEquals( -2, evaluate( "b", 0, 0 ) );
+    }
+
+    @Test( expected = ArithmeticException.class )
+    public void test_division_by_zero() {
+        evaluate( "1/a", 0, 0 );
+    }
+
+    @Test
+    public void test_invalid() {
+        for( String text : new String[] { "a=1", "unknown", "name", "a&&1", "values[l]", "\"a\"", "(a", "a+" } ) {
+            try {
+                Expression.compile( text, TYPE, true );
+                fail( text );
+            } catch( IllegalArgumentException e ) {
+                // Expected
+            }
+        }
+        try {
+            Expression.compile( "$", TYPE, false );
+            fail( "$ outside of an array" );
+        } catch( IllegalArgumentException e ) {
+            // Expected
+        }
+    }
+}
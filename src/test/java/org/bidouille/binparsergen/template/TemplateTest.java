@@ -0,0 +1,67 @@
+package org.bidouille.binparsergen.template;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class TemplateTest {
+
+    @Test
+    public void test_write() throws IOException {
+        assertThat( write( new Sample( "A", "x" ) ), is( lines( "class A {", "    int a;", "    int b;", "    String s = \"A-x\";", "}" ) ) );
+        assertThat( write( new Sample( "B", "" ) ), is( lines( "class B {", "    int a;", "    int b;", "    String s = \"B-\";", "}" ) ) );
+    }
+
+    @Test( expected = RuntimeException.class )
+    public void test_missing_param() throws IOException {
+        write( new Sample( "A" ) );
+    }
+
+    @Test( expected = RuntimeException.class )
+    public void test_missing_block() throws IOException {
+        Template template = new Template();
+        template.setParam( "name", "A" );
+        template.setParam( "suffix", "x" );
+        write( template );
+    }
+
+    private static String write( Template template ) throws IOException {
+        StringWriter out = new StringWriter();
+        IndentPrintWriter writer = new IndentPrintWriter( out );
+        template.write( "/Sample.template", writer );
+        writer.flush();
+        return out.toString();
+    }
+
+    private static String lines( String... lines ) {
+        StringWriter out = new StringWriter();
+        IndentPrintWriter writer = new IndentPrintWriter( out );
+        for( String line : lines ) {
+            writer.println( line );
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    public static class Sample extends Template {
+
+        public Sample( String name ) {
+            setParam( "name", name );
+        }
+
+        public Sample( String name, String suffix ) {
+            setParam( "name", name );
+            setParam( "suffix", suffix );
+        }
+
+        public void writeBody( IndentPrintWriter writer ) {
+            writer.println( "int a;" );
+            writer.println( "int b;" );
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.bidouille.binparsergen.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link EndianDataInputStream} over {@link SkipInputStream} chain with {@link StreamBinaryReader}, decoding the same sequence of 16-byte
+ * records as a generated parser would, and the same sequence of small bit fields. Also compares per-element and bulk decoding of a short array.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class BinaryReaderBenchmark {
+    private static final int RECORDS = 1 << 16;
+    private static final int RECORD_SIZE = 16;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = new byte[RECORDS * RECORD_SIZE];
+        new Random( 42 ).nextBytes( data );
+    }
+
+    @Benchmark
+    public long streamChain() throws IOException {
+        SkipInputStream sis = new SkipInputStream( new ByteArrayInputStream( data ) );
+        EndianDataInputStream eis = new EndianDataInputStream( sis );
+        long sum = 0;
+        for( int i = 0; i < RECORDS; i++ ) {
+            sis.pushOffset();
+            sum += eis.readInt();
+            sum += eis.readShort();
+            sum += eis.readUnsignedByte();
+            sum += sis.readBits( 3 );
+            sum += sis.readBits( 5 );
+            sum += eis.readLong();
+            sis.popOffset();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long binaryReader() throws IOException {
+        BinaryReader in = new StreamBinaryReader( new ByteArrayInputStream( data ) );
+        long sum = 0;
+        for( int i = 0; i < RECORDS; i++ ) {
+            in.pushOffset();
+            sum += in.readInt();
+            sum += in.readShort();
+            sum += in.readUnsignedByte();
+            sum += in.readBits( 3 );
+            sum += in.readBits( 5 );
+            sum += in.readLong();
+            in.popOffset();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long streamChainBits() throws IOException {
+        SkipInputStream sis = new SkipInputStream( new ByteArrayInputStream( data ) );
+        long sum = 0;
+        for( int i = 0; i < RECORDS * RECORD_SIZE / 4; i++ ) {
+            sum += sis.readBits( 1 );
+            sum += sis.readBits( 3 );
+            sum += sis.readBits( 7 );
+            sum += sis.readBits( 12 );
+            sum += sis.readBits( 9 );
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long binaryReaderBits() throws IOException {
+        BinaryReader in = new StreamBinaryReader( new ByteArrayInputStream( data ) );
+        long sum = 0;
+        for( int i = 0; i < RECORDS * RECORD_SIZE / 4; i++ ) {
+            sum += in.readBits( 1 );
+            sum += in.readBits( 3 );
+            sum += in.readBits( 7 );
+            sum += in.readBits( 12 );
+            sum += in.readBits( 9 );
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long shortsPerElement() throws IOException {
+        BinaryReader in = new ByteBufferBinaryReader( ByteBuffer.wrap( data ) );
+        short[] array = new short[data.length / 2];
+        for( int i = 0; i < array.length; i++ ) {
+            array[i] = in.readShort();
+        }
+        return array[array.length - 1];
+    }
+
+    @Benchmark
+    public long shortsBulk() throws IOException {
+        BinaryReader in = new ByteBufferBinaryReader( ByteBuffer.wrap( data ) );
+        short[] array = in.readShorts( new short[data.length / 2] );
+        return array[array.length - 1];
+    }
+
+    public static void main( String[] args ) throws RunnerException {
+        new Runner( new OptionsBuilder().include( BinaryReaderBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
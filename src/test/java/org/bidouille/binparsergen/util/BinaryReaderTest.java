@@ -0,0 +1,444 @@
+package org.bidouille.binparsergen.util;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public abstract class BinaryReaderTest {
+    protected BinaryReader in;
+
+    // //////////////////// Primitives
+
+    @Test
+    public void test_readShort() throws IOException {
+        in = makeReader( (byte) 0x80, 0x12 );
+        assertEquals( (short) 0x8012, in.readShort() );
+    }
+
+    @Test
+    public void test_readUnsignedShort() throws IOException {
+        in = makeReader( (byte) 0x80, 0x12 );
+        assertEquals( 0x8012, in.readUnsignedShort() );
+    }
+
+    @Test
+    public void test_readInt24() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78 );
+        assertEquals( 0x123456, in.readInt24() );
+        assertEquals( 0x78, in.readByte() );
+    }
+
+    @Test
+    public void test_readInt24_negative() throws IOException {
+        in = makeReader( (byte) 0x80, 0x34, 0x56, 0x78 );
+        assertEquals( 0xff803456, in.readInt24() );
+        assertEquals( 0x78, in.readByte() );
+    }
+
+    @Test
+    public void test_readUnsignedInt24() throws IOException {
+        in = makeReader( (byte) 0x80, 0x34, 0x56, 0x78 );
+        assertEquals( 0x803456, in.readUnsignedInt24() );
+    }
+
+    @Test
+    public void test_readInt() throws IOException {
+        in = makeReader( (byte) 0x80, 0x12, 0x34, 0x56 );
+        assertEquals( 0x80123456, in.readInt() );
+    }
+
+    @Test
+    public void test_readUnsignedInt() throws IOException {
+        in = makeReader( (byte) 0x80, 0x34, 0x56, 0x78 );
+        assertEquals( 0x80345678L, in.readUnsignedInt() );
+    }
+
+    @Test
+    public void test_readLong() throws IOException {
+        in = makeReader( (byte) 0x80, 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde );
+        assertEquals( 0x80123456789abcdeL, in.readLong() );
+    }
+
+    @Test
+    public void test_readShortLE() throws IOException {
+        in = makeReader( 0x12, 0x34 );
+        assertEquals( (short) 0x3412, in.readShortLE() );
+    }
+
+    @Test
+    public void test_readUnsignedShortLE() throws IOException {
+        in = makeReader( (byte) 0xab, (byte) 0xcd );
+        assertEquals( 0xcdab, in.readUnsignedShortLE() );
+    }
+
+    @Test
+    public void test_readIntLE() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78 );
+        assertEquals( 0x78563412, in.readIntLE() );
+    }
+
+    @Test
+    public void test_readUnsignedIntLE() throws IOException {
+        in = makeReader( (byte) 0xab, (byte) 0xef, (byte) 0xcd, (byte) 0xab );
+        assertEquals( 0xabcdefabL, in.readUnsignedIntLE() );
+    }
+
+    @Test
+    public void test_readLongLE() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0 );
+        assertEquals( 0xf0debc9a78563412L, in.readLongLE() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readInt_EOF() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56 );
+        in.readInt();
+    }
+
+    @Test
+    public void test_readCString() throws IOException {
+        in = makeReader( "hello\0world".getBytes( "ascii" ) );
+        assertEquals( "hello", in.readCString( 100, "ascii" ) );
+        assertEquals( 'w', in.readByte() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readCString_EOF() throws IOException {
+        in = makeReader( "hello world".getBytes( "ascii" ) );
+        in.readCString( 100, "ascii" );
+    }
+
+    @Test
+    public void test_readZeroFillString() throws IOException {
+        in = makeReader( "hello\0world\0".getBytes( "ascii" ) );
+        assertEquals( "hello", in.readZeroFillString( 10, "ascii" ) );
+        assertEquals( 'd', in.readByte() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readZeroFillString_EOF() throws IOException {
+        in = makeReader( "hello\0wor".getBytes( "ascii" ) );
+        in.readZeroFillString( 10, "ascii" );
+    }
+
+    @Test
+    public void test_readBytes() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03, 0x04 );
+        in.readByte();
+        assertArrayEquals( new byte[] { 0x02, 0x03 }, in.readBytes( 2 ) );
+        assertEquals( 0x04, in.readByte() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readBytes_EOF() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03, 0x04 );
+        in.readBytes( 5 );
+    }
+
+    @Test
+    public void test_readSlice() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03, 0x04 );
+        in.readByte();
+        ByteBuffer slice = in.readSlice( 2 );
+        assertEquals( 0, slice.position() );
+        assertEquals( 2, slice.remaining() );
+        assertEquals( 0x0203, slice.getShort() );
+        assertEquals( 0x04, in.readByte() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readSlice_EOF() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03, 0x04 );
+        in.readSlice( 5 );
+    }
+
+    @Test
+    public void test_readFixedString() throws IOException {
+        in = makeReader( "hello\0world".getBytes( "ascii" ) );
+        assertEquals( "hello\0w", in.readFixedString( 7, "ascii" ) );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readFixedString_EOF() throws IOException {
+        in = makeReader( "hello world".getBytes( "ascii" ) );
+        in.readFixedString( 20, "ascii" );
+    }
+
+    @Test
+    public void test_readFixedString_charset() throws IOException {
+        in = makeReader( 'c', (byte) 0xc3, (byte) 0xa9, 'c', (byte) 0xe9, 'c', (byte) 0xe9 );
+        assertEquals( "c\u00e9", in.readFixedString( 3, StandardCharsets.UTF_8 ) );
+        assertEquals( "c\u00e9", in.readFixedString( 2, StandardCharsets.ISO_8859_1 ) );
+        assertEquals( "c\ufffd", in.readFixedString( 2, StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void test_readCString_charset() throws IOException {
+        in = makeReader( 'c', (byte) 0xc3, (byte) 0xa9, 0, 'w' );
+        assertEquals( "c\u00e9", in.readCString( 100, StandardCharsets.UTF_8 ) );
+        assertEquals( 'w', in.readByte() );
+    }
+
+    @Test
+    public void test_readCString_maxLength() throws IOException {
+        in = makeReader( "hello\0".getBytes( "ascii" ) );
+        assertEquals( "hel", in.readCString( 3, StandardCharsets.US_ASCII ) );
+        assertEquals( "lo", in.readCString( 3, StandardCharsets.US_ASCII ) );
+        assertEquals( 6, in.getOffset() );
+    }
+
+    @Test
+    public void test_readZeroFillString_charset() throws IOException {
+        in = makeReader( 'c', (byte) 0xc3, (byte) 0xa9, 0, 'x', 'w' );
+        assertEquals( "c\u00e9", in.readZeroFillString( 5, StandardCharsets.UTF_8 ) );
+        assertEquals( 'w', in.readByte() );
+    }
+
+    // //////////////////// Bulk reads
+
+    @Test
+    public void test_readUnsignedBytes() throws IOException {
+        in = makeReader( 0x12, (byte) 0x80, (byte) 0xff, 0x01 );
+        assertArrayEquals( new int[] { 0x12, 0x80, 0xff }, in.readUnsignedBytes( new int[3] ) );
+        assertEquals( 0x01, in.readByte() );
+    }
+
+    @Test
+    public void test_readShorts() throws IOException {
+        in = makeReader( 0x12, 0x34, (byte) 0x80, 0x01, 0x01 );
+        assertArrayEquals( new short[] { 0x1234, (short) 0x8001 }, in.readShorts( new short[2] ) );
+        assertEquals( 0x01, in.readByte() );
+    }
+
+    @Test
+    public void test_readInts() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0 );
+        assertArrayEquals( new int[] { 0x12345678, 0x9abcdef0 }, in.readInts( new int[2] ) );
+    }
+
+    @Test
+    public void test_readLongs() throws IOException {
+        in = makeReader( 0x00, 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0 );
+        in.readByte();
+        assertArrayEquals( new long[] { 0x123456789abcdef0L }, in.readLongs( new long[1] ) );
+    }
+
+    @Test
+    public void test_readBytes_array() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03 );
+        byte[] array = new byte[2];
+        assertSame( array, in.readBytes( array ) );
+        assertArrayEquals( new byte[] { 0x01, 0x02 }, array );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readInts_EOF() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde );
+        in.readInts( new int[2] );
+    }
+
+    @Test( expected = IOException.class )
+    public void test_readShorts_non_byte_boundary() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78 );
+        in.readBits( 4 );
+        in.readShorts( new short[1] );
+    }
+
+    // //////////////////// readBits
+
+    @Test
+    public void test_readBits() throws IOException {
+        in = makeReader( (byte) 0xb1, (byte) 0xa5 );
+        assertEquals( 2, in.readBits( 2 ) );
+        assertEquals( 3, in.readBits( 2 ) );
+        assertEquals( 0, in.readBits( 3 ) );
+        assertEquals( 1, in.readBits( 1 ) );
+        assertEquals( 0xa, in.readBits( 4 ) );
+    }
+
+    @Test
+    public void test_readBits_two_byte_boundaries() throws IOException {
+        in = makeReader( (byte) 0xb1, (byte) 0xa5, (byte) 0xc5 );
+        in.readBits( 6 );
+        assertEquals( 0b011010010111, in.readBits( 12 ) );
+    }
+
+    @Test
+    public void test_readBits_on_byte_boundary() throws IOException {
+        in = makeReader( (byte) 0xb1, (byte) 0xa5 );
+        assertEquals( 0xb1, in.readBits( 8 ) );
+        assertEquals( 0xa5, in.readUnsignedByte() );
+    }
+
+    @Test
+    public void test_readBits_then_bytes() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0a );
+        assertEquals( 0x0, in.readBits( 4 ) );
+        assertEquals( 0x1, in.readBits( 4 ) );
+        assertEquals( 1, in.getOffset() );
+        assertEquals( 0x02030405, in.readInt() );
+        assertEquals( 0x06, in.readBits( 8 ) );
+        in.pushOffset();
+        assertEquals( 0, in.getOffset() );
+        assertEquals( 0x0708, in.readShort() );
+    }
+
+    @Test
+    public void test_readLongBits() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0, (byte) 0xff );
+        assertEquals( 0x1L, in.readLongBits( 4 ) );
+        assertEquals( 0x23456789aL, in.readLongBits( 36 ) );
+        assertEquals( 0xbcdef0fL, in.readLongBits( 28 ) );
+    }
+
+    @Test
+    public void test_readLongBits_64_unaligned() throws IOException {
+        in = makeReader( 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0, (byte) 0xff );
+        assertEquals( 0x1, in.readBits( 4 ) );
+        assertEquals( 0x23456789abcdef0fL, in.readLongBits( 64 ) );
+        assertEquals( 0xf, in.readBits( 4 ) );
+    }
+
+    @Test
+    public void test_readLongBits_64_negative() throws IOException {
+        in = makeReader( (byte) 0x80, 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde );
+        assertEquals( 0x80123456789abcdeL, in.readLongBits( 64 ) );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readBits_end_of_data() throws IOException {
+        in = makeReader( (byte) 0xb1, (byte) 0xa5 );
+        assertEquals( 0xb1a5, in.readBits( 16 ) );
+        in.readBits( 1 );
+    }
+
+    @Test( expected = IOException.class )
+    public void test_read_non_byte_boundary() throws IOException {
+        in = makeReader( (byte) 0xb1, (byte) 0xa5 );
+        in.readBits( 2 );
+        in.readByte();
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_readBits_straddling_end_of_stream() throws IOException {
+        in = makeReader( (byte) 0xb1 );
+        in.readBits( 2 );
+        in.readBits( 8 );
+    }
+
+    // //////////////////// skipTo
+
+    @Test
+    public void test_skipTo() throws IOException {
+        in = makeReader( "hello world".getBytes( "ascii" ) );
+        in.readInt();
+        in.skipTo( 6 );
+        assertEquals( 'w', in.readByte() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_skipTo_EOF() throws IOException {
+        in = makeReader( "hello world".getBytes( "ascii" ) );
+        in.skipTo( 20 );
+    }
+
+    @Test( expected = IOException.class )
+    public void test_skipTo_backwards() throws IOException {
+        in = makeReader( "hello world".getBytes( "ascii" ) );
+        in.skipTo( 6 );
+        in.skipTo( 4 );
+    }
+
+    @Test
+    public void test_skipTo_non_byte_boundary() throws IOException {
+        in = makeReader( (byte) 0xb1, (byte) 0xa5 );
+        in.readBits( 2 );
+        in.skipTo( 1 );
+        assertEquals( 0, in.getBitOffset() );
+        assertEquals( 0xa5, in.readUnsignedByte() );
+    }
+
+    @Test
+    public void test_skipTo_drops_pending_bits() throws IOException {
+        in = makeReader( 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x00 );
+        in.readBits( 4 );
+        in.readLongBits( 58 );
+        in.skipTo( 8 );
+        assertEquals( 0, in.readBits( 8 ) );
+    }
+
+    @Test
+    public void test_skipTo_drops_pending_bits_short_fields() throws IOException {
+        in = makeReader( 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x00 );
+        in.readBits( 4 );
+        in.readBits( 30 );
+        in.readBits( 28 );
+        in.skipTo( 8 );
+        assertEquals( 0, in.readBits( 8 ) );
+    }
+
+    // //////////////////// offsets
+
+    @Test
+    public void test_getOffset() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03 );
+        assertEquals( 0, in.getOffset() );
+        in.readByte();
+        assertEquals( 1, in.getOffset() );
+        in.readBits( 4 );
+        assertEquals( 1, in.getOffset() );
+        assertEquals( 4, in.getBitOffset() );
+        in.readBits( 4 );
+        assertEquals( 2, in.getOffset() );
+    }
+
+    @Test
+    public void test_popOffset_multiple() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07 );
+        in.readByte();
+        in.pushOffset(); // delta +1
+        in.skipTo( 1 );
+        in.readByte();
+        in.pushOffset(); // delta +3
+        in.skipTo( 1 );
+        in.readByte();
+        assertEquals( 2, in.getOffset() );
+        in.popOffset(); // delta +1
+        assertEquals( 4, in.getOffset() );
+        assertEquals( 0x06, in.readByte() );
+        in.popOffset(); // delta +0
+        assertEquals( 6, in.getOffset() );
+        assertEquals( 0x07, in.readByte() );
+    }
+
+    @Test( expected = IOException.class )
+    public void test_pushOffset_not_on_boundary() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03 );
+        in.readBits( 2 );
+        in.pushOffset();
+    }
+
+    @Test( expected = IOException.class )
+    public void test_popOffset_stack_underflow() throws IOException {
+        in = makeReader( 0x01, 0x02, 0x03 );
+        in.pushOffset();
+        in.popOffset();
+        in.popOffset();
+    }
+
+    protected BinaryReader makeReader( int... data ) {
+        byte[] bytes = new byte[data.length];
+        for( int i = 0; i < data.length; i++ ) {
+            bytes[i] = (byte) data[i];
+        }
+        return makeReader( bytes );
+    }
+
+    protected abstract BinaryReader makeReader( byte[] data );
+
+}
@@ -0,0 +1,99 @@
+package org.bidouille.binparsergen.util;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+public class ByteBufferBinaryReaderTest extends BinaryReaderTest {
+
+    @Override
+    protected BinaryReader makeReader( byte[] data ) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect( data.length );
+        buffer.put( data ).flip();
+        return new ByteBufferBinaryReader( buffer );
+    }
+
+    @Test
+    public void test_starts_at_buffer_position() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap( "hello world".getBytes( "ascii" ) );
+        buffer.position( 6 );
+        in = new ByteBufferBinaryReader( buffer );
+        assertEquals( 0, in.getOffset() );
+        assertEquals( "wor", in.readFixedString( 3, "ascii" ) );
+        assertEquals( 6, buffer.position() );
+    }
+
+    @Test
+    public void test_reset() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[] { 0x12, 0x34, 0x56, 0x78, (byte) 0x9a } );
+        buffer.limit( 2 );
+        ByteBufferBinaryReader reader = new ByteBufferBinaryReader( buffer );
+        reader.pushOffset();
+        reader.readBits( 3 );
+        buffer.limit( 5 ).position( 2 );
+        reader.reset( buffer );
+        assertEquals( 0, reader.getOffset() );
+        assertEquals( 0x56789a, reader.readInt24() );
+        reader.reset( ByteBuffer.wrap( new byte[] { 0x01 } ) );
+        assertEquals( 0x01, reader.readByte() );
+    }
+
+    @Test
+    public void test_readSlice_shares_buffer() throws IOException {
+        byte[] data = new byte[] { 0x12, 0x34, 0x56, 0x78 };
+        in = new ByteBufferBinaryReader( ByteBuffer.wrap( data ) );
+        in.readByte();
+        ByteBuffer slice = in.readSlice( 2 );
+        assertTrue( slice.isReadOnly() );
+        data[1] = 0x00;
+        assertEquals( 0x0056, slice.getShort( 0 ) );
+    }
+
+    @Test
+    public void test_map() throws IOException {
+        Path file = Files.createTempFile( "binparsergen", ".bin" );
+        try {
+            Files.write( file, new byte[] { 0x12, 0x34, 0x56, 0x78 } );
+            in = ByteBufferBinaryReader.map( file );
+            assertEquals( 0x12345678, in.readInt() );
+        } finally {
+            Files.delete( file );
+        }
+    }
+
+    @Test
+    public void test_read_channel() throws IOException {
+        Path file = Files.createTempFile( "binparsergen", ".bin" );
+        try (FileChannel channel = openWith( file, new byte[] { 0x12, 0x34, 0x56, 0x78, (byte) 0x9a } )) {
+            in = ByteBufferBinaryReader.read( channel, 1, 3 );
+            assertEquals( 0x345678, in.readInt24() );
+            assertEquals( 0, channel.position() );
+        } finally {
+            Files.delete( file );
+        }
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_read_channel_EOF() throws IOException {
+        Path file = Files.createTempFile( "binparsergen", ".bin" );
+        try (FileChannel channel = openWith( file, new byte[] { 0x12, 0x34, 0x56, 0x78 } )) {
+            ByteBufferBinaryReader.read( channel, 2, 3 );
+        } finally {
+            Files.delete( file );
+        }
+    }
+
+    private static FileChannel openWith( Path file, byte[] data ) throws IOException {
+        Files.write( file, data );
+        return FileChannel.open( file, StandardOpenOption.READ );
+    }
+
+}
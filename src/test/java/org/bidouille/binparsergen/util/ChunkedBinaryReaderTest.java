@@ -0,0 +1,105 @@
+package org.bidouille.binparsergen.util;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ChunkedBinaryReaderTest extends BinaryReaderTest {
+
+    @Override
+    protected BinaryReader makeReader( byte[] data ) {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( data ) );
+        return reader;
+    }
+
+    @Test
+    public void test_read_across_chunks() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( new byte[] { 0x12, 0x34 } ) );
+        assertFalse( reader.has( 32 ) );
+        reader.feed( ByteBuffer.wrap( new byte[] { 0x56, 0x78, (byte) 0x9a } ) );
+        assertTrue( reader.has( 32 ) );
+        assertEquals( 0x12345678, reader.readInt() );
+        assertEquals( (byte) 0x9a, reader.readByte() );
+    }
+
+    @Test( expected = EOFException.class )
+    public void test_read_past_chunks() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( new byte[] { 0x12, 0x34 } ) );
+        reader.readInt();
+    }
+
+    @Test
+    public void test_readBits_across_chunks() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( new byte[] { 0x12 } ) );
+        assertEquals( 0x1, reader.readBits( 4 ) );
+        assertTrue( reader.has( 4 ) );
+        assertFalse( reader.has( 12 ) );
+        reader.feed( ByteBuffer.wrap( new byte[] { 0x34 } ) );
+        assertEquals( 0x234, reader.readBits( 12 ) );
+        assertEquals( 2, reader.getOffset() );
+    }
+
+    @Test
+    public void test_trySkipTo() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( new byte[3] ) );
+        assertFalse( reader.trySkipTo( 5 ) );
+        assertEquals( 3, reader.getOffset() );
+        reader.feed( ByteBuffer.wrap( new byte[] { 0, 0, 0x42 } ) );
+        assertTrue( reader.trySkipTo( 5 ) );
+        assertEquals( 0x42, reader.readByte() );
+    }
+
+    @Test
+    public void test_giveBack() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( new byte[] { 0x12 } ) );
+        ByteBuffer chunk = ByteBuffer.wrap( new byte[] { 0x34, 0x56, 0x78 } );
+        reader.feed( chunk );
+        assertEquals( 0x1234, reader.readShort() );
+        reader.giveBack( chunk );
+        assertEquals( 1, chunk.position() );
+    }
+
+    @Test
+    public void test_giveBack_bits_loaded_ahead() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        ByteBuffer chunk = ByteBuffer.wrap( new byte[] { 0x12, 0x34, 0x56 } );
+        reader.feed( chunk );
+        assertEquals( 0x12, reader.readBits( 8 ) );
+        reader.giveBack( chunk );
+        assertEquals( 1, chunk.position() );
+    }
+
+    @Test
+    public void test_many_chunks() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.pushOffset();
+        for( int i = 0; i < 1000; i++ ) {
+            reader.feed( ByteBuffer.wrap( new byte[] { (byte) i, (byte) (i >> 8), 0 } ) );
+            assertEquals( (short) i, reader.readShortLE() );
+            assertEquals( 0, reader.readBits( 4 ) );
+            assertEquals( 0, reader.readBits( 4 ) );
+        }
+        assertEquals( 3000, reader.getOffset() );
+    }
+
+    @Test
+    public void test_large_chunk() throws IOException {
+        ChunkedBinaryReader reader = new ChunkedBinaryReader();
+        reader.feed( ByteBuffer.wrap( new byte[] { 1 } ) );
+        reader.feed( ByteBuffer.allocate( 10000 ) );
+        assertEquals( 1, reader.readByte() );
+        assertArrayEquals( new int[2500], reader.readInts( new int[2500] ) );
+        assertFalse( reader.has( 8 ) );
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.bidouille.binparsergen.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class StreamBinaryReaderTest extends BinaryReaderTest {
+
+    @Override
+    protected BinaryReader makeReader( byte[] data ) {
+        return new StreamBinaryReader( new ByteArrayInputStream( data ) );
+    }
+
+    @Test
+    public void test_read_across_buffer_refill() throws IOException {
+        in = new StreamBinaryReader( new OneByteInputStream( sequence( 20 ) ), 16 );
+        in.skipTo( 10 );
+        assertEquals( 0x0a0b0c, in.readInt24() );
+        assertEquals( 0x0d0e0f10, in.readInt() );
+        assertEquals( 0x111213, in.readInt24() );
+        assertEquals( 20, in.getOffset() );
+    }
+
+    @Test
+    public void test_readCString_across_buffer_refill() throws IOException {
+        byte[] data = "0123456789abcdef\0ghij0123456789abcdef\0".getBytes( "ascii" );
+        in = new StreamBinaryReader( new OneByteInputStream( data ), 16 );
+        in.skipTo( 10 );
+        assertEquals( "abcdef", in.readCString( 100, StandardCharsets.US_ASCII ) );
+        assertEquals( "ghij0123456789abcdef", in.readCString( 100, StandardCharsets.US_ASCII ) ); // Longer than the buffer
+        assertEquals( data.length, in.getOffset() );
+    }
+
+    @Test
+    public void test_reset() throws IOException {
+        StreamBinaryReader reader = new StreamBinaryReader( new ByteArrayInputStream( sequence( 20 ) ), 16 );
+        reader.readByte();
+        reader.pushOffset();
+        reader.readBits( 3 ); // Not on a byte boundary
+        reader.reset( new ByteArrayInputStream( new byte[] { 0x12, 0x34 } ) );
+        assertEquals( 0, reader.getOffset() );
+        assertEquals( 0x1234, reader.readShort() );
+        assertEquals( 2, reader.getOffset() );
+    }
+
+    @Test
+    public void test_readFully_larger_than_buffer() throws IOException {
+        in = new StreamBinaryReader( new OneByteInputStream( sequence( 21 ) ), 16 );
+        in.readByte();
+        assertArrayEquals( Arrays.copyOfRange( sequence( 21 ), 1, 20 ), in.readBytes( 19 ) );
+        assertEquals( 20, in.getOffset() );
+        assertEquals( 0x14, in.readByte() );
+    }
+
+    @Test
+    public void test_skipTo_beyond_buffer() throws IOException {
+        in = new StreamBinaryReader( new OneByteInputStream( new byte[100] ), 16 );
+        in.readByte();
+        in.skipTo( 50 );
+        assertEquals( 50, in.getOffset() );
+    }
+
+    @Test
+    public void test_readBits_across_buffer_refill() throws IOException {
+        in = new StreamBinaryReader( new OneByteInputStream( sequence( 40 ) ), 16 );
+        in.skipTo( 13 );
+        assertEquals( 0x0d0e0f1011121314L, in.readLongBits( 64 ) );
+        assertEquals( 0x15, in.readBits( 8 ) );
+        assertEquals( 0x16171819, in.readInt() );
+        assertEquals( 26, in.getOffset() );
+    }
+
+    @Test
+    public void test_readInts_across_buffer_refill() throws IOException {
+        in = new StreamBinaryReader( new OneByteInputStream( sequence( 41 ) ), 16 );
+        in.readByte();
+        int[] ints = in.readInts( new int[10] );
+        assertEquals( 0x01020304, ints[0] );
+        assertEquals( 0x25262728, ints[9] );
+        assertEquals( 41, in.getOffset() );
+    }
+
+    private static byte[] sequence( int length ) {
+        byte[] bytes = new byte[length];
+        for( int i = 0; i < length; i++ ) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    // Returns at most one byte per read call and never skips, to exercise buffer refills.
+    private static class OneByteInputStream extends InputStream {
+        private final byte[] data;
+        private int pos;
+
+        OneByteInputStream( byte[] data ) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) {
+            if( pos == data.length ) {
+                return -1;
+            }
+            if( len == 0 ) {
+                return 0;
+            }
+            b[off] = data[pos++];
+            return 1;
+        }
+
+        @Override
+        public long skip( long n ) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.bidouille.binparsergen.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class StringCacheTest {
+
+    @Test
+    public void test_hit_returns_same_instance() {
+        StringCache cache = new StringCache( 16 );
+        byte[] bytes = "xABxAB".getBytes( StandardCharsets.US_ASCII );
+        String first = cache.get( bytes, 1, 2, StandardCharsets.US_ASCII );
+        assertEquals( "AB", first );
+        assertSame( first, cache.get( bytes, 4, 2, StandardCharsets.US_ASCII ) );
+        assertEquals( "xA", cache.get( bytes, 0, 2, StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void test_charset_is_part_of_the_key() {
+        StringCache cache = new StringCache( 1 );
+        byte[] bytes = new byte[] { (byte) 0xc3, (byte) 0xa9 };
+        assertEquals( "é", cache.get( bytes, 0, 2, StandardCharsets.UTF_8 ) );
+        assertEquals( "Ã©", cache.get( bytes, 0, 2, StandardCharsets.ISO_8859_1 ) );
+    }
+
+    @Test
+    public void test_eviction() {
+        StringCache cache = new StringCache( 1 );
+        byte[] bytes = "ABCD".getBytes( StandardCharsets.US_ASCII );
+        for( int i = 0; i < 3; i++ ) {
+            assertEquals( "AB", cache.get( bytes, 0, 2, StandardCharsets.US_ASCII ) );
+            assertEquals( "CD", cache.get( bytes, 2, 2, StandardCharsets.US_ASCII ) );
+        }
+    }
+
+    @Test
+    public void test_direct_buffer() {
+        StringCache cache = new StringCache( 16 );
+        ByteBuffer buffer = ByteBuffer.allocateDirect( 4 );
+        buffer.put( "ABAB".getBytes( StandardCharsets.US_ASCII ) );
+        String first = cache.get( buffer, 0, 2, StandardCharsets.US_ASCII );
+        assertEquals( "AB", first );
+        assertSame( first, cache.get( buffer, 2, 2, StandardCharsets.US_ASCII ) );
+        assertEquals( 4, buffer.position() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void test_invalid_size() {
+        new StringCache( 0 );
+    }
+}
@@ -0,0 +1,70 @@
+package org.bidouille.binparsergen.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ViewDecoderTest {
+    private static final byte[] DATA = { 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc, (byte) 0xde, (byte) 0xf0, 0x11, 0x22 };
+
+    @Test
+    public void test_big_endian_whatever_the_order() {
+        for( ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN } ) {
+            ByteBuffer buffer = ByteBuffer.wrap( DATA ).order( order );
+            assertEquals( (short) 0x3456, ViewDecoder.getShort( buffer, 1 ) );
+            assertEquals( 0x123456, ViewDecoder.getInt24( buffer, 0 ) );
+            assertEquals( 0xffbcdef0, ViewDecoder.getInt24( buffer, 5 ) );
+            assertEquals( 0x3456789a, ViewDecoder.getInt( buffer, 1 ) );
+            assertEquals( 0x3456789abcdef011L, ViewDecoder.getLong( buffer, 1 ) );
+        }
+    }
+
+    @Test
+    public void test_getBits() {
+        ByteBuffer buffer = ByteBuffer.wrap( DATA );
+        assertEquals( 0x1, ViewDecoder.getBits( buffer, 0, 4 ) );
+        assertEquals( 0x23, ViewDecoder.getBits( buffer, 4, 8 ) );
+        assertEquals( 0x2345, ViewDecoder.getBits( buffer, 4, 16 ) );
+        assertEquals( 0x123456789abcdef0L, ViewDecoder.getBits( buffer, 0, 64 ) );
+    }
+
+    @Test
+    public void test_getBits_over_nine_bytes() {
+        ByteBuffer buffer = ByteBuffer.wrap( DATA );
+        assertEquals( 0x23456789abcdef01L, ViewDecoder.getBits( buffer, 4, 64 ) );
+        assertEquals( 0x23456789abcdef0L, ViewDecoder.getBits( buffer, 4, 60 ) );
+        assertEquals( 0x48d159e26af37bc0L, ViewDecoder.getBits( buffer, 3, 63 ) );
+        assertEquals( 0x1a2b3c4d5e6f7808L, ViewDecoder.getBits( buffer, 7, 64 ) );
+    }
+
+    @Test
+    public void test_getString() {
+        ByteBuffer direct = ByteBuffer.allocateDirect( 4 );
+        direct.put( new byte[] { 'a', 'b', 'c', 'd' } );
+        assertEquals( "bc", ViewDecoder.getString( direct, 1, 2, StandardCharsets.US_ASCII ) );
+        assertEquals( "bc", ViewDecoder.getString( ByteBuffer.wrap( new byte[] { 'a', 'b', 'c' }, 1, 2 ).slice(), 0, 2, StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void test_getZeroFillString() {
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[] { 'a', 'b', 0, 'c', 'd' } );
+        assertEquals( "ab", ViewDecoder.getZeroFillString( buffer, 0, 5, StandardCharsets.US_ASCII ) );
+        assertEquals( "cd", ViewDecoder.getZeroFillString( buffer, 3, 2, StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void test_getSlice() {
+        ByteBuffer buffer = ByteBuffer.wrap( DATA );
+        buffer.position( 8 );
+        ByteBuffer slice = ViewDecoder.getSlice( buffer, 2, 3 );
+        assertTrue( slice.isReadOnly() );
+        assertEquals( 0, slice.position() );
+        assertEquals( 3, slice.remaining() );
+        assertEquals( 0x56, slice.get( 0 ) );
+        assertEquals( 8, buffer.position() );
+    }
+}